@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+
+/**
+ * Unit which only counts the messages it receives. Used as the target for the
+ * messaging benchmarks.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class CountingUnit extends RoboUnit<Long> {
+	private long count;
+
+	public CountingUnit(RoboContext context, String id) {
+		super(Long.class, context, id);
+	}
+
+	@Override
+	public void onMessage(Long message) {
+		count += message;
+	}
+
+	public long getCount() {
+		return count;
+	}
+}
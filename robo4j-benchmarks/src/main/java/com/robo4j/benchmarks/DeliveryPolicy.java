@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.BlockingTrait;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.VirtualThreadTrait;
+import com.robo4j.WorkTrait;
+
+/**
+ * The unit delivery policies available to a unit, each expressed as the pair
+ * of benchmark units carrying the corresponding trait. Used as a benchmark
+ * parameter.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public enum DeliveryPolicy {
+	SYSTEM(CountingUnit.class, PingUnit.class),
+	WORK(WorkCountingUnit.class, WorkPingUnit.class),
+	BLOCKING(BlockingCountingUnit.class, BlockingPingUnit.class),
+	VIRTUAL(VirtualCountingUnit.class, VirtualPingUnit.class);
+
+	private final Class<? extends RoboUnit<Long>> countingUnit;
+	private final Class<? extends RoboUnit<Ping>> pingUnit;
+
+	DeliveryPolicy(Class<? extends RoboUnit<Long>> countingUnit, Class<? extends RoboUnit<Ping>> pingUnit) {
+		this.countingUnit = countingUnit;
+		this.pingUnit = pingUnit;
+	}
+
+	public Class<? extends RoboUnit<Long>> getCountingUnit() {
+		return countingUnit;
+	}
+
+	public Class<? extends RoboUnit<Ping>> getPingUnit() {
+		return pingUnit;
+	}
+
+	@WorkTrait
+	public static class WorkCountingUnit extends CountingUnit {
+		public WorkCountingUnit(RoboContext context, String id) {
+			super(context, id);
+		}
+	}
+
+	@BlockingTrait
+	public static class BlockingCountingUnit extends CountingUnit {
+		public BlockingCountingUnit(RoboContext context, String id) {
+			super(context, id);
+		}
+	}
+
+	@VirtualThreadTrait
+	public static class VirtualCountingUnit extends CountingUnit {
+		public VirtualCountingUnit(RoboContext context, String id) {
+			super(context, id);
+		}
+	}
+
+	@WorkTrait
+	public static class WorkPingUnit extends PingUnit {
+		public WorkPingUnit(RoboContext context, String id) {
+			super(context, id);
+		}
+	}
+
+	@BlockingTrait
+	public static class BlockingPingUnit extends PingUnit {
+		public BlockingPingUnit(RoboContext context, String id) {
+			super(context, id);
+		}
+	}
+
+	@VirtualThreadTrait
+	public static class VirtualPingUnit extends PingUnit {
+		public VirtualPingUnit(RoboContext context, String id) {
+			super(context, id);
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.LifecycleState;
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.dto.HttpPathMethodDTO;
+import com.robo4j.socket.http.dto.PathAttributeDTO;
+import com.robo4j.socket.http.dto.PathAttributeListDTO;
+import com.robo4j.socket.http.dto.ResponseAttributeListDTO;
+import com.robo4j.socket.http.dto.ResponseUnitDTO;
+import com.robo4j.socket.http.enums.StatusCode;
+import com.robo4j.socket.http.json.JsonDocument;
+import com.robo4j.socket.http.json.JsonReader;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.message.HttpResponseDenominator;
+import com.robo4j.socket.http.util.ChannelBufferUtils;
+import com.robo4j.socket.http.util.HttpMessageBuilder;
+import com.robo4j.socket.http.util.HttpRequestParser;
+import com.robo4j.socket.http.util.HttpResponseEncoder;
+import com.robo4j.socket.http.util.ReflectUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON and HTTP request codecs used by the socket-http units, on
+ * the data transfer objects the HTTP server actually sends.
+ *
+ * The request benchmarks compare the string based request parser, with and
+ * without decoding the bytes read, to the incremental {@link HttpRequestParser}
+ * working on the direct buffer read into. The response benchmarks compare the
+ * string built response, as bytes to write, to the {@link HttpResponseEncoder}
+ * writing pre-encoded headers into pooled buffers.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpCodecBenchmark {
+	private static final String BODY = "{\"value\":\"move\"}";
+	private static final String REQUEST = "POST /controller HTTP/1.1\r\n" + "Host: localhost:8042\r\n"
+			+ "Connection: keep-alive\r\n" + "Content-Length: " + BODY.length() + "\r\n"
+			+ "Cache-Control: no-cache\r\n"
+			+ "User-Agent: Mozilla/5.0 (X11; Linux aarch64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36\r\n"
+			+ "Content-Type: application/json\r\n" + "Accept: */*\r\n" + "Accept-Encoding: gzip, deflate, br\r\n"
+			+ "Accept-Language: en-US,en;q=0.8\r\n\r\n" + BODY;
+
+	private ResponseUnitDTO unit;
+	private PathAttributeListDTO pathAttributes;
+	private ResponseAttributeListDTO responseAttributes;
+	private String unitJson;
+	private String pathAttributesJson;
+	private ByteBuffer requestBuffer;
+	private HttpRequestParser parser;
+	private HttpResponseEncoder encoder;
+
+	@Setup
+	public void setup() {
+		unit = new ResponseUnitDTO("controller", LifecycleState.STARTED);
+
+		pathAttributes = new PathAttributeListDTO();
+		pathAttributes.addAttribute(new PathAttributeDTO("name", "java.lang.String"));
+		pathAttributes.addAttribute(new PathAttributeDTO("values", "java.util.HashMap"));
+		pathAttributes.addAttribute(new PathAttributeDTO("speed", "java.lang.Float"));
+
+		responseAttributes = new ResponseAttributeListDTO();
+		responseAttributes.setId("controller");
+		responseAttributes.setType("com.robo4j.units.ControllerUnit");
+		responseAttributes.addValue(new HttpPathMethodDTO("controller", HttpMethod.GET, Collections.singletonList("logger")));
+		responseAttributes.addValue(new HttpPathMethodDTO("controller", HttpMethod.POST, Arrays.asList("logger", "motor")));
+
+		unitJson = ReflectUtils.createJson(unit);
+		pathAttributesJson = ReflectUtils.createJson(pathAttributes);
+
+		byte[] request = REQUEST.getBytes(StandardCharsets.UTF_8);
+		requestBuffer = ByteBuffer.allocateDirect(request.length);
+		requestBuffer.put(request).flip();
+		parser = new HttpRequestParser();
+		encoder = new HttpResponseEncoder("robo4j-context");
+	}
+
+	@Benchmark
+	public String createJsonUnit() {
+		return ReflectUtils.createJson(unit);
+	}
+
+	@Benchmark
+	public String createJsonPathAttributes() {
+		return ReflectUtils.createJson(pathAttributes);
+	}
+
+	@Benchmark
+	public String createJsonResponseAttributes() {
+		return ReflectUtils.createJson(responseAttributes);
+	}
+
+	@Benchmark
+	public JsonDocument readJsonUnit() {
+		return new JsonReader(unitJson).read();
+	}
+
+	@Benchmark
+	public JsonDocument readJsonPathAttributes() {
+		return new JsonReader(pathAttributesJson).read();
+	}
+
+	@Benchmark
+	public HttpDecoratedRequest extractDecoratedRequest() {
+		return ChannelBufferUtils.extractDecoratedRequestByStringMessage(REQUEST);
+	}
+
+	@Benchmark
+	public HttpDecoratedRequest extractDecoratedRequestFromBuffer() {
+		byte[] bytes = new byte[requestBuffer.remaining()];
+		requestBuffer.get(0, bytes);
+		return ChannelBufferUtils.extractDecoratedRequestByStringMessage(new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public HttpDecoratedRequest parseRequest() {
+		requestBuffer.rewind();
+		return parser.parse(requestBuffer);
+	}
+
+	@Benchmark
+	public ByteBuffer buildResponse() {
+		String response = HttpMessageBuilder.Build()
+				.setDenominator(new HttpResponseDenominator(StatusCode.OK, HttpVersion.HTTP_1_1))
+				.addHeaderElement(HttpHeaderFieldNames.CONNECTION, HttpHeaderFieldValues.CONNECTION_KEEP_ALIVE)
+				.addHeaderElement(HttpHeaderFieldNames.ROBO_UNIT_UID, "robo4j-context")
+				.addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH, String.valueOf(unitJson.length()))
+				.build(unitJson);
+		return ChannelBufferUtils.getByteBufferByString(response);
+	}
+
+	@Benchmark
+	public ByteBuffer encodeResponse() {
+		ByteBuffer[] buffers = encoder.encode(StatusCode.OK, true, unitJson);
+		encoder.release(buffers);
+		return buffers[0];
+	}
+}
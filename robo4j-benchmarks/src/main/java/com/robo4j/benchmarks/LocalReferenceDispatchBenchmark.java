@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboBuilderException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of sending a message through a local reference, for each
+ * of the delivery policies. The throughput benchmark only measures the
+ * sending side, whereas the latency benchmark measures the time until the
+ * message has been handled by the receiving unit. Run with the gc profiler
+ * (-prof gc) to verify that gc.alloc.rate.norm stays at zero bytes per message
+ * once the system has warmed up.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalReferenceDispatchBenchmark {
+	private static final String ID_COUNTING_UNIT = "counter";
+	private static final String ID_PING_UNIT = "ping";
+	// Boxed once, so that the benchmark does not measure the boxing
+	private static final Long MESSAGE = 1L;
+
+	@Param
+	private DeliveryPolicy policy;
+
+	private RoboContext context;
+	private RoboReference<Long> countingReference;
+	private RoboReference<Ping> pingReference;
+	private final Ping ping = new Ping();
+
+	@Setup
+	public void setup() throws RoboBuilderException {
+		RoboBuilder builder = new RoboBuilder();
+		builder.add(policy.getCountingUnit(), ID_COUNTING_UNIT);
+		builder.add(policy.getPingUnit(), ID_PING_UNIT);
+		context = builder.build();
+		context.start();
+		countingReference = context.getReference(ID_COUNTING_UNIT);
+		pingReference = context.getReference(ID_PING_UNIT);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.shutdown();
+	}
+
+	@Benchmark
+	public void sendMessage() {
+		countingReference.sendMessage(MESSAGE);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public long sendMessageLatency() {
+		long sequence = ping.next();
+		pingReference.sendMessage(ping);
+		return ping.awaitAcknowledged(sequence);
+	}
+}
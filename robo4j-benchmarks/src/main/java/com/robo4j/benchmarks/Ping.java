@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+/**
+ * Mutable message used to measure the time until a message has been handled
+ * by the receiving unit. The sender bumps the sequence number before sending,
+ * and waits for the receiver to acknowledge it.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class Ping {
+	private long sequence;
+	private volatile long acknowledged;
+	private volatile long acknowledgedNanos;
+
+	/**
+	 * Bumps the sequence number. Call before sending the ping.
+	 *
+	 * @return the new sequence number.
+	 */
+	public long next() {
+		return ++sequence;
+	}
+
+	/**
+	 * Called by the receiving unit.
+	 */
+	public void acknowledge() {
+		acknowledgedNanos = System.nanoTime();
+		acknowledged = sequence;
+	}
+
+	/**
+	 * Busy waits until the ping with the specified sequence number has been
+	 * acknowledged.
+	 *
+	 * @param expected
+	 *            the sequence number to wait for.
+	 * @return the {@link System#nanoTime()} at which the ping was acknowledged.
+	 */
+	public long awaitAcknowledged(long expected) {
+		while (acknowledged != expected) {
+			Thread.onSpinWait();
+		}
+		return acknowledgedNanos;
+	}
+}
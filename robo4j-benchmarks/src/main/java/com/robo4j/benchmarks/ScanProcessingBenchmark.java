@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.math.features.FeatureExtraction;
+import com.robo4j.math.features.FeatureSet;
+import com.robo4j.math.features.Raycast;
+import com.robo4j.math.geometry.Point2f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the feature extraction and ray casting on a synthetic 360 degree
+ * lidar scan of a rectangular room with a box in it.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanProcessingBenchmark {
+	private static final float ROOM_HALF_WIDTH = 3.0f;
+	private static final float ROOM_HALF_DEPTH = 2.0f;
+	private static final float BOX_MIN_X = 0.8f;
+	private static final float BOX_MAX_X = 1.4f;
+	private static final float BOX_MIN_Y = 0.5f;
+	private static final float BOX_MAX_Y = 1.1f;
+	// Residual variance of the Lidar Lite
+	private static final float NOISE = 0.025f;
+	private static final float NO_GO_RADIUS = 0.3f;
+
+	@Param({ "360", "720" })
+	private int samples;
+
+	private List<Point2f> scan;
+	private float angularResolution;
+	private float raycastStepAngle;
+	private FeatureSet features;
+
+	@Setup
+	public void setup() {
+		scan = createScan(samples, new Random(42));
+		angularResolution = FeatureExtraction.getAngularResolution(scan);
+		raycastStepAngle = angularResolution * 2;
+		features = FeatureExtraction.getFeatures(scan, angularResolution);
+	}
+
+	@Benchmark
+	public FeatureSet getFeatures() {
+		return FeatureExtraction.getFeatures(scan, angularResolution);
+	}
+
+	@Benchmark
+	public List<Point2f> raycastFull() {
+		return Raycast.raycastFull(scan, NO_GO_RADIUS, raycastStepAngle, features);
+	}
+
+	private static List<Point2f> createScan(int samples, Random random) {
+		List<Point2f> scan = new ArrayList<>(samples);
+		float resolution = (float) (2 * Math.PI / samples);
+		for (int i = 0; i < samples; i++) {
+			float alpha = (float) (-Math.PI + i * resolution);
+			float range = castRay(alpha) + (float) random.nextGaussian() * NOISE;
+			scan.add(Point2f.fromPolar(range, alpha));
+		}
+		return scan;
+	}
+
+	/**
+	 * Distance to the closest wall or box side along the ray, using the same
+	 * convention as {@link Point2f#fromPolar(float, float)}.
+	 */
+	private static float castRay(float alpha) {
+		Point2f direction = Point2f.fromPolar(1, alpha);
+		float dx = direction.getX();
+		float dy = direction.getY();
+		float range = Float.MAX_VALUE;
+		range = Math.min(range, hitVertical(dx, dy, ROOM_HALF_WIDTH, -ROOM_HALF_DEPTH, ROOM_HALF_DEPTH));
+		range = Math.min(range, hitVertical(dx, dy, -ROOM_HALF_WIDTH, -ROOM_HALF_DEPTH, ROOM_HALF_DEPTH));
+		range = Math.min(range, hitHorizontal(dx, dy, ROOM_HALF_DEPTH, -ROOM_HALF_WIDTH, ROOM_HALF_WIDTH));
+		range = Math.min(range, hitHorizontal(dx, dy, -ROOM_HALF_DEPTH, -ROOM_HALF_WIDTH, ROOM_HALF_WIDTH));
+		range = Math.min(range, hitVertical(dx, dy, BOX_MIN_X, BOX_MIN_Y, BOX_MAX_Y));
+		range = Math.min(range, hitVertical(dx, dy, BOX_MAX_X, BOX_MIN_Y, BOX_MAX_Y));
+		range = Math.min(range, hitHorizontal(dx, dy, BOX_MIN_Y, BOX_MIN_X, BOX_MAX_X));
+		range = Math.min(range, hitHorizontal(dx, dy, BOX_MAX_Y, BOX_MIN_X, BOX_MAX_X));
+		return range;
+	}
+
+	private static float hitVertical(float dx, float dy, float x, float minY, float maxY) {
+		if (dx == 0) {
+			return Float.MAX_VALUE;
+		}
+		float t = x / dx;
+		float y = t * dy;
+		return t > 0 && y >= minY && y <= maxY ? t : Float.MAX_VALUE;
+	}
+
+	private static float hitHorizontal(float dx, float dy, float y, float minX, float maxX) {
+		if (dy == 0) {
+			return Float.MAX_VALUE;
+		}
+		float t = y / dy;
+		float x = t * dx;
+		return t > 0 && x >= minX && x <= maxX ? t : Float.MAX_VALUE;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.benchmarks;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboBuilderException;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.scheduler.Scheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how late the {@link Scheduler} delivers a message scheduled with a
+ * fixed delay. The sampled time includes the delay itself, so the jitter is
+ * the sampled percentiles minus the delay.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerJitterBenchmark {
+	private static final String ID_UNIT = "ping";
+
+	@Param({ "1000" })
+	private long delayMicros;
+
+	private RoboContext context;
+	private Scheduler scheduler;
+	private RoboReference<Ping> reference;
+	private final Ping ping = new Ping();
+
+	@Setup
+	public void setup() throws RoboBuilderException {
+		RoboBuilder builder = new RoboBuilder();
+		builder.add(PingUnit.class, ID_UNIT);
+		context = builder.build();
+		context.start();
+		scheduler = context.getScheduler();
+		reference = context.getReference(ID_UNIT);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.shutdown();
+	}
+
+	@Benchmark
+	public long schedule() {
+		long sequence = ping.next();
+		scheduler.schedule(reference, ping, delayMicros, delayMicros, TimeUnit.MICROSECONDS, 1);
+		return ping.awaitAcknowledged(sequence);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoding and decoding of the heartbeat messages sent by the
+ * lookup service. Lives in the same package as the codec, since the codec is
+ * package private.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeartbeatMessageCodecBenchmark {
+	private RoboContextDescriptor descriptor;
+	private byte[] message;
+
+	@Setup
+	public void setup() {
+		Map<String, String> metadata = new HashMap<>();
+		metadata.put("name", "Robo4J Lego Rover");
+		metadata.put("class", "Mobile Unit");
+		metadata.put(RoboContextDescriptor.KEY_URI, "robo4j://192.168.0.42:8042");
+		descriptor = new RoboContextDescriptor("7f3b2a1c-rover", 1000, metadata);
+		message = HearbeatMessageCodec.encode(descriptor);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return HearbeatMessageCodec.encode(descriptor);
+	}
+
+	@Benchmark
+	public RoboContextDescriptor decode() {
+		return HearbeatMessageCodec.decode(message);
+	}
+
+	@Benchmark
+	public String parseId() {
+		return HearbeatMessageCodec.parseId(message);
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.Configuration;
+import com.robo4j.scheduler.Scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reference which collects the messages sent through it, and sends them on
+ * to the target reference in batches, using
+ * {@link RoboReference#sendMessages(Collection)}. A batch is sent when it is
+ * full, or when the oldest message in it has waited for the linger time.
+ * Useful for high rate producers, such as sensors sending one message per
+ * sample, since it cuts the per message cost of the dispatch.
+ * 
+ * <p>
+ * The messages are sent on in the order they were sent to this reference.
+ * Only one thread at a time sends batches on, without holding the lock of the
+ * reference, so a target slow to take a batch does not hold up the threads
+ * sending to this reference. All other calls are passed straight on to the
+ * target.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class BatchingRoboReference<T> implements RoboReference<T> {
+	private final RoboReference<T> target;
+	private final Scheduler scheduler;
+	private final int maxBatchSize;
+	private final long lingerNanos;
+	private final Object lock = new Object();
+	// All guarded by lock
+	private List<T> pending;
+	private final Deque<List<T>> ready = new ArrayDeque<>();
+	private boolean flushScheduled;
+	private boolean sending;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param target
+	 *            the reference to send the batches to.
+	 * @param scheduler
+	 *            the scheduler to use for sending batches which are not full
+	 *            when the linger time is up, normally the scheduler of the
+	 *            context.
+	 * @param maxBatchSize
+	 *            the maximum number of messages in a batch.
+	 * @param linger
+	 *            the maximum time to hold on to a message before sending it
+	 *            on.
+	 * @param unit
+	 *            the time unit of the linger time.
+	 */
+	public BatchingRoboReference(RoboReference<T> target, Scheduler scheduler, int maxBatchSize, long linger,
+			TimeUnit unit) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("The batch size must be at least 1, was " + maxBatchSize);
+		}
+		this.target = target;
+		this.scheduler = scheduler;
+		this.maxBatchSize = maxBatchSize;
+		this.lingerNanos = unit.toNanos(linger);
+	}
+
+	@Override
+	public void sendMessage(T message) {
+		synchronized (lock) {
+			add(message);
+		}
+		sendReady();
+	}
+
+	@Override
+	public void sendMessages(Collection<? extends T> messages) {
+		synchronized (lock) {
+			for (T message : messages) {
+				add(message);
+			}
+		}
+		sendReady();
+	}
+
+	/**
+	 * Sends the messages collected so far on to the target right away. If
+	 * another thread is sending batches at the time, that thread sends them.
+	 */
+	public void flush() {
+		synchronized (lock) {
+			completePending();
+		}
+		sendReady();
+	}
+
+	private void add(T message) {
+		if (pending == null) {
+			pending = new ArrayList<>(maxBatchSize);
+		}
+		pending.add(message);
+		if (pending.size() >= maxBatchSize || lingerNanos <= 0) {
+			completePending();
+		} else if (!flushScheduled) {
+			scheduleFlush();
+		}
+	}
+
+	private void scheduleFlush() {
+		try {
+			scheduler.schedule(this::onLingerTimeUp, lingerNanos, TimeUnit.NANOSECONDS);
+			flushScheduled = true;
+		} catch (RejectedExecutionException e) {
+			// The scheduler is shut down, so there is no point in waiting
+			completePending();
+		}
+	}
+
+	private void onLingerTimeUp() {
+		synchronized (lock) {
+			flushScheduled = false;
+			completePending();
+		}
+		sendReady();
+	}
+
+	private void completePending() {
+		if (pending != null && !pending.isEmpty()) {
+			ready.add(pending);
+			pending = null;
+		}
+	}
+
+	/**
+	 * Sends the completed batches, unless another thread already does. A
+	 * single sender keeps the order of the batches.
+	 */
+	private void sendReady() {
+		synchronized (lock) {
+			if (sending || ready.isEmpty()) {
+				return;
+			}
+			sending = true;
+		}
+		try {
+			List<T> batch;
+			while ((batch = nextBatch()) != null) {
+				target.sendMessages(batch);
+			}
+		} catch (RuntimeException | Error e) {
+			synchronized (lock) {
+				sending = false;
+			}
+			throw e;
+		}
+	}
+
+	private List<T> nextBatch() {
+		synchronized (lock) {
+			List<T> batch = ready.poll();
+			if (batch == null) {
+				sending = false;
+			}
+			return batch;
+		}
+	}
+
+	/**
+	 * @return the reference the batches are sent to.
+	 */
+	public RoboReference<T> getTarget() {
+		return target;
+	}
+
+	@Override
+	public String getId() {
+		return target.getId();
+	}
+
+	@Override
+	public LifecycleState getState() {
+		return target.getState();
+	}
+
+	@Override
+	public Class<T> getMessageType() {
+		return target.getMessageType();
+	}
+
+	@Override
+	public Configuration getConfiguration() {
+		return target.getConfiguration();
+	}
+
+	@Override
+	public <R> Future<R> getAttribute(AttributeDescriptor<R> attribute) {
+		return target.getAttribute(attribute);
+	}
+
+	@Override
+	public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+		return target.getKnownAttributes();
+	}
+
+	@Override
+	public Future<Map<AttributeDescriptor<?>, Object>> getAttributes() {
+		return target.getAttributes();
+	}
+
+	@Override
+	public String toString() {
+		return "BatchingRoboReference target: " + target + " batch size: " + maxBatchSize;
+	}
+}
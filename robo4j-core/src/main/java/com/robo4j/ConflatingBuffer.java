@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Message buffer keeping only the latest message per key. A message with the
+ * same key as a pending message replaces it atomically, keeping the place of
+ * the pending message in the order. The capacity limits the number of
+ * distinct keys pending.
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class ConflatingBuffer<T> implements MessageBuffer<T> {
+	private static final Object NULL_KEY = new Object();
+
+	private final int capacity;
+	private final Function<? super T, ?> keyFunction;
+	private final UnitMetricsRecorder metrics;
+	private final ConcurrentHashMap<Object, Pending<T>> pending = new ConcurrentHashMap<>();
+	// Each pending key is in the queue exactly once
+	private final Queue<Object> keys = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong addedCount = new AtomicLong();
+	private final AtomicLong removedCount = new AtomicLong();
+
+	private record Pending<T>(T message, long timestamp) {
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *            the maximum number of distinct keys pending.
+	 * @param keyFunction
+	 *            extracts the key from a message.
+	 * @param metrics
+	 *            where to record the replaced messages as dropped, or null.
+	 */
+	ConflatingBuffer(int capacity, Function<? super T, ?> keyFunction, UnitMetricsRecorder metrics) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+		}
+		this.capacity = capacity;
+		this.keyFunction = keyFunction;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public boolean offer(T element, long timestamp) {
+		Object extracted = keyFunction.apply(element);
+		Object key = extracted == null ? NULL_KEY : extracted;
+		Pending<T> next = new Pending<>(element, timestamp);
+		while (true) {
+			if (pending.computeIfPresent(key, (k, previous) -> next) != null) {
+				if (metrics != null) {
+					metrics.recordDropped();
+				}
+				return true;
+			}
+			if (!reserve()) {
+				return false;
+			}
+			if (pending.putIfAbsent(key, next) == null) {
+				addedCount.incrementAndGet();
+				keys.add(key);
+				return true;
+			}
+			// Someone else added the key in the meantime - replace theirs
+			size.decrementAndGet();
+		}
+	}
+
+	@Override
+	public T poll() {
+		return poll(null);
+	}
+
+	@Override
+	public T poll(long[] timestamp) {
+		Object key = keys.poll();
+		if (key == null) {
+			return null;
+		}
+		Pending<T> removed = pending.remove(key);
+		size.decrementAndGet();
+		removedCount.incrementAndGet();
+		if (timestamp != null) {
+			timestamp[0] = removed.timestamp();
+		}
+		return removed.message();
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	@Override
+	public long getAddedCount() {
+		return addedCount.get();
+	}
+
+	@Override
+	public long getRemovedCount() {
+		return removedCount.get();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size.get() == 0;
+	}
+
+	@Override
+	public int capacity() {
+		return capacity;
+	}
+
+	private boolean reserve() {
+		while (true) {
+			int current = size.get();
+			if (current >= capacity) {
+				return false;
+			}
+			if (size.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Annotate units with this annotation to declare that only the latest message
+ * matters, for example for units taking the current target state of an
+ * actuator. At most one message is kept pending for the unit, and a new
+ * message replaces the pending one instead of queuing up behind it. Override
+ * {@link RoboUnit#getConflationKey(Object)} to keep one pending message per
+ * key instead, for example one per servo channel.
+ * 
+ * <p>
+ * Conflation can also be enabled in the mailbox configuration, using
+ * {@link RoboBuilder#KEY_MAILBOX_CONFLATING}.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Retention(RUNTIME)
+@Target(TYPE)
+public @interface ConflatingTrait {
+
+}
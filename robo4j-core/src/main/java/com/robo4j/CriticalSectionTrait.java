@@ -26,6 +26,12 @@ import java.lang.annotation.Target;
  * Annotate the with this annotation to declare that the unit will get messages
  * delivered one at a time.
  * 
+ * <p>
+ * Note that all units now get their messages delivered one at a time through
+ * their mailboxes, so this annotation is implied and only retained for
+ * compatibility.
+ * </p>
+ * 
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
  */
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.logging.SimpleLoggingUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed size thread pool used for draining the unit mailboxes. The mailboxes
+ * are linked directly into the run queue, which means that scheduling a
+ * mailbox does not allocate any queue nodes or future objects. Any other
+ * runnable is wrapped before being queued.
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class DispatchExecutor extends AbstractExecutorService {
+	private static final ThreadLocal<DispatchExecutor> CURRENT_POOL = new ThreadLocal<>();
+
+	private final Object lock = new Object();
+	private final int poolSize;
+	private final ThreadFactory threadFactory;
+	private final List<Thread> threads = new ArrayList<>();
+
+	// All guarded by lock
+	private Task head;
+	private Task tail;
+	private int queuedTasks;
+	private int idleThreads;
+	private int liveThreads;
+	private boolean shutdown;
+
+	/**
+	 * Something that can be linked into the run queue without allocating a
+	 * queue node. A task must not be executed again until it has started
+	 * running.
+	 */
+	abstract static class Task implements Runnable {
+		private Task next;
+	}
+
+	private static final class RunnableTask extends Task {
+		private final Runnable runnable;
+
+		RunnableTask(Runnable runnable) {
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run() {
+			runnable.run();
+		}
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param poolSize
+	 *            the maximum number of threads in the pool.
+	 * @param threadFactory
+	 *            the factory to use for creating the threads, created as they
+	 *            are needed.
+	 */
+	DispatchExecutor(int poolSize, ThreadFactory threadFactory) {
+		if (poolSize < 1) {
+			throw new IllegalArgumentException("Pool size must be positive, was " + poolSize);
+		}
+		this.poolSize = poolSize;
+		this.threadFactory = threadFactory;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		Task task = command instanceof Task ? (Task) command : new RunnableTask(command);
+		synchronized (lock) {
+			if (shutdown) {
+				throw new RejectedExecutionException("Executor has been shut down");
+			}
+			if (tail == null) {
+				head = task;
+			} else {
+				tail.next = task;
+			}
+			tail = task;
+			queuedTasks++;
+			// The idle threads only leave the count once they get to run, so
+			// they may already have been woken up for earlier tasks
+			if (idleThreads >= queuedTasks) {
+				lock.notify();
+			} else if (liveThreads < poolSize) {
+				startThread();
+			} else if (idleThreads > 0) {
+				lock.notify();
+			}
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		synchronized (lock) {
+			shutdown = true;
+			lock.notifyAll();
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		List<Runnable> remaining = new ArrayList<>();
+		synchronized (lock) {
+			shutdown = true;
+			for (Task task = head; task != null; task = task.next) {
+				remaining.add(task instanceof RunnableTask ? ((RunnableTask) task).runnable : task);
+			}
+			head = null;
+			tail = null;
+			queuedTasks = 0;
+			threads.forEach(Thread::interrupt);
+			lock.notifyAll();
+		}
+		return remaining;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		synchronized (lock) {
+			return shutdown;
+		}
+	}
+
+	@Override
+	public boolean isTerminated() {
+		synchronized (lock) {
+			return shutdown && liveThreads == 0;
+		}
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (lock) {
+			while (!(shutdown && liveThreads == 0)) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @return true if called on one of the threads of this pool.
+	 */
+	boolean isPoolThread() {
+		return CURRENT_POOL.get() == this;
+	}
+
+	private void startThread() {
+		Thread thread = threadFactory.newThread(this::work);
+		threads.add(thread);
+		liveThreads++;
+		thread.start();
+	}
+
+	private void work() {
+		CURRENT_POOL.set(this);
+		while (true) {
+			Task task = take();
+			if (task == null) {
+				return;
+			}
+			try {
+				task.run();
+			} catch (Throwable t) {
+				SimpleLoggingUtil.error(getClass(), "Error running task", t);
+			}
+		}
+	}
+
+	private Task take() {
+		synchronized (lock) {
+			while (head == null) {
+				if (shutdown) {
+					liveThreads--;
+					threads.remove(Thread.currentThread());
+					lock.notifyAll();
+					return null;
+				}
+				idleThreads++;
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					// Only used for shutdownNow, will exit on next check
+				} finally {
+					idleThreads--;
+				}
+			}
+			Task task = head;
+			head = task.next;
+			queuedTasks--;
+			if (head == null) {
+				tail = null;
+			}
+			task.next = null;
+			return task;
+		}
+	}
+}
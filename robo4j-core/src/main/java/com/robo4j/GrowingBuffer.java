@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A message buffer which never fills up, used for the
+ * {@link MailboxOverflowPolicy#GROW} policy. The messages go to the bounded
+ * buffer it wraps, and spill over to an unbounded queue when that is full.
+ * Only the spilled messages allocate.
+ * 
+ * <p>
+ * The messages are taken from the bounded buffer first. To keep the messages
+ * of each sender in order, new messages go to the spill queue for as long as
+ * it is not empty, even if there is room in the bounded buffer again. A
+ * message only goes to the bounded buffer once all earlier spilled messages
+ * have been taken.
+ * </p>
+ * 
+ * <p>
+ * Any number of threads may offer, but only one thread at a time may poll.
+ * </p>
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class GrowingBuffer<T> implements MessageBuffer<T> {
+	private final MessageBuffer<T> buffer;
+	private final Queue<Spilled<T>> spilled = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger spilledSize = new AtomicInteger();
+	private final AtomicLong spilledAdded = new AtomicLong();
+	private final AtomicLong spilledRemoved = new AtomicLong();
+
+	private record Spilled<T>(T element, long timestamp) {
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param buffer
+	 *            the bounded buffer to use until it is full.
+	 */
+	GrowingBuffer(MessageBuffer<T> buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Adds the element. Always succeeds.
+	 */
+	@Override
+	public boolean offer(T element, long timestamp) {
+		if (spilledSize.get() == 0 && buffer.offer(element, timestamp)) {
+			return true;
+		}
+		spilledSize.incrementAndGet();
+		spilledAdded.incrementAndGet();
+		spilled.add(new Spilled<>(element, timestamp));
+		return true;
+	}
+
+	@Override
+	public T poll() {
+		return poll(null);
+	}
+
+	@Override
+	public T poll(long[] timestamp) {
+		T element = buffer.poll(timestamp);
+		if (element != null) {
+			return element;
+		}
+		Spilled<T> next = spilled.poll();
+		if (next == null) {
+			return null;
+		}
+		if (timestamp != null) {
+			timestamp[0] = next.timestamp();
+		}
+		spilledRemoved.incrementAndGet();
+		spilledSize.decrementAndGet();
+		return next.element();
+	}
+
+	@Override
+	public int size() {
+		return buffer.size() + spilledSize.get();
+	}
+
+	@Override
+	public long getAddedCount() {
+		return buffer.getAddedCount() + spilledAdded.get();
+	}
+
+	@Override
+	public long getRemovedCount() {
+		return buffer.getRemovedCount() + spilledRemoved.get();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return buffer.isEmpty() && spilledSize.get() == 0;
+	}
+
+	/**
+	 * @return the capacity of the bounded buffer. The buffer grows past it.
+	 */
+	@Override
+	public int capacity() {
+		return buffer.capacity();
+	}
+}
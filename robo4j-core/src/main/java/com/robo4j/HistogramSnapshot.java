@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable snapshot of a duration histogram. All values are in nanoseconds.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class HistogramSnapshot implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private final long[] counts;
+	private final long count;
+	private final long min;
+	private final long max;
+	private final long sum;
+
+	HistogramSnapshot(long[] counts, long count, long min, long max, long sum) {
+		this.counts = counts;
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.sum = sum;
+	}
+
+	/**
+	 * @return the number of recorded values.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the smallest recorded value, or 0 if nothing has been recorded.
+	 */
+	public long getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the largest recorded value, or 0 if nothing has been recorded.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the mean of the recorded values, or 0 if nothing has been
+	 *         recorded.
+	 */
+	public double getMean() {
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	/**
+	 * Returns the value at the specified percentile, i.e. a value such that
+	 * the given percentage of the recorded values are at or below it.
+	 * 
+	 * @param percentile
+	 *            the percentile, between 0 and 100.
+	 * @return the value at the percentile, or 0 if nothing has been recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		double clamped = Math.min(Math.max(percentile, 0), 100);
+		long target = Math.max(1, (long) Math.ceil(clamped / 100 * count));
+		long accumulated = 0;
+		for (int i = 0; i < counts.length; i++) {
+			accumulated += counts[i];
+			if (accumulated >= target) {
+				return Math.min(Math.max(LatencyHistogram.highestValueOf(i), min), max);
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count=%d, mean=%s, p50=%s, p99=%s, max=%s", count, format((long) getMean()),
+				format(getValueAtPercentile(50)), format(getValueAtPercentile(99)), format(max));
+	}
+
+	/**
+	 * Formats a duration in nanoseconds in a human readable way.
+	 * 
+	 * @param nanos
+	 *            the duration to format.
+	 * @return the formatted duration.
+	 */
+	public static String format(long nanos) {
+		if (nanos < TimeUnit.MICROSECONDS.toNanos(1)) {
+			return nanos + "ns";
+		} else if (nanos < TimeUnit.MILLISECONDS.toNanos(1)) {
+			return String.format("%.1fus", nanos / 1_000.0);
+		} else if (nanos < TimeUnit.SECONDS.toNanos(1)) {
+			return String.format("%.1fms", nanos / 1_000_000.0);
+		}
+		return String.format("%.1fs", nanos / 1_000_000_000.0);
+	}
+}
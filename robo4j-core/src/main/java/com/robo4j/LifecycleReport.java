@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Report on how the units of a system made a life cycle transition, for
+ * example how long each unit took to start. The units are transitioned in
+ * waves, where all units in a wave are transitioned in parallel, and each
+ * wave only contains units whose dependencies were transitioned in earlier
+ * waves (see {@link DependsOn}).
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class LifecycleReport {
+	private final String systemId;
+	private final LifecycleState targetState;
+	private final long durationNanos;
+	private final int waveCount;
+	private final List<UnitEntry> entries;
+
+	/**
+	 * The outcome of the transition of one unit.
+	 */
+	public static final class UnitEntry {
+		private final String unitId;
+		private final int wave;
+		private final LifecycleState state;
+		private final long durationNanos;
+		private final String message;
+
+		UnitEntry(String unitId, int wave, LifecycleState state, long durationNanos, String message) {
+			this.unitId = unitId;
+			this.wave = wave;
+			this.state = state;
+			this.durationNanos = durationNanos;
+			this.message = message;
+		}
+
+		/**
+		 * @return the id of the unit.
+		 */
+		public String getUnitId() {
+			return unitId;
+		}
+
+		/**
+		 * @return the wave in which the unit was transitioned, starting at 0.
+		 */
+		public int getWave() {
+			return wave;
+		}
+
+		/**
+		 * @return the state of the unit after the transition, or
+		 *         {@link LifecycleState#FAILED} if the transition failed.
+		 */
+		public LifecycleState getState() {
+			return state;
+		}
+
+		/**
+		 * @return the time the transition took, in nanoseconds.
+		 */
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		/**
+		 * @return why the transition failed, or null if it did not.
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * @return true if the transition failed.
+		 */
+		public boolean isFailed() {
+			return state == LifecycleState.FAILED;
+		}
+
+		@Override
+		public String toString() {
+			return "UnitEntry{unitId='" + unitId + "', wave=" + wave + ", state=" + state + ", duration="
+					+ HistogramSnapshot.format(durationNanos) + (message == null ? "" : ", message='" + message + "'")
+					+ "}";
+		}
+	}
+
+	LifecycleReport(String systemId, LifecycleState targetState, long durationNanos, int waveCount,
+			List<UnitEntry> entries) {
+		this.systemId = systemId;
+		this.targetState = targetState;
+		this.durationNanos = durationNanos;
+		this.waveCount = waveCount;
+		this.entries = Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * @return the id of the system.
+	 */
+	public String getSystemId() {
+		return systemId;
+	}
+
+	/**
+	 * @return the state the units were transitioned to.
+	 */
+	public LifecycleState getTargetState() {
+		return targetState;
+	}
+
+	/**
+	 * @return the time the whole transition took, in nanoseconds.
+	 */
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	/**
+	 * @return the number of waves.
+	 */
+	public int getWaveCount() {
+		return waveCount;
+	}
+
+	/**
+	 * @return the entries for all the units, in the order they were
+	 *         transitioned.
+	 */
+	public List<UnitEntry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @param unitId
+	 *            the id of the unit.
+	 * @return the entry for the unit, or null if the unit is not in the report.
+	 */
+	public UnitEntry getEntry(String unitId) {
+		for (UnitEntry entry : entries) {
+			if (entry.getUnitId().equals(unitId)) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if all units made the transition.
+	 */
+	public boolean isSuccessful() {
+		return entries.stream().noneMatch(UnitEntry::isFailed);
+	}
+
+	/**
+	 * @return a human readable table of the report.
+	 */
+	public String format() {
+		int idWidth = entries.stream().mapToInt(e -> e.getUnitId().length()).max().orElse(0);
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("Units of system %s to %s: %d units in %d waves, %s", systemId, targetState,
+				entries.size(), waveCount, HistogramSnapshot.format(durationNanos)));
+		for (UnitEntry entry : entries) {
+			builder.append(String.format("%n  wave %d  %-" + Math.max(idWidth, 1) + "s  %-8s %8s", entry.getWave(),
+					entry.getUnitId(), entry.getState(), HistogramSnapshot.format(entry.getDurationNanos())));
+			if (entry.getMessage() != null) {
+				builder.append("  ").append(entry.getMessage());
+			}
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return "LifecycleReport{systemId='" + systemId + "', targetState=" + targetState + ", duration="
+				+ HistogramSnapshot.format(durationNanos) + ", waveCount=" + waveCount + ", entries=" + entries + "}";
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+/**
+ * What to do when a message is sent to a unit whose mailbox is already full.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public enum MailboxOverflowPolicy {
+	/**
+	 * The mailbox grows past its capacity to take the message. The sender never
+	 * blocks and no message is lost, but messages over the capacity allocate.
+	 * This is the default.
+	 */
+	GROW,
+	/**
+	 * The sender will block until there is room in the mailbox. Senders
+	 * running on the thread pool that serves the unit are never blocked,
+	 * since the pool may be needed to make room; their message is discarded.
+	 */
+	BLOCK,
+	/**
+	 * The oldest message in the mailbox is discarded to make room for the new
+	 * one.
+	 */
+	DROP_OLDEST,
+	/**
+	 * The new message is discarded.
+	 */
+	DROP_NEWEST,
+	/**
+	 * The new message is discarded, and a {@link MailboxOverflowException} is
+	 * thrown to the sender.
+	 */
+	REJECT;
+
+	/**
+	 * Parses a policy from its configuration name. Both the enum constant name
+	 * and the dashed lower case form (e.g. drop-oldest) are accepted.
+	 * 
+	 * @param name
+	 *            the name of the policy.
+	 * @return the policy.
+	 * @throws IllegalArgumentException
+	 *             if there is no policy by that name.
+	 */
+	public static MailboxOverflowPolicy fromName(String name) {
+		return valueOf(name.trim().replace('-', '_').toUpperCase());
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The settings for a unit mailbox, read from the mailbox configuration (see
+ * {@link RoboBuilder#KEY_CONFIGURATION_MAILBOX}).
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @param capacity
+ *            the maximum number of pending messages.
+ * @param overflowPolicy
+ *            what to do when the mailbox is full.
+ * @param conflating
+ *            true if only the latest message (per key) is kept.
+ * @param batchSize
+ *            the maximum number of messages to deliver in one call.
+ * @param batchLingerNanos
+ *            the maximum time to hold back a batch which is not full.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+record MailboxSettings(int capacity, MailboxOverflowPolicy overflowPolicy, boolean conflating, int batchSize,
+		long batchLingerNanos) {
+	static final MailboxSettings DEFAULTS = new MailboxSettings(1024, MailboxOverflowPolicy.GROW, false, 1, 0);
+
+	/**
+	 * Reads the settings from a mailbox configuration.
+	 * 
+	 * @param mailboxConfiguration
+	 *            the mailbox configuration, or null.
+	 * @param defaults
+	 *            the settings to use for the values not configured, or
+	 *            configured with invalid values.
+	 * @return the settings.
+	 */
+	static MailboxSettings from(Configuration mailboxConfiguration, MailboxSettings defaults) {
+		if (mailboxConfiguration == null) {
+			return defaults;
+		}
+		int capacity = mailboxConfiguration.getInteger(RoboBuilder.KEY_MAILBOX_CAPACITY, defaults.capacity());
+		if (capacity < 1) {
+			SimpleLoggingUtil.error(MailboxSettings.class, "Invalid mailbox capacity " + capacity + " - using " + defaults.capacity());
+			capacity = defaults.capacity();
+		}
+		MailboxOverflowPolicy overflowPolicy = getOverflowPolicy(mailboxConfiguration, defaults.overflowPolicy());
+		boolean conflating = mailboxConfiguration.getBoolean(RoboBuilder.KEY_MAILBOX_CONFLATING, defaults.conflating());
+		int batchSize = mailboxConfiguration.getInteger(RoboBuilder.KEY_MAILBOX_BATCH_SIZE, defaults.batchSize());
+		if (batchSize < 1) {
+			SimpleLoggingUtil.error(MailboxSettings.class, "Invalid mailbox batch size " + batchSize + " - using " + defaults.batchSize());
+			batchSize = defaults.batchSize();
+		}
+		int defaultLinger = (int) TimeUnit.NANOSECONDS.toMillis(defaults.batchLingerNanos());
+		int linger = mailboxConfiguration.getInteger(RoboBuilder.KEY_MAILBOX_BATCH_LINGER, defaultLinger);
+		if (linger < 0) {
+			SimpleLoggingUtil.error(MailboxSettings.class, "Invalid mailbox batch linger " + linger + " - using " + defaultLinger);
+			linger = defaultLinger;
+		}
+		return new MailboxSettings(capacity, overflowPolicy, conflating, batchSize, TimeUnit.MILLISECONDS.toNanos(linger));
+	}
+
+	/**
+	 * @param conflating
+	 *            true if only the latest message (per key) should be kept.
+	 * @return settings with the conflation changed.
+	 */
+	MailboxSettings withConflating(boolean conflating) {
+		return new MailboxSettings(capacity, overflowPolicy, conflating, batchSize, batchLingerNanos);
+	}
+
+	private static MailboxOverflowPolicy getOverflowPolicy(Configuration mailboxConfiguration,
+			MailboxOverflowPolicy defaultPolicy) {
+		String policyName = mailboxConfiguration.getString(RoboBuilder.KEY_MAILBOX_OVERFLOW_POLICY, null);
+		if (policyName == null) {
+			return defaultPolicy;
+		}
+		try {
+			return MailboxOverflowPolicy.fromName(policyName);
+		} catch (IllegalArgumentException e) {
+			SimpleLoggingUtil.error(MailboxSettings.class, "Unknown mailbox overflow policy " + policyName + " - using " + defaultPolicy);
+			return defaultPolicy;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+/**
+ * The pending messages of a unit mailbox. Any number of threads may offer and
+ * poll concurrently.
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+interface MessageBuffer<T> {
+	/**
+	 * Adds an element to the buffer, unless the buffer is full.
+	 * 
+	 * @param element
+	 *            the element to add.
+	 * @param timestamp
+	 *            the time stamp to keep with the element, if the buffer keeps
+	 *            time stamps.
+	 * @return true if the element was added, false if the buffer was full.
+	 */
+	boolean offer(T element, long timestamp);
+
+	/**
+	 * Removes the oldest element in the buffer.
+	 * 
+	 * @return the oldest element, or null if the buffer was empty.
+	 */
+	T poll();
+
+	/**
+	 * Removes the oldest element in the buffer.
+	 * 
+	 * @param timestamp
+	 *            if not null, and the buffer keeps time stamps, the time stamp
+	 *            of the removed element is stored in the first position.
+	 * @return the oldest element, or null if the buffer was empty.
+	 */
+	T poll(long[] timestamp);
+
+	/**
+	 * @return the number of elements in the buffer.
+	 */
+	int size();
+
+	/**
+	 * @return the total number of elements added to the buffer so far.
+	 */
+	long getAddedCount();
+
+	/**
+	 * @return the total number of elements removed from the buffer so far.
+	 */
+	long getRemovedCount();
+
+	/**
+	 * @return true if there are no elements in the buffer.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * @return the maximum number of elements in the buffer.
+	 */
+	int capacity();
+}
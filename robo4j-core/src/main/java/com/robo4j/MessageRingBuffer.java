@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock free, multi producer / multi consumer ring buffer used for the
+ * unit mailboxes. Slots are reused, so offering and polling does not allocate.
+ * 
+ * <p>
+ * This is based on the bounded MPMC queue by Dmitry Vyukov. The ring size is
+ * rounded up to a power of two, and the exact capacity is enforced with a
+ * separate counter.
+ * </p>
+ * 
+ * <p>
+ * Optionally, a time stamp can be kept with each element, for example the
+ * time at which it was enqueued.
+ * </p>
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class MessageRingBuffer<T> implements MessageBuffer<T> {
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<T> slots;
+	private final AtomicLongArray sequences;
+	// Published and consumed through the sequences
+	private final long[] timestamps;
+	private final AtomicLong enqueuePosition = new AtomicLong();
+	private final AtomicLong dequeuePosition = new AtomicLong();
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *            the maximum number of elements in the buffer.
+	 */
+	MessageRingBuffer(int capacity) {
+		this(capacity, false);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *            the maximum number of elements in the buffer.
+	 * @param timestamped
+	 *            true if a time stamp should be kept with each element.
+	 */
+	MessageRingBuffer(int capacity, boolean timestamped) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+		}
+		// The algorithm needs at least two slots
+		int ringSize = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+		this.capacity = capacity;
+		this.mask = ringSize - 1;
+		this.slots = new AtomicReferenceArray<>(ringSize);
+		this.sequences = new AtomicLongArray(ringSize);
+		this.timestamps = timestamped ? new long[ringSize] : null;
+		for (int i = 0; i < ringSize; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Adds an element to the buffer, unless the buffer is full.
+	 * 
+	 * @param element
+	 *            the element to add.
+	 * @return true if the element was added, false if the buffer was full.
+	 */
+	boolean offer(T element) {
+		return offer(element, 0);
+	}
+
+	/**
+	 * Adds an element to the buffer, unless the buffer is full.
+	 * 
+	 * @param element
+	 *            the element to add.
+	 * @param timestamp
+	 *            the time stamp to keep with the element. Ignored unless the
+	 *            buffer was created with time stamps.
+	 * @return true if the element was added, false if the buffer was full.
+	 */
+	@Override
+	public boolean offer(T element, long timestamp) {
+		if (!reserve()) {
+			return false;
+		}
+		long position = enqueuePosition.get();
+		int index;
+		while (true) {
+			index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (enqueuePosition.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = enqueuePosition.get();
+			} else if (difference < 0) {
+				// Cannot happen since the reservation keeps the ring from
+				// filling up, but better safe than sorry.
+				size.decrementAndGet();
+				return false;
+			} else {
+				position = enqueuePosition.get();
+			}
+		}
+		slots.set(index, element);
+		if (timestamps != null) {
+			timestamps[index] = timestamp;
+		}
+		sequences.set(index, position + 1);
+		return true;
+	}
+
+	/**
+	 * Removes the oldest element in the buffer.
+	 * 
+	 * @return the oldest element, or null if the buffer was empty.
+	 */
+	@Override
+	public T poll() {
+		return poll(null);
+	}
+
+	/**
+	 * Removes the oldest element in the buffer.
+	 * 
+	 * @param timestamp
+	 *            if not null, and the buffer keeps time stamps, the time stamp
+	 *            of the removed element is stored in the first position.
+	 * @return the oldest element, or null if the buffer was empty.
+	 */
+	@Override
+	public T poll(long[] timestamp) {
+		long position = dequeuePosition.get();
+		int index;
+		while (true) {
+			index = (int) (position & mask);
+			long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (dequeuePosition.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = dequeuePosition.get();
+			} else if (difference < 0) {
+				return null;
+			} else {
+				position = dequeuePosition.get();
+			}
+		}
+		T element = slots.get(index);
+		if (timestamp != null && timestamps != null) {
+			timestamp[0] = timestamps[index];
+		}
+		slots.set(index, null);
+		sequences.set(index, position + mask + 1);
+		size.decrementAndGet();
+		return element;
+	}
+
+	/**
+	 * @return the number of elements in the buffer. Elements that are in the
+	 *         process of being added are included.
+	 */
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return the total number of elements added to the buffer so far.
+	 */
+	@Override
+	public long getAddedCount() {
+		return enqueuePosition.get();
+	}
+
+	/**
+	 * @return the total number of elements removed from the buffer so far.
+	 */
+	@Override
+	public long getRemovedCount() {
+		return dequeuePosition.get();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size.get() == 0;
+	}
+
+	@Override
+	public int capacity() {
+		return capacity;
+	}
+
+	private boolean reserve() {
+		int current;
+		do {
+			current = size.get();
+			if (current >= capacity) {
+				return false;
+			}
+		} while (!size.compareAndSet(current, current + 1));
+		return true;
+	}
+}
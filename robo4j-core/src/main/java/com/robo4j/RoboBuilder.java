@@ -47,17 +47,65 @@ import java.util.Set;
 public final class RoboBuilder {
 	/**
 	 * Configuration key for the maximum thread size for the scheduler thread
-	 * pool.
+	 * pool. Also used for the size of the system pool, which delivers the
+	 * messages to units without any threading traits.
 	 */
 	public static final String KEY_SCHEDULER_POOL_SIZE = "poolSizeScheduler";
+	/**
+	 * Configuration key for which scheduler implementation to use. See
+	 * {@link com.robo4j.scheduler.SchedulerType}. Defaults to the
+	 * {@link com.robo4j.scheduler.DefaultScheduler}.
+	 */
+	public static final String KEY_SCHEDULER_TYPE = "schedulerType";
+	/**
+	 * Configuration key for the tick resolution, in microseconds, of the
+	 * {@link com.robo4j.scheduler.TimingWheelScheduler}. Defaults to 1000.
+	 */
+	public static final String KEY_SCHEDULER_TICK = "schedulerTickMicros";
+	/**
+	 * Configuration key for the number of buckets in the wheel of the
+	 * {@link com.robo4j.scheduler.TimingWheelScheduler}. Defaults to 512.
+	 */
+	public static final String KEY_SCHEDULER_WHEEL_SIZE = "schedulerWheelSize";
+	/**
+	 * Configuration key for the number of threads of the real-time scheduler
+	 * (see {@link RoboContext#getRealtimeScheduler()}). Defaults to 0, which
+	 * means that no real-time scheduler is created, and the system scheduler is
+	 * used instead.
+	 */
+	public static final String KEY_REALTIME_POOL_SIZE = "poolSizeRealtime";
+	/**
+	 * Configuration key for how long, in microseconds, before a release the
+	 * real-time scheduler threads start busy-spinning. Defaults to 0, which
+	 * means never spinning.
+	 */
+	public static final String KEY_REALTIME_SPIN = "realtimeSpinMicros";
+	/**
+	 * Configuration key for running the due jobs of the real-time scheduler
+	 * earliest deadline first, instead of in release order. Defaults to false.
+	 */
+	public static final String KEY_REALTIME_EDF = "realtimeEdf";
 	/**
 	 * Configuration key for the maximum thread size for the worker thread pool.
 	 */
 	public static final String KEY_WORKER_POOL_SIZE = "poolSizeWorker";
 	/**
-	 * Configuration key for the maximum thread size for the worker thread pool.
+	 * Configuration key for the maximum thread size for the blocking thread
+	 * pool.
 	 */
 	public static final String KEY_BLOCKING_POOL_SIZE = "poolSizeBlocking";
+	/**
+	 * Configuration key for delivering the messages to units annotated with
+	 * {@link BlockingTrait} on virtual threads instead of using the blocking
+	 * thread pool. Units annotated with {@link VirtualThreadTrait} always get
+	 * their messages delivered on virtual threads.
+	 */
+	public static final String KEY_BLOCKING_VIRTUAL_THREADS = "virtualThreadsBlocking";
+	/**
+	 * Configuration key for enabling the per unit message metrics (see
+	 * {@link UnitMetrics}). Disabled by default.
+	 */
+	public static final String KEY_METRICS_ENABLED = "metricsEnabled";
 	/**
 	 * Configuration key for the child configuration for the message server.
 	 */
@@ -70,6 +118,54 @@ public final class RoboBuilder {
 	 * Configuration key for the auto discovery metadata service.
 	 */
 	public static final String KEY_CONFIGURATION_EMITTER_METADATA = "com.robo4j.discovery.metadata";
+	/**
+	 * Configuration key for the child configuration for the unit mailboxes. Can
+	 * be specified in the configuration of a unit, or in the system
+	 * configuration to change the defaults for all units.
+	 */
+	public static final String KEY_CONFIGURATION_MAILBOX = "com.robo4j.mailbox";
+	/**
+	 * Configuration key (in the mailbox configuration) for the maximum number
+	 * of pending messages for a unit.
+	 */
+	public static final String KEY_MAILBOX_CAPACITY = "capacity";
+	/**
+	 * Configuration key (in the mailbox configuration) for what to do when the
+	 * mailbox is full. See {@link MailboxOverflowPolicy}.
+	 */
+	public static final String KEY_MAILBOX_OVERFLOW_POLICY = "overflowPolicy";
+	/**
+	 * Configuration key (in the mailbox configuration) for only keeping the
+	 * latest pending message (per key). See {@link ConflatingTrait}. Defaults
+	 * to false.
+	 */
+	public static final String KEY_MAILBOX_CONFLATING = "conflating";
+	/**
+	 * Configuration key (in the mailbox configuration) for the maximum number
+	 * of queued messages to hand to the unit in one call to
+	 * {@link RoboUnit#onMessages(java.util.List)}. Defaults to 1, which means
+	 * no batching.
+	 */
+	public static final String KEY_MAILBOX_BATCH_SIZE = "batchSize";
+	/**
+	 * Configuration key (in the mailbox configuration) for the maximum time,
+	 * in milliseconds, to wait for a batch to fill up before handing it to the
+	 * unit. Defaults to 0, which means that the messages queued at the time
+	 * are delivered right away.
+	 */
+	public static final String KEY_MAILBOX_BATCH_LINGER = "batchLinger";
+	/**
+	 * Configuration key (in the unit configuration) for a comma separated list
+	 * of the ids of the units the unit depends on. See {@link DependsOn}.
+	 */
+	public static final String KEY_DEPENDS_ON = "dependsOn";
+	/**
+	 * Configuration key for the maximum time, in milliseconds, a unit may take
+	 * to start, stop or shut down. Can be specified in the configuration of a
+	 * unit, or in the system configuration to change the default for all
+	 * units.
+	 */
+	public static final String KEY_LIFECYCLE_TIMEOUT = "lifecycleTimeout";
 
 	private final Set<RoboUnit<?>> units = new HashSet<>();
 	private final RoboSystem system;
@@ -20,6 +20,8 @@ import com.robo4j.configuration.Configuration;
 import com.robo4j.scheduler.Scheduler;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * The execution context available for a unit. Contains a simple lookup service,
@@ -76,6 +78,29 @@ public interface RoboContext {
 	 */
 	Scheduler getScheduler();
 
+	/**
+	 * Returns the scheduler for time critical periodic jobs, such as control
+	 * loops. Unless a real-time scheduler has been configured, this is the
+	 * system scheduler.
+	 * 
+	 * @return the real-time scheduler.
+	 * @see RoboBuilder#KEY_REALTIME_POOL_SIZE
+	 */
+	default Scheduler getRealtimeScheduler() {
+		return getScheduler();
+	}
+
+	/**
+	 * Returns a snapshot of the message metrics of the units in the context.
+	 * 
+	 * @return the metrics, keyed by unit id. Empty if metrics are not enabled,
+	 *         or not available for this context.
+	 * @see RoboBuilder#KEY_METRICS_ENABLED
+	 */
+	default Map<String, UnitMetrics> getMetrics() {
+		return Collections.emptyMap();
+	}
+
 	/**
 	 * Returns the globally unique id for the context.
 	 * 
@@ -52,6 +52,22 @@ public interface RoboReference<T> {
 	 */
 	void sendMessage(T message);
 
+	/**
+	 * Sends several messages to this RoboUnit, in order. Local references
+	 * enqueue all the messages in one go, which is cheaper than sending them
+	 * one by one. Units configured for batching (see
+	 * {@link RoboBuilder#KEY_MAILBOX_BATCH_SIZE}) may receive them in one call
+	 * to {@link RoboUnit#onMessages(java.util.List)}.
+	 * 
+	 * @param messages
+	 *            the messages to send.
+	 */
+	default void sendMessages(Collection<? extends T> messages) {
+		for (T message : messages) {
+			sendMessage(message);
+		}
+	}
+
 	/**
 	 * Returns the type of messages this RoboUnit accepts. This should never
 	 * change in runtime.
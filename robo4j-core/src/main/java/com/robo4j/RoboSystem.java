@@ -25,8 +25,11 @@ import com.robo4j.net.MessageServer;
 import com.robo4j.net.ReferenceDescriptor;
 import com.robo4j.net.RoboContextDescriptor;
 import com.robo4j.scheduler.DefaultScheduler;
+import com.robo4j.scheduler.RealtimeScheduler;
 import com.robo4j.scheduler.RoboThreadFactory;
 import com.robo4j.scheduler.Scheduler;
+import com.robo4j.scheduler.SchedulerType;
+import com.robo4j.scheduler.TimingWheelScheduler;
 import com.robo4j.util.SystemUtil;
 
 import java.io.IOException;
@@ -35,21 +38,26 @@ import java.io.Serializable;
 import java.net.SocketException;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.EnumSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 
 /**
  * This is the default implementation for a local {@link RoboContext}. Contains
@@ -60,65 +68,71 @@ import java.util.stream.Collectors;
  * @author Miroslav Wengner (@miragemiko)
  */
 final class RoboSystem implements RoboContext {
+	private static final String NAME_SYSTEM_POOL = "Robo4J System Pool";
 	private static final String NAME_BLOCKING_POOL = "Robo4J Blocking Pool";
 	private static final String NAME_WORKER_POOL = "Robo4J Worker Pool";
+	private static final String NAME_VIRTUAL_THREADS = "Robo4J Virtual";
 	private static final int DEFAULT_BLOCKING_POOL_SIZE = 4;
 	private static final int DEFAULT_WORKER_POOL_SIZE = 2;
 	private static final int DEFAULT_SCHEDULER_POOL_SIZE = 2;
-	private static final int KEEP_ALIVE_TIME = 10;
-
-	private static final EnumSet<LifecycleState> MESSAGE_DELIVERY_CRITERIA = EnumSet.of(LifecycleState.STARTED, LifecycleState.STOPPED,
-			LifecycleState.STOPPING);
+	private static final int TERMINATION_TIMEOUT_SEC = 4;
+	private static final int DEFAULT_LIFECYCLE_TIMEOUT_MILLIS = 30000;
 
 	private final AtomicReference<LifecycleState> state = new AtomicReference<>(LifecycleState.UNINITIALIZED);
-	private final Map<String, RoboUnit<?>> units = new HashMap<>();
-	private final Map<RoboUnit<?>, RoboReference<?>> referenceCache = new WeakHashMap<>();
+	private final UnitRegistry registry = new UnitRegistry();
+	// References to units created with this system as context, but not (yet)
+	// added to it. The units get their references when constructed.
+	private final Map<RoboUnit<?>, RoboReference<?>> unregisteredReferences = Collections.synchronizedMap(new WeakHashMap<>());
+	// Serializes the life cycle transitions, and the adding and removing of
+	// units
+	private final Object lifecycleLock = new Object();
 
 	private final Scheduler systemScheduler;
+	// Null unless configured
+	private final Scheduler realtimeScheduler;
 
-	private final ThreadPoolExecutor workExecutor;
-	private final LinkedBlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<>();
-
-	private final ThreadPoolExecutor blockingExecutor;
-	private final LinkedBlockingQueue<Runnable> blockingQueue = new LinkedBlockingQueue<>();
+	private final DispatchExecutor systemExecutor;
+	private final DispatchExecutor workExecutor;
+	private final DispatchExecutor blockingExecutor;
+	private final ExecutorService virtualExecutor;
+	private final boolean blockingOnVirtualThreads;
+	private final boolean metricsEnabled;
 
 	private final String uid;
 	private final Configuration configuration;
+	private final MailboxSettings defaultMailboxSettings;
+	private final int defaultLifecycleTimeoutMillis;
+	private volatile LifecycleReport startupReport;
 
 	private final MessageServer messageServer;
 	private final Configuration emitterConfiguration;
 	private volatile ScheduledFuture<?> emitterFuture;
 
 	private enum DeliveryPolicy {
-		SYSTEM, WORK, BLOCKING
-	}
-
-	private enum ThreadingPolicy {
-		NORMAL, CRITICAL
+		SYSTEM, WORK, BLOCKING, VIRTUAL
 	}
 
 	private class LocalRoboReference<T> implements RoboReference<T>, Serializable {
 		private static final long serialVersionUID = 1L;
 		private final RoboUnit<T> unit;
 		private final DeliveryPolicy deliveryPolicy;
-		private final ThreadingPolicy threadingPolicy;
+		private final Executor executor;
+		// Created on first delivery, since the unit is normally not configured
+		// when the reference is created.
+		private volatile UnitMailbox<T> mailbox;
 
 		LocalRoboReference(RoboUnit<T> unit) {
 			this.unit = unit;
 			@SuppressWarnings("unchecked")
 			Class<? extends RoboUnit<?>> clazz = (Class<? extends RoboUnit<?>>) unit.getClass();
 			this.deliveryPolicy = deriveDeliveryPolicy(clazz);
-			this.threadingPolicy = deriveThreadingPolicy(clazz);
-		}
-
-		private ThreadingPolicy deriveThreadingPolicy(Class<? extends RoboUnit<?>> clazz) {
-			if (clazz.getAnnotation(CriticalSectionTrait.class) != null) {
-				return ThreadingPolicy.CRITICAL;
-			}
-			return ThreadingPolicy.NORMAL;
+			this.executor = getExecutor(deliveryPolicy);
 		}
 
 		private DeliveryPolicy deriveDeliveryPolicy(Class<? extends RoboUnit<?>> clazz) {
+			if (clazz.getAnnotation(VirtualThreadTrait.class) != null) {
+				return DeliveryPolicy.VIRTUAL;
+			}
 			if (clazz.getAnnotation(WorkTrait.class) != null) {
 				return DeliveryPolicy.WORK;
 			}
@@ -145,19 +159,15 @@ final class RoboSystem implements RoboContext {
 
 		@Override
 		public void sendMessage(T message) {
-			if (MESSAGE_DELIVERY_CRITERIA.contains(getState())) {
-				switch (threadingPolicy) {
-				case NORMAL:
-					deliverOnQueue(message);
-					break;
-				case CRITICAL:
-					synchronized (unit) {
-						deliverOnQueue(message);
-					}
-					break;
-				default:
-					throw new IllegalStateException(String.format("not supported policy: %s", threadingPolicy));
-				}
+			if (unit.isDeliverable()) {
+				getMailbox().deliver(message);
+			}
+		}
+
+		@Override
+		public void sendMessages(Collection<? extends T> messages) {
+			if (unit.isDeliverable()) {
+				getMailbox().deliverAll(messages);
 			}
 		}
 
@@ -166,35 +176,56 @@ final class RoboSystem implements RoboContext {
 			return "LocalReference id: " + unit.getId() + " (system: " + uid + ")";
 		}
 
-		private void deliverOnQueue(T message) {
-			switch (deliveryPolicy) {
-			case SYSTEM:
-				systemScheduler.execute(new Messenger<T>(unit, message));
-				break;
-			case WORK:
-				workExecutor.execute(new Messenger<T>(unit, message));
-				break;
-			case BLOCKING:
-				blockingExecutor.execute(new Messenger<T>(unit, message));
-				break;
-			default:
-				SimpleLoggingUtil.error(getClass(), "not supported policy: " + deliveryPolicy);
+		private UnitMailbox<T> getMailbox() {
+			UnitMailbox<T> result = mailbox;
+			if (result == null) {
+				synchronized (this) {
+					result = mailbox;
+					if (result == null) {
+						result = createMailbox(unit, deliveryPolicy, executor);
+						mailbox = result;
+					}
+				}
 			}
+			return result;
 		}
 
 		@Override
 		public <R> Future<R> getAttribute(AttributeDescriptor<R> attribute) {
-			return systemScheduler.submit(() -> unit.onGetAttribute(attribute));
+			if (metricsEnabled && UnitMetrics.isMetricsAttribute(attribute)) {
+				// Read directly, so that a busy unit can still be inspected
+				return CompletableFuture.completedFuture(getMetrics().getAttribute(attribute));
+			}
+			return getMailbox().request(() -> unit.onGetAttribute(attribute));
 		}
 
 		@Override
 		public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+			if (metricsEnabled) {
+				List<AttributeDescriptor<?>> attributes = new ArrayList<>(unit.getKnownAttributes());
+				attributes.addAll(UnitMetrics.ATTRIBUTES);
+				return attributes;
+			}
 			return unit.getKnownAttributes();
 		}
 
 		@Override
 		public Future<Map<AttributeDescriptor<?>, Object>> getAttributes() {
-			return systemScheduler.submit(unit::onGetAttributes);
+			if (metricsEnabled) {
+				return getMailbox().request(() -> {
+					Map<AttributeDescriptor<?>, Object> attributes = new HashMap<>(unit.onGetAttributes());
+					attributes.putAll(getMetrics().toAttributes());
+					return attributes;
+				});
+			}
+			return getMailbox().request(unit::onGetAttributes);
+		}
+
+		/**
+		 * @return the metrics for the unit, or null if metrics are disabled.
+		 */
+		UnitMetrics getMetrics() {
+			return getMailbox().getMetrics();
 		}
 
 		@Override
@@ -207,26 +238,6 @@ final class RoboSystem implements RoboContext {
 		}
 	}
 
-	// Protects the executors from problems in the units.
-	private static class Messenger<T> implements Runnable {
-		private final RoboUnit<T> unit;
-		private final T message;
-
-		public Messenger(RoboUnit<T> unit, T message) {
-			this.unit = unit;
-			this.message = message;
-		}
-
-		@Override
-		public void run() {
-			try {
-				unit.onMessage(message);
-			} catch (Throwable t) {
-				SimpleLoggingUtil.error(unit.getClass(), "Error processing message", t);
-			}
-		}
-	}
-
 	/**
 	 * Constructor.
 	 */
@@ -249,12 +260,21 @@ final class RoboSystem implements RoboContext {
 		this.configuration = configuration;
 		int schedulerPoolSize = configuration.getInteger(RoboBuilder.KEY_SCHEDULER_POOL_SIZE, DEFAULT_SCHEDULER_POOL_SIZE);
 		int workerPoolSize = configuration.getInteger(RoboBuilder.KEY_WORKER_POOL_SIZE, DEFAULT_WORKER_POOL_SIZE);
-		int blockingPoolSize = configuration.getInteger(RoboBuilder.KEY_BLOCKING_POOL_SIZE, DEFAULT_SCHEDULER_POOL_SIZE);
-		workExecutor = new ThreadPoolExecutor(workerPoolSize, workerPoolSize, KEEP_ALIVE_TIME, TimeUnit.SECONDS, workQueue,
+		int blockingPoolSize = configuration.getInteger(RoboBuilder.KEY_BLOCKING_POOL_SIZE, DEFAULT_BLOCKING_POOL_SIZE);
+		blockingOnVirtualThreads = configuration.getBoolean(RoboBuilder.KEY_BLOCKING_VIRTUAL_THREADS, Boolean.FALSE);
+		metricsEnabled = configuration.getBoolean(RoboBuilder.KEY_METRICS_ENABLED, Boolean.FALSE);
+		systemExecutor = new DispatchExecutor(schedulerPoolSize,
+				new RoboThreadFactory(new ThreadGroup(NAME_SYSTEM_POOL), NAME_SYSTEM_POOL, true));
+		workExecutor = new DispatchExecutor(workerPoolSize,
 				new RoboThreadFactory(new ThreadGroup(NAME_WORKER_POOL), NAME_WORKER_POOL, true));
-		blockingExecutor = new ThreadPoolExecutor(blockingPoolSize, blockingPoolSize, KEEP_ALIVE_TIME, TimeUnit.SECONDS, blockingQueue,
+		blockingExecutor = new DispatchExecutor(blockingPoolSize,
 				new RoboThreadFactory(new ThreadGroup(NAME_BLOCKING_POOL), NAME_BLOCKING_POOL, true));
-		systemScheduler = new DefaultScheduler(this, schedulerPoolSize);
+		virtualExecutor = Executors.newThreadPerTaskExecutor(RoboThreadFactory.createVirtual(NAME_VIRTUAL_THREADS));
+		systemScheduler = createScheduler(configuration, schedulerPoolSize);
+		realtimeScheduler = createRealtimeScheduler(configuration);
+		Configuration mailboxConfiguration = configuration.getChildConfiguration(RoboBuilder.KEY_CONFIGURATION_MAILBOX);
+		defaultMailboxSettings = MailboxSettings.from(mailboxConfiguration, MailboxSettings.DEFAULTS);
+		defaultLifecycleTimeoutMillis = configuration.getInteger(RoboBuilder.KEY_LIFECYCLE_TIMEOUT, DEFAULT_LIFECYCLE_TIMEOUT_MILLIS);
 		messageServer = initServer(configuration.getChildConfiguration(RoboBuilder.KEY_CONFIGURATION_SERVER));
 		emitterConfiguration = configuration.getChildConfiguration(RoboBuilder.KEY_CONFIGURATION_EMITTER);
 	}
@@ -279,46 +299,104 @@ final class RoboSystem implements RoboContext {
 	}
 
 	/**
-	 * Adds the specified units to the system.
+	 * Adds the specified units to the system. Units can be added at any time
+	 * before the system is shut down. If the system is already started, the
+	 * units are started before this method returns.
 	 * 
 	 * @param unitSet
 	 *            the units to add.
+	 * @throws IllegalArgumentException
+	 *             if another unit with the same id as one of the units is
+	 *             already added.
+	 * @throws IllegalStateException
+	 *             if the system is shut down, or the units have circular
+	 *             dependencies and the system is started.
 	 */
 	public void addUnits(Set<RoboUnit<?>> unitSet) {
-		if (state.get() != LifecycleState.UNINITIALIZED) {
-			throw new UnsupportedOperationException("All units must be registered up front for now.");
-		}
-		addToMap(unitSet);
+		addAll(unitSet);
 	}
 
 	/**
-	 * Adds the specified units to the system.
+	 * Adds the specified units to the system. Units can be added at any time
+	 * before the system is shut down. If the system is already started, the
+	 * units are started before this method returns.
 	 * 
 	 * @param units
 	 *            the units to add.
+	 * @throws IllegalArgumentException
+	 *             if another unit with the same id as one of the units is
+	 *             already added.
+	 * @throws IllegalStateException
+	 *             if the system is shut down, or the units have circular
+	 *             dependencies and the system is started.
 	 */
 	public void addUnits(RoboUnit<?>... units) {
-		if (state.get() != LifecycleState.UNINITIALIZED) {
-			throw new UnsupportedOperationException("All units must be registered up front for now.");
+		addAll(Arrays.asList(units));
+	}
+
+	/**
+	 * Removes the unit with the specified id from the system. The unit is
+	 * stopped, if started, and shut down. Units depending on the removed unit
+	 * are not affected.
+	 * 
+	 * @param id
+	 *            the id of the unit to remove.
+	 * @return the removed unit, or null if there was no unit with the id.
+	 */
+	public RoboUnit<?> removeUnit(String id) {
+		synchronized (lifecycleLock) {
+			RoboUnit<?> unit = registry.remove(id);
+			if (unit != null) {
+				UnitLifecycleCoordinator coordinator = new UnitLifecycleCoordinator(uid, List.of(unit), registry.getIds(),
+						defaultLifecycleTimeoutMillis, false);
+				coordinator.stop();
+				if (unit.getState() != LifecycleState.SHUTDOWN) {
+					coordinator.shutdown();
+				}
+			}
+			return unit;
+		}
+	}
+
+	private void addAll(Collection<RoboUnit<?>> units) {
+		synchronized (lifecycleLock) {
+			LifecycleState currentState = state.get();
+			if (currentState == LifecycleState.SHUTTING_DOWN || currentState == LifecycleState.SHUTDOWN) {
+				throw new IllegalStateException("Can not add units to a system which is shut down");
+			}
+			// Validate the dependencies before adding anything
+			UnitLifecycleCoordinator coordinator = currentState == LifecycleState.STARTED
+					? new UnitLifecycleCoordinator(uid, units, registry.getIds(), defaultLifecycleTimeoutMillis, true)
+					: null;
+			Map<RoboUnit<?>, RoboReference<?>> references = new LinkedHashMap<>();
+			for (RoboUnit<?> unit : units) {
+				references.put(unit, getReference(unit));
+			}
+			registry.addAll(references);
+			unregisteredReferences.keySet().removeAll(units);
+			if (coordinator != null) {
+				SimpleLoggingUtil.info(getClass(), coordinator.start().format());
+			}
 		}
-		addToMap(units);
 	}
 
 	@Override
 	public void start() {
-		if (state.compareAndSet(LifecycleState.STOPPED, LifecycleState.STARTING)) {
-			// NOTE(Marcus/Sep 4, 2017): Do we want to support starting a
-			// stopped system?
-			startUnits();
-		}
-		if (state.compareAndSet(LifecycleState.INITIALIZED, LifecycleState.STARTING)) {
-			startUnits();
-		}
+		synchronized (lifecycleLock) {
+			if (state.compareAndSet(LifecycleState.STOPPED, LifecycleState.STARTING)) {
+				// NOTE(Marcus/Sep 4, 2017): Do we want to support starting a
+				// stopped system?
+				startUnits();
+			}
+			if (state.compareAndSet(LifecycleState.INITIALIZED, LifecycleState.STARTING)) {
+				startUnits();
+			}
 
-		// This is only used from testing for now, it should never happen from
-		// the builder.
-		if (state.compareAndSet(LifecycleState.UNINITIALIZED, LifecycleState.STARTING)) {
-			startUnits();
+			// This is only used from testing for now, it should never happen
+			// from the builder.
+			if (state.compareAndSet(LifecycleState.UNINITIALIZED, LifecycleState.STARTING)) {
+				startUnits();
+			}
 		}
 
 		// If we have a server, start it, then set up emitter
@@ -341,52 +419,68 @@ final class RoboSystem implements RoboContext {
 	}
 
 	private void startUnits() {
-		// NOTE(Marcus/Sep 4, 2017): May want to schedule the starts.
-		for (RoboUnit<?> unit : units.values()) {
-			unit.setState(LifecycleState.STARTING);
-			unit.start();
-			unit.setState(LifecycleState.STARTED);
-		}
+		UnitLifecycleCoordinator coordinator;
+		try {
+			coordinator = createLifecycleCoordinator(true);
+		} catch (IllegalStateException e) {
+			state.set(LifecycleState.FAILED);
+			throw e;
+		}
+		LifecycleReport report = coordinator.start();
+		startupReport = report;
+		SimpleLoggingUtil.info(getClass(), report.format());
 		state.set(LifecycleState.STARTED);
 	}
 
+	private UnitLifecycleCoordinator createLifecycleCoordinator(boolean strict) {
+		return new UnitLifecycleCoordinator(uid, registry.getUnits(), Collections.emptySet(), defaultLifecycleTimeoutMillis,
+				strict);
+	}
+
 	@Override
 	public void stop() {
-		// NOTE(Marcus/Sep 4, 2017): We may want schedule the stops in the
-		// future.
 		if (emitterFuture != null) {
 			emitterFuture.cancel(true);
 		}
 		if (messageServer != null) {
 			messageServer.stop();
 		}
-		if (state.compareAndSet(LifecycleState.STARTED, LifecycleState.STOPPING)) {
-			units.values().forEach(RoboUnit::stop);
+		synchronized (lifecycleLock) {
+			if (state.compareAndSet(LifecycleState.STARTED, LifecycleState.STOPPING)) {
+				createLifecycleCoordinator(false).stop();
+			}
+			state.set(LifecycleState.STOPPED);
 		}
-		state.set(LifecycleState.STOPPED);
 	}
 
 	@Override
 	public void shutdown() {
 		stop();
-		state.set(LifecycleState.SHUTTING_DOWN);
-		units.values().forEach((unit) -> unit.setState(LifecycleState.SHUTTING_DOWN));
+		Collection<RoboUnit<?>> units;
+		synchronized (lifecycleLock) {
+			state.set(LifecycleState.SHUTTING_DOWN);
+			// No units can be added or removed from here on
+			units = registry.getUnits();
+		}
+		units.forEach((unit) -> unit.setState(LifecycleState.SHUTTING_DOWN));
 
 		// First shutdown all executors. We don't care at this point, as any
 		// messages will no longer be delivered.
+		systemExecutor.shutdown();
 		workExecutor.shutdown();
 		blockingExecutor.shutdown();
+		virtualExecutor.shutdown();
 
-		// Then schedule shutdowns on the scheduler threads...
-		for (RoboUnit<?> unit : units.values()) {
-			getScheduler().execute(new Runnable() {
-				@Override
-				public void run() {
-					RoboSystem.shutdownUnit(unit);
-				}
-			});
+		// Let the messages already in the system pool get delivered.
+		try {
+			systemExecutor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			SimpleLoggingUtil.error(getClass(), "System pool was interrupted when shutting down.", e);
 		}
 
+		// Then shut down the units, dependents before their dependencies...
+		new UnitLifecycleCoordinator(uid, units, Collections.emptySet(), defaultLifecycleTimeoutMillis, false).shutdown();
+
 		// Then shutdown the system scheduler. Will wait until the termination
 		// shutdown of the system scheduler (or the timeout).
 		try {
@@ -394,6 +488,13 @@ final class RoboSystem implements RoboContext {
 		} catch (InterruptedException e) {
 			SimpleLoggingUtil.error(getClass(), "System scheduler was interrupted when shutting down.", e);
 		}
+		if (realtimeScheduler != null) {
+			try {
+				realtimeScheduler.shutdown();
+			} catch (InterruptedException e) {
+				SimpleLoggingUtil.error(getClass(), "Realtime scheduler was interrupted when shutting down.", e);
+			}
+		}
 		state.set(LifecycleState.SHUTDOWN);
 	}
 
@@ -408,17 +509,13 @@ final class RoboSystem implements RoboContext {
 
 	@Override
 	public Collection<RoboReference<?>> getUnits() {
-		return units.values().stream().map(this::getReference).collect(Collectors.toList());
+		return registry.getReferences();
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public <T> RoboReference<T> getReference(String id) {
-		@SuppressWarnings("unchecked")
-		RoboUnit<T> roboUnit = (RoboUnit<T>) units.get(id);
-		if (roboUnit == null) {
-			return null;
-		}
-		return getReference(roboUnit);
+		return (RoboReference<T>) registry.getReference(id);
 	}
 
 	@Override
@@ -426,11 +523,36 @@ final class RoboSystem implements RoboContext {
 		return systemScheduler;
 	}
 
+	@Override
+	public Scheduler getRealtimeScheduler() {
+		return realtimeScheduler != null ? realtimeScheduler : systemScheduler;
+	}
+
 	@Override
 	public String getId() {
 		return uid;
 	}
 
+	/**
+	 * @return the report on how long the units took to start, or null if the
+	 *         system has not been started.
+	 */
+	public LifecycleReport getStartupReport() {
+		return startupReport;
+	}
+
+	@Override
+	public Map<String, UnitMetrics> getMetrics() {
+		if (!metricsEnabled) {
+			return Collections.emptyMap();
+		}
+		Map<String, UnitMetrics> metrics = new TreeMap<>();
+		for (RoboReference<?> reference : registry.getReferences()) {
+			metrics.put(reference.getId(), ((LocalRoboReference<?>) reference).getMetrics());
+		}
+		return metrics;
+	}
+
 	/**
 	 * Returns the reference for a specific unit.
 	 * 
@@ -438,41 +560,77 @@ final class RoboSystem implements RoboContext {
 	 *            the robo unit for which to retrieve a reference.
 	 * @return the {@link RoboReference} to the unit.
 	 */
+	@SuppressWarnings("unchecked")
 	public <T> RoboReference<T> getReference(RoboUnit<T> roboUnit) {
-		@SuppressWarnings("unchecked")
-		RoboReference<T> reference = (RoboReference<T>) referenceCache.get(roboUnit);
+		RoboReference<T> reference = (RoboReference<T>) registry.getReference(roboUnit);
 		if (reference == null) {
-			reference = createReference(roboUnit);
-			referenceCache.put(roboUnit, reference);
+			reference = (RoboReference<T>) unregisteredReferences.computeIfAbsent(roboUnit, this::createReference);
 		}
 		return reference;
 	}
 
 	@Override
 	public String toString() {
-		return "RoboSystem id: " + uid + " unit count: " + units.size();
+		return "RoboSystem id: " + uid + " unit count: " + registry.size();
 	}
 
 	private <T> RoboReference<T> createReference(RoboUnit<T> roboUnit) {
 		return new LocalRoboReference<>(roboUnit);
 	}
 
-	private void addToMap(Set<RoboUnit<?>> unitSet) {
-		unitSet.forEach(unit -> units.put(unit.getId(), unit));
+	private <T> UnitMailbox<T> createMailbox(RoboUnit<T> unit, DeliveryPolicy deliveryPolicy, Executor executor) {
+		Configuration unitConfiguration = unit.getConfiguration();
+		Configuration mailboxConfiguration = unitConfiguration == null ? null
+				: unitConfiguration.getChildConfiguration(RoboBuilder.KEY_CONFIGURATION_MAILBOX);
+		MailboxSettings settings = MailboxSettings.from(mailboxConfiguration, defaultMailboxSettings);
+		if (unit.getClass().isAnnotationPresent(ConflatingTrait.class)) {
+			settings = settings.withConflating(true);
+		}
+		return new UnitMailbox<>(unit, deliveryPolicy.name(), executor, settings, systemScheduler,
+				metricsEnabled ? new UnitMetricsRecorder() : null);
+	}
+
+	private Executor getExecutor(DeliveryPolicy deliveryPolicy) {
+		switch (deliveryPolicy) {
+		case SYSTEM:
+			return systemExecutor;
+		case WORK:
+			return workExecutor;
+		case BLOCKING:
+			return blockingOnVirtualThreads ? virtualExecutor : blockingExecutor;
+		case VIRTUAL:
+			return virtualExecutor;
+		default:
+			throw new IllegalStateException(String.format("not supported policy: %s", deliveryPolicy));
+		}
 	}
 
-	private void addToMap(RoboUnit<?>... unitArray) {
-		// NOTE(Marcus/Aug 9, 2017): Do not streamify...
-		for (RoboUnit<?> unit : unitArray) {
-			units.put(unit.getId(), unit);
+	private Scheduler createScheduler(Configuration configuration, int poolSize) {
+		SchedulerType type = SchedulerType.DEFAULT;
+		String typeName = configuration.getString(RoboBuilder.KEY_SCHEDULER_TYPE, null);
+		if (typeName != null) {
+			try {
+				type = SchedulerType.fromName(typeName);
+			} catch (IllegalArgumentException e) {
+				SimpleLoggingUtil.error(getClass(), "Unknown scheduler type " + typeName + " - using " + type);
+			}
 		}
+		return switch (type) {
+		case DEFAULT -> new DefaultScheduler(this, poolSize);
+		case TIMING_WHEEL -> new TimingWheelScheduler(this, poolSize,
+				configuration.getInteger(RoboBuilder.KEY_SCHEDULER_TICK, TimingWheelScheduler.DEFAULT_TICK_MICROS),
+				TimeUnit.MICROSECONDS,
+				configuration.getInteger(RoboBuilder.KEY_SCHEDULER_WHEEL_SIZE, TimingWheelScheduler.DEFAULT_WHEEL_SIZE));
+		};
 	}
 
-	private static void shutdownUnit(RoboUnit<?> unit) {
-		// NOTE(Marcus/Aug 11, 2017): Should really be scheduled and done in
-		// parallel.
-		unit.shutdown();
-		unit.setState(LifecycleState.SHUTDOWN);
+	private Scheduler createRealtimeScheduler(Configuration configuration) {
+		int poolSize = configuration.getInteger(RoboBuilder.KEY_REALTIME_POOL_SIZE, 0);
+		if (poolSize <= 0) {
+			return null;
+		}
+		return new RealtimeScheduler(this, poolSize, configuration.getInteger(RoboBuilder.KEY_REALTIME_SPIN, 0),
+				TimeUnit.MICROSECONDS, configuration.getBoolean(RoboBuilder.KEY_REALTIME_EDF, Boolean.FALSE));
 	}
 
 	private static Configuration createConfiguration(int schedulerPoolSize, int workerPoolSize, int blockingPoolSize) {
@@ -485,7 +643,12 @@ final class RoboSystem implements RoboContext {
 			return new MessageServer(new MessageCallback() {
 				@Override
 				public void handleMessage(String sourceUuid, String id, Object message) {
-					getReference(id).sendMessage(message);
+					RoboSystem.this.getReference(id).sendMessage(message);
+				}
+
+				@Override
+				public RoboReference<?> getReference(String id) {
+					return RoboSystem.this.getReference(id);
 				}
 			}, serverConfiguration);
 		} else {
@@ -515,6 +678,10 @@ final class RoboSystem implements RoboContext {
 				ContextEmitter.DEFAULT_HEARTBEAT_INTERVAL);
 		Map<String, String> metadata = toStringMap(emitterConfiguration.getChildConfiguration(RoboBuilder.KEY_CONFIGURATION_EMITTER_METADATA));
 		metadata.put(RoboContextDescriptor.KEY_URI, uri.toString());
+		String sharedMemoryPath = messageServer.getSharedMemoryPath();
+		if (sharedMemoryPath != null) {
+			metadata.put(RoboContextDescriptor.KEY_SHARED_MEMORY, sharedMemoryPath);
+		}
 		return new RoboContextDescriptor(getId(), heartbeatInterval, metadata);
 	}
 
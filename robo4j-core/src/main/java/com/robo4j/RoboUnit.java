@@ -21,6 +21,7 @@ import com.robo4j.configuration.Configuration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
 
@@ -37,6 +38,8 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
 	private final RoboContext context;
 	private final String id;
 	private volatile LifecycleState state = LifecycleState.UNINITIALIZED;
+	// Follows the state, so that sending a message only reads a flag
+	private volatile boolean deliverable;
 	private RoboReference<T> reference;
 	private Configuration configuration;
 
@@ -152,6 +155,15 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
 	 */
 	public void setState(LifecycleState state) {
 		this.state = state;
+		this.deliverable = state == LifecycleState.STARTED || state == LifecycleState.STOPPING || state == LifecycleState.STOPPED;
+	}
+
+	/**
+	 * @return true if messages sent to the unit are delivered in its current
+	 *         state.
+	 */
+	boolean isDeliverable() {
+		return deliverable;
 	}
 
 	@Override
@@ -169,6 +181,16 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
 		reference.sendMessage(message);
 	}
 
+	/**
+	 * Sends the messages to this unit by posting them on the message bus.
+	 * 
+	 * @see #onMessages(List)
+	 */
+	@Override
+	public void sendMessages(Collection<? extends T> messages) {
+		reference.sendMessages(messages);
+	}
+
 	/**
 	 * Will post a message to get the attributes on the message queue.
 	 * 
@@ -216,6 +238,40 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
 		// want to consider other means of accessing it to keep it protected.
 	}
 
+	/**
+	 * Used by the system to deliver several queued messages in one call, if
+	 * the mailbox of the unit is configured for batching (see
+	 * {@link RoboBuilder#KEY_MAILBOX_BATCH_SIZE}). Override in subclasses
+	 * which can process a batch of messages more efficiently than one at a
+	 * time, for example units only caring about the latest samples. The
+	 * default implementation calls {@link #onMessage(Object)} for each
+	 * message.
+	 * 
+	 * @param messages
+	 *            the messages received by this unit, oldest first. The list is
+	 *            reused by the system, and must not be kept after the call.
+	 */
+	public void onMessages(List<T> messages) {
+		for (T message : messages) {
+			onMessage(message);
+		}
+	}
+
+	/**
+	 * Returns the key used to decide which pending messages a new message
+	 * replaces, if the unit is conflating (see {@link ConflatingTrait}). A new
+	 * message replaces the pending message with the same key. The default
+	 * implementation returns null for all messages, which means that only the
+	 * latest message is kept.
+	 * 
+	 * @param message
+	 *            the message.
+	 * @return the conflation key for the message.
+	 */
+	protected Object getConflationKey(T message) {
+		return null;
+	}
+
 	/**
 	 * May be overridden in subclasses for more performance. The default
 	 * implementation will get the job done though.
@@ -226,7 +282,7 @@ public abstract class RoboUnit<T> implements RoboReference<T> {
 		Map<AttributeDescriptor<?>, Object> result = new HashMap<>();
 		Collection<AttributeDescriptor<?>> knownAttributes = getKnownAttributes();
 		for (AttributeDescriptor<?> descriptor : knownAttributes) {
-			result.put(descriptor, getAttribute(descriptor));
+			result.put(descriptor, onGetAttribute(descriptor));
 		}
 		return result;
 	}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.LifecycleReport.UnitEntry;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.jfr.UnitLifecycleEvent;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.scheduler.RoboThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Starts, stops and shuts down the units of a system in parallel, following
+ * the dependencies between the units.
+ * 
+ * <p>
+ * The units are ordered in waves. The first wave contains the units without
+ * dependencies, and every following wave the units whose dependencies are all
+ * in earlier waves. The units in a wave are started in parallel, and a wave is
+ * started once the previous wave is done. Stopping and shutting down is done
+ * in the reverse order. A unit which fails, or does not finish within its
+ * timeout, is put in the {@link LifecycleState#FAILED} state, and the units
+ * depending on it are not started.
+ * </p>
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class UnitLifecycleCoordinator {
+	private static final String NAME_LIFECYCLE_THREADS = "Robo4J Lifecycle";
+	private static final String DEPENDENCY_SEPARATOR = ",";
+
+	private final String systemId;
+	private final int defaultTimeoutMillis;
+	private final Map<String, Set<String>> dependencies = new HashMap<>();
+	private final List<List<RoboUnit<?>>> waves;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param systemId
+	 *            the id of the system the units belong to.
+	 * @param units
+	 *            the units to coordinate.
+	 * @param availableIds
+	 *            the ids of other units, outside of the coordinated units,
+	 *            which are already available. Dependencies on these units
+	 *            are considered satisfied.
+	 * @param defaultTimeoutMillis
+	 *            the time a unit may take for a transition, unless configured
+	 *            otherwise in the unit.
+	 * @param strict
+	 *            if true, circular dependencies are reported by throwing an
+	 *            exception. If false, the units in the cycle are transitioned
+	 *            together in a last wave.
+	 * @throws IllegalStateException
+	 *             if strict and the units have circular dependencies.
+	 */
+	UnitLifecycleCoordinator(String systemId, Collection<RoboUnit<?>> units, Collection<String> availableIds,
+			int defaultTimeoutMillis, boolean strict) {
+		this.systemId = systemId;
+		this.defaultTimeoutMillis = defaultTimeoutMillis;
+		this.waves = computeWaves(units, availableIds, strict);
+	}
+
+	/**
+	 * Starts all units, wave by wave.
+	 * 
+	 * @return the report on how the units started.
+	 */
+	LifecycleReport start() {
+		return transition(waves, LifecycleState.STARTING, LifecycleState.STARTED, unit -> true, true, RoboUnit::start);
+	}
+
+	/**
+	 * Stops the started units, in the reverse order.
+	 * 
+	 * @return the report on how the units stopped.
+	 */
+	LifecycleReport stop() {
+		return transition(reversed(waves), LifecycleState.STOPPING, LifecycleState.STOPPED,
+				unit -> unit.getState() == LifecycleState.STARTED, false, RoboUnit::stop);
+	}
+
+	/**
+	 * Shuts down all units, in the reverse order.
+	 * 
+	 * @return the report on how the units shut down.
+	 */
+	LifecycleReport shutdown() {
+		return transition(reversed(waves), null, LifecycleState.SHUTDOWN, unit -> true, false, RoboUnit::shutdown);
+	}
+
+	/**
+	 * Returns the ids of the units the unit depends on, as declared by the
+	 * {@link DependsOn} annotation and the {@link RoboBuilder#KEY_DEPENDS_ON}
+	 * configuration value.
+	 * 
+	 * @param unit
+	 *            the unit.
+	 * @return the declared dependencies.
+	 */
+	static Set<String> getDeclaredDependencies(RoboUnit<?> unit) {
+		Set<String> result = new LinkedHashSet<>();
+		DependsOn dependsOn = unit.getClass().getAnnotation(DependsOn.class);
+		if (dependsOn != null) {
+			Collections.addAll(result, dependsOn.value());
+		}
+		Configuration configuration = unit.getConfiguration();
+		String configured = configuration == null ? null : configuration.getString(RoboBuilder.KEY_DEPENDS_ON, null);
+		if (configured != null) {
+			for (String id : configured.split(DEPENDENCY_SEPARATOR)) {
+				if (!id.isBlank()) {
+					result.add(id.trim());
+				}
+			}
+		}
+		return result;
+	}
+
+	private List<List<RoboUnit<?>>> computeWaves(Collection<RoboUnit<?>> units, Collection<String> availableIds,
+			boolean strict) {
+		Set<String> ids = units.stream().map(RoboUnit::getId).collect(Collectors.toSet());
+		for (RoboUnit<?> unit : units) {
+			Set<String> unitDependencies = getDeclaredDependencies(unit);
+			for (String id : unitDependencies) {
+				if (!ids.contains(id) && !availableIds.contains(id)) {
+					SimpleLoggingUtil.error(getClass(),
+							String.format("Unit %s depends on unknown unit %s - ignoring the dependency", unit.getId(), id));
+				}
+			}
+			unitDependencies.retainAll(ids);
+			dependencies.put(unit.getId(), unitDependencies);
+		}
+
+		List<List<RoboUnit<?>>> result = new ArrayList<>();
+		List<RoboUnit<?>> remaining = new ArrayList<>(units);
+		remaining.sort(Comparator.comparing(RoboUnit::getId));
+		Set<String> done = new HashSet<>();
+		while (!remaining.isEmpty()) {
+			List<RoboUnit<?>> wave = remaining.stream().filter(unit -> done.containsAll(dependencies.get(unit.getId())))
+					.collect(Collectors.toList());
+			if (wave.isEmpty()) {
+				String cycle = remaining.stream().map(RoboUnit::getId).collect(Collectors.joining(", "));
+				if (strict) {
+					throw new IllegalStateException("Circular dependencies between the units " + cycle);
+				}
+				SimpleLoggingUtil.error(getClass(), "Circular dependencies between the units " + cycle);
+				wave = new ArrayList<>(remaining);
+			}
+			remaining.removeAll(wave);
+			wave.forEach(unit -> done.add(unit.getId()));
+			result.add(wave);
+		}
+		return result;
+	}
+
+	private LifecycleReport transition(List<List<RoboUnit<?>>> order, LifecycleState intermediate, LifecycleState target,
+			Predicate<RoboUnit<?>> filter, boolean skipFailedDependents, Consumer<RoboUnit<?>> action) {
+		long startTime = System.nanoTime();
+		List<UnitEntry> entries = new ArrayList<>();
+		Set<String> failed = new HashSet<>();
+		ExecutorService executor = Executors
+				.newCachedThreadPool(new RoboThreadFactory(new ThreadGroup(NAME_LIFECYCLE_THREADS), NAME_LIFECYCLE_THREADS, true));
+		try {
+			for (int wave = 0; wave < order.size(); wave++) {
+				List<UnitTransition> transitions = new ArrayList<>();
+				for (RoboUnit<?> unit : order.get(wave)) {
+					if (!filter.test(unit)) {
+						continue;
+					}
+					String failedDependency = skipFailedDependents ? findFailed(unit, failed) : null;
+					if (failedDependency != null) {
+						unit.setState(LifecycleState.FAILED);
+						failed.add(unit.getId());
+						entries.add(new UnitEntry(unit.getId(), wave, LifecycleState.FAILED, 0,
+								"dependency " + failedDependency + " failed"));
+						continue;
+					}
+					UnitTransition transition = new UnitTransition(unit, intermediate, target, action);
+					transition.submit(executor);
+					transitions.add(transition);
+				}
+				for (UnitTransition transition : transitions) {
+					UnitEntry entry = transition.await(wave);
+					if (entry.isFailed()) {
+						failed.add(entry.getUnitId());
+					}
+					entries.add(entry);
+				}
+			}
+		} finally {
+			// Units which timed out are left to finish on their own
+			executor.shutdown();
+		}
+		return new LifecycleReport(systemId, target, System.nanoTime() - startTime, order.size(), entries);
+	}
+
+	private String findFailed(RoboUnit<?> unit, Set<String> failed) {
+		for (String dependency : dependencies.get(unit.getId())) {
+			if (failed.contains(dependency)) {
+				return dependency;
+			}
+		}
+		return null;
+	}
+
+	private int getTimeoutMillis(RoboUnit<?> unit) {
+		Configuration configuration = unit.getConfiguration();
+		return configuration == null ? defaultTimeoutMillis
+				: configuration.getInteger(RoboBuilder.KEY_LIFECYCLE_TIMEOUT, defaultTimeoutMillis);
+	}
+
+	private static <E> List<E> reversed(List<E> list) {
+		List<E> result = new ArrayList<>(list);
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * The transition of one unit. Whichever of the transition finishing and
+	 * the timeout happens first decides the state of the unit.
+	 */
+	private final class UnitTransition implements Runnable {
+		private final RoboUnit<?> unit;
+		private final LifecycleState intermediate;
+		private final LifecycleState target;
+		private final Consumer<RoboUnit<?>> action;
+		private final long timeoutNanos;
+		private final AtomicBoolean decided = new AtomicBoolean();
+		private volatile long durationNanos;
+		private volatile Throwable failure;
+		private long submitTime;
+		private Future<?> future;
+
+		UnitTransition(RoboUnit<?> unit, LifecycleState intermediate, LifecycleState target, Consumer<RoboUnit<?>> action) {
+			this.unit = unit;
+			this.intermediate = intermediate;
+			this.target = target;
+			this.action = action;
+			this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(getTimeoutMillis(unit));
+		}
+
+		void submit(ExecutorService executor) {
+			submitTime = System.nanoTime();
+			future = executor.submit(this);
+		}
+
+		@Override
+		public void run() {
+			if (intermediate != null) {
+				unit.setState(intermediate);
+			}
+			UnitLifecycleEvent event = new UnitLifecycleEvent(systemId, unit.getId(), target.name());
+			long start = System.nanoTime();
+			event.begin();
+			try {
+				action.accept(unit);
+			} catch (Throwable t) {
+				failure = t;
+			}
+			event.commit();
+			durationNanos = System.nanoTime() - start;
+			if (decided.compareAndSet(false, true)) {
+				unit.setState(failure == null ? target : LifecycleState.FAILED);
+			}
+		}
+
+		UnitEntry await(int wave) {
+			long remaining = submitTime + timeoutNanos - System.nanoTime();
+			try {
+				future.get(remaining, TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				if (decided.compareAndSet(false, true)) {
+					return abandon(wave, "timed out after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+				}
+				// Finished just as the timeout happened
+				awaitDecided();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if (decided.compareAndSet(false, true)) {
+					return abandon(wave, "interrupted");
+				}
+			} catch (ExecutionException e) {
+				// Cannot happen, run catches everything
+				failure = e.getCause();
+			}
+			if (failure != null) {
+				SimpleLoggingUtil.error(getClass(), String.format("Unit %s failed to reach %s", unit.getId(), target), failure);
+				return new UnitEntry(unit.getId(), wave, LifecycleState.FAILED, durationNanos, failure.toString());
+			}
+			return new UnitEntry(unit.getId(), wave, target, durationNanos, null);
+		}
+
+		private UnitEntry abandon(int wave, String reason) {
+			future.cancel(true);
+			unit.setState(LifecycleState.FAILED);
+			SimpleLoggingUtil.error(getClass(), String.format("Unit %s failed to reach %s: %s", unit.getId(), target, reason));
+			return new UnitEntry(unit.getId(), wave, LifecycleState.FAILED, System.nanoTime() - submitTime, reason);
+		}
+
+		private void awaitDecided() {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				failure = e.getCause();
+			}
+		}
+	}
+}
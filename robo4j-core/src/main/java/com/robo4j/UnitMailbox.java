@@ -0,0 +1,542 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.jfr.MessageDeliveryEvent;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The mailbox of a unit. Any number of threads can deliver messages to
+ * the mailbox, but the mailbox is only ever drained by one thread at a time,
+ * which means that the onMessage method of a unit will never be called
+ * concurrently.
+ * 
+ * <p>
+ * Requests, such as reading attributes, are run by the same thread, after
+ * all the messages sent before the request have been delivered. They will
+ * therefore never run concurrently with onMessage either.
+ * </p>
+ * 
+ * <p>
+ * The mailbox is its own drain task, and the messages are kept in a ring
+ * buffer, so delivering a message on a {@link DispatchExecutor} does not
+ * allocate.
+ * </p>
+ * 
+ * <p>
+ * If metrics are enabled, the time each message spends in the mailbox and in
+ * onMessage is recorded, as well as the dropped and failed messages. If not,
+ * the only cost is a null check per message.
+ * </p>
+ * 
+ * <p>
+ * The capacity of the mailbox is enforced according to its
+ * {@link MailboxOverflowPolicy}. By default the mailbox grows past its
+ * capacity instead. Senders blocked on a full mailbox are woken by the drain
+ * as it makes room. A sender running on the pool that drains the mailbox is
+ * never blocked, since that could starve the drain of threads.
+ * </p>
+ * 
+ * <p>
+ * A conflating mailbox only keeps the latest message per conflation key (see
+ * {@link ConflatingTrait}), and the capacity limits the number of keys.
+ * </p>
+ * 
+ * <p>
+ * If the batch size is larger than one, the queued messages are handed to the
+ * unit in batches, using {@link RoboUnit#onMessages(List)}. With a linger
+ * time, a batch which is not full is held back until it fills up, or until
+ * the oldest message in it has waited for the linger time. Batches are never
+ * held back when there are pending requests.
+ * </p>
+ * 
+ * <p>
+ * Each delivery is also emitted as a {@link MessageDeliveryEvent} when that
+ * event is enabled in a flight recording.
+ * </p>
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class UnitMailbox<T> extends DispatchExecutor.Task {
+	/**
+	 * Maximum number of messages, or batches of messages, to process before
+	 * giving the thread back to the pool, so that one busy unit cannot starve
+	 * the other units sharing the pool.
+	 */
+	private static final int DRAIN_BATCH_SIZE = 32;
+
+	private final RoboUnit<T> unit;
+	private final Executor executor;
+	private final MessageBuffer<T> queue;
+	private final MailboxOverflowPolicy overflowPolicy;
+	private final String deliveryPolicy;
+	private final UnitMetricsRecorder metrics;
+	private final int batchSize;
+	private final long batchLingerNanos;
+	private final Scheduler scheduler;
+	// Only used by the draining thread
+	private final long[] enqueuedNanos = new long[1];
+	private final List<T> batch;
+	private final long[] batchEnqueuedNanos;
+	// Size of a batch held back to fill up, and until when it may be held
+	// back. The deadline is 0 when no batch is held back.
+	private volatile int heldBackSize;
+	private volatile long heldBackDeadline;
+	private final Queue<Request> requests = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private volatile Thread drainingThread;
+	// Senders waiting for room, with the BLOCK policy
+	private final ReentrantLock notFullLock = new ReentrantLock();
+	private final Condition notFull = notFullLock.newCondition();
+	private final AtomicInteger blockedSenders = new AtomicInteger();
+
+	private record Request(long position, FutureTask<?> task) {
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param unit
+	 *            the unit to deliver the messages to.
+	 * @param deliveryPolicy
+	 *            the name of the delivery policy of the unit, used when
+	 *            recording events.
+	 * @param executor
+	 *            the executor on which to drain the mailbox.
+	 * @param settings
+	 *            the capacity, overflow policy, conflation and batching of
+	 *            the mailbox.
+	 * @param scheduler
+	 *            the scheduler used to deliver the batches held back.
+	 * @param metrics
+	 *            where to record the metrics, or null if metrics are
+	 *            disabled.
+	 */
+	UnitMailbox(RoboUnit<T> unit, String deliveryPolicy, Executor executor, MailboxSettings settings, Scheduler scheduler,
+			UnitMetricsRecorder metrics) {
+		this.unit = unit;
+		this.deliveryPolicy = deliveryPolicy;
+		this.executor = executor;
+		// Always timestamped, since recordings can be started at any time
+		MessageBuffer<T> buffer = settings.conflating()
+				? new ConflatingBuffer<>(settings.capacity(), unit::getConflationKey, metrics)
+				: new MessageRingBuffer<>(settings.capacity(), true);
+		this.overflowPolicy = settings.overflowPolicy();
+		this.queue = overflowPolicy == MailboxOverflowPolicy.GROW ? new GrowingBuffer<>(buffer) : buffer;
+		this.metrics = metrics;
+		this.batchSize = Math.min(settings.batchSize(), settings.capacity());
+		this.batchLingerNanos = settings.batchLingerNanos();
+		this.scheduler = scheduler;
+		this.batch = this.batchSize > 1 ? new ArrayList<>(this.batchSize) : null;
+		this.batchEnqueuedNanos = this.batchSize > 1 ? new long[this.batchSize] : null;
+	}
+
+	/**
+	 * Puts the message in the mailbox, and makes sure that the mailbox will be
+	 * drained.
+	 * 
+	 * @param message
+	 *            the message to deliver.
+	 * @throws MailboxOverflowException
+	 *             if the mailbox is full and the policy is
+	 *             {@link MailboxOverflowPolicy#REJECT}.
+	 */
+	void deliver(T message) {
+		long timestamp = isTimestamped() ? System.nanoTime() : 0;
+		if (queue.offer(message, timestamp) || offerOnOverflow(message, timestamp)) {
+			onDelivered();
+		} else if (metrics != null) {
+			metrics.recordDropped();
+		}
+	}
+
+	/**
+	 * Puts the messages in the mailbox, in order, and makes sure that the
+	 * mailbox will be drained. Cheaper than delivering the messages one by
+	 * one, since the drain is only scheduled once.
+	 * 
+	 * @param messages
+	 *            the messages to deliver.
+	 * @throws MailboxOverflowException
+	 *             if the mailbox is full and the policy is
+	 *             {@link MailboxOverflowPolicy#REJECT}. The messages before the
+	 *             rejected one are still delivered.
+	 */
+	void deliverAll(Collection<? extends T> messages) {
+		boolean timestamped = isTimestamped();
+		boolean delivered = false;
+		try {
+			for (T message : messages) {
+				long timestamp = timestamped ? System.nanoTime() : 0;
+				if (queue.offer(message, timestamp) || offerOnOverflow(message, timestamp)) {
+					delivered = true;
+				} else if (metrics != null) {
+					metrics.recordDropped();
+				}
+			}
+		} finally {
+			if (delivered) {
+				onDelivered();
+			}
+		}
+	}
+
+	private void onDelivered() {
+		// While a batch is held back, the drain is only needed once the batch
+		// can be filled up. Otherwise it is scheduled when the linger time is
+		// up.
+		if (heldBackDeadline == 0 || heldBackSize + queue.size() >= batchSize) {
+			scheduleDrain();
+		}
+	}
+
+	/**
+	 * Runs the callable on the thread draining the mailbox, once all messages
+	 * delivered before the request have been processed.
+	 * 
+	 * @param callable
+	 *            the request to run.
+	 * @param <R>
+	 *            the result type.
+	 * @return the future result.
+	 */
+	<R> Future<R> request(Callable<R> callable) {
+		FutureTask<R> task = new FutureTask<>(callable);
+		requests.add(new Request(queue.getAddedCount(), task));
+		if (!scheduleDrain()) {
+			task.cancel(false);
+		}
+		return task;
+	}
+
+	/**
+	 * @return the maximum number of messages waiting to be delivered.
+	 */
+	int capacity() {
+		return queue.capacity();
+	}
+
+	/**
+	 * @return a snapshot of the metrics for the mailbox, or null if metrics
+	 *         are disabled.
+	 */
+	UnitMetrics getMetrics() {
+		return metrics == null ? null : metrics.snapshot(unit.getId(), queue.size(), queue.capacity());
+	}
+
+	@Override
+	public void run() {
+		// If the executor no longer accepts work, we finish up on this thread.
+		do {
+			drainingThread = Thread.currentThread();
+			drainBatch();
+			drainingThread = null;
+			scheduled.set(false);
+		} while (needsDrain() && scheduled.compareAndSet(false, true) && !tryExecute());
+	}
+
+	private boolean needsDrain() {
+		if (heldBackDeadline == 0) {
+			return !queue.isEmpty() || !requests.isEmpty() || heldBackSize != 0;
+		}
+		// Requests or messages may have arrived while the batch was being held
+		// back, failing to schedule a drain since this one was still running
+		return !requests.isEmpty() || heldBackSize + queue.size() >= batchSize;
+	}
+
+	private void drainBatch() {
+		if (batch != null) {
+			drainBatches();
+			return;
+		}
+		for (int i = 0; i < DRAIN_BATCH_SIZE; i++) {
+			runDueRequests();
+			T message = take();
+			if (message == null) {
+				return;
+			}
+			MessageDeliveryEvent event = new MessageDeliveryEvent();
+			if (metrics == null && !event.isEnabled()) {
+				deliverToUnit(message);
+			} else {
+				deliverTimed(message, event);
+			}
+		}
+	}
+
+	private void drainBatches() {
+		// A new drain takes over any batch held back
+		heldBackDeadline = 0;
+		for (int i = 0; i < DRAIN_BATCH_SIZE; i++) {
+			fillBatch();
+			if (batch.isEmpty()) {
+				runDueRequests();
+				if (queue.isEmpty()) {
+					return;
+				}
+				continue;
+			}
+			if (shouldHoldBack() && holdBack()) {
+				return;
+			}
+			deliverBatch();
+			runDueRequests();
+		}
+	}
+
+	private void fillBatch() {
+		// Stops at the next due request, which must run after the batch
+		while (batch.size() < batchSize && !isRequestDue()) {
+			T message = take();
+			if (message == null) {
+				return;
+			}
+			batchEnqueuedNanos[batch.size()] = enqueuedNanos[0];
+			batch.add(message);
+		}
+	}
+
+	/**
+	 * Takes the next message from the queue, waking up a sender waiting for
+	 * room.
+	 */
+	private T take() {
+		T message = queue.poll(enqueuedNanos);
+		if (message != null && blockedSenders.get() > 0) {
+			notFullLock.lock();
+			try {
+				notFull.signal();
+			} finally {
+				notFullLock.unlock();
+			}
+		}
+		return message;
+	}
+
+	private boolean shouldHoldBack() {
+		return batchLingerNanos > 0 && batch.size() < batchSize && requests.isEmpty() && batchEnqueuedNanos[0] != 0
+				&& System.nanoTime() - batchEnqueuedNanos[0] < batchLingerNanos;
+	}
+
+	private boolean holdBack() {
+		long deadline = batchEnqueuedNanos[0] + batchLingerNanos;
+		heldBackSize = batch.size();
+		heldBackDeadline = deadline;
+		try {
+			scheduler.schedule(() -> onLingerTimeUp(deadline), deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			return true;
+		} catch (RejectedExecutionException e) {
+			heldBackDeadline = 0;
+			return false;
+		}
+	}
+
+	private void onLingerTimeUp(long deadline) {
+		// Ignore if the batch was already delivered
+		if (heldBackDeadline == deadline) {
+			heldBackDeadline = 0;
+			scheduleDrain();
+		}
+	}
+
+	private void deliverBatch() {
+		MessageDeliveryEvent event = new MessageDeliveryEvent();
+		if (metrics == null && !event.isEnabled()) {
+			deliverToUnit(batch);
+		} else {
+			long start = System.nanoTime();
+			event.begin();
+			boolean success = deliverToUnit(batch);
+			event.end();
+			record(event, batchEnqueuedNanos, batch.size(), batch.get(0).getClass(), start, System.nanoTime(), success);
+		}
+		batch.clear();
+		heldBackSize = 0;
+	}
+
+	private boolean isRequestDue() {
+		Request request = requests.peek();
+		return request != null && request.position() <= queue.getRemovedCount();
+	}
+
+	private boolean isTimestamped() {
+		return batchLingerNanos > 0 || isTimed();
+	}
+
+	private boolean isTimed() {
+		// Disabled events are optimized away by the JIT, so this does not allocate
+		return metrics != null || new MessageDeliveryEvent().isEnabled();
+	}
+
+	private void deliverTimed(T message, MessageDeliveryEvent event) {
+		long start = System.nanoTime();
+		event.begin();
+		boolean success = deliverToUnit(message);
+		event.end();
+		record(event, enqueuedNanos, 1, message.getClass(), start, System.nanoTime(), success);
+	}
+
+	private void record(MessageDeliveryEvent event, long[] enqueued, int count, Class<?> messageType, long start,
+			long end, boolean success) {
+		if (metrics != null) {
+			// The processing time of a batch is shared evenly by its messages
+			long processingTime = (end - start) / count;
+			for (int i = 0; i < count; i++) {
+				metrics.recordProcessed(enqueued[i], start, start + processingTime, success);
+			}
+		}
+		if (event.shouldCommit()) {
+			event.setUnitId(unit.getId());
+			event.setDeliveryPolicy(deliveryPolicy);
+			event.setMessageType(messageType);
+			event.setBatchSize(count);
+			event.setQueueWait(enqueued[0] == 0 ? 0 : start - enqueued[0]);
+			event.commit();
+		}
+	}
+
+	private boolean deliverToUnit(T message) {
+		try {
+			unit.onMessage(message);
+			return true;
+		} catch (Throwable t) {
+			// Protects the executors from problems in the units.
+			SimpleLoggingUtil.error(unit.getClass(), "Error processing message", t);
+			return false;
+		}
+	}
+
+	private boolean deliverToUnit(List<T> messages) {
+		try {
+			unit.onMessages(messages);
+			return true;
+		} catch (Throwable t) {
+			// Protects the executors from problems in the units.
+			SimpleLoggingUtil.error(unit.getClass(), "Error processing messages", t);
+			return false;
+		}
+	}
+
+	private void runDueRequests() {
+		Request request;
+		while ((request = requests.peek()) != null && request.position() <= queue.getRemovedCount()) {
+			requests.poll();
+			request.task().run();
+		}
+	}
+
+	private boolean offerOnOverflow(T message, long timestamp) {
+		switch (overflowPolicy) {
+		case GROW:
+			// Never full
+			return queue.offer(message, timestamp);
+		case BLOCK:
+			if (Thread.currentThread() == drainingThread) {
+				// Blocking would dead lock, since we are the ones supposed to
+				// make room.
+				SimpleLoggingUtil.error(getClass(), "Mailbox full when unit sent to itself - dropping message for " + unit.getId());
+				return false;
+			}
+			if (executor instanceof DispatchExecutor dispatchExecutor && dispatchExecutor.isPoolThread()) {
+				// Blocking could take the last thread the drain could run on
+				SimpleLoggingUtil.error(getClass(),
+						"Mailbox full when sending from the pool draining it - dropping message for " + unit.getId());
+				return false;
+			}
+			return offerBlocking(message, timestamp);
+		case DROP_OLDEST:
+			do {
+				if (queue.poll() != null && metrics != null) {
+					metrics.recordDropped();
+				}
+			} while (!queue.offer(message, timestamp));
+			return true;
+		case DROP_NEWEST:
+			return false;
+		case REJECT:
+			if (metrics != null) {
+				metrics.recordDropped();
+			}
+			throw new MailboxOverflowException("Mailbox full for unit " + unit.getId() + " (capacity " + capacity() + ")");
+		default:
+			throw new IllegalStateException(String.format("not supported policy: %s", overflowPolicy));
+		}
+	}
+
+	private boolean offerBlocking(T message, long timestamp) {
+		notFullLock.lock();
+		// Registered before offering, so that the drain making room after a
+		// failed offer is sure to signal
+		blockedSenders.incrementAndGet();
+		try {
+			while (!queue.offer(message, timestamp)) {
+				// Make sure someone is making room
+				if (!scheduleDrain()) {
+					return false;
+				}
+				notFull.await();
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			blockedSenders.decrementAndGet();
+			notFullLock.unlock();
+		}
+	}
+
+	private boolean scheduleDrain() {
+		if (scheduled.compareAndSet(false, true) && !tryExecute()) {
+			scheduled.set(false);
+			SimpleLoggingUtil.debug(getClass(), "Executor no longer accepting messages for " + unit.getId());
+			return false;
+		}
+		return true;
+	}
+
+	private boolean tryExecute() {
+		try {
+			executor.execute(this);
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+	}
+}
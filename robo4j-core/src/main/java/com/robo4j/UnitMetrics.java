@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the message metrics for a unit. Metrics are only
+ * collected when enabled in the system configuration (see
+ * {@link RoboBuilder#KEY_METRICS_ENABLED}).
+ * 
+ * <p>
+ * When enabled, the metrics are also available as attributes on the
+ * references to the units, using the attribute descriptors declared here.
+ * The metrics attributes are read directly, so they can be read even when
+ * the unit is too busy to answer attribute requests.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class UnitMetrics implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The complete metrics snapshot.
+	 */
+	public static final AttributeDescriptor<UnitMetrics> ATTRIBUTE_METRICS = DefaultAttributeDescriptor.create(UnitMetrics.class,
+			"metrics");
+	/**
+	 * The number of messages waiting in the mailbox.
+	 */
+	public static final AttributeDescriptor<Integer> ATTRIBUTE_QUEUE_DEPTH = DefaultAttributeDescriptor.create(Integer.class,
+			"metricsQueueDepth");
+	/**
+	 * The number of messages handled per second.
+	 */
+	public static final AttributeDescriptor<Double> ATTRIBUTE_THROUGHPUT = DefaultAttributeDescriptor.create(Double.class,
+			"metricsThroughput");
+	/**
+	 * The number of messages successfully handled by the unit.
+	 */
+	public static final AttributeDescriptor<Long> ATTRIBUTE_PROCESSED = DefaultAttributeDescriptor.create(Long.class,
+			"metricsProcessed");
+	/**
+	 * The number of messages for which onMessage failed.
+	 */
+	public static final AttributeDescriptor<Long> ATTRIBUTE_FAILED = DefaultAttributeDescriptor.create(Long.class, "metricsFailed");
+	/**
+	 * The number of messages dropped by the mailbox.
+	 */
+	public static final AttributeDescriptor<Long> ATTRIBUTE_DROPPED = DefaultAttributeDescriptor.create(Long.class, "metricsDropped");
+	/**
+	 * The time messages spend in the mailbox.
+	 */
+	public static final AttributeDescriptor<HistogramSnapshot> ATTRIBUTE_QUEUE_LATENCY = DefaultAttributeDescriptor
+			.create(HistogramSnapshot.class, "metricsQueueLatency");
+	/**
+	 * The time spent in onMessage.
+	 */
+	public static final AttributeDescriptor<HistogramSnapshot> ATTRIBUTE_PROCESSING_TIME = DefaultAttributeDescriptor
+			.create(HistogramSnapshot.class, "metricsProcessingTime");
+
+	/**
+	 * All the metrics attributes.
+	 */
+	public static final Collection<AttributeDescriptor<?>> ATTRIBUTES = Collections
+			.unmodifiableList(Arrays.asList(ATTRIBUTE_METRICS, ATTRIBUTE_QUEUE_DEPTH, ATTRIBUTE_THROUGHPUT, ATTRIBUTE_PROCESSED,
+					ATTRIBUTE_FAILED, ATTRIBUTE_DROPPED, ATTRIBUTE_QUEUE_LATENCY, ATTRIBUTE_PROCESSING_TIME));
+
+	private final String id;
+	private final int queueDepth;
+	private final int mailboxCapacity;
+	private final long processedCount;
+	private final long failedCount;
+	private final long droppedCount;
+	private final double throughput;
+	private final HistogramSnapshot queueLatency;
+	private final HistogramSnapshot processingTime;
+
+	UnitMetrics(String id, int queueDepth, int mailboxCapacity, long processedCount, long failedCount, long droppedCount,
+			double throughput, HistogramSnapshot queueLatency, HistogramSnapshot processingTime) {
+		this.id = id;
+		this.queueDepth = queueDepth;
+		this.mailboxCapacity = mailboxCapacity;
+		this.processedCount = processedCount;
+		this.failedCount = failedCount;
+		this.droppedCount = droppedCount;
+		this.throughput = throughput;
+		this.queueLatency = queueLatency;
+		this.processingTime = processingTime;
+	}
+
+	/**
+	 * @return the id of the unit.
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the number of messages waiting in the mailbox.
+	 */
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * @return the capacity of the mailbox.
+	 */
+	public int getMailboxCapacity() {
+		return mailboxCapacity;
+	}
+
+	/**
+	 * @return the number of messages successfully handled by the unit.
+	 */
+	public long getProcessedCount() {
+		return processedCount;
+	}
+
+	/**
+	 * @return the number of messages for which onMessage threw an exception.
+	 */
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * @return the number of messages dropped or rejected by the mailbox.
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * @return the number of messages handled per second, over roughly the last
+	 *         second.
+	 */
+	public double getThroughput() {
+		return throughput;
+	}
+
+	/**
+	 * @return the distribution of the time from when a message was put in the
+	 *         mailbox until it was handed to the unit.
+	 */
+	public HistogramSnapshot getQueueLatency() {
+		return queueLatency;
+	}
+
+	/**
+	 * @return the distribution of the time spent in onMessage.
+	 */
+	public HistogramSnapshot getProcessingTime() {
+		return processingTime;
+	}
+
+	/**
+	 * Returns the value for one of the metrics attributes.
+	 * 
+	 * @param descriptor
+	 *            the descriptor of the attribute.
+	 * @param <R>
+	 *            the type of the attribute.
+	 * @return the value, or null if the descriptor is not one of the metrics
+	 *         attributes.
+	 */
+	@SuppressWarnings("unchecked")
+	public <R> R getAttribute(AttributeDescriptor<R> descriptor) {
+		for (AttributeDescriptor<?> metricsDescriptor : ATTRIBUTES) {
+			if (isSameAttribute(metricsDescriptor, descriptor)) {
+				return (R) toAttributes().get(metricsDescriptor);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the metrics as a map of attributes.
+	 */
+	public Map<AttributeDescriptor<?>, Object> toAttributes() {
+		Map<AttributeDescriptor<?>, Object> attributes = new HashMap<>();
+		attributes.put(ATTRIBUTE_METRICS, this);
+		attributes.put(ATTRIBUTE_QUEUE_DEPTH, queueDepth);
+		attributes.put(ATTRIBUTE_THROUGHPUT, throughput);
+		attributes.put(ATTRIBUTE_PROCESSED, processedCount);
+		attributes.put(ATTRIBUTE_FAILED, failedCount);
+		attributes.put(ATTRIBUTE_DROPPED, droppedCount);
+		attributes.put(ATTRIBUTE_QUEUE_LATENCY, queueLatency);
+		attributes.put(ATTRIBUTE_PROCESSING_TIME, processingTime);
+		return attributes;
+	}
+
+	/**
+	 * @param descriptor
+	 *            the descriptor to check.
+	 * @return true if the descriptor refers to one of the metrics attributes.
+	 */
+	public static boolean isMetricsAttribute(AttributeDescriptor<?> descriptor) {
+		for (AttributeDescriptor<?> metricsDescriptor : ATTRIBUTES) {
+			if (isSameAttribute(metricsDescriptor, descriptor)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: queue %d/%d, %.1f msg/s, processed %d, failed %d, dropped %d, queue latency [%s], processing [%s]",
+				id, queueDepth, mailboxCapacity, throughput, processedCount, failedCount, droppedCount, queueLatency, processingTime);
+	}
+
+	// Descriptors do not implement equals, and may have been deserialized.
+	private static boolean isSameAttribute(AttributeDescriptor<?> a, AttributeDescriptor<?> b) {
+		return a.getAttributeName().equals(b.getAttributeName()) && a.getAttributeType().equals(b.getAttributeType());
+	}
+}
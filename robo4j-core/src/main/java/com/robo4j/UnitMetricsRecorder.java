@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the message metrics for the mailbox of a single unit. Only created
+ * when metrics are enabled, so that the mailbox does not pay for them
+ * otherwise.
+ * 
+ * <p>
+ * The processing side is only ever updated by the thread draining the
+ * mailbox. Drops can happen on any sending thread.
+ * </p>
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class UnitMetricsRecorder {
+	private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final LatencyHistogram queueLatency = new LatencyHistogram();
+	private final LatencyHistogram processingTime = new LatencyHistogram();
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final LongAdder dropped = new LongAdder();
+
+	private volatile long rateWindowStart = System.nanoTime();
+	private volatile long rateWindowStartCount;
+	private volatile double rate;
+
+	/**
+	 * Records a message which has been taken from the mailbox and handed to
+	 * the unit.
+	 * 
+	 * @param enqueuedNanos
+	 *            the {@link System#nanoTime()} when the message was enqueued.
+	 * @param startNanos
+	 *            the {@link System#nanoTime()} when onMessage was called.
+	 * @param endNanos
+	 *            the {@link System#nanoTime()} when onMessage returned.
+	 * @param success
+	 *            false if onMessage failed.
+	 */
+	void recordProcessed(long enqueuedNanos, long startNanos, long endNanos, boolean success) {
+		queueLatency.record(startNanos - enqueuedNanos);
+		processingTime.record(endNanos - startNanos);
+		if (success) {
+			processed.incrementAndGet();
+		} else {
+			failed.incrementAndGet();
+		}
+		long elapsed = endNanos - rateWindowStart;
+		if (elapsed >= RATE_WINDOW_NANOS) {
+			long total = getHandledCount();
+			rate = (total - rateWindowStartCount) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+			rateWindowStartCount = total;
+			rateWindowStart = endNanos;
+		}
+	}
+
+	/**
+	 * Records a message which never made it to the unit.
+	 */
+	void recordDropped() {
+		dropped.increment();
+	}
+
+	/**
+	 * Takes a snapshot of the metrics.
+	 * 
+	 * @param id
+	 *            the id of the unit.
+	 * @param queueDepth
+	 *            the current number of messages in the mailbox.
+	 * @param capacity
+	 *            the capacity of the mailbox.
+	 * @return the snapshot.
+	 */
+	UnitMetrics snapshot(String id, int queueDepth, int capacity) {
+		return new UnitMetrics(id, queueDepth, capacity, processed.get(), failed.get(), dropped.sum(), getRate(),
+				queueLatency.snapshot(), processingTime.snapshot());
+	}
+
+	private long getHandledCount() {
+		return processed.get() + failed.get();
+	}
+
+	private double getRate() {
+		// If the unit has not been handling messages for a while, the last
+		// window is stale, so decay towards the actual rate.
+		long elapsed = System.nanoTime() - rateWindowStart;
+		if (elapsed >= 2 * RATE_WINDOW_NANOS) {
+			return (getHandledCount() - rateWindowStartCount) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+		}
+		return rate;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The units of a system, and their references. Optimized for reading: the
+ * readers only do a volatile read of an immutable snapshot, and the writers
+ * replace the snapshot under a lock. Units are expected to be added and
+ * removed rarely, but looked up for every message.
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class UnitRegistry {
+	private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+
+	private static final class Snapshot {
+		private final Map<String, Entry> entries;
+		private final List<RoboUnit<?>> units;
+		private final List<RoboReference<?>> references;
+
+		Snapshot(Map<String, Entry> entries) {
+			this.entries = entries;
+			List<RoboUnit<?>> units = new ArrayList<>(entries.size());
+			List<RoboReference<?>> references = new ArrayList<>(entries.size());
+			for (Entry entry : entries.values()) {
+				units.add(entry.unit);
+				references.add(entry.reference);
+			}
+			this.units = Collections.unmodifiableList(units);
+			this.references = Collections.unmodifiableList(references);
+		}
+	}
+
+	private record Entry(RoboUnit<?> unit, RoboReference<?> reference) {
+	}
+
+	/**
+	 * Adds the units. Either all units are added, or none.
+	 * 
+	 * @param units
+	 *            the units to add, and their references.
+	 * @throws IllegalArgumentException
+	 *             if another unit with the same id is already registered.
+	 */
+	synchronized void addAll(Map<RoboUnit<?>, RoboReference<?>> units) {
+		Map<String, Entry> entries = new LinkedHashMap<>(snapshot.entries);
+		for (Map.Entry<RoboUnit<?>, RoboReference<?>> unit : units.entrySet()) {
+			Entry previous = entries.put(unit.getKey().getId(), new Entry(unit.getKey(), unit.getValue()));
+			if (previous != null && previous.unit != unit.getKey()) {
+				throw new IllegalArgumentException("A unit with the id " + unit.getKey().getId() + " is already registered");
+			}
+		}
+		snapshot = new Snapshot(entries);
+	}
+
+	/**
+	 * Removes the unit with the specified id.
+	 * 
+	 * @param id
+	 *            the id of the unit.
+	 * @return the removed unit, or null if there was no unit with the id.
+	 */
+	synchronized RoboUnit<?> remove(String id) {
+		Map<String, Entry> entries = new LinkedHashMap<>(snapshot.entries);
+		Entry removed = entries.remove(id);
+		if (removed == null) {
+			return null;
+		}
+		snapshot = new Snapshot(entries);
+		return removed.unit;
+	}
+
+	/**
+	 * @param id
+	 *            the id of the unit.
+	 * @return the reference to the unit with the id, or null if there is none.
+	 */
+	RoboReference<?> getReference(String id) {
+		Entry entry = snapshot.entries.get(id);
+		return entry == null ? null : entry.reference;
+	}
+
+	/**
+	 * @param unit
+	 *            the unit.
+	 * @return the reference to the unit, or null if the unit is not
+	 *         registered.
+	 */
+	RoboReference<?> getReference(RoboUnit<?> unit) {
+		Entry entry = snapshot.entries.get(unit.getId());
+		return entry == null || entry.unit != unit ? null : entry.reference;
+	}
+
+	/**
+	 * @return the registered units, in the order they were added. The
+	 *         collection is immutable.
+	 */
+	Collection<RoboUnit<?>> getUnits() {
+		return snapshot.units;
+	}
+
+	/**
+	 * @return the references to the registered units, in the order the units
+	 *         were added. The collection is immutable.
+	 */
+	Collection<RoboReference<?>> getReferences() {
+		return snapshot.references;
+	}
+
+	/**
+	 * @return the number of registered units.
+	 */
+	int size() {
+		return snapshot.entries.size();
+	}
+
+	/**
+	 * @return the ids of the registered units.
+	 */
+	Collection<String> getIds() {
+		return Collections.unmodifiableSet(snapshot.entries.keySet());
+	}
+}
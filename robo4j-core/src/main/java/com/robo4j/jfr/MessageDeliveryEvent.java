@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR event definition for the delivery of a message, or a batch of
+ * messages, to a unit. The duration of the event is the time spent in
+ * onMessage, or onMessages.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Name("robo4j.core.MessageDelivery")
+@Category({ "Robo4J", "Core", "Messaging" })
+@Label("Message Delivery")
+@Description("A message delivered to a unit")
+@StackTrace(false)
+public class MessageDeliveryEvent extends Event {
+	@Label("Unit Id")
+	@Description("The id of the unit receiving the message")
+	@UnitId
+	private String unitId;
+
+	@Label("Delivery Policy")
+	@Description("The policy deciding which threads deliver messages to the unit")
+	private String deliveryPolicy;
+
+	@Label("Message Type")
+	private Class<?> messageType;
+
+	@Label("Batch Size")
+	@Description("The number of messages delivered")
+	private int batchSize;
+
+	@Label("Queue Wait")
+	@Description("The time the (oldest) message spent in the mailbox of the unit, 0 if not known")
+	@Timespan(Timespan.NANOSECONDS)
+	private long queueWait;
+
+	static {
+		FlightRecorder.register(MessageDeliveryEvent.class);
+	}
+
+	public void setUnitId(String unitId) {
+		this.unitId = unitId;
+	}
+
+	public String getUnitId() {
+		return unitId;
+	}
+
+	public void setDeliveryPolicy(String deliveryPolicy) {
+		this.deliveryPolicy = deliveryPolicy;
+	}
+
+	public String getDeliveryPolicy() {
+		return deliveryPolicy;
+	}
+
+	public void setMessageType(Class<?> messageType) {
+		this.messageType = messageType;
+	}
+
+	public Class<?> getMessageType() {
+		return messageType;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setQueueWait(long queueWait) {
+		this.queueWait = queueWait;
+	}
+
+	public long getQueueWait() {
+		return queueWait;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JFR event definition for a message received from a remote context. The
+ * duration of the event is the time it took to read and dispatch the message.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Name("robo4j.core.RemoteMessageReceive")
+@Category({ "Robo4J", "Core", "Network" })
+@Label("Remote Message Receive")
+@Description("A message received from a remote context")
+@StackTrace(false)
+public class RemoteMessageReceiveEvent extends Event {
+	@Label("Source Context Id")
+	@Description("The id of the context which sent the message")
+	private String sourceContextId;
+
+	@Label("Unit Id")
+	@Description("The id of the unit the message is for")
+	@UnitId
+	private String unitId;
+
+	@Label("Message Type")
+	private Class<?> messageType;
+
+	@Label("Bytes")
+	@Description("The number of bytes read for the message. Approximate, since the stream reads ahead")
+	@DataAmount
+	private long bytes;
+
+	static {
+		FlightRecorder.register(RemoteMessageReceiveEvent.class);
+	}
+
+	public void setSourceContextId(String sourceContextId) {
+		this.sourceContextId = sourceContextId;
+	}
+
+	public String getSourceContextId() {
+		return sourceContextId;
+	}
+
+	public void setUnitId(String unitId) {
+		this.unitId = unitId;
+	}
+
+	public String getUnitId() {
+		return unitId;
+	}
+
+	public void setMessageType(Class<?> messageType) {
+		this.messageType = messageType;
+	}
+
+	public Class<?> getMessageType() {
+		return messageType;
+	}
+
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR event definition for a message sent by the scheduler. The duration
+ * of the event is the time it took to hand off the message.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Name("robo4j.core.ScheduledMessage")
+@Category({ "Robo4J", "Core", "Scheduler" })
+@Label("Scheduled Message")
+@Description("A message sent by the scheduler")
+@StackTrace(false)
+public class ScheduledMessageEvent extends Event {
+	@Label("Unit Id")
+	@Description("The id of the unit the message was scheduled for")
+	@UnitId
+	private String unitId;
+
+	@Label("Lateness")
+	@Description("How late the message was sent, compared to when it was scheduled to be sent")
+	@Timespan(Timespan.NANOSECONDS)
+	private long lateness;
+
+	static {
+		FlightRecorder.register(ScheduledMessageEvent.class);
+	}
+
+	public void setUnitId(String unitId) {
+		this.unitId = unitId;
+	}
+
+	public String getUnitId() {
+		return unitId;
+	}
+
+	public void setLateness(long lateness) {
+		this.lateness = lateness;
+	}
+
+	public long getLateness() {
+		return lateness;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JFR event definition for a life cycle transition of a unit. The
+ * duration of the event is the time the unit took to make the transition.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+@Name("robo4j.core.UnitLifecycle")
+@Category({ "Robo4J", "Core", "Lifecycle" })
+@Label("Unit Lifecycle")
+@Description("A unit changing life cycle state")
+@StackTrace(false)
+public class UnitLifecycleEvent extends Event {
+	@Label("System Id")
+	private final String systemId;
+
+	@Label("Unit Id")
+	@UnitId
+	private final String unitId;
+
+	@Label("State")
+	@Description("The state the unit transitioned to")
+	private final String state;
+
+	static {
+		FlightRecorder.register(UnitLifecycleEvent.class);
+	}
+
+	public UnitLifecycleEvent(String systemId, String unitId, String state) {
+		this.systemId = systemId;
+		this.unitId = unitId;
+		this.state = state;
+	}
+
+	public String getSystemId() {
+		return systemId;
+	}
+
+	public String getUnitId() {
+		return unitId;
+	}
+
+	public String getState() {
+		return state;
+	}
+}
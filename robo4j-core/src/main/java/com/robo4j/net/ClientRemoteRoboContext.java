@@ -22,27 +22,59 @@ import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.configuration.ConfigurationFactory;
+import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.scheduler.Scheduler;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 /**
+ * RoboContext for a remote context discovered by the {@link LookupService}.
+ * Messages to its references are sent using a {@link MessageClient}, or, if
+ * the context is on the same host, through its shared memory ring. If the
+ * lookup service has an outbox configured, messages which could not be sent
+ * over the network are stored in a {@link MessageOutbox}, and sent later.
+ * 
+ * <p>
+ * Contexts obtained from the lookup service are shared, and reference
+ * counted. Call {@link #shutdown()} when done with the context - the
+ * connection is closed when it is no longer used by anyone.
+ * </p>
+ * 
+ * <p>
+ * The lookup service disconnects the context when the remote context stops
+ * sending heartbeats, or is discovered at a new address. The context
+ * reconnects, to the last address discovered, when it is used again.
+ * </p>
  *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
  */
 public class ClientRemoteRoboContext implements RoboContext {
-	private final RoboContextDescriptorEntry descriptorEntry;
-	private final MessageClient client;
+	private volatile RoboContextDescriptorEntry descriptorEntry;
+	// Null while disconnected
+	private volatile MessageClient client;
+	// Guarded by this, the address the client was created for
+	private String uri;
+	// Null if the context is not on this host
+	private volatile SharedMemoryClient sharedMemory;
+	private final RemoteContextCache cache;
+	// Null if messages are not stored while they can not be sent
+	private final MessageOutbox outbox;
+	// Guarded by the cache
+	private int references;
+	private volatile boolean closed;
 
 	private class ClientRemoteRoboReference<T> implements RoboReference<T> {
 
 		private final String id;
+		private volatile Class<T> messageType;
 
 		public ClientRemoteRoboReference(String id) {
 			this.id = id;
@@ -55,25 +87,57 @@ public class ClientRemoteRoboContext implements RoboContext {
 
 		@Override
 		public LifecycleState getState() {
-			throw new UnsupportedOperationException("Not supported yet!");
+			return await(getClient().getState(id));
 		}
 
 		@Override
 		public void sendMessage(Object message) {
-			try {
-				if (!client.isConnected()) {
-					client.connect();
+			MessageClient client = getClient();
+			SharedMemoryClient sharedMemory = ClientRemoteRoboContext.this.sharedMemory;
+			if (sharedMemory != null) {
+				try {
+					switch (sharedMemory.send(id, message)) {
+					case SENT:
+						return;
+					case USE_NETWORK:
+						if (!sharedMemory.awaitConsumed(id)) {
+							SimpleLoggingUtil.error(getClass(),
+									"Shared memory ring not read in time - message to " + id + " may arrive out of order");
+						}
+						break;
+					case CLOSED:
+						ClientRemoteRoboContext.this.sharedMemory = null;
+						break;
+					}
+				} catch (IOException e) {
+					SimpleLoggingUtil.error(getClass(), "Failed to send message to " + id, e);
+					return;
 				}
-				client.sendMessage(id, message);
-			} catch (IOException e) {
-				// TODO: Error handling
-				e.printStackTrace();
 			}
+			if (outbox != null) {
+				outbox.send(id, message);
+				return;
+			}
+			// The client connects on demand, and writes on its own thread
+			client.sendMessageAsync(id, message).whenComplete((result, error) -> {
+				if (error != null) {
+					SimpleLoggingUtil.error(getClass(), "Failed to send message to " + id, error);
+				}
+			});
 		}
 
+		@SuppressWarnings("unchecked")
 		@Override
 		public Class<T> getMessageType() {
-			throw new UnsupportedOperationException("Not supported yet!");
+			if (messageType == null) {
+				String typeName = await(getClient().getMessageTypeName(id));
+				try {
+					messageType = (Class<T>) Class.forName(typeName);
+				} catch (ClassNotFoundException e) {
+					SimpleLoggingUtil.error(getClass(), "Message type " + typeName + " of remote reference " + id + " not available", e);
+				}
+			}
+			return messageType;
 		}
 
 		@Override
@@ -81,26 +145,107 @@ public class ClientRemoteRoboContext implements RoboContext {
 			throw new UnsupportedOperationException("Not supported yet!");
 		}
 
+		@SuppressWarnings("unchecked")
 		@Override
 		public <R> Future<R> getAttribute(AttributeDescriptor<R> attribute) {
-			throw new UnsupportedOperationException("Not supported yet!");
+			return getClient().getAttributes(id, List.of(attribute)).thenApply(values -> (R) getValue(values, attribute));
 		}
 
 		@Override
 		public Collection<AttributeDescriptor<?>> getKnownAttributes() {
-			throw new UnsupportedOperationException("Not supported yet!");
+			return await(getClient().getKnownAttributes(id));
 		}
 
 		@Override
 		public Future<Map<AttributeDescriptor<?>, Object>> getAttributes() {
-			throw new UnsupportedOperationException("Not supported yet!");
+			return getClient().getAttributes(id, List.of());
 		}
 
 	}
 
+	/**
+	 * Reads a number of attributes of a reference in the remote context, in
+	 * one round trip.
+	 * 
+	 * @param id
+	 *            the id of the reference.
+	 * @param attributes
+	 *            the attributes to read.
+	 * @return the attribute values. Use {@link #getValue(Map, AttributeDescriptor)}
+	 *         to look them up.
+	 */
+	public Future<Map<AttributeDescriptor<?>, Object>> getAttributes(String id,
+			Collection<? extends AttributeDescriptor<?>> attributes) {
+		return getClient().getAttributes(id, attributes);
+	}
+
+	/**
+	 * Looks up a value in attributes read from a remote context. The
+	 * descriptors in the result are recreated from the response, and are
+	 * matched by name.
+	 * 
+	 * @param values
+	 *            the attributes read.
+	 * @param attribute
+	 *            the attribute to look up.
+	 * @return the value, or null if not found.
+	 */
+	public static Object getValue(Map<AttributeDescriptor<?>, Object> values, AttributeDescriptor<?> attribute) {
+		for (Map.Entry<AttributeDescriptor<?>, Object> entry : values.entrySet()) {
+			if (entry.getKey().getAttributeName().equals(attribute.getAttributeName())) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	private static <R> R await(Future<R> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for remote context", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Request to remote context failed", e.getCause());
+		}
+	}
+
 	public ClientRemoteRoboContext(RoboContextDescriptorEntry descriptorEntry) {
+		this(descriptorEntry, null, null);
+	}
+
+	ClientRemoteRoboContext(RoboContextDescriptorEntry descriptorEntry, RemoteContextCache cache, MessageOutbox outbox) {
 		this.descriptorEntry = descriptorEntry;
-		client = initializeClient(descriptorEntry);
+		this.cache = cache;
+		this.outbox = outbox;
+		connect();
+	}
+
+	/**
+	 * @return the client, connecting again if disconnected. After the context
+	 *         has been closed, the client which was shut down.
+	 */
+	private MessageClient getClient() {
+		MessageClient current = client;
+		if (current != null) {
+			return current;
+		}
+		synchronized (this) {
+			return client != null ? client : connect();
+		}
+	}
+
+	// Guarded by this, or called by the constructor
+	private MessageClient connect() {
+		RoboContextDescriptorEntry entry = descriptorEntry;
+		uri = getUri(entry);
+		MessageClient newClient = initializeClient(entry);
+		sharedMemory = SharedMemoryClient.open(entry, entry.descriptor.getId(), MessageCodecRegistry.getDefault());
+		if (outbox != null) {
+			outbox.attach(newClient);
+		}
+		client = newClient;
+		return newClient;
 	}
 
 	private static MessageClient initializeClient(RoboContextDescriptorEntry descriptorEntry) {
@@ -111,11 +256,20 @@ public class ClientRemoteRoboContext implements RoboContext {
 
 	@Override
 	public LifecycleState getState() {
-		return null;
+		return closed ? LifecycleState.SHUTDOWN : LifecycleState.STARTED;
 	}
 
+	/**
+	 * Releases this context. The connection is closed when the context is no
+	 * longer used.
+	 */
 	@Override
 	public void shutdown() {
+		if (cache != null) {
+			cache.release(this);
+		} else {
+			close();
+		}
 	}
 
 	@Override
@@ -151,6 +305,81 @@ public class ClientRemoteRoboContext implements RoboContext {
 		return descriptorEntry.address;
 	}
 
+	/**
+	 * Updates the entry of the remote context, disconnecting if it is now at
+	 * another address.
+	 */
+	synchronized void update(RoboContextDescriptorEntry entry) {
+		descriptorEntry = entry;
+		if (!uri.equals(getUri(entry))) {
+			disconnect();
+		}
+	}
+
+	/**
+	 * Closes the connection. Unless the context is closed, it reconnects when
+	 * used again.
+	 */
+	synchronized void disconnect() {
+		if (closed) {
+			return;
+		}
+		MessageClient current = client;
+		if (current != null) {
+			client = null;
+			sharedMemory = null;
+			if (outbox != null) {
+				outbox.detach(current);
+			}
+			current.shutdown();
+		}
+	}
+
+	private static String getUri(RoboContextDescriptorEntry entry) {
+		return entry.descriptor.getMetadata().get(RoboContextDescriptor.KEY_URI);
+	}
+
+	void retain() {
+		references++;
+	}
+
+	int releaseReference() {
+		return references > 0 ? --references : 0;
+	}
+
+	int getReferenceCount() {
+		return references;
+	}
+
+	boolean isClosed() {
+		return closed;
+	}
+
+	boolean isConnected() {
+		return client != null;
+	}
+
+	boolean isUsingSharedMemory() {
+		return sharedMemory != null;
+	}
+
+	synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		sharedMemory = null;
+		MessageClient current = client;
+		if (current == null) {
+			// Left in place, so that later calls fail rather than reconnect
+			client = current = initializeClient(descriptorEntry);
+		}
+		if (outbox != null) {
+			outbox.detach(current);
+		}
+		current.shutdown();
+	}
+
 	@Override
 	public Configuration getConfiguration() {
 		// TODO Auto-generated method stub
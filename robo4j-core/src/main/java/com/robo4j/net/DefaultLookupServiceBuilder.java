@@ -16,6 +16,7 @@
  */
 package com.robo4j.net;
 
+import com.robo4j.configuration.Configuration;
 import com.robo4j.logging.SimpleLoggingUtil;
 
 import java.net.SocketException;
@@ -33,6 +34,7 @@ public class DefaultLookupServiceBuilder {
     private Integer port;
     private Float missedHeartbeatsBeforeRemoval;
     private LocalLookupServiceImpl localContexts;
+    private Configuration outboxConfiguration;
 
 
     private DefaultLookupServiceBuilder(){
@@ -63,9 +65,21 @@ public class DefaultLookupServiceBuilder {
         return this;
     }
 
+    /**
+     * Enables storing messages to remote contexts which could not be sent, to
+     * send them once the remote context can be reached again.
+     *
+     * @param outboxConfiguration the outbox configuration, see {@link MessageOutbox}.
+     * @return the builder
+     */
+    public DefaultLookupServiceBuilder setOutboxConfiguration(Configuration outboxConfiguration) {
+        this.outboxConfiguration = outboxConfiguration;
+        return this;
+    }
+
     public LookupService build(){
         try {
-            return new LookupServiceImpl(address, port, missedHeartbeatsBeforeRemoval, localContexts);
+            return new LookupServiceImpl(address, port, missedHeartbeatsBeforeRemoval, localContexts, outboxConfiguration);
         } catch (SocketException | UnknownHostException e) {
             SimpleLoggingUtil.error(LookupServiceProvider.class,
                     "Failed to set up LookupService! No multicast route? Will use null provider...", e);
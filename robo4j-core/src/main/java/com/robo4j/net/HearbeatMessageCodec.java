@@ -38,6 +38,7 @@ class HearbeatMessageCodec {
 	private static int MAX_U1 = 255;
 
 	private static byte[] MAGIC = new byte[] { (byte) 0xC0, (byte) 0xFF };
+	static final int ID_OFFSET = 13;
 
 	public static byte[] encode(RoboContextDescriptor entry) {
 		byte[] message = new byte[calculateEncodedLength(entry)];
@@ -76,6 +77,26 @@ class HearbeatMessageCodec {
 		return message[0] == MAGIC[0] && message[1] == MAGIC[1];
 	}
 	
+	/**
+	 * Checks that the first length bytes of the buffer hold a complete
+	 * heartbeat of a supported version, without decoding anything.
+	 */
+	public static boolean isValid(byte[] message, int length) {
+		if (length < ID_OFFSET || !isHeartBeatMessage(message) || !isSupportedVersion(message)) {
+			return false;
+		}
+		int messageLength = getMessageLength(message);
+		return messageLength <= length && ID_OFFSET + getIdLength(message) <= messageLength;
+	}
+
+	public static int getMessageLength(byte[] message) {
+		return decodeS4(message, 3);
+	}
+
+	public static int getIdLength(byte[] message) {
+		return decodeU2(message, 11);
+	}
+
 	public static String parseId(byte[] message) {
 		int idLength = decodeU2(message, 11);
 		return new String(message, 13, idLength);
@@ -70,4 +70,23 @@ public interface LookupService {
 	 *             possible exception
 	 */
 	void stop() throws IOException;
+
+	/**
+	 * Adds a listener to be notified as remote contexts are discovered and
+	 * removed. The default implementation never notifies.
+	 * 
+	 * @param listener
+	 *            the listener to add.
+	 */
+	default void addListener(LookupServiceListener listener) {
+	}
+
+	/**
+	 * Removes a previously added listener.
+	 * 
+	 * @param listener
+	 *            the listener to remove.
+	 */
+	default void removeListener(LookupServiceListener listener) {
+	}
 }
@@ -17,22 +17,27 @@
 package com.robo4j.net;
 
 import com.robo4j.RoboContext;
+import com.robo4j.configuration.Configuration;
 import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.net.LocalLookupServiceImpl.LocalRoboContextDescriptor;
 
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
-import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
-import java.net.SocketAddress;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 
 /**
  * Package local default implementation of the {@link LookupService}. Will
@@ -41,6 +46,18 @@ import java.util.concurrent.ConcurrentHashMap;
  * enough heartbeats. Note that the entries themselves can have individual
  * settings for the heartbeat.
  * 
+ * <p>
+ * Heartbeats are received into a reused buffer, and looked up by the bytes of
+ * their id. A heartbeat identical to the last one seen from the same context
+ * only updates the time of last access - it is only decoded when something,
+ * such as the metadata, has changed.
+ * </p>
+ * 
+ * <p>
+ * Remote contexts handed out are shared, one per discovered context, see
+ * {@link RemoteContextCache}.
+ * </p>
+ * 
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
  */
@@ -48,91 +65,225 @@ class LookupServiceImpl implements LookupService {
 	// FIXME(marcus/6 Nov 2017): This should be calculated, and used when
 	// constructing the packet
 	private final static int MAX_PACKET_SIZE = 1500;
+	// How often, in ms, to look for entries which have stopped sending
+	// heartbeats
+	private final static int EXPIRY_CHECK_INTERVAL = 500;
 	private MulticastSocket socket;
 	private String address;
 	private int port;
 	private Updater currentUpdater;
 	private Map<String, RoboContextDescriptorEntry> entries = new ConcurrentHashMap<>();
+	// Only accessed by the thread processing heartbeats
+	private final Map<HeartbeatId, RoboContextDescriptorEntry> entriesById = new HashMap<>();
+	private final HeartbeatId probe = new HeartbeatId();
+	private long nextExpiryCheck;
 	private final LocalLookupServiceImpl localContexts;
+	private final float missedHeartbeatsBeforeRemoval;
+	private final RemoteContextCache remoteContexts;
+	// Null if messages to remote contexts are not to be stored
+	private final Configuration outboxConfiguration;
+	private final Map<String, MessageOutbox> outboxes = new ConcurrentHashMap<>();
+	private final List<LookupServiceListener> listeners = new CopyOnWriteArrayList<>();
 
-	private class Updater implements Runnable {
-		private byte[] buffer = new byte[MAX_PACKET_SIZE];
-		private volatile boolean isRunning;
+	/**
+	 * The id bytes of a heartbeat, used as key without decoding the id. The
+	 * probe instance is pointed at the receive buffer for lookups, keys stored
+	 * have their own copy of the bytes.
+	 */
+	private static final class HeartbeatId {
+		private byte[] bytes;
+		private int offset;
+		private int length;
+		private int hash;
 
-		@Override
-		public void run() {
-			while (!isRunning) {
-				try {
-					DatagramPacket packet = new DatagramPacket(buffer, MAX_PACKET_SIZE);
-					socket.receive(packet);
-					process(packet);
-				} catch (IOException e) {
-					SimpleLoggingUtil.error(getClass(),
-							"Failed to look for lookupservice packets. Lookup service will no longer discover new remote contexts.", e);
-					isRunning = false;
-				}
+		HeartbeatId set(byte[] bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.offset = offset;
+			this.length = length;
+			int h = 1;
+			for (int i = offset; i < offset + length; i++) {
+				h = 31 * h + bytes[i];
 			}
+			this.hash = h;
+			return this;
 		}
 
-		private void process(DatagramPacket packet) {
-			// First a few quick checks. We want to reject updating anything as
-			// early as possible
-			if (!HearbeatMessageCodec.isHeartBeatMessage(packet.getData())) {
-				SimpleLoggingUtil.debug(getClass(), "Non-heartbeat packet sent to LookupService! Ignoring.");
-				return;
-			}
-			if (!HearbeatMessageCodec.isSupportedVersion(packet.getData())) {
-				SimpleLoggingUtil.debug(getClass(), "Wrong protocol heartbeat packet sent to LookupService! Ignoring.");
-				return;
-			}
-			String id = parseId(packet.getData());
-			if (entries.containsKey(id)) {
-				updateEntry(entries.get(id));
-			} else {
-				addNewEntry(packet);
-			}
+		HeartbeatId copy() {
+			return new HeartbeatId().set(Arrays.copyOfRange(bytes, offset, offset + length), 0, length);
 		}
 
-		private void addNewEntry(DatagramPacket packet) {
-			RoboContextDescriptorEntry entry = parse(packet);
-			synchronized (LookupServiceImpl.this) {
-				entries.put(entry.descriptor.getId(), entry);
-			}
+		@Override
+		public int hashCode() {
+			return hash;
 		}
 
-		private RoboContextDescriptorEntry parse(DatagramPacket packet) {
-			RoboContextDescriptorEntry entry = new RoboContextDescriptorEntry();
-			SocketAddress address = packet.getSocketAddress();
-			if (address instanceof InetSocketAddress) {
-				entry.address = ((InetSocketAddress) address).getAddress();
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof HeartbeatId other)) {
+				return false;
 			}
-			entry.descriptor = HearbeatMessageCodec.decode(packet.getData());
-			return entry;
+			return hash == other.hash
+					&& Arrays.equals(bytes, offset, offset + length, other.bytes, other.offset, other.offset + other.length);
 		}
+	}
 
-		private void updateEntry(RoboContextDescriptorEntry roboContextDescriptorEntry) {
-			roboContextDescriptorEntry.lastAccess = System.currentTimeMillis();
-		}
+	private class Updater implements Runnable {
+		private final MulticastSocket socket;
+		private final byte[] buffer = new byte[MAX_PACKET_SIZE];
+		private final DatagramPacket packet = new DatagramPacket(buffer, MAX_PACKET_SIZE);
+		private volatile boolean isRunning = true;
 
-		private String parseId(byte[] data) {
-			return new String(data, 9, readShort(7, data));
+		Updater(MulticastSocket socket) {
+			this.socket = socket;
 		}
 
-		private int readShort(int i, byte[] data) {
-			return (data[i] << 8) + (data[i + 1] & 0xFF);
+		@Override
+		public void run() {
+			while (isRunning) {
+				try {
+					packet.setLength(MAX_PACKET_SIZE);
+					socket.receive(packet);
+					process(buffer, packet.getLength(), packet.getAddress(), System.currentTimeMillis());
+				} catch (SocketTimeoutException e) {
+					// Nothing received - still time to look for expired entries
+				} catch (IOException e) {
+					if (isRunning) {
+						SimpleLoggingUtil.error(getClass(),
+								"Failed to look for lookupservice packets. Lookup service will no longer discover new remote contexts.", e);
+						isRunning = false;
+					}
+				}
+				removeExpiredEntries(System.currentTimeMillis());
+			}
 		}
 
 		public void stop() {
 			isRunning = false;
+			socket.close();
 		}
 	}
 
 	public LookupServiceImpl(String address, int port, float missedHeartbeatsBeforeRemoval, LocalLookupServiceImpl localContexts)
 			throws SocketException, UnknownHostException {
+		this(address, port, missedHeartbeatsBeforeRemoval, localContexts, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param outboxConfiguration
+	 *            the configuration of the outboxes for messages to remote
+	 *            contexts (see {@link MessageOutbox}), or null to not store
+	 *            messages which could not be sent.
+	 */
+	public LookupServiceImpl(String address, int port, float missedHeartbeatsBeforeRemoval, LocalLookupServiceImpl localContexts,
+			Configuration outboxConfiguration) throws SocketException, UnknownHostException {
 		this.address = address;
 		this.port = port;
 		this.localContexts = localContexts;
+		this.missedHeartbeatsBeforeRemoval = missedHeartbeatsBeforeRemoval;
+		this.outboxConfiguration = outboxConfiguration;
+		this.remoteContexts = new RemoteContextCache(outboxConfiguration != null ? this::getOutbox : null);
+	}
 
+	/**
+	 * Processes a received packet. Only called by the thread receiving
+	 * heartbeats, or by tests.
+	 */
+	void process(byte[] data, int length, InetAddress sender, long now) {
+		// First a few quick checks. We want to reject updating anything as
+		// early as possible
+		if (!HearbeatMessageCodec.isHeartBeatMessage(data)) {
+			SimpleLoggingUtil.debug(getClass(), "Non-heartbeat packet sent to LookupService! Ignoring.");
+			return;
+		}
+		if (!HearbeatMessageCodec.isValid(data, length)) {
+			SimpleLoggingUtil.debug(getClass(), "Wrong protocol heartbeat packet sent to LookupService! Ignoring.");
+			return;
+		}
+		int messageLength = HearbeatMessageCodec.getMessageLength(data);
+		probe.set(data, HearbeatMessageCodec.ID_OFFSET, HearbeatMessageCodec.getIdLength(data));
+		RoboContextDescriptorEntry entry = entriesById.get(probe);
+		if (entry != null && Arrays.equals(entry.heartbeat, 0, entry.heartbeat.length, data, 0, messageLength)) {
+			entry.lastAccess = now;
+			entry.address = sender;
+			return;
+		}
+
+		RoboContextDescriptor descriptor = HearbeatMessageCodec.decode(data);
+		byte[] heartbeat = Arrays.copyOf(data, messageLength);
+		if (entry == null) {
+			entry = new RoboContextDescriptorEntry();
+			entry.descriptor = descriptor;
+			entry.heartbeat = heartbeat;
+			entry.address = sender;
+			entry.lastAccess = now;
+			entriesById.put(probe.copy(), entry);
+			synchronized (this) {
+				entries.put(descriptor.getId(), entry);
+				// Rediscovered while still in use, possibly at a new address
+				remoteContexts.update(entry);
+			}
+			notifyListeners(LookupServiceListener::contextAdded, descriptor);
+		} else {
+			synchronized (this) {
+				entry.descriptor = descriptor;
+				entry.heartbeat = heartbeat;
+				entry.address = sender;
+				entry.lastAccess = now;
+				// May now be reached at a different address
+				remoteContexts.update(entry);
+			}
+			notifyListeners(LookupServiceListener::contextUpdated, descriptor);
+		}
+	}
+
+	/**
+	 * Removes the entries which have missed too many heartbeats. Only called
+	 * by the thread receiving heartbeats, or by tests.
+	 */
+	void removeExpiredEntries(long now) {
+		if (now < nextExpiryCheck) {
+			return;
+		}
+		nextExpiryCheck = now + EXPIRY_CHECK_INTERVAL;
+		for (Iterator<RoboContextDescriptorEntry> iterator = entriesById.values().iterator(); iterator.hasNext();) {
+			RoboContextDescriptorEntry entry = iterator.next();
+			if (isExpired(entry, now)) {
+				iterator.remove();
+				String id = entry.descriptor.getId();
+				SimpleLoggingUtil.debug(getClass(), "Context " + id + " stopped sending heartbeats - removing it");
+				synchronized (this) {
+					remoteContexts.disconnect(id);
+					entries.remove(id, entry);
+				}
+				notifyListeners(LookupServiceListener::contextRemoved, entry.descriptor);
+			}
+		}
+	}
+
+	private boolean isExpired(RoboContextDescriptorEntry entry, long now) {
+		return now - entry.lastAccess > entry.descriptor.getHeartBeatInterval() * missedHeartbeatsBeforeRemoval;
+	}
+
+	private void notifyListeners(BiConsumer<LookupServiceListener, RoboContextDescriptor> event, RoboContextDescriptor descriptor) {
+		for (LookupServiceListener listener : listeners) {
+			try {
+				event.accept(listener, descriptor);
+			} catch (RuntimeException e) {
+				SimpleLoggingUtil.error(getClass(), "Lookup service listener failed", e);
+			}
+		}
+	}
+
+	@Override
+	public void addListener(LookupServiceListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(LookupServiceListener listener) {
+		listeners.remove(listener);
 	}
 
 	@Override
@@ -146,22 +297,26 @@ class LookupServiceImpl implements LookupService {
 	}
 
 	@Override
-	public RoboContext getContext(String id) {
+	public synchronized RoboContext getContext(String id) {
 		RoboContextDescriptorEntry entry = entries.get(id);
+		if (entry != null && !isExpired(entry, System.currentTimeMillis())) {
+			return remoteContexts.acquire(entry);
+		}
 		if (entry != null) {
-			return new ClientRemoteRoboContext(entry);
-		} else {
-			LocalRoboContextDescriptor localEntry = localContexts.getLocalDescriptor(id);
-			return localEntry != null ? localEntry.getContext() : null;
+			// Not removed yet, but no longer answering
+			return null;
 		}
+		LocalRoboContextDescriptor localEntry = localContexts.getLocalDescriptor(id);
+		return localEntry != null ? localEntry.getContext() : null;
 	}
 
 	@Override
 	public synchronized void start() throws IOException {
 		stop();
 		socket = new MulticastSocket(port);
+		socket.setSoTimeout(EXPIRY_CHECK_INTERVAL);
 		socket.joinGroup(InetAddress.getByName(address));
-		currentUpdater = new Updater();
+		currentUpdater = new Updater(socket);
 		Thread t = new Thread(currentUpdater, "LookupService listener");
 		t.setDaemon(true);
 		t.start();
@@ -173,6 +328,26 @@ class LookupServiceImpl implements LookupService {
 			currentUpdater.stop();
 			currentUpdater = null;
 		}
+		remoteContexts.clear();
+	}
+
+	/**
+	 * Outboxes are kept for as long as the lookup service, so that messages
+	 * are stored while the remote context is gone.
+	 */
+	private MessageOutbox getOutbox(String contextId) {
+		return outboxes.computeIfAbsent(contextId, id -> {
+			try {
+				return MessageOutbox.open(id, outboxConfiguration, MessageCodecRegistry.getDefault());
+			} catch (IOException e) {
+				SimpleLoggingUtil.error(getClass(), "Could not open outbox for " + id + " - proceeding without", e);
+				return null;
+			}
+		});
+	}
+
+	int getRemoteContextCount() {
+		return remoteContexts.size();
 	}
 
 	@Override
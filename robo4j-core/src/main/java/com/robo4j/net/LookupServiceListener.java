@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+/**
+ * Notified by a {@link LookupService} as remote contexts come and go.
+ * Notifications are delivered on the thread listening for heartbeats, so
+ * implementations must not block.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public interface LookupServiceListener {
+	/**
+	 * Called when a context is discovered.
+	 * 
+	 * @param descriptor
+	 *            the descriptor of the context.
+	 */
+	void contextAdded(RoboContextDescriptor descriptor);
+
+	/**
+	 * Called when the heartbeat of a known context changes, for example when
+	 * its metadata changes.
+	 * 
+	 * @param descriptor
+	 *            the new descriptor of the context.
+	 */
+	default void contextUpdated(RoboContextDescriptor descriptor) {
+	}
+
+	/**
+	 * Called when a context has missed too many heartbeats, and has been
+	 * removed.
+	 * 
+	 * @param descriptor
+	 *            the last descriptor of the context.
+	 */
+	void contextRemoved(RoboContextDescriptor descriptor);
+}
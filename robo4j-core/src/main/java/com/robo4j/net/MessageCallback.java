@@ -16,6 +16,8 @@
  */
 package com.robo4j.net;
 
+import com.robo4j.RoboReference;
+
 /**
  * Message callback interface for handling a received message.
  *
@@ -35,4 +37,17 @@ public interface MessageCallback {
 	 *            the message sent.
 	 */
 	void handleMessage(String sourceUuid, String id, Object message);
+
+	/**
+	 * Looks up a reference, to answer requests for its state and attributes
+	 * from remote contexts.
+	 * 
+	 * @param id
+	 *            the id of the reference.
+	 * @return the reference, or null if not available. The default
+	 *         implementation does not make any references available.
+	 */
+	default RoboReference<?> getReference(String id) {
+		return null;
+	}
 }
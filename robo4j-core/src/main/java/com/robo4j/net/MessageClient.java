@@ -16,26 +16,67 @@
  */
 package com.robo4j.net;
 
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.LifecycleState;
 import com.robo4j.RoboContext;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.jfr.RemoteMessageSendEvent;
 import com.robo4j.logging.SimpleLoggingUtil;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Message client. Normally used by RemoteRoboContext to communicate with a
  * discovered MessageServer.
+ * <p>
+ * The client first tries to open the connection with the binary protocol (see
+ * {@link MessageCodec}). Servers that do not understand it close the
+ * connection, in which case the client reconnects using the object stream
+ * protocol and keeps using it for that server.
+ * </p>
+ * <p>
+ * Messages are queued, and written by a dedicated writer thread, so that
+ * senders do not block on the socket. The writer coalesces the messages
+ * available into one write, optionally lingering for more (see
+ * {@link #KEY_LINGER}), until {@link #KEY_MAX_BATCH_BYTES} have been written.
+ * When the queue ({@link #KEY_SEND_QUEUE_SIZE}) is full, senders block until
+ * there is room again.
+ * </p>
+ * <p>
+ * With servers supporting
+ * {@link MessageProtocolConstants#PROTOCOL_VERSION_REQUESTS}, the state and
+ * attributes of remote references can be requested. Any number of requests
+ * can be in flight on the connection, and are matched with their responses
+ * by correlation id.
+ * </p>
  * 
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -44,8 +85,38 @@ public class MessageClient {
 	public final static String KEY_SO_TIMEOUT = "timeout";
 	public final static String KEY_KEEP_ALIVE = "keepAlive";
 	public final static String KEY_RETRIES = "retries";
+	/**
+	 * The highest protocol version to offer, see
+	 * {@link MessageProtocolConstants#PROTOCOL_VERSION}. Set to
+	 * {@link MessageProtocolConstants#PROTOCOL_VERSION_OBJECT_STREAM} to always
+	 * use the object stream protocol.
+	 */
+	public final static String KEY_PROTOCOL_VERSION = "protocolVersion";
+	/**
+	 * The number of messages which can be queued for sending.
+	 */
+	public final static String KEY_SEND_QUEUE_SIZE = "sendQueueSize";
+	/**
+	 * The time, in microseconds, to wait for more messages before writing a
+	 * batch. 0 only batches the messages already queued.
+	 */
+	public final static String KEY_LINGER = "lingerMicros";
+	/**
+	 * The number of bytes after which a batch is written.
+	 */
+	public final static String KEY_MAX_BATCH_BYTES = "maxBatchBytes";
+	/**
+	 * The time, in ms, after which requests to the server fail if not
+	 * answered.
+	 */
+	public final static String KEY_REQUEST_TIMEOUT = "requestTimeout";
 	public final static int DEFAULT_SO_TIMEOUT = 2000000;
 	public final static boolean DEFAULT_KEEP_ALIVE = true;
+	public final static int DEFAULT_SEND_QUEUE_SIZE = 1024;
+	public final static int DEFAULT_LINGER = 0;
+	public final static int DEFAULT_MAX_BATCH_BYTES = 64 * 1024;
+	public final static int DEFAULT_REQUEST_TIMEOUT = 10000;
+	private final static int HANDSHAKE_TIMEOUT = 5000;
 
 	/*
 	 * Executor for incoming messages from the server
@@ -59,42 +130,99 @@ public class MessageClient {
 		}
 	});
 
+	/*
+	 * Writer of the queued messages
+	 */
+	private final ExecutorService writerExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "MessageClient writer for " + messageServerURI);
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private record PendingMessage(String id, Object message, CompletableFuture<Void> future) {
+	}
+
+	private static final PendingMessage SHUTDOWN = new PendingMessage(null, null, null);
+
 	/*
 	 * Listening to incoming messages from the server, initiated by serialized
 	 * robo references.
 	 */
 	private class RemoteReferenceListener implements Runnable {
-		private Socket socket;
+		private volatile Socket socket;
+		private final DataInputStream binaryInput;
 		private volatile boolean quit;
 
-		public RemoteReferenceListener(Socket socket) {
+		public RemoteReferenceListener(Socket socket, DataInputStream binaryInput) {
 			this.socket = socket;
+			this.binaryInput = binaryInput;
 		}
 
 		@Override
 		public void run() {
+			if (binaryInput != null) {
+				runBinary();
+				return;
+			}
 			ObjectInputStream ois = getStream();
 			while (!quit) {
 				try {
 					String uuid = ois.readUTF();
 					String id = ois.readUTF();
 					Object message = ois.readObject();
-					RoboContext context = LookupServiceProvider.getDefaultLookupService().getContext(uuid);
-					if (context == null) {
-						SimpleLoggingUtil.debug(MessageClient.class,
-								"Failed to find recipient context " + uuid + " for message " + message);
+					deliver(uuid, id, message);
+				} catch (SocketTimeoutException e) {
+					// This will likely happen.
+					SimpleLoggingUtil.error(getClass(), e.getMessage());
+				} catch (Exception e) {
+					if (socket.isClosed()) {
+						return;
+					}
+					SimpleLoggingUtil.debug(MessageClient.class, "Message delivery failed for recipient", e);
+				}
+			}
+		}
+
+		private void runBinary() {
+			MessageFrameCodec frameCodec = new MessageFrameCodec(codecs);
+			while (!quit) {
+				try {
+					MessageFrameCodec.Frame frame = frameCodec.read(binaryInput, 2);
+					if (frame.message() instanceof RemoteResponse response) {
+						completeRequest(response);
 					} else {
-						context.getReference(id).sendMessage(message);
+						deliver(frame.addresses()[0], frame.addresses()[1], frame.message());
 					}
 				} catch (SocketTimeoutException e) {
 					// This will likely happen.
 					SimpleLoggingUtil.error(getClass(), e.getMessage());
+				} catch (MessageFrameCodec.UndecodableMessageException e) {
+					SimpleLoggingUtil.error(MessageClient.class, "Skipping message from " + messageServerURI, e);
+				} catch (IOException e) {
+					if (!quit) {
+						SimpleLoggingUtil.debug(MessageClient.class, "Connection to " + messageServerURI + " lost", e);
+						failRequests(e);
+					}
+					return;
 				} catch (Exception e) {
 					SimpleLoggingUtil.debug(MessageClient.class, "Message delivery failed for recipient", e);
 				}
 			}
 		}
 
+		private void deliver(String uuid, String id, Object message) {
+			RoboContext context = LookupServiceProvider.getDefaultLookupService().getContext(uuid);
+			if (context == null) {
+				SimpleLoggingUtil.debug(MessageClient.class,
+						"Failed to find recipient context " + uuid + " for message " + message);
+			} else {
+				context.getReference(id).sendMessage(message);
+			}
+		}
+
 		private ObjectInputStream getStream() {
 			try {
 				return new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
@@ -115,47 +243,451 @@ public class MessageClient {
 	private final String sourceUUID;
 	private Socket socket;
 	private ObjectOutputStream objectOutputStream;
+	private DataOutputStream dataOutputStream;
+	private MessageFrameCodec frameCodec;
+	private ByteCountingOutputStream byteCounter;
+	private final MessageCodecRegistry codecs;
+	private final int protocolVersion;
+	private boolean objectStreamOnly;
 	private Configuration configuration;
 	private int failCount;
 	private final int maxFailCount;
+	private final BlockingQueue<PendingMessage> sendQueue;
+	private final long lingerNanos;
+	private final int maxBatchBytes;
+	private final AtomicBoolean writerStarted = new AtomicBoolean();
+	private volatile boolean closed;
+	private volatile int negotiatedVersion;
+	private final long requestTimeout;
+	private final AtomicLong correlationIds = new AtomicLong();
+	private final Map<Long, CompletableFuture<Object>> pendingRequests = new ConcurrentHashMap<>();
 	private RemoteReferenceListener remoteReferenceListener;
 
 	public MessageClient(URI messageServerURI, String sourceUUID, Configuration configuration) {
+		this(messageServerURI, sourceUUID, configuration, MessageCodecRegistry.getDefault());
+	}
+
+	public MessageClient(URI messageServerURI, String sourceUUID, Configuration configuration,
+			MessageCodecRegistry codecs) {
 		this.messageServerURI = messageServerURI;
 		this.sourceUUID = sourceUUID;
 		this.configuration = configuration;
+		this.codecs = codecs;
 		this.maxFailCount = configuration.getInteger(KEY_RETRIES, 3);
+		this.protocolVersion = configuration.getInteger(KEY_PROTOCOL_VERSION,
+				MessageProtocolConstants.PROTOCOL_VERSION);
+		this.sendQueue = new ArrayBlockingQueue<>(configuration.getInteger(KEY_SEND_QUEUE_SIZE, DEFAULT_SEND_QUEUE_SIZE));
+		this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(configuration.getInteger(KEY_LINGER, DEFAULT_LINGER));
+		this.maxBatchBytes = configuration.getInteger(KEY_MAX_BATCH_BYTES, DEFAULT_MAX_BATCH_BYTES);
+		this.requestTimeout = configuration.getInteger(KEY_REQUEST_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
 	}
 
-	public void connect() throws UnknownHostException, IOException {
+	public synchronized void connect() throws UnknownHostException, IOException {
 		if (socket == null || socket.isClosed() || !socket.isConnected()) {
-//			socket = new Socket(messageServerURI.getHost(), messageServerURI.getPort());
-			socket = new Socket(messageServerURI.getHost(), messageServerURI.getPort());
-			socket.setKeepAlive(configuration.getBoolean(KEY_KEEP_ALIVE, DEFAULT_KEEP_ALIVE));
-			socket.setSoTimeout(configuration.getInteger(KEY_SO_TIMEOUT, DEFAULT_SO_TIMEOUT));
+			openSocket();
+		}
+		DataInputStream binaryInput = null;
+		if (!objectStreamOnly && protocolVersion >= MessageProtocolConstants.PROTOCOL_VERSION_BINARY) {
+			try {
+				binaryInput = handshakeBinary();
+			} catch (IOException e) {
+				// Servers only speaking the object stream protocol hang up on
+				// the binary magic
+				SimpleLoggingUtil.info(getClass(),
+						messageServerURI + " does not support the binary protocol - using object streams");
+				objectStreamOnly = true;
+				MessageServer.closeQuietly(socket);
+				openSocket();
+			}
 		}
-		objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		if (binaryInput == null) {
+			handshakeObjectStream();
+		}
+		remoteReferenceListener = new RemoteReferenceListener(socket, binaryInput);
+		remoteReferenceCallExecutor.execute(remoteReferenceListener);
+	}
+
+	/**
+	 * @return the protocol version negotiated with the server, or 0 if not
+	 *         connected yet.
+	 */
+	public int getProtocolVersion() {
+		return negotiatedVersion;
+	}
+
+	private void openSocket() throws IOException {
+		socket = new Socket(messageServerURI.getHost(), messageServerURI.getPort());
+		socket.setKeepAlive(configuration.getBoolean(KEY_KEEP_ALIVE, DEFAULT_KEEP_ALIVE));
+		socket.setSoTimeout(configuration.getInteger(KEY_SO_TIMEOUT, DEFAULT_SO_TIMEOUT));
+	}
+
+	private DataInputStream handshakeBinary() throws IOException {
+		byteCounter = new ByteCountingOutputStream(new BufferedOutputStream(socket.getOutputStream(), maxBatchBytes));
+		DataOutputStream out = new DataOutputStream(byteCounter);
+		out.writeShort(MessageProtocolConstants.MAGIC_BINARY);
+		out.writeByte(protocolVersion);
+		out.writeUTF(sourceUUID);
+		out.flush();
+
+		int soTimeout = socket.getSoTimeout();
+		socket.setSoTimeout(soTimeout == 0 ? HANDSHAKE_TIMEOUT : Math.min(soTimeout, HANDSHAKE_TIMEOUT));
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		int version;
+		try {
+			short magic = in.readShort();
+			version = in.readUnsignedByte();
+			if (magic != MessageProtocolConstants.MAGIC_BINARY || version < MessageProtocolConstants.PROTOCOL_VERSION_BINARY
+					|| version > protocolVersion) {
+				throw new IOException("Unexpected handshake reply " + magic + "/" + version);
+			}
+		} finally {
+			socket.setSoTimeout(soTimeout);
+		}
+		objectOutputStream = null;
+		dataOutputStream = out;
+		frameCodec = new MessageFrameCodec(codecs);
+		negotiatedVersion = version;
+		return in;
+	}
+
+	private void handshakeObjectStream() throws IOException {
+		// Counting below the object stream, so that the bytes are counted as
+		// the object stream flushes its block data at the end of each message
+		byteCounter = new ByteCountingOutputStream(new BufferedOutputStream(socket.getOutputStream(), maxBatchBytes));
+		objectOutputStream = new ObjectOutputStream(byteCounter);
 		objectOutputStream.writeShort(MessageProtocolConstants.MAGIC);
 		objectOutputStream.writeUTF(sourceUUID);
-		remoteReferenceListener = new RemoteReferenceListener(socket);
-		remoteReferenceCallExecutor.execute(remoteReferenceListener);
+		dataOutputStream = null;
+		frameCodec = null;
+		negotiatedVersion = MessageProtocolConstants.PROTOCOL_VERSION_OBJECT_STREAM;
 	}
 
+	/**
+	 * Sends a message, waiting until it has been written to the socket.
+	 * 
+	 * @param id
+	 *            the id of the recipient unit.
+	 * @param message
+	 *            the message to send.
+	 * @throws IOException
+	 *             if the message could not be sent.
+	 */
 	public void sendMessage(String id, Object message) throws IOException {
 		try {
-			deliverMessage(id, message);
-		} catch (IOException e) {
-			if (failCount < maxFailCount) {
-				failCount++;
+			sendMessageAsync(id, message).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while sending message to " + id);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioe) {
+				throw ioe;
+			}
+			throw new IOException("Failed to send message to " + id, e.getCause());
+		}
+	}
+
+	/**
+	 * Queues a message for sending. Blocks while the send queue is full.
+	 * 
+	 * @param id
+	 *            the id of the recipient unit.
+	 * @param message
+	 *            the message to send.
+	 * @return a future completed when the message has been written to the
+	 *         socket, or completed exceptionally with an {@link IOException}
+	 *         if it could not be sent.
+	 */
+	public CompletableFuture<Void> sendMessageAsync(String id, Object message) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		if (closed) {
+			future.completeExceptionally(new IOException("Client for " + messageServerURI + " is shut down"));
+			return future;
+		}
+		if (writerStarted.compareAndSet(false, true)) {
+			writerExecutor.execute(this::runWriter);
+		}
+		try {
+			sendQueue.put(new PendingMessage(id, message, future));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(new InterruptedIOException("Interrupted while queueing message to " + id));
+		}
+		if (closed) {
+			// The writer may already be gone
+			failQueued();
+		}
+		return future;
+	}
+
+	/**
+	 * Reads attributes of a reference in the remote context, in one round
+	 * trip.
+	 * 
+	 * @param id
+	 *            the id of the reference.
+	 * @param attributes
+	 *            the attributes to read, or an empty collection to read all
+	 *            known attributes.
+	 * @return the attribute values, keyed by descriptors recreated from the
+	 *         response - look them up by name.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<Map<AttributeDescriptor<?>, Object>> getAttributes(String id,
+			Collection<? extends AttributeDescriptor<?>> attributes) {
+		return request(id, RemoteRequest.Type.ATTRIBUTES, List.copyOf(attributes))
+				.thenApply(value -> (Map<AttributeDescriptor<?>, Object>) value);
+	}
+
+	/**
+	 * @param id
+	 *            the id of the reference.
+	 * @return the attributes known by the reference in the remote context.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<Collection<AttributeDescriptor<?>>> getKnownAttributes(String id) {
+		return request(id, RemoteRequest.Type.KNOWN_ATTRIBUTES, List.of())
+				.thenApply(value -> ((Map<AttributeDescriptor<?>, Object>) value).keySet());
+	}
+
+	/**
+	 * @param id
+	 *            the id of the reference.
+	 * @return the state of the reference in the remote context.
+	 */
+	public CompletableFuture<LifecycleState> getState(String id) {
+		return request(id, RemoteRequest.Type.STATE, List.of()).thenApply(value -> LifecycleState.valueOf((String) value));
+	}
+
+	/**
+	 * @param id
+	 *            the id of the reference.
+	 * @return the name of the message type of the reference in the remote
+	 *         context.
+	 */
+	public CompletableFuture<String> getMessageTypeName(String id) {
+		return request(id, RemoteRequest.Type.MESSAGE_TYPE, List.of()).thenApply(value -> (String) value);
+	}
+
+	private CompletableFuture<Object> request(String id, RemoteRequest.Type type, List<AttributeDescriptor<?>> attributes) {
+		long correlationId = correlationIds.incrementAndGet();
+		CompletableFuture<Object> response = new CompletableFuture<>();
+		pendingRequests.put(correlationId, response);
+		response.orTimeout(requestTimeout, TimeUnit.MILLISECONDS)
+				.whenComplete((value, error) -> pendingRequests.remove(correlationId));
+		sendMessageAsync(id, new RemoteRequest(correlationId, type, attributes)).whenComplete((result, error) -> {
+			if (error != null) {
+				response.completeExceptionally(error);
+			}
+		});
+		return response;
+	}
+
+	private void completeRequest(RemoteResponse response) {
+		CompletableFuture<Object> future = pendingRequests.remove(response.correlationId());
+		if (future == null) {
+			// Already timed out
+			return;
+		}
+		if (response.error() != null) {
+			future.completeExceptionally(new IOException(response.error()));
+		} else {
+			future.complete(response.value());
+		}
+	}
+
+	private void failRequests(Exception cause) {
+		for (Long correlationId : pendingRequests.keySet()) {
+			CompletableFuture<Object> future = pendingRequests.remove(correlationId);
+			if (future != null) {
+				future.completeExceptionally(cause);
+			}
+		}
+	}
+
+	private void runWriter() {
+		List<PendingMessage> batch = new ArrayList<>();
+		try {
+			boolean shutdown = false;
+			while (!shutdown) {
+				PendingMessage first = sendQueue.take();
+				if (first == SHUTDOWN) {
+					break;
+				}
+				shutdown = writeBatch(first, batch);
+			}
+		} catch (InterruptedException e) {
+			// Shut down
+		}
+		closed = true;
+		IOException closedException = new IOException("Client for " + messageServerURI + " is shut down");
+		batch.forEach(pending -> pending.future().completeExceptionally(closedException));
+		failQueued();
+	}
+
+	/**
+	 * Writes the first message, and whatever else can be sent along with it,
+	 * with a single flush. Batches failing on the connection are retried on a
+	 * new connection. A message which cannot be encoded only fails itself.
+	 * 
+	 * @return true if the shutdown marker was found while batching.
+	 */
+	private boolean writeBatch(PendingMessage first, List<PendingMessage> batch) throws InterruptedException {
+		long deadline = System.nanoTime() + lingerNanos;
+		boolean shutdown = false;
+		IOException failure = null;
+		long batchBytes = 0;
+		PendingMessage next = first;
+		while (true) {
+			try {
+				batchBytes += deliverMessage(next.id(), next.message());
+				batch.add(next);
+			} catch (MessageFrameCodec.UnencodableMessageException e) {
+				next.future().completeExceptionally(e);
+				if (frameCodec == null) {
+					// The object stream is aborted, the rest of the batch is
+					// written again on a new connection
+					failure = e;
+					break;
+				}
+			} catch (IOException e) {
+				batch.add(next);
+				failure = e;
+				break;
+			}
+			if (batchBytes >= maxBatchBytes) {
+				break;
+			}
+			long remaining = deadline - System.nanoTime();
+			next = remaining > 0 ? sendQueue.poll(remaining, TimeUnit.NANOSECONDS) : sendQueue.poll();
+			if (next == null) {
+				break;
+			}
+			if (next == SHUTDOWN) {
+				shutdown = true;
+				break;
+			}
+		}
+		if (failure == null) {
+			failure = flushQuietly();
+		}
+		while (failure != null && failCount < maxFailCount) {
+			failCount++;
+			failure = retry(batch);
+		}
+		failCount = 0;
+		for (PendingMessage pending : batch) {
+			if (failure == null) {
+				pending.future().complete(null);
+			} else {
+				pending.future().completeExceptionally(failure);
+			}
+		}
+		batch.clear();
+		return shutdown;
+	}
+
+	private IOException retry(List<PendingMessage> batch) {
+		try {
+			synchronized (this) {
+				if (remoteReferenceListener != null) {
+					remoteReferenceListener.shutdown();
+				}
+				MessageServer.closeQuietly(socket);
 				connect();
-				sendMessage(id, message);
+			}
+			Iterator<PendingMessage> iterator = batch.iterator();
+			while (iterator.hasNext()) {
+				PendingMessage pending = iterator.next();
+				try {
+					deliverMessage(pending.id(), pending.message());
+				} catch (MessageFrameCodec.UnencodableMessageException e) {
+					// Not encodable on the new connection, which may use the
+					// other protocol
+					pending.future().completeExceptionally(e);
+					iterator.remove();
+					if (frameCodec == null) {
+						return e;
+					}
+				}
+			}
+		} catch (IOException e) {
+			return e;
+		}
+		return flushQuietly();
+	}
+
+	private IOException flushQuietly() {
+		try {
+			if (frameCodec != null) {
+				dataOutputStream.flush();
 			} else {
-				throw e;
+				objectOutputStream.flush();
 			}
+			return null;
+		} catch (IOException e) {
+			return e;
 		}
 	}
 
-	private void deliverMessage(String id, Object message) throws IOException {
+	private void failQueued() {
+		IOException closedException = new IOException("Client for " + messageServerURI + " is shut down");
+		PendingMessage pending;
+		while ((pending = sendQueue.poll()) != null) {
+			if (pending != SHUTDOWN) {
+				pending.future().completeExceptionally(closedException);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes written. For the object stream protocol
+	 *         this is approximate, since the object stream buffers block data.
+	 */
+	private long deliverMessage(String id, Object message) throws IOException {
+		if (!isConnected()) {
+			connect();
+		}
+		if (message instanceof RemoteRequest request
+				&& negotiatedVersion < MessageProtocolConstants.PROTOCOL_VERSION_REQUESTS) {
+			CompletableFuture<Object> response = pendingRequests.remove(request.correlationId());
+			if (response != null) {
+				response.completeExceptionally(new UnsupportedOperationException(
+						messageServerURI + " does not support requests (protocol version " + negotiatedVersion + ")"));
+			}
+			return 0;
+		}
+		long startCount = byteCounter.getCount();
+		RemoteMessageSendEvent event = new RemoteMessageSendEvent();
+		if (!event.isEnabled()) {
+			writeMessage(id, message);
+			return byteCounter.getCount() - startCount;
+		}
+		event.begin();
+		writeMessage(id, message);
+		event.end();
+		long bytes = byteCounter.getCount() - startCount;
+		if (event.shouldCommit()) {
+			event.setTargetUri(messageServerURI.toString());
+			event.setUnitId(id);
+			event.setMessageType(message.getClass());
+			event.setBytes(bytes);
+			event.commit();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes the message without flushing. A message which cannot be encoded
+	 * fails with an {@link MessageFrameCodec.UnencodableMessageException}. For
+	 * the object stream protocol this is only found out while writing it,
+	 * which aborts the stream. Servers only speaking the object stream
+	 * protocol close the connection on that.
+	 */
+	private void writeMessage(String id, Object message) throws IOException {
+		if (frameCodec != null) {
+			frameCodec.write(dataOutputStream, message, id);
+			return;
+		}
 		objectOutputStream.writeUTF(id);
 		if (message instanceof String) {
 			objectOutputStream.writeByte(MessageProtocolConstants.MOD_UTF8);
@@ -185,24 +717,76 @@ public class MessageClient {
 			objectOutputStream.writeChar((Character) message);
 		} else {
 			objectOutputStream.writeByte(MessageProtocolConstants.OBJECT);
-			objectOutputStream.writeObject(message);
+			try {
+				objectOutputStream.writeObject(message);
+			} catch (IOException e) {
+				if (isSerializable(message)) {
+					throw e;
+				}
+				throw new MessageFrameCodec.UnencodableMessageException(
+						"Could not serialize message of type " + message.getClass().getName(), e);
+			}
+		}
+	}
+
+	/**
+	 * Serializes the message on its own, to tell a message which cannot be
+	 * serialized from a failing connection. Only done after writing the
+	 * message failed.
+	 */
+	private static boolean isSerializable(Object message) {
+		try (ObjectOutputStream out = new ObjectOutputStream(OutputStream.nullOutputStream())) {
+			out.writeObject(message);
+			return true;
+		} catch (IOException e) {
+			return false;
 		}
-		objectOutputStream.flush();
 	}
 
 	public boolean isConnected() {
-		return socket != null && socket.isConnected();
+		Socket current = socket;
+		return current != null && current.isConnected() && !current.isClosed();
 	}
 
+	/**
+	 * Shuts down the client. Messages already queued are written before the
+	 * connection is closed, if possible.
+	 */
 	public void shutdown() {
+		closed = true;
 		try {
-			objectOutputStream.flush();
-			objectOutputStream.close();
+			if (!sendQueue.offer(SHUTDOWN, 1, TimeUnit.SECONDS)) {
+				writerExecutor.shutdownNow();
+			}
+			writerExecutor.shutdown();
+			if (!writerExecutor.awaitTermination(2, TimeUnit.SECONDS)) {
+				writerExecutor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			writerExecutor.shutdownNow();
+		}
+		failQueued();
+		synchronized (this) {
+			closeConnection();
+		}
+		failRequests(new IOException("Client for " + messageServerURI + " is shut down"));
+	}
+
+	private void closeConnection() {
+		if (remoteReferenceListener != null) {
 			remoteReferenceListener.shutdown();
-			remoteReferenceCallExecutor.shutdown();
-			socket.close();
+		}
+		remoteReferenceCallExecutor.shutdown();
+		try {
+			if (frameCodec != null) {
+				dataOutputStream.close();
+			} else if (objectOutputStream != null) {
+				objectOutputStream.close();
+			}
 		} catch (IOException e) {
 			// Do not care.
 		}
+		MessageServer.closeQuietly(socket);
 	}
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes and decodes messages of a specific type for the binary remote
+ * messaging protocol. Codecs are registered with a
+ * {@link MessageCodecRegistry}, either explicitly or by providing them as
+ * services.
+ * 
+ * <p>
+ * The id of the codec identifies the schema on the wire, so the same id must
+ * be used for the same encoding on both ends of a connection, and the
+ * encoding must not change without changing the id. Ids 1-999 are reserved
+ * for Robo4J.
+ * </p>
+ * 
+ * @param <T>
+ *            the type of message handled.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public interface MessageCodec<T> {
+	/**
+	 * @return the id of the codec, between 1 and 32767.
+	 */
+	int getId();
+
+	/**
+	 * @return the exact class of the messages handled by the codec.
+	 */
+	Class<T> getMessageType();
+
+	/**
+	 * Encodes a message.
+	 * 
+	 * @param message
+	 *            the message to encode.
+	 * @param out
+	 *            where to write the encoded message.
+	 * @throws IOException
+	 *             if the message could not be written.
+	 */
+	void encode(T message, DataOutput out) throws IOException;
+
+	/**
+	 * Decodes a message.
+	 * 
+	 * @param in
+	 *            where to read the encoded message from.
+	 * @return the decoded message.
+	 * @throws IOException
+	 *             if the message could not be read.
+	 */
+	T decode(DataInput in) throws IOException;
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.logging.SimpleLoggingUtil;
+
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the {@link MessageCodec}s available for the binary remote
+ * messaging protocol. The default registry is populated with the codecs
+ * provided as services (see {@link ServiceLoader}). Messages without a codec
+ * are sent using Java serialization.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class MessageCodecRegistry {
+	private static final int MAX_ID = Short.MAX_VALUE;
+	private static final MessageCodecRegistry DEFAULT = createDefault();
+
+	private final Map<Class<?>, MessageCodec<?>> codecsByType = new ConcurrentHashMap<>();
+	private final Map<Integer, MessageCodec<?>> codecsById = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates an empty registry. Use {@link #getDefault()} for the registry
+	 * populated with the codecs provided as services.
+	 */
+	public MessageCodecRegistry() {
+	}
+
+	/**
+	 * @return the registry used by default for remote messaging.
+	 */
+	public static MessageCodecRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Registers a codec.
+	 * 
+	 * @param codec
+	 *            the codec to register.
+	 * @throws IllegalArgumentException
+	 *             if the id of the codec is out of range, or if there already
+	 *             is a codec with the same id or for the same type.
+	 */
+	public synchronized void register(MessageCodec<?> codec) {
+		int id = codec.getId();
+		if (id < 1 || id > MAX_ID) {
+			throw new IllegalArgumentException("Codec id out of range: " + id);
+		}
+		MessageCodec<?> existing = codecsById.get(id);
+		if (existing != null) {
+			throw new IllegalArgumentException("Codec id " + id + " for " + codec.getMessageType().getName()
+					+ " already used for " + existing.getMessageType().getName());
+		}
+		if (codecsByType.containsKey(codec.getMessageType())) {
+			throw new IllegalArgumentException("There already is a codec for " + codec.getMessageType().getName());
+		}
+		codecsById.put(id, codec);
+		codecsByType.put(codec.getMessageType(), codec);
+	}
+
+	/**
+	 * Returns the codec for messages of the exact specified type.
+	 * 
+	 * @param type
+	 *            the type of message.
+	 * @param <T>
+	 *            the type of message.
+	 * @return the codec, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> MessageCodec<T> getCodec(Class<T> type) {
+		return (MessageCodec<T>) codecsByType.get(type);
+	}
+
+	/**
+	 * Returns the codec with the specified id.
+	 * 
+	 * @param id
+	 *            the id of the codec.
+	 * @return the codec, or null if there is none.
+	 */
+	public MessageCodec<?> getCodec(int id) {
+		return codecsById.get(id);
+	}
+
+	private static MessageCodecRegistry createDefault() {
+		MessageCodecRegistry registry = new MessageCodecRegistry();
+		try {
+			for (MessageCodec<?> codec : ServiceLoader.load(MessageCodec.class)) {
+				try {
+					registry.register(codec);
+				} catch (IllegalArgumentException e) {
+					SimpleLoggingUtil.error(MessageCodecRegistry.class, "Could not register message codec", e);
+				}
+			}
+		} catch (ServiceConfigurationError e) {
+			SimpleLoggingUtil.error(MessageCodecRegistry.class, "Could not load message codecs", e);
+		}
+		return registry;
+	}
+}
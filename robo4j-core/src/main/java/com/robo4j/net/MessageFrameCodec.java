@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.DefaultAttributeDescriptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the frames of the binary remote messaging protocol. A frame
+ * is an int length, followed by that many bytes: a number of addresses (as
+ * modified UTF-8), a type tag (see {@link MessageProtocolConstants}) and the
+ * message. Messages without a {@link MessageCodec} are written using Java
+ * serialization, prefixed by their length. {@link RemoteRequest}s and
+ * {@link RemoteResponse}s have encodings of their own.
+ * 
+ * <p>
+ * Since the frames are length prefixed, a message which cannot be decoded is
+ * skipped without losing track of the stream (see
+ * {@link UndecodableMessageException}).
+ * </p>
+ * 
+ * <p>
+ * Not thread safe - each connection direction uses its own instance.
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class MessageFrameCodec {
+	static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+	// Longest string which is guaranteed to fit in modified UTF-8
+	private static final int MAX_UTF_CHARS = 65535 / 3;
+
+	private final MessageCodecRegistry codecs;
+	private final FrameBuffer writeBuffer = new FrameBuffer();
+	private final DataOutputStream writeData = new DataOutputStream(writeBuffer);
+	private final ByteArrayOutputStream objectBuffer = new ByteArrayOutputStream(256);
+	private byte[] readBuffer = new byte[256];
+	private boolean encodedReferences;
+
+	/**
+	 * A decoded frame.
+	 */
+	record Frame(String[] addresses, Object message, int size) {
+	}
+
+	/**
+	 * Thrown when a frame was read, but the message in it could not be
+	 * decoded. The stream is still usable.
+	 */
+	static final class UndecodableMessageException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		UndecodableMessageException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	/**
+	 * Thrown when a message could not be encoded. Nothing of the message has
+	 * been written, so the stream is still usable.
+	 */
+	static final class UnencodableMessageException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		UnencodableMessageException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	/**
+	 * Gives access to the encoded bytes without copying them.
+	 */
+	private static final class FrameBuffer extends ByteArrayOutputStream {
+		FrameBuffer() {
+			super(256);
+		}
+
+		byte[] array() {
+			return buf;
+		}
+	}
+
+	/**
+	 * Notes if a serialized message contains references, since these can
+	 * only be resolved by a connection which can also carry messages back.
+	 */
+	private final class ReferenceTrackingOutputStream extends ObjectOutputStream {
+		ReferenceTrackingOutputStream(ByteArrayOutputStream out) throws IOException {
+			super(out);
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof ReferenceDescriptor) {
+				encodedReferences = true;
+			}
+			return obj;
+		}
+	}
+
+	MessageFrameCodec(MessageCodecRegistry codecs) {
+		this.codecs = codecs;
+	}
+
+	/**
+	 * Writes a frame. Does not flush. The message is encoded before anything
+	 * is written.
+	 * 
+	 * @return the number of bytes written.
+	 * @throws UnencodableMessageException
+	 *             if the message could not be encoded.
+	 */
+	int write(DataOutputStream out, Object message, String... addresses) throws IOException {
+		int size = encode(message, addresses);
+		out.writeInt(size);
+		writeBuffer.writeTo(out);
+		return size + Integer.BYTES;
+	}
+
+	/**
+	 * Encodes a frame, without the length, into the buffer available from
+	 * {@link #getEncoded()}.
+	 * 
+	 * @return the number of bytes encoded.
+	 * @throws UnencodableMessageException
+	 *             if the message could not be encoded.
+	 */
+	int encode(Object message, String... addresses) throws UnencodableMessageException {
+		writeBuffer.reset();
+		encodedReferences = false;
+		try {
+			for (String address : addresses) {
+				writeData.writeUTF(address);
+			}
+			writeMessage(message);
+			writeData.flush();
+		} catch (IOException e) {
+			// Only written to memory, so this is the message failing to encode
+			throw new UnencodableMessageException("Could not encode message of type " + message.getClass().getName(), e);
+		}
+		int size = writeBuffer.size();
+		if (size > MAX_FRAME_SIZE) {
+			throw new UnencodableMessageException(
+					"Message of type " + message.getClass().getName() + " too large: " + size + " bytes", null);
+		}
+		return size;
+	}
+
+	/**
+	 * @return the buffer holding the last frame encoded. Only valid until the
+	 *         next frame is encoded.
+	 */
+	byte[] getEncoded() {
+		return writeBuffer.array();
+	}
+
+	/**
+	 * @return true if the last frame encoded contains serialized references.
+	 */
+	boolean hasEncodedReferences() {
+		return encodedReferences;
+	}
+
+	/**
+	 * Reads a frame.
+	 */
+	Frame read(DataInputStream in, int addressCount) throws IOException {
+		int size = in.readInt();
+		if (size < 0 || size > MAX_FRAME_SIZE) {
+			throw new IOException("Bad frame size " + size);
+		}
+		ensureReadCapacity(size);
+		in.readFully(readBuffer, 0, size);
+		return decode(size, addressCount);
+	}
+
+	/**
+	 * Reads a frame, without the length, from a buffer.
+	 */
+	Frame read(ByteBuffer source, int index, int size, int addressCount) throws IOException {
+		ensureReadCapacity(size);
+		source.get(index, readBuffer, 0, size);
+		return decode(size, addressCount);
+	}
+
+	private void ensureReadCapacity(int size) {
+		if (readBuffer.length < size) {
+			readBuffer = new byte[Math.max(size, readBuffer.length * 2)];
+		}
+	}
+
+	private Frame decode(int size, int addressCount) throws IOException {
+		DataInputStream frameData = new DataInputStream(new ByteArrayInputStream(readBuffer, 0, size));
+		String[] addresses = new String[addressCount];
+		for (int i = 0; i < addressCount; i++) {
+			addresses[i] = frameData.readUTF();
+		}
+		try {
+			return new Frame(addresses, readMessage(frameData), size + Integer.BYTES);
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			throw new UndecodableMessageException("Could not decode message for " + String.join("/", addresses), e);
+		}
+	}
+
+	private void writeMessage(Object message) throws IOException {
+		if (message instanceof RemoteRequest request) {
+			writeRequest(request);
+		} else if (message instanceof RemoteResponse response) {
+			writeResponse(response);
+		} else {
+			writeValue(message);
+		}
+	}
+
+	private void writeRequest(RemoteRequest request) throws IOException {
+		writeData.writeByte(MessageProtocolConstants.REQUEST);
+		writeData.writeLong(request.correlationId());
+		writeData.writeByte(request.type().ordinal());
+		writeData.writeShort(request.attributes().size());
+		for (AttributeDescriptor<?> descriptor : request.attributes()) {
+			writeDescriptor(descriptor);
+		}
+	}
+
+	private void writeResponse(RemoteResponse response) throws IOException {
+		writeData.writeByte(MessageProtocolConstants.RESPONSE);
+		writeData.writeLong(response.correlationId());
+		writeData.writeBoolean(response.error() == null);
+		if (response.error() != null) {
+			writeData.writeUTF(response.error());
+		} else if (response.value() instanceof Map<?, ?> attributes) {
+			writeData.writeByte(MessageProtocolConstants.ATTRIBUTES);
+			writeData.writeShort(attributes.size());
+			for (Map.Entry<?, ?> entry : attributes.entrySet()) {
+				writeDescriptor((AttributeDescriptor<?>) entry.getKey());
+				writeValue(entry.getValue());
+			}
+		} else {
+			writeValue(response.value());
+		}
+	}
+
+	private void writeDescriptor(AttributeDescriptor<?> descriptor) throws IOException {
+		writeData.writeUTF(descriptor.getAttributeName());
+		writeData.writeUTF(descriptor.getAttributeType().getName());
+	}
+
+	private void writeValue(Object message) throws IOException {
+		if (message == null) {
+			writeData.writeByte(MessageProtocolConstants.NULL);
+		} else if (message instanceof String string && string.length() <= MAX_UTF_CHARS) {
+			writeData.writeByte(MessageProtocolConstants.MOD_UTF8);
+			writeData.writeUTF(string);
+		} else if (message instanceof Float value) {
+			writeData.writeByte(MessageProtocolConstants.FLOAT);
+			writeData.writeFloat(value);
+		} else if (message instanceof Integer value) {
+			writeData.writeByte(MessageProtocolConstants.INT);
+			writeData.writeInt(value);
+		} else if (message instanceof Double value) {
+			writeData.writeByte(MessageProtocolConstants.DOUBLE);
+			writeData.writeDouble(value);
+		} else if (message instanceof Long value) {
+			writeData.writeByte(MessageProtocolConstants.LONG);
+			writeData.writeLong(value);
+		} else if (message instanceof Byte value) {
+			writeData.writeByte(MessageProtocolConstants.BYTE);
+			writeData.writeByte(value);
+		} else if (message instanceof Short value) {
+			writeData.writeByte(MessageProtocolConstants.SHORT);
+			writeData.writeShort(value);
+		} else if (message instanceof Character value) {
+			writeData.writeByte(MessageProtocolConstants.CHAR);
+			writeData.writeChar(value);
+		} else {
+			writeEncoded(message);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void writeEncoded(T message) throws IOException {
+		MessageCodec<T> codec = (MessageCodec<T>) codecs.getCodec(message.getClass());
+		if (codec != null) {
+			writeData.writeByte(MessageProtocolConstants.CODEC);
+			writeData.writeShort(codec.getId());
+			codec.encode(message, writeData);
+		} else {
+			objectBuffer.reset();
+			ObjectOutputStream objectOutputStream = new ReferenceTrackingOutputStream(objectBuffer);
+			objectOutputStream.writeObject(message);
+			objectOutputStream.flush();
+			writeData.writeByte(MessageProtocolConstants.OBJECT);
+			writeData.writeInt(objectBuffer.size());
+			objectBuffer.writeTo(writeData);
+		}
+	}
+
+	private Object readMessage(DataInputStream in) throws IOException, ClassNotFoundException {
+		byte dataType = in.readByte();
+		switch (dataType) {
+		case MessageProtocolConstants.REQUEST:
+			return readRequest(in);
+		case MessageProtocolConstants.RESPONSE:
+			return readResponse(in);
+		default:
+			return readValue(dataType, in);
+		}
+	}
+
+	private RemoteRequest readRequest(DataInputStream in) throws IOException {
+		long correlationId = in.readLong();
+		int type = in.readUnsignedByte();
+		if (type >= RemoteRequest.Type.values().length) {
+			throw new IOException("Unknown request type " + type);
+		}
+		int count = in.readUnsignedShort();
+		List<AttributeDescriptor<?>> attributes = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			attributes.add(readDescriptor(in));
+		}
+		return new RemoteRequest(correlationId, RemoteRequest.Type.values()[type], attributes);
+	}
+
+	private RemoteResponse readResponse(DataInputStream in) throws IOException, ClassNotFoundException {
+		long correlationId = in.readLong();
+		if (!in.readBoolean()) {
+			return RemoteResponse.failure(correlationId, in.readUTF());
+		}
+		byte dataType = in.readByte();
+		if (dataType != MessageProtocolConstants.ATTRIBUTES) {
+			return new RemoteResponse(correlationId, readValue(dataType, in), null);
+		}
+		int count = in.readUnsignedShort();
+		Map<AttributeDescriptor<?>, Object> attributes = new LinkedHashMap<>(count * 2);
+		for (int i = 0; i < count; i++) {
+			AttributeDescriptor<?> descriptor = readDescriptor(in);
+			attributes.put(descriptor, readValue(in.readByte(), in));
+		}
+		return new RemoteResponse(correlationId, attributes, null);
+	}
+
+	private AttributeDescriptor<?> readDescriptor(DataInputStream in) throws IOException {
+		String name = in.readUTF();
+		String typeName = in.readUTF();
+		Class<?> type;
+		try {
+			type = Class.forName(typeName);
+		} catch (ClassNotFoundException e) {
+			// The type is not available here - the value may still be
+			type = Object.class;
+		}
+		return DefaultAttributeDescriptor.create(type, name);
+	}
+
+	private Object readValue(byte dataType, DataInputStream in) throws IOException, ClassNotFoundException {
+		switch (dataType) {
+		case MessageProtocolConstants.CODEC:
+			int id = in.readUnsignedShort();
+			MessageCodec<?> codec = codecs.getCodec(id);
+			if (codec == null) {
+				throw new IOException("No codec with id " + id);
+			}
+			return codec.decode(in);
+		case MessageProtocolConstants.OBJECT:
+			int length = in.readInt();
+			if (length < 0 || length > in.available()) {
+				throw new IOException("Bad serialized object length " + length);
+			}
+			byte[] serialized = new byte[length];
+			in.readFully(serialized);
+			return new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+		case MessageProtocolConstants.NULL:
+			return null;
+		case MessageProtocolConstants.MOD_UTF8:
+			return in.readUTF();
+		case MessageProtocolConstants.BYTE:
+			return in.readByte();
+		case MessageProtocolConstants.SHORT:
+			return in.readShort();
+		case MessageProtocolConstants.FLOAT:
+			return in.readFloat();
+		case MessageProtocolConstants.INT:
+			return in.readInt();
+		case MessageProtocolConstants.DOUBLE:
+			return in.readDouble();
+		case MessageProtocolConstants.LONG:
+			return in.readLong();
+		case MessageProtocolConstants.CHAR:
+			return in.readChar();
+		default:
+			throw new IOException("The type with id " + dataType + " is not supported!");
+		}
+	}
+}
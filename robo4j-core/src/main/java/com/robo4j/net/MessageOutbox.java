@@ -0,0 +1,621 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.configuration.Configuration;
+import com.robo4j.logging.SimpleLoggingUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Store-and-forward outbox for the messages to a remote context. Messages
+ * which could not be sent, e.g. since the link to the remote context is
+ * down, are appended to a log of memory mapped segment files, and sent again,
+ * in order, once a connection can be made. The log is kept on disk, so
+ * messages survive a restart of the sending process.
+ * 
+ * <p>
+ * While the outbox holds messages, new messages are appended to it as well,
+ * to keep them in order. A message sent directly is stored before it is
+ * sent, and only removed once sent, so that it keeps its place if sending
+ * fails. Messages written to a connection which is lost
+ * right after may be sent twice. Messages older than the time to live (see
+ * {@link #KEY_TIME_TO_LIVE}) are dropped, and for message types marked as
+ * latest only (see {@link #KEY_LATEST_ONLY}), only the last message to each
+ * recipient is kept. Messages containing references are not stored, as the
+ * references are not valid after a reconnect.
+ * </p>
+ * 
+ * <p>
+ * The outbox is enabled by giving the {@link DefaultLookupServiceBuilder} an
+ * outbox configuration. There is one outbox per remote context id, shared by
+ * all the contexts created for it, so that messages are kept while the
+ * remote context is not discovered.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class MessageOutbox implements AutoCloseable {
+	/**
+	 * Configuration key for the directory to keep the outboxes in. Each
+	 * remote context gets a sub directory of its own. Required.
+	 */
+	public static final String KEY_DIRECTORY = "directory";
+	/**
+	 * Configuration key for how long, in ms, to keep a message before
+	 * dropping it. Defaults to 0, which means until sent.
+	 */
+	public static final String KEY_TIME_TO_LIVE = "timeToLive";
+	/**
+	 * Configuration key for the largest message, in bytes, to store. Larger
+	 * messages are dropped. Defaults to 64 KiB.
+	 */
+	public static final String KEY_MAX_MESSAGE_SIZE = "maxMessageSize";
+	/**
+	 * Configuration key for the max size, in bytes, of the outbox of a remote
+	 * context. When full, the oldest messages are dropped. Defaults to 64 MiB.
+	 */
+	public static final String KEY_MAX_SIZE = "maxSize";
+	/**
+	 * Configuration key for the size, in bytes, of each segment file.
+	 * Defaults to 1 MiB.
+	 */
+	public static final String KEY_SEGMENT_SIZE = "segmentSize";
+	/**
+	 * Configuration key for a comma separated list of the fully qualified
+	 * names of the message types for which only the latest message to each
+	 * recipient is kept, e.g. telemetry.
+	 */
+	public static final String KEY_LATEST_ONLY = "latestOnly";
+	/**
+	 * Configuration key for how long, in ms, to wait before trying again when
+	 * the stored messages could not be sent. Defaults to 1000.
+	 */
+	public static final String KEY_RETRY_INTERVAL = "retryInterval";
+
+	private static final int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024;
+	private static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+	private static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+	private static final long DEFAULT_RETRY_INTERVAL = 1000;
+	// Max number of messages sent before waiting for them to be written
+	private static final int SEND_WINDOW = 64;
+	private static final long SEND_TIMEOUT = 30000;
+
+	// "R4JO"
+	private static final int MAGIC = 0x52344A4F;
+	private static final String SEGMENT_SUFFIX = ".log";
+	// Segment header - the magic, and the offset of the first record not yet
+	// sent
+	private static final int READ_OFFSET_OFFSET = 4;
+	private static final int SEGMENT_HEADER_SIZE = 8;
+	// Record header - the length of the record (written last), the expiry
+	// time, the state and the latest only key
+	private static final int EXPIRES_OFFSET = 4;
+	private static final int STATE_OFFSET = 12;
+	private static final int KEY_LENGTH_OFFSET = 13;
+	private static final int RECORD_HEADER_SIZE = 15;
+	private static final byte STATE_PENDING = 0;
+	private static final byte STATE_SUPERSEDED = 1;
+
+	private final String contextId;
+	private final Path directory;
+	private final long timeToLive;
+	private final int maxMessageSize;
+	private final int maxSegments;
+	private final int segmentSize;
+	private final Set<String> latestOnly;
+	private final long retryInterval;
+	private final MessageFrameCodec frameCodec;
+
+	// All below guarded by this
+	private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+	// Where the last pending message for each latest only key is
+	private final Map<String, Location> latest = new HashMap<>();
+	private long nextSegmentSequence;
+	private int pendingCount;
+	private MessageClient client;
+	private boolean draining;
+	// A message is being sent directly, the drain waits for it
+	private boolean sending;
+	private boolean closed;
+
+	private static final class Segment {
+		private final long sequence;
+		private final Path path;
+		private final MappedByteBuffer buffer;
+		private int writeOffset = SEGMENT_HEADER_SIZE;
+		private int pendingCount;
+
+		Segment(long sequence, Path path, MappedByteBuffer buffer) {
+			this.sequence = sequence;
+			this.path = path;
+			this.buffer = buffer;
+		}
+
+		int getReadOffset() {
+			return buffer.getInt(READ_OFFSET_OFFSET);
+		}
+	}
+
+	private record Location(Segment segment, int offset) {
+	}
+
+	/**
+	 * A stored message about to be sent. The message is null for messages
+	 * to skip.
+	 */
+	private record StoredMessage(Location location, int length, String id, Object message) {
+	}
+
+	// Returned by append for messages which can not be stored
+	private static final StoredMessage UNSTORABLE = new StoredMessage(null, 0, null, null);
+
+	private MessageOutbox(String contextId, Path directory, Configuration configuration, MessageCodecRegistry codecs) {
+		this.contextId = contextId;
+		this.directory = directory;
+		this.timeToLive = configuration.getLong(KEY_TIME_TO_LIVE, 0L);
+		this.segmentSize = configuration.getInteger(KEY_SEGMENT_SIZE, DEFAULT_SEGMENT_SIZE);
+		this.maxMessageSize = Math.min(configuration.getInteger(KEY_MAX_MESSAGE_SIZE, DEFAULT_MAX_MESSAGE_SIZE),
+				segmentSize - SEGMENT_HEADER_SIZE - RECORD_HEADER_SIZE);
+		this.maxSegments = (int) Math.max(2, configuration.getLong(KEY_MAX_SIZE, DEFAULT_MAX_SIZE) / segmentSize);
+		this.retryInterval = configuration.getLong(KEY_RETRY_INTERVAL, DEFAULT_RETRY_INTERVAL);
+		this.latestOnly = parseTypeNames(configuration.getString(KEY_LATEST_ONLY, null));
+		this.frameCodec = new MessageFrameCodec(codecs);
+	}
+
+	/**
+	 * Opens the outbox for a remote context, with the messages stored by
+	 * earlier runs.
+	 * 
+	 * @param contextId
+	 *            the id of the remote context.
+	 * @param configuration
+	 *            the outbox configuration.
+	 * @param codecs
+	 *            the codecs to encode the messages with.
+	 */
+	static MessageOutbox open(String contextId, Configuration configuration, MessageCodecRegistry codecs) throws IOException {
+		String root = configuration.getString(KEY_DIRECTORY, null);
+		if (root == null) {
+			throw new IOException("No outbox directory configured");
+		}
+		Path directory = Path.of(root, toFileName(contextId));
+		Files.createDirectories(directory);
+		MessageOutbox outbox = new MessageOutbox(contextId, directory, configuration, codecs);
+		outbox.load();
+		return outbox;
+	}
+
+	/**
+	 * Sends a message using the attached client, or stores it if there is no
+	 * client, if messages are already waiting, or if the client fails to send
+	 * it.
+	 */
+	void send(String id, Object message) {
+		MessageClient client;
+		StoredMessage stored;
+		synchronized (this) {
+			client = this.client;
+			if (client == null || pendingCount > 0 || draining) {
+				if (append(id, message) == UNSTORABLE) {
+					SimpleLoggingUtil.error(getClass(),
+							"Messages with references can not be stored - dropping message to " + contextId + "/" + id);
+				}
+				return;
+			}
+			// Set first, so that storing the message does not start the drain
+			sending = true;
+			stored = append(id, message);
+			sending = stored != null && stored != UNSTORABLE;
+			if (stored == null) {
+				return;
+			}
+		}
+		if (stored == UNSTORABLE) {
+			// Not kept if sending fails
+			sendUnstored(client, id, message);
+			return;
+		}
+		client.sendMessageAsync(id, message).whenComplete((result, error) -> {
+			synchronized (this) {
+				sending = false;
+				if (error == null) {
+					consume(List.of(stored), 1);
+				} else {
+					SimpleLoggingUtil.debug(getClass(), "Keeping message to " + contextId + "/" + id + " in outbox: " + error.getMessage());
+				}
+				startDraining();
+			}
+		});
+	}
+
+	private void sendUnstored(MessageClient client, String id, Object message) {
+		client.sendMessageAsync(id, message).whenComplete((result, error) -> {
+			if (error != null) {
+				SimpleLoggingUtil.error(getClass(), "Failed to send message to " + contextId + "/" + id, error);
+			}
+		});
+	}
+
+	/**
+	 * Attaches the client to send with, and starts sending the stored
+	 * messages.
+	 */
+	synchronized void attach(MessageClient client) {
+		this.client = client;
+		startDraining();
+	}
+
+	/**
+	 * Detaches the client, if it is the one attached. Messages are stored
+	 * until another client is attached.
+	 */
+	synchronized void detach(MessageClient client) {
+		if (this.client == client) {
+			this.client = null;
+		}
+	}
+
+	/**
+	 * @return the number of messages waiting to be sent.
+	 */
+	synchronized int getPendingCount() {
+		return pendingCount;
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		client = null;
+		notifyAll();
+	}
+
+	/**
+	 * Stores a message.
+	 * 
+	 * @return the stored message, {@link #UNSTORABLE} for messages with
+	 *         references, or null if the message was dropped.
+	 */
+	private StoredMessage append(String id, Object message) {
+		// Guarded by this
+		if (closed) {
+			SimpleLoggingUtil.error(getClass(), "Outbox for " + contextId + " closed - dropping message to " + id);
+			return null;
+		}
+		try {
+			int size = frameCodec.encode(message, id);
+			if (frameCodec.hasEncodedReferences()) {
+				return UNSTORABLE;
+			}
+			String key = message != null && latestOnly.contains(message.getClass().getName()) ? id + '/' + message.getClass().getName()
+					: null;
+			byte[] keyBytes = key == null ? new byte[0] : key.getBytes(StandardCharsets.UTF_8);
+			int length = RECORD_HEADER_SIZE + keyBytes.length + size;
+			if (size > maxMessageSize || length + Integer.BYTES > segmentSize - SEGMENT_HEADER_SIZE) {
+				SimpleLoggingUtil.error(getClass(), "Message of " + size + " bytes too large for the outbox - dropping message to " + contextId + "/" + id);
+				return null;
+			}
+			Segment segment = segmentFor(length);
+			int offset = segment.writeOffset;
+			MappedByteBuffer buffer = segment.buffer;
+			buffer.putLong(offset + EXPIRES_OFFSET, timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0);
+			buffer.put(offset + STATE_OFFSET, STATE_PENDING);
+			buffer.putShort(offset + KEY_LENGTH_OFFSET, (short) keyBytes.length);
+			buffer.put(offset + RECORD_HEADER_SIZE, keyBytes);
+			buffer.put(offset + RECORD_HEADER_SIZE + keyBytes.length, frameCodec.getEncoded(), 0, size);
+			// Written last, so that a partially written record ends the log
+			buffer.putInt(offset, length);
+			segment.writeOffset += length;
+			segment.pendingCount++;
+			pendingCount++;
+			Location location = new Location(segment, offset);
+			if (key != null) {
+				supersede(latest.put(key, location));
+			}
+			startDraining();
+			return new StoredMessage(location, length, id, message);
+		} catch (IOException | RuntimeException e) {
+			SimpleLoggingUtil.error(getClass(), "Could not store message to " + contextId + "/" + id, e);
+			return null;
+		}
+	}
+
+	private void supersede(Location previous) {
+		if (previous != null && segments.contains(previous.segment()) && previous.offset() >= previous.segment().getReadOffset()) {
+			previous.segment().buffer.put(previous.offset() + STATE_OFFSET, STATE_SUPERSEDED);
+		}
+	}
+
+	private Segment segmentFor(int length) throws IOException {
+		Segment segment = segments.peekLast();
+		if (segment != null && segment.writeOffset + length + Integer.BYTES <= segmentSize) {
+			return segment;
+		}
+		if (segment != null && segment.pendingCount == 0) {
+			// Sent completely, only kept to append to
+			deleteSegment(segment);
+		}
+		if (segments.size() >= maxSegments) {
+			Segment oldest = segments.peekFirst();
+			SimpleLoggingUtil.error(getClass(),
+					"Outbox for " + contextId + " full - dropping " + oldest.pendingCount + " messages");
+			pendingCount -= oldest.pendingCount;
+			deleteSegment(oldest);
+		}
+		segment = createSegment(nextSegmentSequence++);
+		segments.addLast(segment);
+		return segment;
+	}
+
+	private Segment createSegment(long sequence) throws IOException {
+		Path path = directory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			buffer.putInt(READ_OFFSET_OFFSET, SEGMENT_HEADER_SIZE);
+			buffer.putInt(0, MAGIC);
+			return new Segment(sequence, path, buffer);
+		}
+	}
+
+	/**
+	 * Loads the segments left by earlier runs.
+	 */
+	private synchronized void load() throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+			stream.forEach(files::add);
+		}
+		Collections.sort(files);
+		for (Path file : files) {
+			Segment segment = loadSegment(file);
+			if (segment == null) {
+				SimpleLoggingUtil.error(getClass(), "Ignoring broken outbox segment " + file);
+				continue;
+			}
+			nextSegmentSequence = segment.sequence + 1;
+			if (segment.pendingCount == 0) {
+				Files.deleteIfExists(file);
+				continue;
+			}
+			segments.addLast(segment);
+			pendingCount += segment.pendingCount;
+		}
+	}
+
+	private Segment loadSegment(Path file) throws IOException {
+		long sequence;
+		try {
+			String name = file.getFileName().toString();
+			sequence = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			if (channel.size() < SEGMENT_HEADER_SIZE) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			Segment segment = new Segment(sequence, file, buffer);
+			int readOffset = segment.getReadOffset();
+			if (buffer.getInt(0) != MAGIC || readOffset < SEGMENT_HEADER_SIZE || readOffset > buffer.capacity()) {
+				return null;
+			}
+			int offset = SEGMENT_HEADER_SIZE;
+			while (offset + RECORD_HEADER_SIZE <= buffer.capacity()) {
+				int length = buffer.getInt(offset);
+				if (length < RECORD_HEADER_SIZE || offset + length > buffer.capacity()) {
+					break;
+				}
+				if (offset >= readOffset) {
+					segment.pendingCount++;
+					String key = readKey(buffer, offset);
+					if (key != null && buffer.get(offset + STATE_OFFSET) == STATE_PENDING) {
+						Location previous = latest.put(key, new Location(segment, offset));
+						if (previous != null) {
+							previous.segment().buffer.put(previous.offset() + STATE_OFFSET, STATE_SUPERSEDED);
+						}
+					}
+				}
+				offset += length;
+			}
+			segment.writeOffset = offset;
+			return segment;
+		}
+	}
+
+	private static String readKey(ByteBuffer buffer, int offset) {
+		int keyLength = buffer.getShort(offset + KEY_LENGTH_OFFSET);
+		if (keyLength == 0) {
+			return null;
+		}
+		byte[] key = new byte[keyLength];
+		buffer.get(offset + RECORD_HEADER_SIZE, key);
+		return new String(key, StandardCharsets.UTF_8);
+	}
+
+	private void startDraining() {
+		// Guarded by this
+		if (!draining && !sending && !closed && client != null && pendingCount > 0) {
+			draining = true;
+			Thread.ofVirtual().name("Outbox [" + contextId + "]").start(this::drain);
+		}
+	}
+
+	private void drain() {
+		try {
+			while (true) {
+				MessageClient client;
+				List<StoredMessage> window;
+				synchronized (this) {
+					client = this.client;
+					if (client == null || closed || pendingCount == 0) {
+						draining = false;
+						return;
+					}
+					window = peek(SEND_WINDOW);
+					if (window.isEmpty()) {
+						// Out of sync - nothing left to read
+						pendingCount = 0;
+						draining = false;
+						return;
+					}
+				}
+				int sent = send(client, window);
+				synchronized (this) {
+					consume(window, sent);
+					if (sent < window.size() && !closed) {
+						// Will likely not work right away either
+						wait(retryInterval);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			synchronized (this) {
+				draining = false;
+			}
+		} catch (RuntimeException e) {
+			SimpleLoggingUtil.error(getClass(), "Failed to send stored messages to " + contextId, e);
+			synchronized (this) {
+				draining = false;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of messages, from the start of the window, which
+	 *         were sent.
+	 */
+	private int send(MessageClient client, List<StoredMessage> window) throws InterruptedException {
+		List<Future<Void>> futures = new ArrayList<>(window.size());
+		for (StoredMessage stored : window) {
+			futures.add(stored.message() == null ? CompletableFuture.completedFuture(null)
+					: client.sendMessageAsync(stored.id(), stored.message()));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get(SEND_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (ExecutionException | TimeoutException e) {
+				SimpleLoggingUtil.debug(getClass(), "Could not send stored messages to " + contextId + ": " + e.getMessage());
+				return i;
+			}
+		}
+		return futures.size();
+	}
+
+	/**
+	 * Reads the next stored messages, in order. Messages which have expired,
+	 * have been superseded, or can not be decoded, are returned without a
+	 * message, to be skipped.
+	 */
+	private List<StoredMessage> peek(int max) {
+		List<StoredMessage> window = new ArrayList<>(max);
+		long now = System.currentTimeMillis();
+		for (Segment segment : segments) {
+			int offset = segment.getReadOffset();
+			while (offset < segment.writeOffset && window.size() < max) {
+				MappedByteBuffer buffer = segment.buffer;
+				int length = buffer.getInt(offset);
+				long expires = buffer.getLong(offset + EXPIRES_OFFSET);
+				Location location = new Location(segment, offset);
+				if (buffer.get(offset + STATE_OFFSET) == STATE_SUPERSEDED || (expires != 0 && expires < now)) {
+					window.add(new StoredMessage(location, length, null, null));
+				} else {
+					int frameOffset = RECORD_HEADER_SIZE + buffer.getShort(offset + KEY_LENGTH_OFFSET);
+					try {
+						MessageFrameCodec.Frame frame = frameCodec.read(buffer, offset + frameOffset, length - frameOffset, 1);
+						window.add(new StoredMessage(location, length, frame.addresses()[0], frame.message()));
+					} catch (IOException e) {
+						SimpleLoggingUtil.error(getClass(), "Dropping stored message to " + contextId + " which could not be decoded", e);
+						window.add(new StoredMessage(location, length, null, null));
+					}
+				}
+				offset += length;
+			}
+			if (window.size() >= max) {
+				break;
+			}
+		}
+		return window;
+	}
+
+	/**
+	 * Marks the first messages of the window as sent, unless the oldest
+	 * segments were dropped in the meantime.
+	 */
+	private void consume(List<StoredMessage> window, int count) {
+		for (int i = 0; i < count; i++) {
+			StoredMessage stored = window.get(i);
+			Segment segment = stored.location().segment();
+			if (!segments.contains(segment) || segment.getReadOffset() != stored.location().offset()) {
+				continue;
+			}
+			segment.buffer.putInt(READ_OFFSET_OFFSET, stored.location().offset() + stored.length());
+			segment.pendingCount--;
+			pendingCount--;
+			latest.values().remove(stored.location());
+			if (segment.pendingCount == 0 && segment != segments.peekLast()) {
+				deleteSegment(segment);
+			}
+		}
+	}
+
+	private void deleteSegment(Segment segment) {
+		segments.remove(segment);
+		try {
+			Files.deleteIfExists(segment.path);
+		} catch (IOException e) {
+			SimpleLoggingUtil.error(getClass(), "Could not delete outbox segment " + segment.path, e);
+		}
+	}
+
+	private static Set<String> parseTypeNames(String typeNames) {
+		if (typeNames == null || typeNames.isBlank()) {
+			return Collections.emptySet();
+		}
+		Set<String> names = new HashSet<>();
+		Arrays.stream(typeNames.split(",")).map(String::trim).filter(name -> !name.isEmpty()).forEach(names::add);
+		return names;
+	}
+
+	private static String toFileName(String contextId) {
+		return contextId.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+}
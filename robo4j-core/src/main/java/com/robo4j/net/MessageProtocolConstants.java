@@ -28,6 +28,33 @@ interface MessageProtocolConstants {
 	 */
 	int OBJECT = 0;
 
+	/**
+	 * Message is encoded by the {@link MessageCodec} with the id following the
+	 * tag. Only used in the binary protocol.
+	 */
+	int CODEC = 1;
+
+	/**
+	 * A request, answered with a {@link #RESPONSE} carrying the same
+	 * correlation id. Only used in the binary protocol.
+	 */
+	int REQUEST = 2;
+
+	/**
+	 * The response to a {@link #REQUEST}. Only used in the binary protocol.
+	 */
+	int RESPONSE = 3;
+
+	/**
+	 * Attribute descriptors and their values. Only used in responses.
+	 */
+	int ATTRIBUTES = 4;
+
+	/**
+	 * A null value. Only used in responses.
+	 */
+	int NULL = 5;
+
 	/**
 	 * Message is a byte.
 	 */
@@ -74,4 +101,33 @@ interface MessageProtocolConstants {
 	int REFERENCE = 64;
 
 	short MAGIC = (short) 0xC0FE;
+
+	/**
+	 * Opens the handshake of the binary protocol. Sent raw, instead of the
+	 * object stream header, so that it cannot be mistaken for the original
+	 * protocol.
+	 */
+	short MAGIC_BINARY = (short) 0xC0DE;
+
+	/**
+	 * The original protocol, using an object stream.
+	 */
+	int PROTOCOL_VERSION_OBJECT_STREAM = 1;
+
+	/**
+	 * The binary protocol, using length prefixed frames and
+	 * {@link MessageCodec}s.
+	 */
+	int PROTOCOL_VERSION_BINARY = 2;
+
+	/**
+	 * The binary protocol, with requests for the state and attributes of
+	 * remote references.
+	 */
+	int PROTOCOL_VERSION_REQUESTS = 3;
+
+	/**
+	 * The highest protocol version supported.
+	 */
+	int PROTOCOL_VERSION = PROTOCOL_VERSION_REQUESTS;
 }
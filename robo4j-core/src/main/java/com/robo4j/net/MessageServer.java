@@ -16,23 +16,70 @@
  */
 package com.robo4j.net;
 
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.RoboReference;
 import com.robo4j.configuration.Configuration;
+import com.robo4j.jfr.RemoteMessageReceiveEvent;
 import com.robo4j.logging.SimpleLoggingUtil;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is a server that listens on messages, and sends them off to the
  * indicated local recipient. It is associated to RoboContext.
  * 
- * TODO: Rewrite in NIO for better thread management.
+ * <p>
+ * Each connection is served by a virtual thread, and the number of
+ * connections is limited (see {@link #KEY_MAX_CONNECTIONS}). Connections over
+ * the limit are closed right away. The messages are handed to the callback on
+ * the thread of the connection, so when the recipient cannot keep up (e.g. a
+ * full mailbox with the block overflow policy), reading from the connection
+ * stops, and TCP flow control pushes back on the sender. Connections not
+ * sending anything for the idle timeout (see {@link #KEY_IDLE_TIMEOUT}) are
+ * closed. Requests for the state and attributes of references are answered
+ * on virtual threads of their own, a limited number at a time per connection
+ * (see {@link #KEY_MAX_REQUESTS_PER_CONNECTION}).
+ * </p>
+ * 
+ * <p>
+ * Both the original object stream protocol and the binary protocol (see
+ * {@link MessageCodec}) are served, depending on what the client opens the
+ * connection with.
+ * </p>
+ * 
+ * <p>
+ * Contexts on the same host can also send messages through a ring buffer in
+ * shared memory, if enabled (see {@link #KEY_SHARED_MEMORY_SIZE}), bypassing
+ * the network stack. The messages in the ring are read by a thread of their
+ * own, which blocks while the ring is empty.
+ * </p>
  *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -40,13 +87,62 @@ import java.net.URISyntaxException;
 public class MessageServer {
 	public final static String KEY_HOST_NAME = "hostname";
 	public static final String KEY_PORT = "port";
+	/**
+	 * Configuration key for the maximum number of pending connections to
+	 * accept. Defaults to 20.
+	 */
+	public static final String KEY_BACKLOG = "backlog";
+	/**
+	 * Configuration key for the maximum number of connections served at the
+	 * same time. Defaults to 64.
+	 */
+	public static final String KEY_MAX_CONNECTIONS = "maxConnections";
+	/**
+	 * Configuration key for the time, in milliseconds, after which a
+	 * connection not sending anything is closed. Defaults to 0, which means
+	 * never.
+	 */
+	public static final String KEY_IDLE_TIMEOUT = "idleTimeout";
+	/**
+	 * Configuration key for the maximum number of requests from a remote
+	 * context being answered at the same time on a connection. Requests over
+	 * the limit are answered with an error. Defaults to 128.
+	 */
+	public static final String KEY_MAX_REQUESTS_PER_CONNECTION = "maxRequestsPerConnection";
+	/**
+	 * Configuration key for the size, in bytes, of the shared memory ring used
+	 * by contexts on the same host, for example 1048576. Defaults to 0, which
+	 * means that messages are only received over the network.
+	 */
+	public static final String KEY_SHARED_MEMORY_SIZE = "sharedMemorySize";
+	/**
+	 * Configuration key for the directory in which to create the shared
+	 * memory ring. Defaults to /dev/shm. If the directory does not exist, no
+	 * ring is created.
+	 */
+	public static final String KEY_SHARED_MEMORY_DIRECTORY = "sharedMemoryDirectory";
+
+	private static final int DEFAULT_BACKLOG = 20;
+	private static final int DEFAULT_MAX_CONNECTIONS = 64;
+	private static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 128;
+	private static final int DEFAULT_SHARED_MEMORY_SIZE = 0;
+	private static final String DEFAULT_SHARED_MEMORY_DIRECTORY = "/dev/shm";
+	// Max number of records read from the ring before checking if still running
+	private static final int SHARED_MEMORY_BATCH = 64;
+	// How long, in ms, to wait for the attributes requested by remote contexts
+	private static final long REQUEST_TIMEOUT = 10000;
 
 	private volatile int listeningPort = 0;
 	private volatile String listeningHost;
 	private volatile boolean running = false;
 	private volatile Thread startingThread = null;
+	private volatile ServerSocket serverSocket;
+	private volatile SharedMemoryRing sharedMemoryRing;
+	private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
 	private MessageCallback callback;
 	private Configuration configuration;
+	private final MessageCodecRegistry codecs;
+	private final int maxRequestsPerConnection;
 
 	private class MessageHandler implements Runnable {
 		private Socket socket;
@@ -57,38 +153,186 @@ public class MessageServer {
 
 		@Override
 		public void run() {
-			try (ObjectInputStream objectInputStream = new ObjectInputStream(
-					new BufferedInputStream(socket.getInputStream()))) {
-				// Init protocol. First check magic...
-				if (checkMagic(objectInputStream.readShort())) {
-					final String uuid = objectInputStream.readUTF();
-					final ServerRemoteRoboContext context = new ServerRemoteRoboContext(uuid, socket.getOutputStream());
-					// Then keep reading string, byte, data triplets until dead
-					ReferenceDescriptor.setCurrentContext(context);
-					while (running) {
-						String id = (String) objectInputStream.readUTF();
-						Object message = decodeMessage(objectInputStream);
-						callback.handleMessage(uuid, id, message);
-					}
+			try (BufferedInputStream in = new BufferedInputStream(socket.getInputStream())) {
+				if (peekShort(in) == MessageProtocolConstants.MAGIC_BINARY) {
+					serveBinary(new DataInputStream(in));
 				} else {
-					SimpleLoggingUtil.error(getClass(),
-							"Got wrong communication magic - will shutdown communication with "
-									+ socket.getRemoteSocketAddress());
+					serveObjectStream(in);
 				}
-
+			} catch (SocketTimeoutException e) {
+				SimpleLoggingUtil.info(getClass(), "Closing idle connection from " + socket.getRemoteSocketAddress());
 			} catch (IOException e) {
-				SimpleLoggingUtil.error(getClass(),
-						"IO Exception communicating with " + socket.getRemoteSocketAddress(), e);
+				if (running) {
+					SimpleLoggingUtil.error(getClass(),
+							"IO Exception communicating with " + socket.getRemoteSocketAddress(), e);
+				}
 			} catch (ClassNotFoundException e) {
 				SimpleLoggingUtil.error(getClass(),
 						"Could not find class to deserialize message to - will stop receiving messages from "
 								+ socket.getRemoteSocketAddress(),
 						e);
+			} finally {
+				connections.remove(socket);
+				closeQuietly(socket);
 			}
 			SimpleLoggingUtil.info(getClass(), "Shutting down socket " + socket.toString());
 
 		}
 
+		private void serveObjectStream(InputStream in) throws IOException, ClassNotFoundException {
+			// The object stream reads ahead, so the byte counts recorded are
+			// approximations of the sizes of the individual messages
+			ByteCountingInputStream byteCounter = new ByteCountingInputStream(in);
+			ObjectInputStream objectInputStream = new ObjectInputStream(byteCounter);
+			// Init protocol. First check magic...
+			if (!checkMagic(objectInputStream.readShort())) {
+				SimpleLoggingUtil.error(getClass(),
+						"Got wrong communication magic - will shutdown communication with " + socket.getRemoteSocketAddress());
+				return;
+			}
+			final String uuid = objectInputStream.readUTF();
+			final ServerRemoteRoboContext context = new ServerRemoteRoboContext(uuid, socket.getOutputStream());
+			// Then keep reading string, byte, data triplets until dead
+			ReferenceDescriptor.setCurrentContext(context);
+			long lastCount = byteCounter.getCount();
+			while (running) {
+				String id = (String) objectInputStream.readUTF();
+				RemoteMessageReceiveEvent event = new RemoteMessageReceiveEvent();
+				event.begin();
+				Object message = decodeMessage(objectInputStream);
+				callback.handleMessage(uuid, id, message);
+				event.end();
+				long count = byteCounter.getCount();
+				if (event.shouldCommit()) {
+					event.setSourceContextId(uuid);
+					event.setUnitId(id);
+					event.setMessageType(message.getClass());
+					event.setBytes(count - lastCount);
+					event.commit();
+				}
+				lastCount = count;
+			}
+		}
+
+		private void serveBinary(DataInputStream in) throws IOException {
+			// Handshake - magic, highest version supported by the client and
+			// uuid. Answered with the magic and the version to use.
+			in.readShort();
+			int version = Math.min(in.readUnsignedByte(), MessageProtocolConstants.PROTOCOL_VERSION);
+			final String uuid = in.readUTF();
+			if (version < MessageProtocolConstants.PROTOCOL_VERSION_BINARY) {
+				SimpleLoggingUtil.error(getClass(), "Unsupported protocol version " + version
+						+ " - will shutdown communication with " + socket.getRemoteSocketAddress());
+				return;
+			}
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeShort(MessageProtocolConstants.MAGIC_BINARY);
+			out.writeByte(version);
+			out.flush();
+
+			final ServerRemoteRoboContext context = new ServerRemoteRoboContext(uuid, out, codecs);
+			ReferenceDescriptor.setCurrentContext(context);
+			MessageFrameCodec frameCodec = new MessageFrameCodec(codecs);
+			Semaphore requestPermits = new Semaphore(maxRequestsPerConnection);
+			while (running) {
+				MessageFrameCodec.Frame frame;
+				try {
+					frame = frameCodec.read(in, 1);
+				} catch (MessageFrameCodec.UndecodableMessageException e) {
+					SimpleLoggingUtil.error(getClass(), "Skipping message from " + socket.getRemoteSocketAddress(), e);
+					continue;
+				}
+				String id = frame.addresses()[0];
+				if (frame.message() instanceof RemoteRequest request) {
+					handleRequest(context, id, request, requestPermits);
+					continue;
+				}
+				RemoteMessageReceiveEvent event = new RemoteMessageReceiveEvent();
+				event.begin();
+				callback.handleMessage(uuid, id, frame.message());
+				event.end();
+				if (event.shouldCommit()) {
+					event.setSourceContextId(uuid);
+					event.setUnitId(id);
+					event.setMessageType(frame.message().getClass());
+					event.setBytes(frame.size());
+					event.commit();
+				}
+			}
+		}
+
+		private void handleRequest(ServerRemoteRoboContext context, String id, RemoteRequest request,
+				Semaphore requestPermits) {
+			if (!requestPermits.tryAcquire()) {
+				context.respond(id, RemoteResponse.failure(request.correlationId(),
+						"Too many requests in flight on the connection (" + maxRequestsPerConnection + ")"));
+				return;
+			}
+			// Answered on a thread of its own, so that the connection can
+			// keep serving messages and other requests while waiting
+			Thread.ofVirtual().name("Request [" + socket.getRemoteSocketAddress() + "]").start(() -> {
+				RemoteResponse response;
+				try {
+					response = answer(id, request);
+				} finally {
+					requestPermits.release();
+				}
+				context.respond(id, response);
+			});
+		}
+
+		private RemoteResponse answer(String id, RemoteRequest request) {
+			RoboReference<?> reference = callback.getReference(id);
+			if (reference == null) {
+				return RemoteResponse.failure(request.correlationId(), "No reference available with id " + id);
+			}
+			try {
+				Object value = switch (request.type()) {
+				case ATTRIBUTES -> readAttributes(reference, request.attributes());
+				case KNOWN_ATTRIBUTES -> {
+					Map<AttributeDescriptor<?>, Object> known = new LinkedHashMap<>();
+					reference.getKnownAttributes().forEach(descriptor -> known.put(descriptor, null));
+					yield known;
+				}
+				case STATE -> reference.getState().name();
+				case MESSAGE_TYPE -> reference.getMessageType().getName();
+				};
+				return new RemoteResponse(request.correlationId(), value, null);
+			} catch (Exception e) {
+				return RemoteResponse.failure(request.correlationId(), "Request " + request.type() + " for " + id + " failed: " + e);
+			}
+		}
+
+		private Map<AttributeDescriptor<?>, Object> readAttributes(RoboReference<?> reference,
+				List<AttributeDescriptor<?>> attributes) throws Exception {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REQUEST_TIMEOUT);
+			if (attributes.isEmpty()) {
+				Map<AttributeDescriptor<?>, Object> all = reference.getAttributes().get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+				return all != null ? all : Collections.emptyMap();
+			}
+			// Ask for all of them before waiting for any
+			List<Future<?>> futures = new ArrayList<>(attributes.size());
+			for (AttributeDescriptor<?> descriptor : attributes) {
+				futures.add(reference.getAttribute(descriptor));
+			}
+			Map<AttributeDescriptor<?>, Object> values = new LinkedHashMap<>();
+			for (int i = 0; i < attributes.size(); i++) {
+				values.put(attributes.get(i), futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+			}
+			return values;
+		}
+
+		private short peekShort(BufferedInputStream in) throws IOException {
+			in.mark(Short.BYTES);
+			int high = in.read();
+			int low = in.read();
+			in.reset();
+			if ((high | low) < 0) {
+				throw new EOFException("Connection closed before the handshake");
+			}
+			return (short) ((high << 8) | low);
+		}
+
 		private Object decodeMessage(ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
 			byte dataType = objectInputStream.readByte();
 			switch (dataType) {
@@ -120,6 +364,59 @@ public class MessageServer {
 		}
 	}
 
+	private class SharedMemoryReader implements Runnable, SharedMemoryRing.RecordHandler {
+		private final SharedMemoryRing ring;
+		private final MessageFrameCodec frameCodec = new MessageFrameCodec(codecs);
+
+		SharedMemoryReader(SharedMemoryRing ring) {
+			this.ring = ring;
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				if (ring.poll(this, SHARED_MEMORY_BATCH) == 0) {
+					try {
+						ring.awaitRecords();
+					} catch (IOException e) {
+						if (running) {
+							SimpleLoggingUtil.error(getClass(), "Stopped reading from shared memory", e);
+						}
+						return;
+					}
+				}
+			}
+		}
+
+		@Override
+		public void onRecord(ByteBuffer buffer, int index, int length) {
+			MessageFrameCodec.Frame frame;
+			try {
+				frame = frameCodec.read(buffer, index, length, 2);
+			} catch (IOException e) {
+				SimpleLoggingUtil.error(getClass(), "Skipping message from shared memory", e);
+				return;
+			}
+			String uuid = frame.addresses()[0];
+			String id = frame.addresses()[1];
+			RemoteMessageReceiveEvent event = new RemoteMessageReceiveEvent();
+			event.begin();
+			try {
+				callback.handleMessage(uuid, id, frame.message());
+			} catch (RuntimeException e) {
+				SimpleLoggingUtil.error(getClass(), "Failed to deliver message from shared memory to " + id, e);
+			}
+			event.end();
+			if (event.shouldCommit()) {
+				event.setSourceContextId(uuid);
+				event.setUnitId(id);
+				event.setMessageType(frame.message() != null ? frame.message().getClass() : Object.class);
+				event.setBytes(frame.size());
+				event.commit();
+			}
+		}
+	}
+
 	/**
 	 * Constructor
 	 *
@@ -130,8 +427,25 @@ public class MessageServer {
 	 *            configuration
 	 */
 	public MessageServer(MessageCallback callback, Configuration configuration) {
+		this(callback, configuration, MessageCodecRegistry.getDefault());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param callback
+	 *            message callback
+	 * @param configuration
+	 *            configuration
+	 * @param codecs
+	 *            the codecs to use with the binary protocol
+	 */
+	public MessageServer(MessageCallback callback, Configuration configuration, MessageCodecRegistry codecs) {
 		this.callback = callback;
 		this.configuration = configuration;
+		this.codecs = codecs;
+		this.maxRequestsPerConnection = configuration.getInteger(KEY_MAX_REQUESTS_PER_CONNECTION,
+				DEFAULT_MAX_REQUESTS_PER_CONNECTION);
 	}
 
 	/**
@@ -149,26 +463,74 @@ public class MessageServer {
 			bindAddress = InetAddress.getByName(host);
 		}
 
+		int maxConnections = configuration.getInteger(KEY_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
+		int idleTimeout = configuration.getInteger(KEY_IDLE_TIMEOUT, 0);
+
 		try (ServerSocket serverSocket = new ServerSocket(configuration.getInteger(KEY_PORT, 0),
-				configuration.getInteger("backlog", 20), bindAddress)) {
+				configuration.getInteger(KEY_BACKLOG, DEFAULT_BACKLOG), bindAddress)) {
+			this.serverSocket = serverSocket;
+			// Before publishing the port, which is taken as the server being up
+			sharedMemoryRing = createSharedMemoryRing();
 			listeningHost = serverSocket.getInetAddress().getHostAddress();
 			listeningPort = serverSocket.getLocalPort();
-			ThreadGroup g = new ThreadGroup("Robo4J communication threads");
 			running = true;
+			if (sharedMemoryRing != null) {
+				Thread reader = new Thread(new SharedMemoryReader(sharedMemoryRing), "Shared Memory Reader [" + listeningPort + "]");
+				reader.setDaemon(true);
+				reader.start();
+			}
 			while (running) {
-				MessageHandler handler = new MessageHandler(serverSocket.accept());
-				Thread t = new Thread(g, handler, "Communication [" + handler.socket.getRemoteSocketAddress() + "]");
-				t.setDaemon(true);
-				t.start();
+				Socket socket;
+				try {
+					socket = serverSocket.accept();
+				} catch (SocketException e) {
+					if (!running) {
+						// Closed by stop
+						break;
+					}
+					throw e;
+				}
+				if (connections.size() >= maxConnections) {
+					SimpleLoggingUtil.error(getClass(), "Too many connections (" + maxConnections + ") - refusing connection from "
+							+ socket.getRemoteSocketAddress());
+					closeQuietly(socket);
+					continue;
+				}
+				socket.setSoTimeout(idleTimeout);
+				connections.add(socket);
+				Thread.ofVirtual().name("Communication [" + socket.getRemoteSocketAddress() + "]").start(new MessageHandler(socket));
 			}
 		} finally {
 			running = false;
 			startingThread = null;
+			serverSocket = null;
+			connections.forEach(MessageServer::closeQuietly);
+			closeQuietly(sharedMemoryRing);
+			sharedMemoryRing = null;
+		}
+	}
+
+	private SharedMemoryRing createSharedMemoryRing() {
+		int size = configuration.getInteger(KEY_SHARED_MEMORY_SIZE, DEFAULT_SHARED_MEMORY_SIZE);
+		Path directory = Path.of(configuration.getString(KEY_SHARED_MEMORY_DIRECTORY, DEFAULT_SHARED_MEMORY_DIRECTORY));
+		if (size <= 0 || !Files.isDirectory(directory)) {
+			return null;
+		}
+		try {
+			return SharedMemoryRing.create(directory, size);
+		} catch (IOException | RuntimeException e) {
+			SimpleLoggingUtil.error(getClass(), "Could not create shared memory ring in " + directory + " - proceeding without", e);
+			return null;
 		}
 	}
 
 	public void stop() {
 		running = false;
+		ServerSocket serverSocket = this.serverSocket;
+		if (serverSocket != null) {
+			closeQuietly(serverSocket);
+		}
+		connections.forEach(MessageServer::closeQuietly);
 		Thread startingThread = this.startingThread;
 		if (startingThread != null) {
 			startingThread.interrupt();
@@ -179,6 +541,22 @@ public class MessageServer {
 		return listeningPort;
 	}
 
+	/**
+	 * @return the path of the shared memory ring for contexts on the same
+	 *         host, or null if there is none.
+	 */
+	public String getSharedMemoryPath() {
+		SharedMemoryRing ring = sharedMemoryRing;
+		return ring != null ? ring.getPath().toString() : null;
+	}
+
+	/**
+	 * @return the number of connections currently served.
+	 */
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
 	/**
 	 * @return the URI for the listening socket. This is the address to connect to.
 	 *         Will return null if the server isn't up and running yet, or if badly
@@ -201,4 +579,15 @@ public class MessageServer {
 			return null;
 		}
 	}
+
+	static void closeQuietly(AutoCloseable closeable) {
+		if (closeable == null) {
+			return;
+		}
+		try {
+			closeable.close();
+		} catch (Exception e) {
+			// Already closed or broken - nothing more to do
+		}
+	}
 }
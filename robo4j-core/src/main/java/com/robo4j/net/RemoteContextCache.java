@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Shares one {@link ClientRemoteRoboContext}, and thereby one connection, per
+ * discovered remote context. Contexts are reference counted - every
+ * {@link #acquire(RoboContextDescriptorEntry)} is balanced by a
+ * {@link ClientRemoteRoboContext#shutdown()}, and the connection is closed
+ * once the last user is gone. Contexts which stop sending heartbeats, or move
+ * to a new address, are disconnected, and reconnect when used again. They are
+ * kept for as long as they are used, so that rediscovering the remote context
+ * hands out the same context again.
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class RemoteContextCache {
+	private final Map<String, ClientRemoteRoboContext> contexts = new HashMap<>();
+	// Gets the outbox for a context id - null, or returning null, if none
+	private final Function<String, MessageOutbox> outboxes;
+
+	RemoteContextCache() {
+		this(null);
+	}
+
+	RemoteContextCache(Function<String, MessageOutbox> outboxes) {
+		this.outboxes = outboxes;
+	}
+
+	/**
+	 * Returns the shared context for the entry, creating it if needed, and
+	 * increments its reference count.
+	 */
+	synchronized ClientRemoteRoboContext acquire(RoboContextDescriptorEntry entry) {
+		String id = entry.descriptor.getId();
+		ClientRemoteRoboContext context = contexts.get(id);
+		if (context != null) {
+			// May have been rediscovered, at a new address
+			context.update(entry);
+		} else {
+			context = new ClientRemoteRoboContext(entry, this, outboxes != null ? outboxes.apply(id) : null);
+			contexts.put(id, context);
+		}
+		context.retain();
+		return context;
+	}
+
+	/**
+	 * Decrements the reference count of the context, closing it when no longer
+	 * used.
+	 */
+	synchronized void release(ClientRemoteRoboContext context) {
+		if (context.releaseReference() == 0) {
+			contexts.remove(context.getId(), context);
+			context.close();
+		}
+	}
+
+	/**
+	 * Updates the entry of the context, if there is one. The context is
+	 * disconnected if the entry has a new address.
+	 */
+	synchronized void update(RoboContextDescriptorEntry entry) {
+		ClientRemoteRoboContext context = contexts.get(entry.descriptor.getId());
+		if (context != null) {
+			context.update(entry);
+		}
+	}
+
+	/**
+	 * Disconnects the context with the specified id, if there is one. It
+	 * reconnects when used again.
+	 */
+	synchronized void disconnect(String id) {
+		ClientRemoteRoboContext context = contexts.get(id);
+		if (context != null) {
+			context.disconnect();
+		}
+	}
+
+	/**
+	 * Closes and forgets all contexts.
+	 */
+	synchronized void clear() {
+		contexts.values().forEach(ClientRemoteRoboContext::close);
+		contexts.clear();
+	}
+
+	synchronized int size() {
+		return contexts.size();
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.AttributeDescriptor;
+
+import java.util.List;
+
+/**
+ * A request for information about a reference in a remote context, answered
+ * with a {@link RemoteResponse} carrying the same correlation id. Only used
+ * with the binary protocol.
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @param correlationId
+ *            the id of the request, unique per connection.
+ * @param type
+ *            what is requested.
+ * @param attributes
+ *            the attributes to read for {@link Type#ATTRIBUTES}. Empty to read
+ *            all known attributes.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+record RemoteRequest(long correlationId, Type type, List<AttributeDescriptor<?>> attributes) {
+	enum Type {
+		ATTRIBUTES, KNOWN_ATTRIBUTES, STATE, MESSAGE_TYPE
+	}
+}
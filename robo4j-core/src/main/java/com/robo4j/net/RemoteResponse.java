@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+/**
+ * The response to a {@link RemoteRequest}.
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @param correlationId
+ *            the id of the request answered.
+ * @param value
+ *            the value requested, if successful. Attributes are answered with
+ *            a map from {@link com.robo4j.AttributeDescriptor} to value, the
+ *            state and the message type with their names.
+ * @param error
+ *            the reason the request failed, or null if successful.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+record RemoteResponse(long correlationId, Object value, String error) {
+	static RemoteResponse failure(long correlationId, String error) {
+		return new RemoteResponse(correlationId, null, error);
+	}
+}
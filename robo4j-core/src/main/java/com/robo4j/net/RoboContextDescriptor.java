@@ -26,6 +26,11 @@ import java.util.Map;
  */
 public class RoboContextDescriptor {
 	public static final String KEY_URI = "uri";
+	/**
+	 * The path of the shared memory ring which contexts on the same host can
+	 * send messages through. Only present if the context has one.
+	 */
+	public static final String KEY_SHARED_MEMORY = "sharedMemory";
 
 	private final String id;
 	private final int heartBeatInterval;
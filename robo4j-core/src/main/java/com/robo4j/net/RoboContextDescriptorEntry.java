@@ -28,4 +28,9 @@ class RoboContextDescriptorEntry {
 	public RoboContextDescriptor descriptor;
 	public long lastAccess;
 	public InetAddress address;
+	/**
+	 * The last heartbeat decoded. Heartbeats identical to it are not decoded
+	 * again.
+	 */
+	public byte[] heartbeat;
 }
@@ -24,6 +24,7 @@ import com.robo4j.configuration.Configuration;
 import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.scheduler.Scheduler;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
@@ -40,6 +41,8 @@ import java.util.concurrent.Future;
 public class ServerRemoteRoboContext implements RoboContext {
 	private final String uuid;
 	private final ObjectOutputStream outputStream;
+	private final DataOutputStream dataOutputStream;
+	private final MessageFrameCodec frameCodec;
 
 	@SuppressWarnings("rawtypes")
 	private class ServerRemoteRoboReference implements RoboReference {
@@ -98,13 +101,9 @@ public class ServerRemoteRoboContext implements RoboContext {
 		@Override
 		public void sendMessage(Object message) {
 			try {
-				// FIXME: Change the serialization to be the same as for the
-				// client to server
-				outputStream.writeUTF(getTargetContextId());
-				outputStream.writeUTF(getId());
-				outputStream.writeObject(message);
+				send(getTargetContextId(), getId(), message);
 			} catch (IOException e) {
-				e.printStackTrace();
+				SimpleLoggingUtil.error(getClass(), "Could not send message to " + getTargetContextId() + "/" + getId(), e);
 			}
 		}
 
@@ -129,9 +128,55 @@ public class ServerRemoteRoboContext implements RoboContext {
 		}
 	}
 
+	/**
+	 * Creates a context answering with the object stream protocol.
+	 */
 	public ServerRemoteRoboContext(String uuid, OutputStream out) throws IOException {
 		this.uuid = uuid;
 		this.outputStream = new ObjectOutputStream(out);
+		this.dataOutputStream = null;
+		this.frameCodec = null;
+	}
+
+	/**
+	 * Creates a context answering with the binary protocol.
+	 */
+	public ServerRemoteRoboContext(String uuid, DataOutputStream out, MessageCodecRegistry codecs) {
+		this.uuid = uuid;
+		this.outputStream = null;
+		this.dataOutputStream = out;
+		this.frameCodec = new MessageFrameCodec(codecs);
+	}
+
+	/**
+	 * Sends the response to a request from the remote context. A response
+	 * which cannot be encoded is replaced by an error, so that the remote
+	 * context is not left waiting for it.
+	 */
+	void respond(String id, RemoteResponse response) {
+		try {
+			try {
+				send(uuid, id, response);
+			} catch (MessageFrameCodec.UnencodableMessageException e) {
+				SimpleLoggingUtil.error(getClass(), "Could not encode response to request for " + id + " from " + uuid, e);
+				send(uuid, id, RemoteResponse.failure(response.correlationId(),
+						"Could not encode response for " + id + ": " + e.getMessage()));
+			}
+		} catch (IOException e) {
+			SimpleLoggingUtil.error(getClass(), "Could not respond to request for " + id + " from " + uuid, e);
+		}
+	}
+
+	private synchronized void send(String ctxId, String id, Object message) throws IOException {
+		if (frameCodec != null) {
+			frameCodec.write(dataOutputStream, message, ctxId, id);
+			dataOutputStream.flush();
+		} else {
+			outputStream.writeUTF(ctxId);
+			outputStream.writeUTF(id);
+			outputStream.writeObject(message);
+			outputStream.flush();
+		}
 	}
 
 	@Override
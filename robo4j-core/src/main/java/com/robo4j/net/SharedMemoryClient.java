@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.logging.SimpleLoggingUtil;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages to a context on the same host through the shared memory ring
+ * of its {@link MessageServer}. The messages are encoded like in the binary
+ * protocol, and copied straight into the ring on the calling thread.
+ * 
+ * <p>
+ * Messages which cannot go through the ring are left to the
+ * {@link MessageClient}: messages containing references (which need a
+ * connection to be answered over), messages too large for the ring, and
+ * messages for which the ring stayed full for a little while. To keep the
+ * messages to a unit in order, the unit then stays on the network, and its
+ * messages are only sent once the ones it already has in the ring have been
+ * read.
+ * </p>
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class SharedMemoryClient {
+	// How long to wait for room in a full ring before using the network
+	private static final long FULL_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	// How long to wait for the reader before giving up on the order
+	private static final long CONSUME_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(1000);
+
+	/**
+	 * Outcome of {@link SharedMemoryClient#send(String, Object)}.
+	 */
+	enum SendResult {
+		SENT, CLOSED, USE_NETWORK
+	}
+
+	private final SharedMemoryRing ring;
+	private final String sourceUuid;
+	private final MessageFrameCodec frameCodec;
+	// Ids of the units on the network, to the write position of the ring
+	// when they switched. Guarded by this.
+	private final Map<String, Long> networkPositions = new HashMap<>();
+
+	private SharedMemoryClient(SharedMemoryRing ring, String sourceUuid, MessageCodecRegistry codecs) {
+		this.ring = ring;
+		this.sourceUuid = sourceUuid;
+		this.frameCodec = new MessageFrameCodec(codecs);
+	}
+
+	/**
+	 * Opens the shared memory ring of a discovered context, if it has one,
+	 * and it is on this host.
+	 * 
+	 * @return the client, or null if shared memory cannot be used.
+	 */
+	static SharedMemoryClient open(RoboContextDescriptorEntry entry, String sourceUuid, MessageCodecRegistry codecs) {
+		String sharedMemory = entry.descriptor.getMetadata().get(RoboContextDescriptor.KEY_SHARED_MEMORY);
+		if (sharedMemory == null || !isLocal(entry.address)) {
+			return null;
+		}
+		Path path = Path.of(sharedMemory);
+		if (!Files.exists(path)) {
+			// Same address, but not the same file system - e.g. a container
+			return null;
+		}
+		try {
+			return new SharedMemoryClient(SharedMemoryRing.open(path), sourceUuid, codecs);
+		} catch (IOException | RuntimeException e) {
+			SimpleLoggingUtil.info(SharedMemoryClient.class,
+					"Could not open shared memory ring of " + entry.descriptor.getId() + " - will use the network: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Sends a message through the ring. Waits a little for room in a full
+	 * ring, without holding the lock.
+	 * 
+	 * @return {@link SendResult#USE_NETWORK} if the message, and all further
+	 *         messages to the unit, are to be sent over the network, after
+	 *         {@link #awaitConsumed(String)}.
+	 * @throws IOException
+	 *             if the message could not be encoded.
+	 */
+	SendResult send(String id, Object message) throws IOException {
+		SendResult result = trySend(id, message, false);
+		if (result != null) {
+			return result;
+		}
+		long deadline = System.nanoTime() + FULL_TIMEOUT_NANOS;
+		int attempt = 0;
+		do {
+			SharedMemoryRing.idle(attempt++);
+			result = trySend(id, message, System.nanoTime() - deadline > 0);
+		} while (result == null);
+		return result;
+	}
+
+	/**
+	 * @return null if the ring is full, and the unit is to stay on the ring.
+	 */
+	private synchronized SendResult trySend(String id, Object message, boolean leaveWhenFull) throws IOException {
+		if (networkPositions.containsKey(id)) {
+			return SendResult.USE_NETWORK;
+		}
+		if (ring.isClosed()) {
+			return SendResult.CLOSED;
+		}
+		int size = frameCodec.encode(message, sourceUuid, id);
+		if (frameCodec.hasEncodedReferences() || size > ring.getMaxRecordSize()) {
+			return useNetwork(id);
+		}
+		if (ring.offer(frameCodec.getEncoded(), 0, size)) {
+			return SendResult.SENT;
+		}
+		if (ring.isClosed()) {
+			return SendResult.CLOSED;
+		}
+		return leaveWhenFull ? useNetwork(id) : null;
+	}
+
+	private SendResult useNetwork(String id) {
+		// Under the lock - a message to the unit is either before the
+		// position, or sent over the network
+		networkPositions.put(id, ring.getWritePosition());
+		return SendResult.USE_NETWORK;
+	}
+
+	/**
+	 * Waits until the reader has handled the messages the unit had in the
+	 * ring when it switched to the network. Returns right away once they
+	 * have been.
+	 * 
+	 * @return false if the reader did not get to them in time.
+	 */
+	boolean awaitConsumed(String id) {
+		long position;
+		synchronized (this) {
+			position = networkPositions.get(id);
+		}
+		long deadline = System.nanoTime() + CONSUME_TIMEOUT_NANOS;
+		int attempt = 0;
+		while (!ring.isConsumed(position)) {
+			if (ring.isClosed()) {
+				// Nothing more will be read
+				return true;
+			}
+			if (System.nanoTime() - deadline > 0) {
+				return false;
+			}
+			SharedMemoryRing.idle(attempt++);
+		}
+		return true;
+	}
+
+	private static boolean isLocal(InetAddress address) {
+		if (address == null) {
+			return false;
+		}
+		if (address.isLoopbackAddress() || address.isAnyLocalAddress()) {
+			return true;
+		}
+		try {
+			return NetworkInterface.getByInetAddress(address) != null;
+		} catch (SocketException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.logging.SimpleLoggingUtil;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring buffer of messages in a memory mapped file, for passing messages
+ * between processes on the same host. Any number of processes may write to
+ * the ring, but only the process which created it reads from it.
+ * 
+ * <p>
+ * Writers claim space by atomically advancing the tail, copy in the record,
+ * and then publish it by writing its length. The reader consumes the
+ * published records in order, zeroes them, and advances the head, which
+ * frees the space for the writers. A record which does not fit before the
+ * end of the ring is preceded by a padding record, so that records are
+ * always contiguous.
+ * </p>
+ * 
+ * <p>
+ * The reader blocks while the ring is empty. Before blocking, it flags that
+ * it is waiting, and the first writer to publish a record after that wakes it
+ * up with a datagram to the doorbell, a loopback port of the reader. So an
+ * idle reader does not use any CPU, and busy writers do not pay for the
+ * wake-up.
+ * </p>
+ * 
+ * <p>
+ * A writer dying between claiming and publishing a record stalls the ring.
+ * The reader marks the ring as closed when done, so that writers still having
+ * it mapped can tell that nobody is reading any longer.
+ * </p>
+ * 
+ * <p>
+ * Internal implementation class.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+final class SharedMemoryRing implements AutoCloseable {
+	/**
+	 * Receives the records read from the ring.
+	 */
+	interface RecordHandler {
+		/**
+		 * Called for each record read. The record is only valid for the
+		 * duration of the call.
+		 */
+		void onRecord(ByteBuffer buffer, int index, int length);
+	}
+
+	// "R4JR"
+	private static final int MAGIC = 0x52344A52;
+	private static final int MAGIC_OFFSET = 0;
+	private static final int CAPACITY_OFFSET = 4;
+	private static final int CLOSED_OFFSET = 8;
+	private static final int WAITING_OFFSET = 12;
+	private static final int DOORBELL_PORT_OFFSET = 16;
+	// Head and tail on cache lines of their own
+	private static final int HEAD_OFFSET = 64;
+	private static final int TAIL_OFFSET = 128;
+	private static final int DATA_OFFSET = 192;
+	// The length (including the header) and the type of the record
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final int ALIGNMENT = 8;
+	private static final int TYPE_MESSAGE = 1;
+	private static final int TYPE_PADDING = 2;
+	private static final int MIN_CAPACITY = 4096;
+
+	private static final int SPINS = 100;
+	private static final int YIELDS = 100;
+	private static final long MAX_PARK_NANOS = 1_000_000;
+
+	private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+	private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private final Path path;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final int mask;
+	private final boolean reader;
+	// Received on by the reader, sent from by the writers
+	private final DatagramChannel doorbell;
+	private final InetSocketAddress doorbellAddress;
+	private final ByteBuffer doorbellBuffer = ByteBuffer.allocate(1);
+	// The datagram itself is the signal. Empty, so the writers can share it.
+	private final ByteBuffer doorbellSignal = ByteBuffer.allocate(0);
+
+	private SharedMemoryRing(Path path, MappedByteBuffer buffer, int capacity, boolean reader, DatagramChannel doorbell) {
+		this.path = path;
+		this.buffer = buffer;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.reader = reader;
+		this.doorbell = doorbell;
+		this.doorbellAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), buffer.getInt(DOORBELL_PORT_OFFSET));
+	}
+
+	/**
+	 * Creates a new ring to read from, in a new file in the specified
+	 * directory. The file is only accessible by the current user where the
+	 * file system supports it.
+	 * 
+	 * @param directory
+	 *            the directory to create the file in, normally /dev/shm.
+	 * @param size
+	 *            the size of the ring. Rounded up to the next power of two.
+	 */
+	static SharedMemoryRing create(Path directory, int size) throws IOException {
+		int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+		Path path = Files.createTempFile(directory, "robo4j-", ".ring");
+		// For servers never stopped
+		path.toFile().deleteOnExit();
+		DatagramChannel doorbell = null;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			doorbell = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, DATA_OFFSET + capacity);
+			buffer.order(ByteOrder.nativeOrder());
+			buffer.putInt(CAPACITY_OFFSET, capacity);
+			buffer.putInt(DOORBELL_PORT_OFFSET, ((InetSocketAddress) doorbell.getLocalAddress()).getPort());
+			// Publish last - writers check the magic before anything else
+			INT.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+			return new SharedMemoryRing(path, buffer, capacity, true, doorbell);
+		} catch (IOException | RuntimeException e) {
+			if (doorbell != null) {
+				doorbell.close();
+			}
+			Files.deleteIfExists(path);
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens an existing ring to write to.
+	 * 
+	 * @param path
+	 *            the file of the ring.
+	 */
+	static SharedMemoryRing open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long fileSize = channel.size();
+			if (fileSize < DATA_OFFSET + MIN_CAPACITY) {
+				throw new IOException(path + " is not a message ring");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+			buffer.order(ByteOrder.nativeOrder());
+			int capacity = buffer.getInt(CAPACITY_OFFSET);
+			if ((int) INT.getAcquire(buffer, MAGIC_OFFSET) != MAGIC || Integer.bitCount(capacity) != 1
+					|| DATA_OFFSET + (long) capacity != fileSize) {
+				throw new IOException(path + " is not a message ring");
+			}
+			return new SharedMemoryRing(path, buffer, capacity, false, DatagramChannel.open());
+		}
+	}
+
+	/**
+	 * @return the file of the ring.
+	 */
+	Path getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the largest record accepted by {@link #offer(byte[], int, int)}.
+	 */
+	int getMaxRecordSize() {
+		// Keep the records small enough for the ring to hold a few of them,
+		// even when one needs padding
+		return capacity / 4 - RECORD_HEADER_SIZE;
+	}
+
+	/**
+	 * @return true if the reader has closed the ring.
+	 */
+	boolean isClosed() {
+		return (int) INT.getVolatile(buffer, CLOSED_OFFSET) != 0;
+	}
+
+	/**
+	 * @return the position up to which the writers have claimed records.
+	 */
+	long getWritePosition() {
+		return (long) LONG.getVolatile(buffer, TAIL_OFFSET);
+	}
+
+	/**
+	 * @return true once the reader has handled all records before the
+	 *         position.
+	 * @see #getWritePosition()
+	 */
+	boolean isConsumed(long position) {
+		return (long) LONG.getVolatile(buffer, HEAD_OFFSET) - position >= 0;
+	}
+
+	/**
+	 * Writes a record to the ring. Safe to call from any number of threads and
+	 * processes at the same time.
+	 * 
+	 * @return false if the ring is full or closed.
+	 */
+	boolean offer(byte[] data, int offset, int length) {
+		if (length > getMaxRecordSize()) {
+			throw new IllegalArgumentException("Record too large for the ring: " + length + " bytes");
+		}
+		int recordLength = RECORD_HEADER_SIZE + length;
+		int alignedLength = align(recordLength);
+		long tail;
+		int index;
+		int padding;
+		do {
+			if (isClosed()) {
+				return false;
+			}
+			long head = (long) LONG.getVolatile(buffer, HEAD_OFFSET);
+			tail = (long) LONG.getVolatile(buffer, TAIL_OFFSET);
+			index = (int) (tail & mask);
+			int toEnd = capacity - index;
+			padding = alignedLength > toEnd ? toEnd : 0;
+			if (tail + padding + alignedLength - head > capacity) {
+				return false;
+			}
+		} while (!LONG.compareAndSet(buffer, TAIL_OFFSET, tail, tail + padding + alignedLength));
+
+		if (padding > 0) {
+			buffer.putInt(DATA_OFFSET + index + 4, TYPE_PADDING);
+			INT.setRelease(buffer, DATA_OFFSET + index, padding);
+			index = 0;
+		}
+		buffer.putInt(DATA_OFFSET + index + 4, TYPE_MESSAGE);
+		buffer.put(DATA_OFFSET + index + RECORD_HEADER_SIZE, data, offset, length);
+		INT.setRelease(buffer, DATA_OFFSET + index, recordLength);
+		// Pairs with the fence in awaitRecords - either the reader sees the
+		// record, or the writer sees the reader waiting
+		VarHandle.fullFence();
+		if ((int) INT.getVolatile(buffer, WAITING_OFFSET) != 0 && INT.compareAndSet(buffer, WAITING_OFFSET, 1, 0)) {
+			ringDoorbell();
+		}
+		return true;
+	}
+
+	private void ringDoorbell() {
+		try {
+			doorbell.send(doorbellSignal, doorbellAddress);
+		} catch (IOException e) {
+			// The reader is gone, or going
+			SimpleLoggingUtil.debug(getClass(), "Could not wake up the reader of " + path + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Blocks until a record may be available, or the ring is closed. Must only
+	 * be called by the one reading thread.
+	 * 
+	 * @throws IOException
+	 *             if the ring was closed while waiting, or the doorbell
+	 *             failed.
+	 */
+	void awaitRecords() throws IOException {
+		INT.setVolatile(buffer, WAITING_OFFSET, 1);
+		VarHandle.fullFence();
+		long head = (long) LONG.getVolatile(buffer, HEAD_OFFSET);
+		if ((int) INT.getVolatile(buffer, DATA_OFFSET + (int) (head & mask)) > 0) {
+			// Published before the flag was seen. A writer may still ring,
+			// which only costs a spurious wake-up later.
+			INT.setVolatile(buffer, WAITING_OFFSET, 0);
+			return;
+		}
+		doorbellBuffer.clear();
+		doorbell.receive(doorbellBuffer);
+		INT.setVolatile(buffer, WAITING_OFFSET, 0);
+	}
+
+	/**
+	 * Reads the records published so far, up to the specified limit. Must
+	 * only be called by the one reading thread.
+	 * 
+	 * @return the number of records read.
+	 */
+	int poll(RecordHandler handler, int limit) {
+		long head = (long) LONG.getVolatile(buffer, HEAD_OFFSET);
+		int count = 0;
+		try {
+			while (count < limit) {
+				int index = (int) (head & mask);
+				int recordLength = (int) INT.getAcquire(buffer, DATA_OFFSET + index);
+				if (recordLength <= 0) {
+					break;
+				}
+				int alignedLength = align(recordLength);
+				if (buffer.getInt(DATA_OFFSET + index + 4) == TYPE_MESSAGE) {
+					count++;
+					try {
+						handler.onRecord(buffer, DATA_OFFSET + index + RECORD_HEADER_SIZE, recordLength - RECORD_HEADER_SIZE);
+					} finally {
+						head = free(head, index, alignedLength);
+					}
+				} else {
+					head = free(head, index, alignedLength);
+				}
+			}
+		} finally {
+			LONG.setRelease(buffer, HEAD_OFFSET, head);
+		}
+		return count;
+	}
+
+	private long free(long head, int index, int alignedLength) {
+		// Writers rely on the length of unpublished records being zero
+		for (int i = alignedLength - ALIGNMENT; i >= 0; i -= ALIGNMENT) {
+			buffer.putLong(DATA_OFFSET + index + i, 0L);
+		}
+		return head + alignedLength;
+	}
+
+	/**
+	 * Closes the ring. When called by the reader, writers are told that the
+	 * ring is closed, a reader waiting for records is woken up, and the file
+	 * is removed.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (reader) {
+				INT.setVolatile(buffer, CLOSED_OFFSET, 1);
+				Files.deleteIfExists(path);
+			}
+		} finally {
+			doorbell.close();
+		}
+	}
+
+	/**
+	 * Backs off while waiting for the ring - spins first, then yields, then
+	 * parks for increasingly long periods, up to a millisecond.
+	 * 
+	 * @param attempt
+	 *            the number of times in a row nothing was available.
+	 */
+	static void idle(int attempt) {
+		if (attempt < SPINS) {
+			Thread.onSpinWait();
+		} else if (attempt < SPINS + YIELDS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(attempt - SPINS - YIELDS, 10)));
+		}
+	}
+
+	private static int align(int length) {
+		return (length + ALIGNMENT - 1) & -ALIGNMENT;
+	}
+}
@@ -23,6 +23,7 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import com.robo4j.LifecycleState;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
 import com.robo4j.RoboUnit;
@@ -74,20 +75,16 @@ public class DefaultScheduler implements Scheduler {
 	@Override
 	public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long period, TimeUnit unit,
 			int numberOfInvocations, FinalInvocationListener listener) {
-		ScheduledMessageWrapper<T> command = createCommand(target, numberOfInvocations, message, listener);
+		ScheduledMessageWrapper<T> command = new ScheduledMessageWrapper<>(context, target, numberOfInvocations, message,
+				listener, delay, period, unit);
 		ScheduledFuture<?> future = executor.scheduleAtFixedRate(command, delay, period, unit);
 		command.setFuture(future);
 		return future;
 	}
 
-	private <T> ScheduledMessageWrapper<T> createCommand(RoboReference<T> reference, int numberOfInvocations, T message,
-			FinalInvocationListener listener) {
-		return new ScheduledMessageWrapper<>(context, reference, numberOfInvocations, message, listener);
-	}
-
 	@Override
 	public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long interval, TimeUnit unit) {
-		return executor.scheduleAtFixedRate(() -> deliverMessage(target, message), delay, interval, unit);
+		return schedule(target, message, delay, interval, unit, ScheduledMessageWrapper.UNLIMITED_INVOCATIONS, null);
 	}
 
 	@Override
@@ -97,17 +94,24 @@ public class DefaultScheduler implements Scheduler {
 		SimpleLoggingUtil.debug(DefaultScheduler.class, "shutdown status:" + status);
 	}
 
+	/**
+	 * Delivers a scheduled message through the mailbox of the unit, so that
+	 * onMessage is never called concurrently with the mailbox draining. Units
+	 * which are not yet started, and so not accepting messages through their
+	 * mailbox, get the message directly on the scheduler thread.
+	 */
 	static <T> void deliverMessage(final RoboReference<T> reference, final T message) {
-		// Performance optimization - let the scheduling thread deliver the
-		// message directly if this is robo unit implementation, instead of
-		// enqueuing it with the message executor.
-		if (reference instanceof RoboUnit) {
+		if (reference instanceof RoboUnit && isNotStarted(reference.getState())) {
 			((RoboUnit<T>) reference).onMessage(message);
 		} else {
 			reference.sendMessage(message);
 		}
 	}
 
+	private static boolean isNotStarted(LifecycleState state) {
+		return state == LifecycleState.UNINITIALIZED || state == LifecycleState.INITIALIZED;
+	}
+
 	@Override
 	public ScheduledFuture<?> scheduleAtFixedRate(Runnable runnable, long delay, long interval, TimeUnit unit) {
 		return executor.scheduleAtFixedRate(runnable, delay, interval, unit);
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * A job scheduled with the {@link RealtimeScheduler}. Keeps track of how well
+ * the job is meeting its deadlines.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public interface RealtimeJob extends ScheduledFuture<Void> {
+	/**
+	 * @return the name of the job.
+	 */
+	String getName();
+
+	/**
+	 * @return the time, in nanoseconds, after its release that each execution
+	 *         of the job must be done by, or 0 if the job has no deadline.
+	 */
+	long getRelativeDeadline();
+
+	/**
+	 * @return a snapshot of the statistics for the job.
+	 */
+	RealtimeJobStatistics getStatistics();
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.HistogramSnapshot;
+
+/**
+ * Immutable snapshot of the statistics for a {@link RealtimeJob}.
+ * 
+ * <p>
+ * Units running real-time jobs can expose the statistics as attributes, using
+ * the attribute descriptors declared here, e.g. by answering
+ * {@link #getAttribute(AttributeDescriptor)} from their onGetAttribute.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class RealtimeJobStatistics implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The complete statistics snapshot.
+	 */
+	public static final AttributeDescriptor<RealtimeJobStatistics> ATTRIBUTE_STATISTICS = DefaultAttributeDescriptor
+			.create(RealtimeJobStatistics.class, "realtimeStatistics");
+	/**
+	 * The number of times the job has been run.
+	 */
+	public static final AttributeDescriptor<Long> ATTRIBUTE_INVOCATIONS = DefaultAttributeDescriptor.create(Long.class,
+			"realtimeInvocations");
+	/**
+	 * The number of executions finishing after their deadline, plus the number
+	 * of releases skipped since the job was too far behind.
+	 */
+	public static final AttributeDescriptor<Long> ATTRIBUTE_DEADLINE_MISSES = DefaultAttributeDescriptor.create(Long.class,
+			"realtimeDeadlineMisses");
+	/**
+	 * How late the executions started, relative to their release times.
+	 */
+	public static final AttributeDescriptor<HistogramSnapshot> ATTRIBUTE_JITTER = DefaultAttributeDescriptor
+			.create(HistogramSnapshot.class, "realtimeJitter");
+	/**
+	 * The time spent running the job.
+	 */
+	public static final AttributeDescriptor<HistogramSnapshot> ATTRIBUTE_EXECUTION_TIME = DefaultAttributeDescriptor
+			.create(HistogramSnapshot.class, "realtimeExecutionTime");
+
+	/**
+	 * All the statistics attributes.
+	 */
+	public static final Collection<AttributeDescriptor<?>> ATTRIBUTES = Collections.unmodifiableList(Arrays
+			.asList(ATTRIBUTE_STATISTICS, ATTRIBUTE_INVOCATIONS, ATTRIBUTE_DEADLINE_MISSES, ATTRIBUTE_JITTER, ATTRIBUTE_EXECUTION_TIME));
+
+	private final String name;
+	private final long invocations;
+	private final long deadlineMisses;
+	private final HistogramSnapshot jitter;
+	private final HistogramSnapshot executionTime;
+
+	RealtimeJobStatistics(String name, long invocations, long deadlineMisses, HistogramSnapshot jitter,
+			HistogramSnapshot executionTime) {
+		this.name = name;
+		this.invocations = invocations;
+		this.deadlineMisses = deadlineMisses;
+		this.jitter = jitter;
+		this.executionTime = executionTime;
+	}
+
+	/**
+	 * @return the name of the job.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the number of times the job has been run.
+	 */
+	public long getInvocations() {
+		return invocations;
+	}
+
+	/**
+	 * @return the number of deadlines missed.
+	 */
+	public long getDeadlineMisses() {
+		return deadlineMisses;
+	}
+
+	/**
+	 * @return how late, in nanoseconds, the executions started relative to
+	 *         their release times.
+	 */
+	public HistogramSnapshot getJitter() {
+		return jitter;
+	}
+
+	/**
+	 * @return the time, in nanoseconds, spent running the job.
+	 */
+	public HistogramSnapshot getExecutionTime() {
+		return executionTime;
+	}
+
+	/**
+	 * Returns the value of one of the statistics attributes.
+	 * 
+	 * @param descriptor
+	 *            the descriptor of the attribute.
+	 * @param <R>
+	 *            the type of the attribute.
+	 * @return the value, or null if the descriptor is not one of the
+	 *         statistics attributes.
+	 */
+	@SuppressWarnings("unchecked")
+	public <R> R getAttribute(AttributeDescriptor<R> descriptor) {
+		for (AttributeDescriptor<?> statisticsDescriptor : ATTRIBUTES) {
+			if (isSameAttribute(statisticsDescriptor, descriptor)) {
+				return (R) toAttributes().get(statisticsDescriptor);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the statistics as a map of attributes.
+	 */
+	public Map<AttributeDescriptor<?>, Object> toAttributes() {
+		Map<AttributeDescriptor<?>, Object> attributes = new HashMap<>();
+		attributes.put(ATTRIBUTE_STATISTICS, this);
+		attributes.put(ATTRIBUTE_INVOCATIONS, invocations);
+		attributes.put(ATTRIBUTE_DEADLINE_MISSES, deadlineMisses);
+		attributes.put(ATTRIBUTE_JITTER, jitter);
+		attributes.put(ATTRIBUTE_EXECUTION_TIME, executionTime);
+		return attributes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: invocations %d, deadline misses %d, jitter [%s], execution [%s]", name, invocations,
+				deadlineMisses, jitter, executionTime);
+	}
+
+	private static boolean isSameAttribute(AttributeDescriptor<?> a, AttributeDescriptor<?> b) {
+		return a.getAttributeName().equals(b.getAttributeName()) && a.getAttributeType().equals(b.getAttributeType());
+	}
+}
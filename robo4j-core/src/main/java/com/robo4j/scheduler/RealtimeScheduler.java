@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.robo4j.LatencyHistogram;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.logging.SimpleLoggingUtil;
+
+/**
+ * Scheduler for time critical periodic jobs, such as control loops, where the
+ * accuracy of the period matters more than throughput. It runs on its own
+ * maximum priority threads, not shared with the rest of the system.
+ * 
+ * <p>
+ * Periodic jobs are run at a fixed rate, with the release times computed from
+ * the first release using {@link System#nanoTime()}, so that a late execution
+ * does not shift the following ones. A job falling more than a period behind
+ * skips the missed releases, instead of running them back to back. Each
+ * execution is expected to be done within the relative deadline of the job,
+ * which defaults to the period. Deadline misses, the jitter (how late each
+ * execution started) and the execution time are tracked per job, see
+ * {@link RealtimeJob#getStatistics()}.
+ * </p>
+ * 
+ * <p>
+ * Optionally, the scheduler threads busy-spin for the last part of the wait
+ * for a release, trading CPU for a lower jitter than parking can give. When
+ * several jobs are due at the same time, they are run in release order, or
+ * earliest deadline first if enabled.
+ * </p>
+ * 
+ * <p>
+ * Note that on Linux the JVM only applies thread priorities when run with
+ * sufficient privileges and -XX:ThreadPriorityPolicy=1.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class RealtimeScheduler implements Scheduler {
+	private static final int DEFAULT_NUMBER_OF_THREADS = 1;
+	private static final int TERMINATION_TIMEOUT_SEC = 4;
+	private static final String NAME_REALTIME = "Robo4J Realtime Scheduler";
+	private static final Comparator<Job> RELEASE_ORDER = Comparator.comparingLong((Job job) -> job.releaseNanos)
+			.thenComparingLong(job -> job.sequence);
+	private static final Comparator<Job> DEADLINE_ORDER = Comparator.comparingLong(Job::getAbsoluteDeadline)
+			.thenComparing(RELEASE_ORDER);
+
+	private final RoboContext context;
+	private final long spinNanos;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	// Jobs waiting for their release time
+	private final PriorityQueue<Job> waiting = new PriorityQueue<>(RELEASE_ORDER);
+	// Jobs released (or about to be, when spinning), waiting for a thread
+	private final PriorityQueue<Job> ready;
+	private final Set<Job> periodicJobs = ConcurrentHashMap.newKeySet();
+	private final AtomicLong sequencer = new AtomicLong();
+	private final List<Thread> threads = new ArrayList<>();
+	private volatile boolean running = true;
+
+	/**
+	 * Default constructor. One thread, no spinning, and release order.
+	 * 
+	 * @param context
+	 *            the context.
+	 */
+	public RealtimeScheduler(RoboContext context) {
+		this(context, DEFAULT_NUMBER_OF_THREADS, 0, TimeUnit.NANOSECONDS, false);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param context
+	 *            the context.
+	 * @param numberOfThreads
+	 *            the number of scheduler threads.
+	 * @param spinTime
+	 *            how long before a release to start busy-spinning, or 0 to
+	 *            never spin.
+	 * @param unit
+	 *            the time unit of the spin time.
+	 * @param earliestDeadlineFirst
+	 *            true to run the due job with the earliest deadline first,
+	 *            false to run them in release order.
+	 */
+	public RealtimeScheduler(RoboContext context, int numberOfThreads, long spinTime, TimeUnit unit, boolean earliestDeadlineFirst) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive, was " + numberOfThreads);
+		}
+		this.context = context;
+		this.spinNanos = Math.max(0, unit.toNanos(spinTime));
+		this.ready = new PriorityQueue<>(earliestDeadlineFirst ? DEADLINE_ORDER : RELEASE_ORDER);
+		RoboThreadFactory threadFactory = new RoboThreadFactory(new ThreadGroup(NAME_REALTIME), NAME_REALTIME, true);
+		for (int i = 0; i < numberOfThreads; i++) {
+			Thread thread = threadFactory.newThread(this::runJobs);
+			thread.setPriority(Thread.MAX_PRIORITY);
+			threads.add(thread);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Schedules a job to run periodically, at a fixed rate.
+	 * 
+	 * @param name
+	 *            the name of the job, used in the statistics.
+	 * @param runnable
+	 *            the job to run.
+	 * @param delay
+	 *            the time to the first release.
+	 * @param period
+	 *            the time between releases.
+	 * @param relativeDeadline
+	 *            the time after each release that the execution must be done
+	 *            by.
+	 * @param unit
+	 *            the time unit of the delay, period and deadline.
+	 * @return the scheduled job.
+	 */
+	public RealtimeJob scheduleAtFixedRate(String name, Runnable runnable, long delay, long period, long relativeDeadline,
+			TimeUnit unit) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("Period must be positive, was " + period);
+		}
+		if (relativeDeadline <= 0) {
+			throw new IllegalArgumentException("Deadline must be positive, was " + relativeDeadline);
+		}
+		Job job = new Job(name, runnable, release(delay, unit), unit.toNanos(period), unit.toNanos(relativeDeadline));
+		periodicJobs.add(job);
+		return enqueue(job);
+	}
+
+	/**
+	 * @return snapshots of the statistics for the periodic jobs currently
+	 *         scheduled.
+	 */
+	public Collection<RealtimeJobStatistics> getStatistics() {
+		List<RealtimeJobStatistics> statistics = new ArrayList<>();
+		for (Job job : periodicJobs) {
+			statistics.add(job.getStatistics());
+		}
+		return statistics;
+	}
+
+	@Override
+	public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long period, TimeUnit unit,
+			int numberOfInvocations, FinalInvocationListener listener) {
+		ScheduledMessageWrapper<T> command = new ScheduledMessageWrapper<>(context, target, numberOfInvocations, message,
+				listener, delay, period, unit);
+		RealtimeJob job = scheduleAtFixedRate(target.getId(), command, delay, period, period, unit);
+		command.setFuture(job);
+		return job;
+	}
+
+	@Override
+	public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long interval, TimeUnit unit,
+			int numberOfInvocations) {
+		return schedule(target, message, delay, interval, unit, numberOfInvocations, null);
+	}
+
+	@Override
+	public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long interval, TimeUnit unit) {
+		return schedule(target, message, delay, interval, unit, ScheduledMessageWrapper.UNLIMITED_INVOCATIONS, null);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable runnable, long delay, long interval, TimeUnit unit) {
+		return scheduleAtFixedRate(runnable.getClass().getName(), runnable, delay, interval, interval, unit);
+	}
+
+	@Override
+	public void schedule(Runnable runnable, long delay, TimeUnit unit) {
+		enqueue(new Job(runnable.getClass().getName(), runnable, release(delay, unit), 0, 0));
+	}
+
+	@Override
+	public void execute(Runnable r) {
+		schedule(r, 0, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> r) {
+		FutureTask<T> task = new FutureTask<>(r);
+		schedule(task, 0, TimeUnit.NANOSECONDS);
+		return task;
+	}
+
+	@Override
+	public void shutdown() throws InterruptedException {
+		running = false;
+		lock.lock();
+		try {
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TERMINATION_TIMEOUT_SEC);
+		boolean status = true;
+		for (Thread thread : threads) {
+			thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+			status &= !thread.isAlive();
+		}
+		cancelPending();
+		SimpleLoggingUtil.debug(RealtimeScheduler.class, "shutdown status:" + status);
+	}
+
+	private static long release(long delay, TimeUnit unit) {
+		// Keep far away releases from overflowing
+		return System.nanoTime() + Math.min(Math.max(0, unit.toNanos(delay)), Long.MAX_VALUE >> 2);
+	}
+
+	private Job enqueue(Job job) {
+		if (!running) {
+			throw new RejectedExecutionException("Scheduler is shut down");
+		}
+		requeue(job);
+		return job;
+	}
+
+	private void requeue(Job job) {
+		lock.lock();
+		try {
+			if (!running) {
+				job.cancel(false);
+				return;
+			}
+			waiting.add(job);
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void runJobs() {
+		Job job;
+		while ((job = takeJob()) != null) {
+			while (System.nanoTime() - job.releaseNanos < 0) {
+				Thread.onSpinWait();
+			}
+			job.execute();
+		}
+	}
+
+	private Job takeJob() {
+		lock.lock();
+		try {
+			while (running) {
+				long now = System.nanoTime();
+				Job next;
+				while ((next = waiting.peek()) != null && next.releaseNanos - now <= spinNanos) {
+					ready.add(waiting.poll());
+				}
+				while ((next = ready.poll()) != null) {
+					if (!next.isDone()) {
+						return next;
+					}
+				}
+				next = waiting.peek();
+				try {
+					if (next == null) {
+						available.await();
+					} else {
+						available.awaitNanos(next.releaseNanos - spinNanos - now);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return null;
+				}
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void cancelPending() {
+		List<Job> pending = new ArrayList<>();
+		lock.lock();
+		try {
+			pending.addAll(waiting);
+			pending.addAll(ready);
+			waiting.clear();
+			ready.clear();
+		} finally {
+			lock.unlock();
+		}
+		pending.forEach(job -> job.cancel(false));
+	}
+
+	/**
+	 * A one-shot or periodic job.
+	 */
+	private final class Job extends FutureTask<Void> implements RealtimeJob {
+		private final String name;
+		private final long sequence = sequencer.getAndIncrement();
+		private final long firstReleaseNanos;
+		private final long periodNanos;
+		private final long relativeDeadlineNanos;
+		private final LatencyHistogram jitter = new LatencyHistogram();
+		private final LatencyHistogram executionTime = new LatencyHistogram();
+		private final AtomicLong invocations = new AtomicLong();
+		private final AtomicLong deadlineMisses = new AtomicLong();
+		// Only changed while the job is not queued
+		private volatile long releaseNanos;
+		private long releaseIndex;
+
+		Job(String name, Runnable runnable, long releaseNanos, long periodNanos, long relativeDeadlineNanos) {
+			super(runnable, null);
+			this.name = name;
+			this.firstReleaseNanos = releaseNanos;
+			this.releaseNanos = releaseNanos;
+			this.periodNanos = periodNanos;
+			this.relativeDeadlineNanos = relativeDeadlineNanos;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public long getRelativeDeadline() {
+			return relativeDeadlineNanos;
+		}
+
+		@Override
+		public RealtimeJobStatistics getStatistics() {
+			return new RealtimeJobStatistics(name, invocations.get(), deadlineMisses.get(), jitter.snapshot(),
+					executionTime.snapshot());
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(releaseNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other == this) {
+				return 0;
+			}
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+
+		long getAbsoluteDeadline() {
+			return relativeDeadlineNanos == 0 ? Long.MAX_VALUE : releaseNanos + relativeDeadlineNanos;
+		}
+
+		void execute() {
+			long start = System.nanoTime();
+			jitter.record(start - releaseNanos);
+			boolean again = false;
+			if (periodNanos == 0) {
+				run();
+			} else {
+				again = runAndReset();
+			}
+			long end = System.nanoTime();
+			executionTime.record(end - start);
+			invocations.incrementAndGet();
+			if (relativeDeadlineNanos > 0 && end - releaseNanos > relativeDeadlineNanos) {
+				deadlineMisses.incrementAndGet();
+			}
+			if (again) {
+				advance(end);
+				requeue(this);
+			}
+		}
+
+		private void advance(long now) {
+			long next = releaseIndex + 1;
+			long latest = (now - firstReleaseNanos) / periodNanos;
+			if (latest > next) {
+				// Too far behind - skip to the latest release, rather than
+				// running the missed ones back to back
+				deadlineMisses.addAndGet(latest - next);
+				next = latest;
+			}
+			releaseIndex = next;
+			// Computed from the first release, so that errors do not add up
+			releaseNanos = firstReleaseNanos + next * periodNanos;
+		}
+
+		@Override
+		protected void done() {
+			periodicJobs.remove(this);
+		}
+	}
+}
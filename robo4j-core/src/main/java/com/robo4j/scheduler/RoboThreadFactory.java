@@ -46,6 +46,11 @@ public class RoboThreadFactory implements ThreadFactory {
 	 */
 	private final boolean isDaemon;
 
+	/**
+	 * Create virtual threads?
+	 */
+	private final boolean isVirtual;
+
 	/**
 	 * Constructor that initiates attributes
 	 *
@@ -54,15 +59,35 @@ public class RoboThreadFactory implements ThreadFactory {
 	 * @param isDaemon isDaemon
 	 */
 	public RoboThreadFactory(ThreadGroup threadGroup, String prefix, boolean isDaemon) {
+		this(threadGroup, prefix, isDaemon, false);
+	}
+
+	private RoboThreadFactory(ThreadGroup threadGroup, String prefix, boolean isDaemon, boolean isVirtual) {
 		this.threadGroup = threadGroup;
 		this.threadBaseName = prefix;
 		this.isDaemon = isDaemon;
+		this.isVirtual = isVirtual;
 		counter = new AtomicInteger(1);
 	}
 
+	/**
+	 * Creates a factory for virtual threads. Virtual threads are always daemon
+	 * threads, and do not belong to a user defined thread group.
+	 *
+	 * @param prefix prefix
+	 * @return the thread factory
+	 */
+	public static RoboThreadFactory createVirtual(String prefix) {
+		return new RoboThreadFactory(null, prefix, true, true);
+	}
+
 	@Override
 	public Thread newThread(Runnable r) {
-		Thread thread = new Thread(threadGroup, r, threadBaseName + "-" + counter.getAndIncrement());
+		String name = threadBaseName + "-" + counter.getAndIncrement();
+		if (isVirtual) {
+			return Thread.ofVirtual().name(name).unstarted(r);
+		}
+		Thread thread = new Thread(threadGroup, r, name);
 		thread.setDaemon(isDaemon);
 		return thread;
 	}
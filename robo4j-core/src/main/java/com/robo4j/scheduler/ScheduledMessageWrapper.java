@@ -17,15 +17,22 @@
 package com.robo4j.scheduler;
 
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
+import com.robo4j.jfr.ScheduledMessageEvent;
 
 /**
  * Used by the scheduler.
  * 
  * <p>
+ * Keeps track of when the next message is due, so that the lateness of each
+ * message can be recorded in a {@link ScheduledMessageEvent}.
+ * </p>
+ * 
+ * <p>
  * Internal implementation class.
  * </p>
  * 
@@ -33,20 +40,32 @@ import com.robo4j.RoboReference;
  * @author Miroslav Wengner (@miragemiko)
  */
 class ScheduledMessageWrapper<T> implements Runnable {
+	/**
+	 * Number of invocations to use to keep sending the message until the
+	 * future is cancelled.
+	 */
+	static final int UNLIMITED_INVOCATIONS = -1;
+
 	private final AtomicInteger counter;
 	private final RoboReference<T> reference;
 	private final T message;
 	private final RoboContext context;
 	private final FinalInvocationListener listener;
+	private final long periodNanos;
+	// Only accessed by the thread running the wrapper. The executor never
+	// runs the same periodic task concurrently.
+	private long dueNanos;
 	private ScheduledFuture<?> future;
 
 	ScheduledMessageWrapper(RoboContext context, RoboReference<T> reference, int numberOfInvocations, T message,
-			FinalInvocationListener listener) {
+			FinalInvocationListener listener, long delay, long period, TimeUnit unit) {
 		this.context = context;
 		this.reference = reference;
 		this.message = message;
 		this.listener = listener;
-		counter = new AtomicInteger(numberOfInvocations);
+		this.periodNanos = unit.toNanos(period);
+		this.dueNanos = System.nanoTime() + unit.toNanos(delay);
+		counter = numberOfInvocations == UNLIMITED_INVOCATIONS ? null : new AtomicInteger(numberOfInvocations);
 	}
 
 	private void cancel() {
@@ -58,7 +77,9 @@ class ScheduledMessageWrapper<T> implements Runnable {
 	}
 
 	public void onFinalInvocation(RoboContext context) {
-		listener.onFinalInvocation(context);
+		if (listener != null) {
+			listener.onFinalInvocation(context);
+		}
 	}
 
 	public void setFuture(ScheduledFuture<?> future) {
@@ -67,8 +88,14 @@ class ScheduledMessageWrapper<T> implements Runnable {
 
 	@Override
 	public void run() {
-		sendMessage();
-		if (counter.decrementAndGet() == 0) {
+		ScheduledMessageEvent event = new ScheduledMessageEvent();
+		if (event.isEnabled()) {
+			sendMessage(event);
+		} else {
+			sendMessage();
+		}
+		dueNanos += periodNanos;
+		if (counter != null && counter.decrementAndGet() == 0) {
 			onFinalInvocation(context);
 			cancel();
 		}
@@ -77,4 +104,16 @@ class ScheduledMessageWrapper<T> implements Runnable {
 	private void sendMessage() {
 		DefaultScheduler.deliverMessage(reference, message);
 	}
+
+	private void sendMessage(ScheduledMessageEvent event) {
+		event.begin();
+		long lateness = System.nanoTime() - dueNanos;
+		sendMessage();
+		event.end();
+		if (event.shouldCommit()) {
+			event.setUnitId(reference.getId());
+			event.setLateness(Math.max(0, lateness));
+			event.commit();
+		}
+	}
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+/**
+ * The scheduler implementations available to a Robo4J system.
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public enum SchedulerType {
+	/**
+	 * The {@link DefaultScheduler}, backed by a scheduled thread pool.
+	 */
+	DEFAULT,
+	/**
+	 * The {@link TimingWheelScheduler}, backed by a hashed timing wheel. Better
+	 * suited for many periodic jobs and timeouts, at the cost of rounding the
+	 * delays up to the tick resolution.
+	 */
+	TIMING_WHEEL;
+
+	/**
+	 * Parses a scheduler type from its configuration name. Both the enum
+	 * constant name and the dashed lower case form (e.g. timing-wheel) are
+	 * accepted.
+	 * 
+	 * @param name
+	 *            the name of the scheduler type.
+	 * @return the scheduler type.
+	 * @throws IllegalArgumentException
+	 *             if there is no scheduler type by that name.
+	 */
+	public static SchedulerType fromName(String name) {
+		return valueOf(name.trim().replace('-', '_').toUpperCase());
+	}
+}
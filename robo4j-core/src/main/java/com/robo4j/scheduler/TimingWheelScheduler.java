@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.logging.SimpleLoggingUtil;
+
+/**
+ * Scheduler backed by a hashed timing wheel. Scheduling and cancelling are
+ * O(1), and a single timer thread advances the wheel, handing the expired
+ * tasks to a small thread pool. Delays are rounded up to the tick resolution,
+ * so a task never runs early, but may run up to one tick late.
+ * 
+ * <p>
+ * The timer thread only wakes up for ticks with something in them, and parks
+ * when nothing is scheduled. Periodic tasks are run at a fixed rate, and never
+ * concurrently with themselves. Tasks still pending when the scheduler is shut
+ * down are cancelled.
+ * </p>
+ * 
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class TimingWheelScheduler implements Scheduler {
+	/**
+	 * The default tick resolution, in microseconds.
+	 */
+	public static final int DEFAULT_TICK_MICROS = 1000;
+	/**
+	 * The default number of buckets in the wheel.
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+
+	private static final int DEFAULT_NUMBER_OF_THREADS = 2;
+	private static final int TERMINATION_TIMEOUT_SEC = 4;
+	private static final String NAME_SCHEDULER = "Robo4J Scheduler";
+	private static final String NAME_TIMER = "Robo4J Scheduler Timer";
+
+	private final RoboContext context;
+	private final ThreadPoolExecutor executor;
+	private final long tickNanos;
+	private final int wheelSize;
+	private final int mask;
+	private final long startNanos;
+	private final List<List<WheelTimeout<?>>> wheel;
+	private final Queue<WheelTimeout<?>> incoming = new ConcurrentLinkedQueue<>();
+	private final Thread timerThread;
+	private volatile boolean running = true;
+	// Set while the timer thread is parked waiting for a later tick
+	private volatile boolean idle;
+	// Only accessed by the timer thread
+	private long currentTick;
+	private int pendingTimeouts;
+
+	/**
+	 * Default constructor.
+	 * 
+	 * @param context
+	 *            the context.
+	 */
+	public TimingWheelScheduler(RoboContext context) {
+		this(context, DEFAULT_NUMBER_OF_THREADS, DEFAULT_TICK_MICROS, TimeUnit.MICROSECONDS, DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param context
+	 *            the context.
+	 * @param numberOfThreads
+	 *            the number of threads running the expired tasks.
+	 * @param tickDuration
+	 *            the tick resolution.
+	 * @param unit
+	 *            the time unit of the tick resolution.
+	 * @param wheelSize
+	 *            the number of buckets in the wheel. Rounded up to the next
+	 *            power of two.
+	 */
+	public TimingWheelScheduler(RoboContext context, int numberOfThreads, long tickDuration, TimeUnit unit, int wheelSize) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("Tick duration must be positive, was " + tickDuration);
+		}
+		if (wheelSize < 1 || wheelSize > (1 << 30)) {
+			throw new IllegalArgumentException("Wheel size out of range: " + wheelSize);
+		}
+		this.context = context;
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheelSize = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+		this.mask = this.wheelSize - 1;
+		this.wheel = new ArrayList<>(this.wheelSize);
+		for (int i = 0; i < this.wheelSize; i++) {
+			wheel.add(new ArrayList<>());
+		}
+		ThreadGroup threadGroup = new ThreadGroup(NAME_SCHEDULER);
+		this.executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), new RoboThreadFactory(threadGroup, NAME_SCHEDULER, true));
+		this.startNanos = System.nanoTime();
+		this.timerThread = new RoboThreadFactory(threadGroup, NAME_TIMER, true).newThread(this::runTimer);
+		timerThread.start();
+	}
+
+	@Override
+	public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long interval, TimeUnit unit,
+			int numberOfInvocations) {
+		return schedule(target, message, delay, interval, unit, numberOfInvocations, null);
+	}
+
+	@Override
+	public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long period, TimeUnit unit,
+			int numberOfInvocations, FinalInvocationListener listener) {
+		ScheduledMessageWrapper<T> command = new ScheduledMessageWrapper<>(context, target, numberOfInvocations, message,
+				listener, delay, period, unit);
+		ScheduledFuture<?> future = scheduleAtFixedRate(command, delay, period, unit);
+		command.setFuture(future);
+		return future;
+	}
+
+	@Override
+	public <T> ScheduledFuture<?> schedule(RoboReference<T> target, T message, long delay, long interval, TimeUnit unit) {
+		return schedule(target, message, delay, interval, unit, ScheduledMessageWrapper.UNLIMITED_INVOCATIONS, null);
+	}
+
+	@Override
+	public void execute(Runnable r) {
+		executor.execute(r);
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> r) {
+		return executor.submit(r);
+	}
+
+	@Override
+	public void schedule(Runnable runnable, long delay, TimeUnit unit) {
+		enqueue(new WheelTimeout<>(runnable, deadline(delay, unit), 0));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable runnable, long delay, long interval, TimeUnit unit) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Interval must be positive, was " + interval);
+		}
+		return enqueue(new WheelTimeout<>(runnable, deadline(delay, unit), unit.toNanos(interval)));
+	}
+
+	@Override
+	public void shutdown() throws InterruptedException {
+		running = false;
+		LockSupport.unpark(timerThread);
+		timerThread.join(TimeUnit.SECONDS.toMillis(TERMINATION_TIMEOUT_SEC));
+		executor.shutdown();
+		var status = executor.awaitTermination(TERMINATION_TIMEOUT_SEC, TimeUnit.SECONDS);
+		SimpleLoggingUtil.debug(TimingWheelScheduler.class, "shutdown status:" + status);
+	}
+
+	/**
+	 * @return the tick resolution, in nanoseconds.
+	 */
+	public long getTickNanos() {
+		return tickNanos;
+	}
+
+	/**
+	 * @return the number of buckets in the wheel.
+	 */
+	public int getWheelSize() {
+		return wheelSize;
+	}
+
+	private static long deadline(long delay, TimeUnit unit) {
+		// Keep far away deadlines from overflowing
+		long delayNanos = Math.min(Math.max(0, unit.toNanos(delay)), Long.MAX_VALUE >> 2);
+		return System.nanoTime() + delayNanos;
+	}
+
+	private <V> WheelTimeout<V> enqueue(WheelTimeout<V> timeout) {
+		if (!running) {
+			throw new RejectedExecutionException("Scheduler is shut down");
+		}
+		incoming.add(timeout);
+		if (idle) {
+			LockSupport.unpark(timerThread);
+		}
+		return timeout;
+	}
+
+	private void reschedule(WheelTimeout<?> timeout) {
+		if (running) {
+			enqueue(timeout);
+		} else {
+			timeout.cancel(false);
+		}
+	}
+
+	private void runTimer() {
+		while (running) {
+			long nowTick = (System.nanoTime() - startNanos) / tickNanos;
+			transferIncoming(nowTick);
+			long nextTick = findNextTick();
+			if (nextTick < 0) {
+				park(0);
+			} else if (nextTick <= nowTick) {
+				// The buckets in between are empty, so they can be skipped
+				expire(wheel.get((int) (nextTick & mask)));
+				currentTick = nextTick + 1;
+			} else {
+				park(startNanos + nextTick * tickNanos);
+			}
+		}
+		cancelPending();
+	}
+
+	private void transferIncoming(long nowTick) {
+		if (pendingTimeouts == 0) {
+			// Nothing to keep in step with, so catch up with the clock
+			currentTick = Math.max(currentTick, nowTick);
+		}
+		WheelTimeout<?> timeout;
+		while ((timeout = incoming.poll()) != null) {
+			if (timeout.isCancelled()) {
+				continue;
+			}
+			long deadlineTick = Math.ceilDiv(timeout.deadlineNanos - startNanos, tickNanos);
+			long tick = Math.max(deadlineTick, currentTick);
+			timeout.remainingRounds = (tick - currentTick) / wheelSize;
+			wheel.get((int) (tick & mask)).add(timeout);
+			pendingTimeouts++;
+		}
+	}
+
+	private long findNextTick() {
+		if (pendingTimeouts == 0) {
+			return -1;
+		}
+		for (int i = 0; i < wheelSize; i++) {
+			long tick = currentTick + i;
+			if (!wheel.get((int) (tick & mask)).isEmpty()) {
+				return tick;
+			}
+		}
+		return -1;
+	}
+
+	private void expire(List<WheelTimeout<?>> bucket) {
+		int kept = 0;
+		for (int i = 0; i < bucket.size(); i++) {
+			WheelTimeout<?> timeout = bucket.get(i);
+			if (timeout.isCancelled()) {
+				pendingTimeouts--;
+				continue;
+			}
+			if (timeout.remainingRounds > 0) {
+				timeout.remainingRounds--;
+				bucket.set(kept++, timeout);
+				continue;
+			}
+			pendingTimeouts--;
+			try {
+				executor.execute(timeout);
+			} catch (RejectedExecutionException e) {
+				timeout.cancel(false);
+			}
+		}
+		bucket.subList(kept, bucket.size()).clear();
+	}
+
+	private void park(long deadlineNanos) {
+		idle = true;
+		// Re-check after publishing idle, so that a concurrent enqueue either
+		// sees idle or gets picked up here
+		if (incoming.isEmpty() && running) {
+			if (deadlineNanos == 0) {
+				LockSupport.park(this);
+			} else {
+				LockSupport.parkNanos(this, deadlineNanos - System.nanoTime());
+			}
+		}
+		idle = false;
+	}
+
+	private void cancelPending() {
+		for (List<WheelTimeout<?>> bucket : wheel) {
+			bucket.forEach(timeout -> timeout.cancel(false));
+			bucket.clear();
+		}
+		pendingTimeouts = 0;
+		WheelTimeout<?> timeout;
+		while ((timeout = incoming.poll()) != null) {
+			timeout.cancel(false);
+		}
+	}
+
+	/**
+	 * A task in the wheel.
+	 */
+	private final class WheelTimeout<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+		private final long periodNanos;
+		private volatile long deadlineNanos;
+		// Only accessed by the timer thread
+		private long remainingRounds;
+
+		WheelTimeout(Runnable runnable, long deadlineNanos, long periodNanos) {
+			super(runnable, null);
+			this.deadlineNanos = deadlineNanos;
+			this.periodNanos = periodNanos;
+		}
+
+		@Override
+		public boolean isPeriodic() {
+			return periodNanos > 0;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other == this) {
+				return 0;
+			}
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+
+		@Override
+		public void run() {
+			if (!isPeriodic()) {
+				super.run();
+			} else if (runAndReset()) {
+				// Fixed rate - a late run does not push the following ones
+				deadlineNanos += periodNanos;
+				reschedule(this);
+			}
+		}
+	}
+}
@@ -16,14 +16,17 @@
  */
 package com.robo4j.util;
 
+import com.robo4j.HistogramSnapshot;
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
+import com.robo4j.UnitMetrics;
 import com.robo4j.logging.SimpleLoggingUtil;
 
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Some useful little utilities.
@@ -54,15 +57,33 @@ public final class SystemUtil {
 		// formatter:off
 		builder.append("RoboSystem state ").append(ctx.getState().getLocalizedName()).append(BREAK)
 				.append(DELIMITER_HORIZONTAL).append(BREAK);
+		Map<String, UnitMetrics> metrics = ctx.getMetrics();
 		for (RoboReference<?> reference : references) {
 			builder.append(
 					String.format("    %-25s   %13s", reference.getId(), reference.getState().getLocalizedName()))
 					.append(BREAK);
+			UnitMetrics unitMetrics = metrics.get(reference.getId());
+			if (unitMetrics != null) {
+				builder.append(printMetrics(unitMetrics)).append(BREAK);
+			}
 		}
 		// formatter:on
 		return builder.toString();
 	}
 
+	private static String printMetrics(UnitMetrics metrics) {
+		HistogramSnapshot queueLatency = metrics.getQueueLatency();
+		HistogramSnapshot processingTime = metrics.getProcessingTime();
+		return String.format(
+				"        queue %d/%d  %.1f msg/s  latency p50 %s p99 %s  onMessage p50 %s p99 %s  dropped %d  failed %d",
+				metrics.getQueueDepth(), metrics.getMailboxCapacity(), metrics.getThroughput(),
+				HistogramSnapshot.format(queueLatency.getValueAtPercentile(50)),
+				HistogramSnapshot.format(queueLatency.getValueAtPercentile(99)),
+				HistogramSnapshot.format(processingTime.getValueAtPercentile(50)),
+				HistogramSnapshot.format(processingTime.getValueAtPercentile(99)), metrics.getDroppedCount(),
+				metrics.getFailedCount());
+	}
+
 	// TODO: 1/25/18 (miro) convert it to JSON message
 	public static String printSocketEndPoint(RoboReference<?> point, RoboReference<?> codecUnit) {
 		final int port = point.getConfiguration().getInteger("port", 0);
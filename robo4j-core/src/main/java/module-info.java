@@ -21,6 +21,7 @@
 module robo4j.core {
     requires java.logging;
     requires java.xml;
+    requires jdk.jfr;
 
     exports com.robo4j;
     exports com.robo4j.util;
@@ -29,6 +30,7 @@ module robo4j.core {
     exports com.robo4j.reflect;
     exports com.robo4j.scheduler;
     exports com.robo4j.net;
+    exports com.robo4j.jfr;
 
     uses com.robo4j.BlockingTrait;
     uses com.robo4j.util.Utf8Constant;
@@ -36,6 +38,7 @@ module robo4j.core {
 
     uses com.robo4j.net.LookupService;
     uses com.robo4j.net.RoboContextDescriptor;
+    uses com.robo4j.net.MessageCodec;
     provides com.robo4j.net.LookupService with com.robo4j.net.LocalLookupServiceImpl;
 
 
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the mailbox ring buffer.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class MessageRingBufferTests {
+
+    @Test
+    void testExactCapacity() {
+        MessageRingBuffer<Integer> buffer = new MessageRingBuffer<>(3);
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertTrue(buffer.offer(3));
+        assertFalse(buffer.offer(4));
+        assertEquals(3, buffer.size());
+
+        assertEquals(1, buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertEquals(2, buffer.poll());
+        assertEquals(3, buffer.poll());
+        assertEquals(4, buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+        assertEquals(4, buffer.getAddedCount());
+        assertEquals(4, buffer.getRemovedCount());
+    }
+
+    @Test
+    void testCapacityOne() {
+        MessageRingBuffer<String> buffer = new MessageRingBuffer<>(1);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(buffer.offer("message" + i));
+            assertFalse(buffer.offer("overflow"));
+            assertEquals("message" + i, buffer.poll());
+        }
+    }
+
+    @Test
+    void testConcurrentProducers() throws InterruptedException {
+        int producers = 4;
+        int messagesPerProducer = 10000;
+        MessageRingBuffer<Integer> buffer = new MessageRingBuffer<>(64);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            int offset = i * messagesPerProducer;
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < messagesPerProducer; j++) {
+                    while (!buffer.offer(offset + j)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        Set<Integer> received = new HashSet<>();
+        while (received.size() < producers * messagesPerProducer) {
+            Integer value = buffer.poll();
+            if (value == null) {
+                Thread.yield();
+            } else {
+                assertTrue(received.add(value));
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.jfr.MessageDeliveryEvent;
+import com.robo4j.jfr.ScheduledMessageEvent;
+import com.robo4j.jfr.UnitLifecycleEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the flight recorder events emitted by the core runtime.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboJfrEventsTests {
+    private static final int TIMEOUT_SEC = 5;
+    private static final String ID_CONSUMER = "consumer";
+    private static final int MESSAGES = 5;
+
+    public static class LatchedConsumer extends RoboUnit<String> {
+        private final CountDownLatch latch = new CountDownLatch(MESSAGES);
+
+        public LatchedConsumer(RoboContext context, String id) {
+            super(String.class, context, id);
+        }
+
+        @Override
+        public void onMessage(String message) {
+            latch.countDown();
+        }
+    }
+
+    @Test
+    void testDeliveryLifecycleAndSchedulerEvents() throws Exception {
+        Path file = Files.createTempFile("robo4j", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(MessageDeliveryEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(UnitLifecycleEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(ScheduledMessageEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            RoboSystem system = new RoboSystem();
+            LatchedConsumer consumer = new LatchedConsumer(system, ID_CONSUMER);
+            system.addUnits(consumer);
+            system.start();
+            RoboReference<String> reference = system.getReference(ID_CONSUMER);
+            for (int i = 0; i < MESSAGES - 2; i++) {
+                reference.sendMessage(String.valueOf(i));
+            }
+            system.getScheduler().schedule(reference, "scheduled", 1, 1, TimeUnit.MILLISECONDS, 2);
+            assertTrue(consumer.latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+            // Ordered after the messages, so all deliveries have completed
+            reference.getAttributes().get(TIMEOUT_SEC, TimeUnit.SECONDS);
+            system.shutdown();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        List<RecordedEvent> deliveries = eventsOfType(events, "robo4j.core.MessageDelivery");
+        assertFalse(deliveries.isEmpty());
+        for (RecordedEvent delivery : deliveries) {
+            assertEquals(ID_CONSUMER, delivery.getString("unitId"));
+            assertEquals("SYSTEM", delivery.getString("deliveryPolicy"));
+            assertTrue(delivery.getLong("queueWait") >= 0);
+        }
+
+        List<String> states = eventsOfType(events, "robo4j.core.UnitLifecycle").stream()
+                .filter(e -> ID_CONSUMER.equals(e.getString("unitId"))).map(e -> e.getString("state")).toList();
+        assertEquals(List.of(LifecycleState.STARTED.name(), LifecycleState.STOPPED.name(), LifecycleState.SHUTDOWN.name()),
+                states);
+
+        List<RecordedEvent> scheduled = eventsOfType(events, "robo4j.core.ScheduledMessage");
+        assertEquals(2, scheduled.size());
+        assertEquals(ID_CONSUMER, scheduled.get(0).getString("unitId"));
+    }
+
+    private static List<RecordedEvent> eventsOfType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name))
+                .sorted((e1, e2) -> e1.getStartTime().compareTo(e2.getStartTime())).toList();
+    }
+}
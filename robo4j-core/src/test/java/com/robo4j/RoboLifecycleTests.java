@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.ConfigurationBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the dependency ordered, parallel start and shutdown of units, and
+ * for adding and removing units at runtime.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboLifecycleTests {
+    private static final int TIMEOUT_SEC = 5;
+
+    /**
+     * Unit recording its life cycle calls, optionally waiting on a latch when
+     * starting.
+     */
+    public static class RecordingUnit extends RoboUnit<String> {
+        private final List<String> events;
+        private volatile CountDownLatch startLatch;
+
+        public RecordingUnit(RoboContext context, String id, List<String> events) {
+            super(String.class, context, id);
+            this.events = events;
+        }
+
+        @Override
+        public void start() {
+            events.add("start " + getId());
+            CountDownLatch latch = startLatch;
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    latch.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void stop() {
+            events.add("stop " + getId());
+        }
+
+        @Override
+        public void shutdown() {
+            events.add("shutdown " + getId());
+        }
+    }
+
+    @DependsOn("base")
+    public static class AnnotatedUnit extends RecordingUnit {
+        public AnnotatedUnit(RoboContext context, String id, List<String> events) {
+            super(context, id, events);
+        }
+    }
+
+    @Test
+    void testDependencyOrder() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        RoboSystem system = new RoboSystem();
+        RecordingUnit base = new RecordingUnit(system, "base", events);
+        AnnotatedUnit middle = new AnnotatedUnit(system, "middle", events);
+        RecordingUnit top = new RecordingUnit(system, "top", events);
+        top.initialize(new ConfigurationBuilder().addString(RoboBuilder.KEY_DEPENDS_ON, "middle, base").build());
+        system.addUnits(top, middle, base);
+        system.start();
+
+        LifecycleReport report = system.getStartupReport();
+        assertNotNull(report);
+        assertTrue(report.isSuccessful());
+        assertEquals(3, report.getWaveCount());
+        assertEquals(0, report.getEntry("base").getWave());
+        assertEquals(1, report.getEntry("middle").getWave());
+        assertEquals(2, report.getEntry("top").getWave());
+        assertEquals(LifecycleState.STARTED, top.getState());
+
+        system.shutdown();
+        assertEquals(List.of("start base", "start middle", "start top", "stop top", "stop middle", "stop base", "shutdown top",
+                "shutdown middle", "shutdown base"), events);
+        assertEquals(LifecycleState.SHUTDOWN, base.getState());
+    }
+
+    @Test
+    void testUnitsInWaveStartInParallel() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        RoboSystem system = new RoboSystem();
+        RecordingUnit first = new RecordingUnit(system, "first", events);
+        RecordingUnit second = new RecordingUnit(system, "second", events);
+        // Both units must be in start at the same time to get past the latch
+        CountDownLatch latch = new CountDownLatch(2);
+        first.startLatch = latch;
+        second.startLatch = latch;
+        system.addUnits(first, second);
+
+        long start = System.nanoTime();
+        system.start();
+        long duration = System.nanoTime() - start;
+        system.shutdown();
+
+        assertEquals(0, latch.getCount());
+        assertTrue(duration < TimeUnit.SECONDS.toNanos(TIMEOUT_SEC));
+        assertEquals(1, system.getStartupReport().getWaveCount());
+    }
+
+    @Test
+    void testTimeoutFailsDependents() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        RoboSystem system = new RoboSystem();
+        RecordingUnit stuck = new RecordingUnit(system, "stuck", events);
+        stuck.initialize(new ConfigurationBuilder().addInteger(RoboBuilder.KEY_LIFECYCLE_TIMEOUT, 100).build());
+        // Never released
+        stuck.startLatch = new CountDownLatch(2);
+        RecordingUnit dependent = new RecordingUnit(system, "dependent", events);
+        dependent.initialize(new ConfigurationBuilder().addString(RoboBuilder.KEY_DEPENDS_ON, "stuck").build());
+        RecordingUnit independent = new RecordingUnit(system, "independent", events);
+        system.addUnits(stuck, dependent, independent);
+        system.start();
+
+        LifecycleReport report = system.getStartupReport();
+        system.shutdown();
+
+        assertFalse(report.isSuccessful());
+        assertEquals(LifecycleState.FAILED, report.getEntry("stuck").getState());
+        assertEquals(LifecycleState.FAILED, report.getEntry("dependent").getState());
+        assertEquals(LifecycleState.STARTED, report.getEntry("independent").getState());
+        assertFalse(events.contains("start dependent"));
+        assertFalse(events.contains("stop stuck"));
+        assertTrue(events.contains("stop independent"));
+    }
+
+    @Test
+    void testCircularDependencies() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        RoboSystem system = new RoboSystem();
+        RecordingUnit first = new RecordingUnit(system, "first", events);
+        first.initialize(new ConfigurationBuilder().addString(RoboBuilder.KEY_DEPENDS_ON, "second").build());
+        RecordingUnit second = new RecordingUnit(system, "second", events);
+        second.initialize(new ConfigurationBuilder().addString(RoboBuilder.KEY_DEPENDS_ON, "first").build());
+        system.addUnits(first, second);
+
+        assertThrows(IllegalStateException.class, system::start);
+        assertEquals(LifecycleState.FAILED, system.getState());
+        assertTrue(events.isEmpty());
+        system.shutdown();
+        assertTrue(events.contains("shutdown first"));
+        assertTrue(events.contains("shutdown second"));
+    }
+
+    @Test
+    void testHotAddAndRemove() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        RoboSystem system = new RoboSystem();
+        RecordingUnit base = new RecordingUnit(system, "base", events);
+        system.addUnits(base);
+        system.start();
+
+        AnnotatedUnit added = new AnnotatedUnit(system, "added", events);
+        system.addUnits(added);
+        assertEquals(LifecycleState.STARTED, added.getState());
+        assertEquals(2, system.getUnits().size());
+        RoboReference<String> reference = system.getReference("added");
+        assertNotNull(reference);
+        assertSame(reference, system.getReference(added));
+
+        RecordingUnit duplicate = new RecordingUnit(system, "added", events);
+        assertThrows(IllegalArgumentException.class, () -> system.addUnits(duplicate));
+
+        assertSame(added, system.removeUnit("added"));
+        assertNull(system.getReference("added"));
+        assertNull(system.removeUnit("added"));
+        assertEquals(1, system.getUnits().size());
+        assertEquals(LifecycleState.SHUTDOWN, added.getState());
+        assertEquals(List.of("start base", "start added", "stop added", "shutdown added"), events);
+
+        system.shutdown();
+        assertThrows(IllegalStateException.class, () -> system.addUnits(added));
+    }
+}
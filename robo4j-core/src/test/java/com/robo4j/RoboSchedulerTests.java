@@ -19,15 +19,23 @@ package com.robo4j;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.configuration.ConfigurationBuilder;
 import com.robo4j.scheduler.FinalInvocationListener;
+import com.robo4j.scheduler.RealtimeJob;
+import com.robo4j.scheduler.RealtimeJobStatistics;
+import com.robo4j.scheduler.RealtimeScheduler;
 import com.robo4j.scheduler.Scheduler;
+import com.robo4j.scheduler.SchedulerType;
+import com.robo4j.scheduler.TimingWheelScheduler;
 import com.robo4j.units.StringConsumer;
 import com.robo4j.units.StringProducer;
 import com.robo4j.units.StringScheduledEmitter;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -131,6 +139,163 @@ class RoboSchedulerTests {
         system.shutdown();
     }
 
+    @Test
+    void testTimingWheelSchedulerWithPressureAndMultipleTasks() throws Exception {
+        Configuration configuration = new ConfigurationBuilder()
+                .addString(RoboBuilder.KEY_SCHEDULER_TYPE, "timing-wheel")
+                .addInteger(RoboBuilder.KEY_SCHEDULER_TICK, 500).build();
+        RoboSystem system = new RoboSystem(configuration);
+        assertTrue(system.getScheduler() instanceof TimingWheelScheduler);
+        StringConsumer consumer = new StringConsumer(system, "consumer");
+        system.addUnits(consumer);
+
+        SchedulerListener listener = new SchedulerListener();
+        ScheduledFuture<?> f1 = system.getScheduler().schedule(consumer, "Lalalala", 0, 1, TimeUnit.MILLISECONDS, 300,
+                listener);
+        ScheduledFuture<?> f2 = system.getScheduler().schedule(consumer, "bläblä", 1, 1, TimeUnit.MILLISECONDS, 300);
+
+        get(f1);
+        get(f2);
+
+        assertEquals(600, consumer.getReceivedMessages().size());
+        assertTrue(listener.wasFinalCalled);
+        system.shutdown();
+    }
+
+    @Test
+    void testTimingWheelNeverRunsEarly() throws Exception {
+        // Small wheel, so that the delays span several rounds
+        TimingWheelScheduler scheduler = new TimingWheelScheduler(new RoboSystem(), 1, 1, TimeUnit.MILLISECONDS, 8);
+        assertEquals(8, scheduler.getWheelSize());
+        int[] delays = {0, 5, 17, 40};
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        ConcurrentMap<Integer, Long> elapsed = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        for (int delay : delays) {
+            scheduler.schedule(() -> {
+                elapsed.put(delay, System.nanoTime() - start);
+                latch.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+
+        for (int delay : delays) {
+            assertTrue(elapsed.get(delay) >= TimeUnit.MILLISECONDS.toNanos(delay),
+                    "Delay " + delay + " ms ran after " + elapsed.get(delay) + " ns");
+        }
+    }
+
+    @Test
+    void testTimingWheelCancel() throws Exception {
+        TimingWheelScheduler scheduler = new TimingWheelScheduler(new RoboSystem());
+        AtomicInteger periodicRuns = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(3);
+        ScheduledFuture<?> periodic = scheduler.scheduleAtFixedRate(() -> {
+            periodicRuns.incrementAndGet();
+            started.countDown();
+        }, 0, 2, TimeUnit.MILLISECONDS);
+        AtomicInteger delayedRuns = new AtomicInteger();
+        ScheduledFuture<?> delayed = scheduler.scheduleAtFixedRate(delayedRuns::incrementAndGet, 20, 20, TimeUnit.MILLISECONDS);
+        assertTrue(delayed.cancel(false));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        periodic.cancel(false);
+        int runsAtCancel = periodicRuns.get();
+        Thread.sleep(50);
+        scheduler.shutdown();
+
+        assertTrue(periodic.isCancelled());
+        assertFalse(periodicRuns.get() > runsAtCancel + 1);
+        assertEquals(0, delayedRuns.get());
+    }
+
+    @Test
+    void testSchedulerTypeNames() {
+        assertEquals(SchedulerType.TIMING_WHEEL, SchedulerType.fromName("timing-wheel"));
+        assertEquals(SchedulerType.DEFAULT, SchedulerType.fromName("DEFAULT"));
+    }
+
+    @Test
+    void testRealtimeSchedulerConfiguration() throws Exception {
+        RoboSystem defaultSystem = new RoboSystem();
+        assertTrue(defaultSystem.getRealtimeScheduler() == defaultSystem.getScheduler());
+        defaultSystem.shutdown();
+
+        RoboSystem system = new RoboSystem(new ConfigurationBuilder()
+                .addInteger(RoboBuilder.KEY_REALTIME_POOL_SIZE, 1)
+                .addInteger(RoboBuilder.KEY_REALTIME_SPIN, 100).build());
+        assertTrue(system.getRealtimeScheduler() instanceof RealtimeScheduler);
+        StringConsumer consumer = new StringConsumer(system, "consumer");
+        system.addUnits(consumer);
+        ScheduledFuture<?> future = system.getRealtimeScheduler().schedule(consumer, "tick", 0, 2, TimeUnit.MILLISECONDS, 10);
+        get(future);
+        system.shutdown();
+
+        assertEquals(10, consumer.getReceivedMessages().size());
+        RealtimeJobStatistics statistics = ((RealtimeJob) future).getStatistics();
+        assertEquals("consumer", statistics.getName());
+        assertEquals(10, statistics.getInvocations());
+        assertEquals(10, statistics.getJitter().getCount());
+        assertEquals(10L, statistics.getAttribute(RealtimeJobStatistics.ATTRIBUTE_INVOCATIONS));
+    }
+
+    @Test
+    void testRealtimeSchedulerSkipsMissedReleases() throws Exception {
+        RealtimeScheduler scheduler = new RealtimeScheduler(new RoboSystem());
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(5);
+        RealtimeJob job = scheduler.scheduleAtFixedRate("slowStart", () -> {
+            if (runs.getAndIncrement() == 0) {
+                sleep(25);
+            }
+            latch.countDown();
+        }, 0, 5, 5, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        job.cancel(false);
+        scheduler.shutdown();
+
+        RealtimeJobStatistics statistics = job.getStatistics();
+        // The first run misses its own deadline, and the releases during it
+        assertTrue(statistics.getDeadlineMisses() >= 4, statistics.toString());
+        // ...which are skipped rather than run back to back
+        assertTrue(statistics.getJitter().getMax() < TimeUnit.MILLISECONDS.toNanos(25), statistics.toString());
+        assertTrue(scheduler.getStatistics().isEmpty());
+    }
+
+    @Test
+    void testRealtimeSchedulerEarliestDeadlineFirst() throws Exception {
+        assertEquals(List.of("relaxed", "urgent"), runDueJobs(false));
+        assertEquals(List.of("urgent", "relaxed"), runDueJobs(true));
+    }
+
+    private static List<String> runDueJobs(boolean earliestDeadlineFirst) throws Exception {
+        RealtimeScheduler scheduler = new RealtimeScheduler(new RoboSystem(), 1, 0, TimeUnit.MILLISECONDS, earliestDeadlineFirst);
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        // Keeps the only thread busy while both jobs are released
+        scheduler.execute(() -> sleep(50));
+        scheduler.scheduleAtFixedRate("relaxed", () -> {
+            order.add("relaxed");
+            done.countDown();
+        }, 5, 1000, 900, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate("urgent", () -> {
+            order.add("urgent");
+            done.countDown();
+        }, 10, 1000, 100, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        return order;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void get(ScheduledFuture<?> f) throws InterruptedException, ExecutionException {
         try {
             f.get();
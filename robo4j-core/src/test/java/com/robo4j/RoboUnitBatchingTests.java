@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.ConfigurationBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for delivering messages to units in batches.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboUnitBatchingTests {
+    private static final int TIMEOUT_SEC = 5;
+    private static final String ID_CONSUMER = "consumer";
+    private static final DefaultAttributeDescriptor<Integer> DESCRIPTOR_COUNT = DefaultAttributeDescriptor.create(Integer.class, "count");
+
+    /**
+     * Consumer recording the batches it receives.
+     */
+    public static class BatchConsumer extends RoboUnit<Integer> {
+        private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        private final List<Integer> received = new CopyOnWriteArrayList<>();
+        private volatile CountDownLatch latch = new CountDownLatch(0);
+
+        public BatchConsumer(RoboContext context, String id) {
+            super(Integer.class, context, id);
+        }
+
+        @Override
+        public void onMessages(List<Integer> messages) {
+            batchSizes.add(messages.size());
+            received.addAll(messages);
+            messages.forEach(m -> latch.countDown());
+        }
+
+        @Override
+        public void onMessage(Integer message) {
+            onMessages(List.of(message));
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+            if (DESCRIPTOR_COUNT.equals(descriptor)) {
+                return (R) Integer.valueOf(received.size());
+            }
+            return null;
+        }
+    }
+
+    @Test
+    void testQueuedMessagesDeliveredInBatches() throws Exception {
+        RoboSystem system = new RoboSystem();
+        BatchConsumer consumer = createConsumer(system, 8, 0);
+        consumer.latch = new CountDownLatch(20);
+        system.start();
+
+        // Enqueued in one go, so the drain sees all of them
+        system.getReference(ID_CONSUMER).sendMessages(range(20));
+        assertTrue(consumer.latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        system.shutdown();
+
+        assertEquals(List.of(8, 8, 4), consumer.batchSizes);
+        assertEquals(range(20), consumer.received);
+    }
+
+    @Test
+    void testLingerWaitsForBatchToFill() throws Exception {
+        RoboSystem system = new RoboSystem();
+        BatchConsumer consumer = createConsumer(system, 10, 200);
+        consumer.latch = new CountDownLatch(3);
+        system.start();
+
+        RoboReference<Integer> reference = system.getReference(ID_CONSUMER);
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            reference.sendMessage(i);
+        }
+        assertTrue(consumer.latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        long waited = System.nanoTime() - start;
+
+        consumer.latch = new CountDownLatch(10);
+        reference.sendMessages(range(10));
+        assertTrue(consumer.latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        system.shutdown();
+
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(150), "Batch delivered after " + waited + " ns");
+        assertEquals(List.of(3, 10), consumer.batchSizes);
+    }
+
+    @Test
+    void testRequestFlushesHeldBackBatch() throws Exception {
+        RoboSystem system = new RoboSystem();
+        createConsumer(system, 10, 60_000);
+        system.start();
+
+        RoboReference<Integer> reference = system.getReference(ID_CONSUMER);
+        reference.sendMessages(range(3));
+        // Ordered after the messages, so the batch must be delivered first
+        Integer count = reference.getAttribute(DESCRIPTOR_COUNT).get(TIMEOUT_SEC, TimeUnit.SECONDS);
+        system.shutdown();
+
+        assertEquals(3, count);
+    }
+
+    @Test
+    void testBatchingReference() throws Exception {
+        RoboSystem system = new RoboSystem();
+        BatchConsumer consumer = createConsumer(system, 100, 0);
+        consumer.latch = new CountDownLatch(12);
+        system.start();
+
+        BatchingRoboReference<Integer> reference = new BatchingRoboReference<>(system.getReference(ID_CONSUMER),
+                system.getScheduler(), 5, 50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 12; i++) {
+            reference.sendMessage(i);
+        }
+        assertTrue(consumer.latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        system.shutdown();
+
+        assertEquals(range(12), consumer.received);
+        assertTrue(consumer.batchSizes.size() <= 3);
+    }
+
+    private static BatchConsumer createConsumer(RoboSystem system, int batchSize, int lingerMillis) throws Exception {
+        BatchConsumer consumer = new BatchConsumer(system, ID_CONSUMER);
+        consumer.initialize(new ConfigurationBuilder()
+                .addBuilder(RoboBuilder.KEY_CONFIGURATION_MAILBOX, new ConfigurationBuilder()
+                        .addInteger(RoboBuilder.KEY_MAILBOX_BATCH_SIZE, batchSize)
+                        .addInteger(RoboBuilder.KEY_MAILBOX_BATCH_LINGER, lingerMillis))
+                .build());
+        system.addUnits(consumer);
+        return consumer;
+    }
+
+    private static List<Integer> range(int count) {
+        return IntStream.range(0, count).boxed().collect(Collectors.toCollection(ArrayList::new));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.ConfigurationBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for conflating units, only keeping the latest pending message.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboUnitConflatingTests {
+    private static final int TIMEOUT_SEC = 5;
+    private static final String ID_CONSUMER = "consumer";
+
+    /**
+     * Consumer blocking on the first message until the gate is opened.
+     */
+    public static class GatedLatestConsumer extends RoboUnit<String> {
+        private final List<String> received = new CopyOnWriteArrayList<>();
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private volatile CountDownLatch latch = new CountDownLatch(0);
+
+        public GatedLatestConsumer(RoboContext context, String id) {
+            super(String.class, context, id);
+        }
+
+        @Override
+        public void onMessage(String message) {
+            blocked.countDown();
+            try {
+                gate.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(message);
+            latch.countDown();
+        }
+    }
+
+    @ConflatingTrait
+    public static class LatestConsumer extends GatedLatestConsumer {
+        public LatestConsumer(RoboContext context, String id) {
+            super(context, id);
+        }
+    }
+
+    /**
+     * Conflates per sensor, the sensor being the first character of the
+     * message.
+     */
+    @ConflatingTrait
+    public static class PerSensorConsumer extends GatedLatestConsumer {
+        public PerSensorConsumer(RoboContext context, String id) {
+            super(context, id);
+        }
+
+        @Override
+        protected Object getConflationKey(String message) {
+            return message.substring(0, 1);
+        }
+    }
+
+    @Test
+    void testTraitKeepsLatestMessage() throws Exception {
+        GatedLatestConsumer consumer = new LatestConsumer(new RoboSystem(), ID_CONSUMER);
+        assertEquals(List.of("first", "d"), deliverWhileBlocked(consumer, 2, "a", "b", "c", "d"));
+    }
+
+    @Test
+    void testKeyedConflationKeepsLatestPerKeyInOrder() throws Exception {
+        GatedLatestConsumer consumer = new PerSensorConsumer(new RoboSystem(), ID_CONSUMER);
+        assertEquals(List.of("first", "a3", "b2"), deliverWhileBlocked(consumer, 3, "a1", "b1", "a2", "b2", "a3"));
+    }
+
+    @Test
+    void testConflatingFromConfiguration() throws Exception {
+        GatedLatestConsumer consumer = new GatedLatestConsumer(new RoboSystem(), ID_CONSUMER);
+        consumer.initialize(new ConfigurationBuilder()
+                .addBuilder(RoboBuilder.KEY_CONFIGURATION_MAILBOX, new ConfigurationBuilder()
+                        .addBoolean(RoboBuilder.KEY_MAILBOX_CONFLATING, true))
+                .build());
+        assertEquals(List.of("first", "c"), deliverWhileBlocked(consumer, 2, "a", "b", "c"));
+    }
+
+    @Test
+    void testBufferLimitsDistinctKeys() {
+        ConflatingBuffer<String> buffer = new ConflatingBuffer<>(2, m -> m.substring(0, 1), null);
+        assertTrue(buffer.offer("a1", 0));
+        assertTrue(buffer.offer("b1", 0));
+        assertFalse(buffer.offer("c1", 0));
+        assertTrue(buffer.offer("a2", 0));
+        assertEquals(2, buffer.size());
+        assertEquals(2, buffer.getAddedCount());
+
+        assertEquals("a2", buffer.poll());
+        assertTrue(buffer.offer("c1", 0));
+        assertEquals("b1", buffer.poll());
+        assertEquals("c1", buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+        assertEquals(3, buffer.getRemovedCount());
+    }
+
+    private static List<String> deliverWhileBlocked(GatedLatestConsumer consumer, int expectedCount, String... messages) throws Exception {
+        RoboSystem system = (RoboSystem) consumer.getContext();
+        system.addUnits(consumer);
+        system.start();
+        RoboReference<String> reference = system.getReference(ID_CONSUMER);
+
+        reference.sendMessage("first");
+        assertTrue(consumer.blocked.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        for (String message : messages) {
+            reference.sendMessage(message);
+        }
+        consumer.latch = new CountDownLatch(expectedCount);
+        consumer.gate.countDown();
+        assertTrue(consumer.latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        // Give any message that should have been conflated a chance to show up
+        Thread.sleep(100);
+        system.shutdown();
+        return consumer.received;
+    }
+}
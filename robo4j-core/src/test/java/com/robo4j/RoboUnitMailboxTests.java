@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.util.SystemUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.robo4j.RoboUnitTestUtils.getAttributeOrTimeout;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the unit mailboxes.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboUnitMailboxTests {
+    private static final int TIMEOUT_SEC = 5;
+    private static final String ID_CONSUMER = "consumer";
+
+    /**
+     * Consumer which will not return from the first message until the gate is
+     * opened.
+     */
+    @WorkTrait
+    public static class GatedConsumer extends RoboUnit<String> {
+        static final String PROP_TOTAL_MESSAGES = "totalMessages";
+        static final AttributeDescriptor<CountDownLatch> DESCRIPTOR_FIRST_MESSAGE_LATCH = DefaultAttributeDescriptor
+                .create(CountDownLatch.class, "firstMessageLatch");
+        static final AttributeDescriptor<CountDownLatch> DESCRIPTOR_GATE = DefaultAttributeDescriptor.create(CountDownLatch.class,
+                "gate");
+        static final AttributeDescriptor<CountDownLatch> DESCRIPTOR_RECEIVED_LATCH = DefaultAttributeDescriptor
+                .create(CountDownLatch.class, "receivedLatch");
+        private final List<String> receivedMessages = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch firstMessageLatch = new CountDownLatch(1);
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final AtomicInteger concurrentCalls = new AtomicInteger();
+        private volatile int maxConcurrentCalls;
+        private volatile CountDownLatch receivedLatch = new CountDownLatch(0);
+
+        public GatedConsumer(RoboContext context, String id) {
+            super(String.class, context, id);
+        }
+
+        @Override
+        public void onMessage(String message) {
+            int calls = concurrentCalls.incrementAndGet();
+            maxConcurrentCalls = Math.max(maxConcurrentCalls, calls);
+            receivedMessages.add(message);
+            firstMessageLatch.countDown();
+            try {
+                gate.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrentCalls.decrementAndGet();
+            receivedLatch.countDown();
+        }
+
+        @Override
+        protected void onInitialization(Configuration configuration) {
+            receivedLatch = new CountDownLatch(configuration.getInteger(PROP_TOTAL_MESSAGES, 0));
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+            if (descriptor == DESCRIPTOR_FIRST_MESSAGE_LATCH) {
+                return (R) firstMessageLatch;
+            }
+            if (descriptor == DESCRIPTOR_GATE) {
+                return (R) gate;
+            }
+            if (descriptor == DESCRIPTOR_RECEIVED_LATCH) {
+                return (R) receivedLatch;
+            }
+            return null;
+        }
+    }
+
+    @Test
+    void testMessagesNeverDeliveredConcurrently() throws Exception {
+        int senders = 4;
+        int messagesPerSender = 250;
+        RoboSystem system = new RoboSystem("mailboxSystem", 2, senders, 2);
+        GatedConsumer consumer = new GatedConsumer(system, ID_CONSUMER);
+        consumer.receivedLatch = new CountDownLatch(senders * messagesPerSender);
+        consumer.gate.countDown();
+        system.addUnits(consumer);
+        system.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < senders; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < messagesPerSender; j++) {
+                    consumer.sendMessage(String.valueOf(j));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        boolean allReceived = consumer.receivedLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+        system.shutdown();
+
+        assertTrue(allReceived);
+        assertEquals(senders * messagesPerSender, consumer.receivedMessages.size());
+        assertEquals(1, consumer.maxConcurrentCalls);
+    }
+
+    @Test
+    void testDropNewest() throws Exception {
+        List<String> received = sendToFullMailbox(MailboxOverflowPolicy.DROP_NEWEST);
+        assertEquals(List.of("0", "1", "2"), received);
+    }
+
+    @Test
+    void testDropOldest() throws Exception {
+        List<String> received = sendToFullMailbox(MailboxOverflowPolicy.DROP_OLDEST);
+        assertEquals(List.of("0", "4", "5"), received);
+    }
+
+    @Test
+    void testGrow() throws Exception {
+        RoboSystem system = new RoboSystem();
+        GatedConsumer consumer = createGatedConsumer(system, MailboxOverflowPolicy.GROW);
+        consumer.receivedLatch = new CountDownLatch(6);
+        system.addUnits(consumer);
+        system.start();
+
+        consumer.sendMessage("0");
+        assertTrue(consumer.firstMessageLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        for (int i = 1; i < 6; i++) {
+            consumer.sendMessage(String.valueOf(i));
+        }
+        consumer.gate.countDown();
+        assertTrue(consumer.receivedLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        system.shutdown();
+
+        assertEquals(List.of("0", "1", "2", "3", "4", "5"), consumer.receivedMessages);
+    }
+
+    @Test
+    void testBlockUntilDrained() throws Exception {
+        RoboSystem system = new RoboSystem();
+        GatedConsumer consumer = createGatedConsumer(system, MailboxOverflowPolicy.BLOCK);
+        consumer.receivedLatch = new CountDownLatch(4);
+        system.addUnits(consumer);
+        system.start();
+
+        consumer.sendMessage("0");
+        assertTrue(consumer.firstMessageLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        consumer.sendMessage("1");
+        consumer.sendMessage("2");
+        Thread sender = new Thread(() -> consumer.sendMessage("3"));
+        sender.start();
+        sender.join(200);
+        assertTrue(sender.isAlive(), "sender should block on the full mailbox");
+
+        consumer.gate.countDown();
+        sender.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SEC));
+        assertTrue(consumer.receivedLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        system.shutdown();
+
+        assertEquals(List.of("0", "1", "2", "3"), consumer.receivedMessages);
+    }
+
+    @Test
+    void testReject() throws Exception {
+        RoboSystem system = new RoboSystem();
+        GatedConsumer consumer = createGatedConsumer(system, MailboxOverflowPolicy.REJECT);
+        system.addUnits(consumer);
+        system.start();
+
+        consumer.sendMessage("0");
+        assertTrue(consumer.firstMessageLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        consumer.sendMessage("1");
+        consumer.sendMessage("2");
+        assertThrows(MailboxOverflowException.class, () -> consumer.sendMessage("3"));
+
+        consumer.gate.countDown();
+        system.shutdown();
+    }
+
+    @Test
+    void testMailboxFromXml() throws Exception {
+        RoboBuilder builder = new RoboBuilder();
+        builder.add(SystemUtil.getInputStreamByResourceName("testMailbox.xml"));
+        RoboContext system = builder.build();
+        system.start();
+
+        RoboReference<String> reference = system.getReference(ID_CONSUMER);
+        CountDownLatch firstMessageLatch = getAttributeOrTimeout(reference, GatedConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH);
+        CountDownLatch gate = getAttributeOrTimeout(reference, GatedConsumer.DESCRIPTOR_GATE);
+        CountDownLatch receivedLatch = getAttributeOrTimeout(reference, GatedConsumer.DESCRIPTOR_RECEIVED_LATCH);
+        reference.sendMessage("0");
+        assertTrue(firstMessageLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        reference.sendMessage("1");
+        assertThrows(MailboxOverflowException.class, () -> reference.sendMessage("2"));
+
+        gate.countDown();
+        boolean allReceived = receivedLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+        system.shutdown();
+        assertTrue(allReceived);
+    }
+
+    private List<String> sendToFullMailbox(MailboxOverflowPolicy policy) throws Exception {
+        RoboSystem system = new RoboSystem();
+        GatedConsumer consumer = createGatedConsumer(system, policy);
+        consumer.receivedLatch = new CountDownLatch(3);
+        system.addUnits(consumer);
+        system.start();
+
+        consumer.sendMessage("0");
+        assertTrue(consumer.firstMessageLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        for (int i = 1; i < 6; i++) {
+            consumer.sendMessage(String.valueOf(i));
+        }
+        consumer.gate.countDown();
+        assertTrue(consumer.receivedLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        system.shutdown();
+        return consumer.receivedMessages;
+    }
+
+    private static GatedConsumer createGatedConsumer(RoboSystem system, MailboxOverflowPolicy policy) throws ConfigurationException {
+        GatedConsumer consumer = new GatedConsumer(system, ID_CONSUMER);
+        ConfigurationBuilder mailboxBuilder = new ConfigurationBuilder().addInteger(RoboBuilder.KEY_MAILBOX_CAPACITY, 2)
+                .addString(RoboBuilder.KEY_MAILBOX_OVERFLOW_POLICY, policy.name());
+        Configuration configuration = new ConfigurationBuilder().addBuilder(RoboBuilder.KEY_CONFIGURATION_MAILBOX, mailboxBuilder).build();
+        consumer.initialize(configuration);
+        return consumer;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.util.SystemUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.robo4j.RoboUnitTestUtils.getAttributeOrTimeout;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the per unit message metrics.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboUnitMetricsTests {
+    private static final int TIMEOUT_SEC = 5;
+    private static final String ID_CONSUMER = "consumer";
+    private static final String MESSAGE_FAIL = "fail";
+
+    /**
+     * Consumer which fails on the message "fail".
+     */
+    public static class FailingConsumer extends RoboUnit<String> {
+        private volatile CountDownLatch latch = new CountDownLatch(0);
+
+        public FailingConsumer(RoboContext context, String id) {
+            super(String.class, context, id);
+        }
+
+        @Override
+        public void onMessage(String message) {
+            try {
+                if (MESSAGE_FAIL.equals(message)) {
+                    throw new IllegalStateException("Failing on purpose");
+                }
+            } finally {
+                latch.countDown();
+            }
+        }
+    }
+
+    @Test
+    void testMetricsDisabledByDefault() throws Exception {
+        RoboSystem system = new RoboSystem();
+        FailingConsumer consumer = new FailingConsumer(system, ID_CONSUMER);
+        system.addUnits(consumer);
+        system.start();
+
+        RoboReference<String> reference = system.getReference(ID_CONSUMER);
+        assertTrue(system.getMetrics().isEmpty());
+        assertFalse(reference.getKnownAttributes().contains(UnitMetrics.ATTRIBUTE_METRICS));
+        assertFalse(reference.getAttributes().get(TIMEOUT_SEC, TimeUnit.SECONDS).containsKey(UnitMetrics.ATTRIBUTE_METRICS));
+        system.shutdown();
+    }
+
+    @Test
+    void testProcessedAndFailed() throws Exception {
+        RoboSystem system = createSystem();
+        FailingConsumer consumer = new FailingConsumer(system, ID_CONSUMER);
+        consumer.latch = new CountDownLatch(12);
+        system.addUnits(consumer);
+        system.start();
+
+        for (int i = 0; i < 10; i++) {
+            consumer.sendMessage(String.valueOf(i));
+        }
+        consumer.sendMessage(MESSAGE_FAIL);
+        consumer.sendMessage(MESSAGE_FAIL);
+        assertTrue(consumer.latch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+
+        // Requests are ordered after the messages, so once this returns all
+        // messages have been recorded.
+        RoboReference<String> reference = system.getReference(ID_CONSUMER);
+        Map<AttributeDescriptor<?>, Object> attributes = reference.getAttributes().get(TIMEOUT_SEC, TimeUnit.SECONDS);
+        UnitMetrics metrics = (UnitMetrics) attributes.get(UnitMetrics.ATTRIBUTE_METRICS);
+        system.shutdown();
+
+        assertNotNull(metrics);
+        assertEquals(ID_CONSUMER, metrics.getId());
+        assertEquals(10, metrics.getProcessedCount());
+        assertEquals(2, metrics.getFailedCount());
+        assertEquals(0, metrics.getDroppedCount());
+        assertEquals(12, metrics.getQueueLatency().getCount());
+        assertEquals(12, metrics.getProcessingTime().getCount());
+        assertEquals(10L, attributes.get(UnitMetrics.ATTRIBUTE_PROCESSED));
+        assertTrue(metrics.getProcessingTime().getMax() >= metrics.getProcessingTime().getValueAtPercentile(50));
+    }
+
+    @Test
+    void testDroppedAndQueueDepth() throws Exception {
+        RoboSystem system = createSystem();
+        RoboUnitMailboxTests.GatedConsumer consumer = new RoboUnitMailboxTests.GatedConsumer(system, ID_CONSUMER);
+        consumer.initialize(new ConfigurationBuilder()
+                .addBuilder(RoboBuilder.KEY_CONFIGURATION_MAILBOX, new ConfigurationBuilder().addInteger(RoboBuilder.KEY_MAILBOX_CAPACITY, 2)
+                        .addString(RoboBuilder.KEY_MAILBOX_OVERFLOW_POLICY, MailboxOverflowPolicy.DROP_NEWEST.name()))
+                .build());
+        system.addUnits(consumer);
+        system.start();
+
+        RoboReference<String> reference = system.getReference(ID_CONSUMER);
+        CountDownLatch firstMessageLatch = consumer.onGetAttribute(RoboUnitMailboxTests.GatedConsumer.DESCRIPTOR_FIRST_MESSAGE_LATCH);
+        reference.sendMessage("0");
+        assertTrue(firstMessageLatch.await(TIMEOUT_SEC, TimeUnit.SECONDS));
+        for (int i = 1; i < 6; i++) {
+            reference.sendMessage(String.valueOf(i));
+        }
+
+        // The metrics attributes can be read while the unit is busy
+        assertEquals(2, getAttributeOrTimeout(reference, UnitMetrics.ATTRIBUTE_QUEUE_DEPTH));
+        assertEquals(3L, getAttributeOrTimeout(reference, UnitMetrics.ATTRIBUTE_DROPPED));
+        assertTrue(reference.getKnownAttributes().contains(UnitMetrics.ATTRIBUTE_QUEUE_DEPTH));
+        UnitMetrics metrics = system.getMetrics().get(ID_CONSUMER);
+        assertEquals(2, metrics.getMailboxCapacity());
+        assertTrue(SystemUtil.printStateReport(system).contains("queue 2/2"));
+
+        consumer.onGetAttribute(RoboUnitMailboxTests.GatedConsumer.DESCRIPTOR_GATE).countDown();
+        system.shutdown();
+    }
+
+    @Test
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1), snapshot.getMin());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), snapshot.getMax());
+        assertEquals(500_500, snapshot.getMean(), 0.001);
+        assertWithinRelativeError(TimeUnit.MICROSECONDS.toNanos(500), snapshot.getValueAtPercentile(50));
+        assertWithinRelativeError(TimeUnit.MICROSECONDS.toNanos(990), snapshot.getValueAtPercentile(99));
+        assertEquals(snapshot.getMax(), snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    void testHistogramBuckets() {
+        for (long value : new long[] { 0, 1, 31, 32, 63, 64, 1_000, 123_456_789, 1L << 36 }) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestValueOf(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < value);
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    private static void assertWithinRelativeError(long expected, long actual) {
+        assertTrue(Math.abs(expected - actual) <= expected / 32, "expected " + expected + " but was " + actual);
+    }
+
+    private static RoboSystem createSystem() {
+        return new RoboSystem("metricsSystem", new ConfigurationBuilder().addBoolean(RoboBuilder.KEY_METRICS_ENABLED, true).build());
+    }
+}
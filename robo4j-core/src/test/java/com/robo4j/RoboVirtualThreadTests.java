@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j;
+
+import com.robo4j.configuration.ConfigurationBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for delivering messages on virtual threads.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RoboVirtualThreadTests {
+    private static final int TIMEOUT_SEC = 5;
+
+    @VirtualThreadTrait
+    public static class VirtualConsumer extends RoboUnit<Integer> {
+        private final List<Integer> receivedMessages = new ArrayList<>();
+        private volatile boolean allOnVirtualThreads = true;
+        private volatile CountDownLatch latch = new CountDownLatch(0);
+
+        public VirtualConsumer(RoboContext context, String id) {
+            super(Integer.class, context, id);
+        }
+
+        @Override
+        public void onMessage(Integer message) {
+            allOnVirtualThreads &= Thread.currentThread().isVirtual();
+            receivedMessages.add(message);
+            latch.countDown();
+        }
+    }
+
+    @BlockingTrait
+    public static class SleepingConsumer extends RoboUnit<Integer> {
+        private volatile boolean allOnVirtualThreads = true;
+        private volatile CountDownLatch latch = new CountDownLatch(0);
+
+        public SleepingConsumer(RoboContext context, String id) {
+            super(Integer.class, context, id);
+        }
+
+        @Override
+        public void onMessage(Integer message) {
+            allOnVirtualThreads &= Thread.currentThread().isVirtual();
+            try {
+                Thread.sleep(message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            latch.countDown();
+        }
+    }
+
+    @Test
+    void testVirtualThreadTraitKeepsOrder() throws Exception {
+        int totalMessages = 1000;
+        RoboSystem system = new RoboSystem();
+        VirtualConsumer consumer = new VirtualConsumer(system, "consumer");
+        consumer.latch = new CountDownLatch(totalMessages);
+        system.addUnits(consumer);
+        system.start();
+
+        List<Integer> sent = new ArrayList<>();
+        for (int i = 0; i < totalMessages; i++) {
+            consumer.sendMessage(i);
+            sent.add(i);
+        }
+        boolean allReceived = consumer.latch.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+        system.shutdown();
+
+        assertTrue(allReceived);
+        assertTrue(consumer.allOnVirtualThreads);
+        assertEquals(sent, consumer.receivedMessages);
+    }
+
+    @Test
+    void testBlockingUnitsOnVirtualThreads() throws Exception {
+        int totalUnits = 200;
+        int sleepMillis = 500;
+        RoboSystem system = new RoboSystem("virtualSystem", new ConfigurationBuilder().addInteger(RoboBuilder.KEY_BLOCKING_POOL_SIZE, 1)
+                .addBoolean(RoboBuilder.KEY_BLOCKING_VIRTUAL_THREADS, true).build());
+        CountDownLatch latch = new CountDownLatch(totalUnits);
+        List<SleepingConsumer> consumers = new ArrayList<>();
+        for (int i = 0; i < totalUnits; i++) {
+            SleepingConsumer consumer = new SleepingConsumer(system, "consumer" + i);
+            consumer.latch = latch;
+            consumers.add(consumer);
+        }
+        system.addUnits(consumers.toArray(new RoboUnit<?>[0]));
+        system.start();
+
+        consumers.forEach(consumer -> consumer.sendMessage(sleepMillis));
+        boolean allReceived = latch.await(TIMEOUT_SEC, TimeUnit.SECONDS);
+        system.shutdown();
+
+        // With the single platform thread this would take totalUnits * sleepMillis
+        assertTrue(allReceived);
+        assertTrue(consumers.stream().allMatch(consumer -> consumer.allOnVirtualThreads));
+    }
+}
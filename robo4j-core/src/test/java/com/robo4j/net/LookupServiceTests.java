@@ -21,13 +21,19 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.robo4j.net.LookupServiceProvider.DEFAULT_MULTICAST_ADDRESS;
 import static com.robo4j.net.LookupServiceProvider.DEFAULT_PORT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 /**
@@ -88,6 +94,94 @@ class LookupServiceTests {
 		System.out.println("Address: " + remoteContext.getAddress());
 	}
 
+	@Test
+	void testRemoteContextSharedAndReconnected() throws IOException, InterruptedException {
+		LookupServiceImpl service = new LookupServiceImpl(DEFAULT_MULTICAST_ADDRESS, DEFAULT_PORT, 2f, new LocalLookupServiceImpl());
+		service.start();
+		RoboContextDescriptor descriptor = new RoboContextDescriptor("EvictedID", 100,
+				Map.of(RoboContextDescriptor.KEY_URI, "robo4j://localhost:12345"));
+		ContextEmitter emitter = new ContextEmitter(descriptor, InetAddress.getByName(DEFAULT_MULTICAST_ADDRESS), DEFAULT_PORT, 100);
+		for (int i = 0; i < 20 && service.getDescriptor(descriptor.getId()) == null; i++) {
+			emitter.emit();
+			Thread.sleep(50);
+		}
+
+		ClientRemoteRoboContext context = (ClientRemoteRoboContext) service.getContext(descriptor.getId());
+		assertSame(context, service.getContext(descriptor.getId()));
+		assertEquals(1, service.getRemoteContextCount());
+
+		// No more heartbeats
+		for (int i = 0; i < 40 && service.getDescriptor(descriptor.getId()) != null; i++) {
+			Thread.sleep(50);
+		}
+		assertNull(service.getDescriptor(descriptor.getId()));
+		// Still in use - disconnected, but not closed
+		assertFalse(context.isClosed());
+		assertFalse(context.isConnected());
+		assertEquals(1, service.getRemoteContextCount());
+
+		for (int i = 0; i < 20 && service.getDescriptor(descriptor.getId()) == null; i++) {
+			emitter.emit();
+			Thread.sleep(50);
+		}
+		assertSame(context, service.getContext(descriptor.getId()));
+		for (int i = 0; i < 3; i++) {
+			context.shutdown();
+		}
+		assertTrue(context.isClosed());
+		assertEquals(0, service.getRemoteContextCount());
+		service.stop();
+	}
+
+	@Test
+	void testHeartbeatsOnlyDecodedWhenChanged() throws IOException {
+		LookupServiceImpl service = new LookupServiceImpl(DEFAULT_MULTICAST_ADDRESS, DEFAULT_PORT, 2f, new LocalLookupServiceImpl());
+		List<String> events = new ArrayList<>();
+		service.addListener(new LookupServiceListener() {
+			@Override
+			public void contextAdded(RoboContextDescriptor descriptor) {
+				events.add("added " + descriptor.getId());
+			}
+
+			@Override
+			public void contextUpdated(RoboContextDescriptor descriptor) {
+				events.add("updated " + descriptor.getId());
+			}
+
+			@Override
+			public void contextRemoved(RoboContextDescriptor descriptor) {
+				events.add("removed " + descriptor.getId());
+			}
+		});
+		byte[] buffer = new byte[1500];
+		InetAddress sender = InetAddress.getLoopbackAddress();
+
+		int length = copyHeartbeat(new RoboContextDescriptor("ctx", 100, Map.of("name", "first")), buffer);
+		service.process(buffer, 10, sender, 0);
+		assertNull(service.getDescriptor("ctx"));
+		service.process(buffer, length, sender, 0);
+		RoboContextDescriptor first = service.getDescriptor("ctx");
+		assertEquals("first", first.getMetadata().get("name"));
+		service.process(buffer, length, sender, 100);
+		assertSame(first, service.getDescriptor("ctx"));
+
+		length = copyHeartbeat(new RoboContextDescriptor("ctx", 100, Map.of("name", "second")), buffer);
+		service.process(buffer, length, sender, 150);
+		assertEquals("second", service.getDescriptor("ctx").getMetadata().get("name"));
+
+		service.removeExpiredEntries(300);
+		assertNotNull(service.getDescriptor("ctx"));
+		service.removeExpiredEntries(300 + 500);
+		assertNull(service.getDescriptor("ctx"));
+		assertEquals(List.of("added ctx", "updated ctx", "removed ctx"), events);
+	}
+
+	private static int copyHeartbeat(RoboContextDescriptor descriptor, byte[] buffer) {
+		byte[] heartbeat = HearbeatMessageCodec.encode(descriptor);
+		System.arraycopy(heartbeat, 0, buffer, 0, heartbeat.length);
+		return heartbeat.length;
+	}
+
 	private static RoboContextDescriptor createRoboContextDescriptor() {
 		Map<String, String> metadata = new HashMap<>();
 		String id = "MyID";
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import com.robo4j.configuration.Configuration;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.configuration.ConfigurationFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the store-and-forward outbox.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class MessageOutboxTests {
+	private static final String CONTEXT_ID = "remote";
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testMessagesStoredAndReplayedInOrder() throws Exception {
+		Configuration configuration = createConfiguration().build();
+		MessageOutbox outbox = MessageOutbox.open(CONTEXT_ID, configuration, MessageCodecRegistry.getDefault());
+		// Link down - nobody listening
+		MessageClient deadClient = new MessageClient(createDeadURI(), CONTEXT_ID, ConfigurationFactory.createEmptyConfiguration());
+		outbox.attach(deadClient);
+		for (int i = 0; i < 10; i++) {
+			outbox.send("test", i);
+		}
+		awaitPendingCount(outbox, 10);
+		outbox.detach(deadClient);
+		deadClient.shutdown();
+		outbox.close();
+
+		// Survives a restart
+		outbox = MessageOutbox.open(CONTEXT_ID, configuration, MessageCodecRegistry.getDefault());
+		assertEquals(10, outbox.getPendingCount());
+
+		List<Object> messages = new CopyOnWriteArrayList<>();
+		CountDownLatch messageLatch = new CountDownLatch(11);
+		MessageServer server = startServer((uuid, id, message) -> {
+			messages.add(message);
+			messageLatch.countDown();
+		});
+		MessageClient client = new MessageClient(server.getListeningURI(), CONTEXT_ID, ConfigurationFactory.createEmptyConfiguration());
+		outbox.attach(client);
+		outbox.send("test", 10);
+		assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < messages.size(); i++) {
+			assertEquals(i, messages.get(i));
+		}
+		awaitPendingCount(outbox, 0);
+		outbox.close();
+		client.shutdown();
+		server.stop();
+	}
+
+	@Test
+	void testLatestOnlyAndTimeToLive() throws Exception {
+		MessageOutbox outbox = MessageOutbox.open(CONTEXT_ID,
+				createConfiguration().addString(MessageOutbox.KEY_LATEST_ONLY, Float.class.getName() + ", java.lang.Double").build(),
+				MessageCodecRegistry.getDefault());
+		outbox.send("test", "first");
+		outbox.send("test", 1.0f);
+		outbox.send("other", 1.5f);
+		outbox.send("test", "second");
+		outbox.send("test", 2.0f);
+		outbox.send("test", 3.0f);
+		assertEquals(6, outbox.getPendingCount());
+
+		MessageOutbox expiringOutbox = MessageOutbox.open("expiring",
+				createConfiguration().addLong(MessageOutbox.KEY_TIME_TO_LIVE, 1L).build(), MessageCodecRegistry.getDefault());
+		expiringOutbox.send("test", "stale");
+		Thread.sleep(20);
+
+		List<String> messages = new CopyOnWriteArrayList<>();
+		CountDownLatch messageLatch = new CountDownLatch(4);
+		MessageServer server = startServer((uuid, id, message) -> {
+			messages.add(id + ":" + message);
+			messageLatch.countDown();
+		});
+		MessageClient client = new MessageClient(server.getListeningURI(), CONTEXT_ID, ConfigurationFactory.createEmptyConfiguration());
+		expiringOutbox.attach(client);
+		awaitPendingCount(expiringOutbox, 0);
+		outbox.attach(client);
+		assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+		awaitPendingCount(outbox, 0);
+		assertEquals(List.of("test:first", "other:1.5", "test:second", "test:3.0"), messages);
+		outbox.close();
+		expiringOutbox.close();
+		client.shutdown();
+		server.stop();
+	}
+
+	@Test
+	void testSentSegmentsRemoved() throws Exception {
+		MessageOutbox outbox = MessageOutbox.open(CONTEXT_ID, createConfiguration().addInteger(MessageOutbox.KEY_SEGMENT_SIZE, 1024).build(),
+				MessageCodecRegistry.getDefault());
+		List<Object> messages = new CopyOnWriteArrayList<>();
+		CountDownLatch messageLatch = new CountDownLatch(200);
+		MessageServer server = startServer((uuid, id, message) -> {
+			messages.add(message);
+			messageLatch.countDown();
+		});
+		MessageClient client = new MessageClient(server.getListeningURI(), CONTEXT_ID, ConfigurationFactory.createEmptyConfiguration());
+		outbox.attach(client);
+		for (int i = 0; i < 200; i++) {
+			outbox.send("test", i);
+			// Sent before the next one, leaving segments with nothing pending
+			for (int j = 0; j < 1000 && outbox.getPendingCount() != 0; j++) {
+				Thread.sleep(1);
+			}
+		}
+		assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+		awaitPendingCount(outbox, 0);
+		for (int i = 0; i < messages.size(); i++) {
+			assertEquals(i, messages.get(i));
+		}
+		// Only the segment being appended to is left
+		try (Stream<Path> files = Files.list(directory.resolve(CONTEXT_ID))) {
+			assertTrue(files.count() <= 1);
+		}
+		outbox.close();
+		client.shutdown();
+		server.stop();
+	}
+
+	private ConfigurationBuilder createConfiguration() {
+		return new ConfigurationBuilder().addString(MessageOutbox.KEY_DIRECTORY, directory.toString())
+				.addLong(MessageOutbox.KEY_RETRY_INTERVAL, 100L);
+	}
+
+	private static void awaitPendingCount(MessageOutbox outbox, int expected) throws InterruptedException {
+		for (int i = 0; i < 100 && outbox.getPendingCount() != expected; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(expected, outbox.getPendingCount());
+	}
+
+	private static URI createDeadURI() throws Exception {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		return new URI("robo4j", "", "localhost", port, "", "", "");
+	}
+
+	private static MessageServer startServer(MessageCallback callback) throws Exception {
+		MessageServer server = new MessageServer(callback,
+				new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build());
+		Thread t = new Thread(() -> {
+			try {
+				server.start();
+			} catch (IOException e) {
+				fail(e.getMessage());
+			}
+		}, "Server Listener");
+		t.setDaemon(true);
+		t.start();
+		for (int i = 0; i < 10 && server.getListeningURI() == null; i++) {
+			Thread.sleep(250);
+		}
+		return server;
+	}
+}
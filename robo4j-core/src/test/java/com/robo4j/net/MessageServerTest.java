@@ -16,17 +16,38 @@
  */
 package com.robo4j.net;
 
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.LifecycleState;
+import com.robo4j.RoboBuilder;
 import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.configuration.ConfigurationBuilder;
 import com.robo4j.configuration.ConfigurationFactory;
+import com.robo4j.units.StringConsumer;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -196,6 +217,458 @@ public class MessageServerTest {
 		}
 	}
 
+	@Test
+	void testConnectionLimit() throws Exception {
+		CountDownLatch messageLatch = new CountDownLatch(1);
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+				.addInteger(MessageServer.KEY_MAX_CONNECTIONS, 1).build(), (uuid, id, message) -> messageLatch.countDown());
+
+		MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID,
+				ConfigurationFactory.createEmptyConfiguration());
+		client.connect();
+		client.sendMessage("test", "first");
+		assertTrue(messageLatch.await(2, TimeUnit.SECONDS));
+		assertEquals(1, server.getConnectionCount());
+
+		try (Socket refused = new Socket("localhost", server.getListeningPort())) {
+			refused.setSoTimeout(2000);
+			InputStream in = refused.getInputStream();
+			// Closed by the server without reading anything
+			assertEquals(-1, in.read());
+		}
+		assertEquals(1, server.getConnectionCount());
+		server.stop();
+	}
+
+	@Test
+	void testIdleConnectionIsClosed() throws Exception {
+		CountDownLatch messageLatch = new CountDownLatch(1);
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+				.addInteger(MessageServer.KEY_IDLE_TIMEOUT, 200).build(), (uuid, id, message) -> messageLatch.countDown());
+
+		MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID,
+				ConfigurationFactory.createEmptyConfiguration());
+		client.connect();
+		client.sendMessage("test", "first");
+		assertTrue(messageLatch.await(2, TimeUnit.SECONDS));
+
+		long deadline = System.currentTimeMillis() + 2000;
+		while (server.getConnectionCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(0, server.getConnectionCount());
+		server.stop();
+	}
+
+	@Test
+	void testBinaryProtocolWithCodec() throws Exception {
+		MessageCodecRegistry codecs = new MessageCodecRegistry();
+		codecs.register(new TestMessageTypeCodec());
+		List<Object> messages = new ArrayList<>();
+		CountDownLatch messageLatch = new CountDownLatch(3);
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build(),
+				(uuid, id, message) -> {
+					messages.add(message);
+					messageLatch.countDown();
+				}, codecs);
+
+		MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID,
+				ConfigurationFactory.createEmptyConfiguration(), codecs);
+		client.connect();
+		assertEquals(MessageProtocolConstants.PROTOCOL_VERSION, client.getProtocolVersion());
+		client.sendMessage("test1", new TestMessageType(1, "encoded", null));
+		// No codec for lists - falls back to serialization
+		client.sendMessage("test2", new ArrayList<>(List.of("serialized")));
+		client.sendMessage("test3", 3);
+		assertTrue(messageLatch.await(2, TimeUnit.SECONDS));
+
+		TestMessageType decoded = (TestMessageType) messages.get(0);
+		assertEquals(1, decoded.getNumber());
+		assertEquals("encoded", decoded.getText());
+		assertEquals(List.of("serialized"), messages.get(1));
+		assertEquals(3, messages.get(2));
+		client.shutdown();
+		server.stop();
+	}
+
+	@Test
+	void testObjectStreamProtocolClient() throws Exception {
+		List<Object> messages = new ArrayList<>();
+		CountDownLatch messageLatch = new CountDownLatch(2);
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build(),
+				(uuid, id, message) -> {
+					messages.add(message);
+					messageLatch.countDown();
+				}, MessageCodecRegistry.getDefault());
+
+		MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, new ConfigurationBuilder()
+				.addInteger(MessageClient.KEY_PROTOCOL_VERSION, MessageProtocolConstants.PROTOCOL_VERSION_OBJECT_STREAM).build());
+		client.connect();
+		assertEquals(MessageProtocolConstants.PROTOCOL_VERSION_OBJECT_STREAM, client.getProtocolVersion());
+		client.sendMessage("test1", "legacy");
+		client.sendMessage("test2", new TestMessageType(2, "serialized", null));
+		assertTrue(messageLatch.await(2, TimeUnit.SECONDS));
+
+		assertEquals("legacy", messages.get(0));
+		assertEquals("serialized", ((TestMessageType) messages.get(1)).getText());
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> client.getState("test1").get(5, TimeUnit.SECONDS));
+		assertInstanceOf(UnsupportedOperationException.class, e.getCause());
+		client.shutdown();
+		server.stop();
+	}
+
+	@Test
+	void testAsyncSendsArriveInOrder() throws Exception {
+		int messageCount = 500;
+		List<Object> messages = new ArrayList<>();
+		CountDownLatch messageLatch = new CountDownLatch(messageCount);
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build(),
+				(uuid, id, message) -> {
+					messages.add(message);
+					messageLatch.countDown();
+				});
+
+		MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, new ConfigurationBuilder()
+				.addInteger(MessageClient.KEY_LINGER, 1000).addInteger(MessageClient.KEY_SEND_QUEUE_SIZE, 16).build());
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < messageCount; i++) {
+			futures.add(client.sendMessageAsync("test", i));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+		assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+
+		for (int i = 0; i < messageCount; i++) {
+			assertEquals(i, messages.get(i));
+		}
+		client.shutdown();
+		server.stop();
+	}
+
+	@Test
+	void testUnencodableMessageOnlyFailsItself() throws Exception {
+		for (int protocolVersion : new int[] { MessageProtocolConstants.PROTOCOL_VERSION,
+				MessageProtocolConstants.PROTOCOL_VERSION_OBJECT_STREAM }) {
+			List<Object> messages = new ArrayList<>();
+			CountDownLatch messageLatch = new CountDownLatch(2);
+			MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build(),
+					(uuid, id, message) -> {
+						messages.add(message);
+						messageLatch.countDown();
+					});
+
+			MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID, new ConfigurationBuilder()
+					.addInteger(MessageClient.KEY_PROTOCOL_VERSION, protocolVersion).addInteger(MessageClient.KEY_LINGER, 100000)
+					.build());
+			CompletableFuture<Void> first = client.sendMessageAsync("test", "first");
+			CompletableFuture<Void> unencodable = client.sendMessageAsync("test", new Object());
+			CompletableFuture<Void> last = client.sendMessageAsync("test", "last");
+
+			ExecutionException e = assertThrows(ExecutionException.class, () -> unencodable.get(5, TimeUnit.SECONDS));
+			assertInstanceOf(MessageFrameCodec.UnencodableMessageException.class, e.getCause());
+			first.get(5, TimeUnit.SECONDS);
+			last.get(5, TimeUnit.SECONDS);
+			assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+			assertEquals(List.of("first", "last"), messages);
+			client.shutdown();
+			server.stop();
+		}
+	}
+
+	@Test
+	void testAsyncSendFailsWithoutServer() throws Exception {
+		int port;
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			port = serverSocket.getLocalPort();
+		}
+		MessageClient client = new MessageClient(URI.create("robo4j://localhost:" + port), CONST_MYUUID,
+				new ConfigurationBuilder().addInteger(MessageClient.KEY_RETRIES, 1).build());
+
+		CompletableFuture<Void> future = client.sendMessageAsync("test", "lost");
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(IOException.class, e.getCause());
+		client.shutdown();
+		assertThrows(IOException.class, () -> client.sendMessage("test", "after shutdown"));
+	}
+
+	@Test
+	void testRemoteAttributeRequests() throws Exception {
+		RoboContext system = new RoboBuilder().add(StringConsumer.class, "consumer").build();
+		system.start();
+		RoboReference<String> consumer = system.getReference("consumer");
+		consumer.sendMessage("first");
+		consumer.sendMessage("second");
+		for (int i = 0; i < 20 && consumer.getAttribute(StringConsumer.DESCRIPTOR_TOTAL_MESSAGES).get() < 2; i++) {
+			Thread.sleep(50);
+		}
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost").build(),
+				new MessageCallback() {
+					@Override
+					public void handleMessage(String sourceUuid, String id, Object message) {
+						system.getReference(id).sendMessage(message);
+					}
+
+					@Override
+					public RoboReference<?> getReference(String id) {
+						return system.getReference(id);
+					}
+				});
+		MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID,
+				ConfigurationFactory.createEmptyConfiguration());
+
+		DefaultAttributeDescriptor<List> receivedDescriptor = DefaultAttributeDescriptor.create(List.class,
+				StringConsumer.ATTR_GET_RECEIVED_MESSAGES);
+		Map<AttributeDescriptor<?>, Object> values = client
+				.getAttributes("consumer", List.of(StringConsumer.DESCRIPTOR_TOTAL_MESSAGES, receivedDescriptor))
+				.get(5, TimeUnit.SECONDS);
+		assertEquals(2, ClientRemoteRoboContext.getValue(values, StringConsumer.DESCRIPTOR_TOTAL_MESSAGES));
+		assertEquals(List.of("first", "second"), ClientRemoteRoboContext.getValue(values, receivedDescriptor));
+		assertEquals(LifecycleState.STARTED, client.getState("consumer").get(5, TimeUnit.SECONDS));
+		assertEquals(String.class.getName(), client.getMessageTypeName("consumer").get(5, TimeUnit.SECONDS));
+
+		// Many requests in flight on the same connection
+		List<CompletableFuture<Map<AttributeDescriptor<?>, Object>>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			futures.add(client.getAttributes("consumer", List.of(StringConsumer.DESCRIPTOR_TOTAL_MESSAGES)));
+		}
+		for (CompletableFuture<Map<AttributeDescriptor<?>, Object>> future : futures) {
+			assertEquals(2, ClientRemoteRoboContext.getValue(future.get(5, TimeUnit.SECONDS), StringConsumer.DESCRIPTOR_TOTAL_MESSAGES));
+		}
+
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> client.getState("missing").get(5, TimeUnit.SECONDS));
+		assertInstanceOf(IOException.class, e.getCause());
+		client.shutdown();
+		server.stop();
+		system.shutdown();
+	}
+
+	@Test
+	void testRequestsOverLimitOrUnencodableAreAnswered() throws Exception {
+		CompletableFuture<Object> blocked = new CompletableFuture<>();
+		DefaultAttributeDescriptor<String> blockingDescriptor = DefaultAttributeDescriptor.create(String.class, "blocking");
+		DefaultAttributeDescriptor<Object> unencodableDescriptor = DefaultAttributeDescriptor.create(Object.class, "unencodable");
+		RoboReference<String> reference = new RoboTestReference("test", ConfigurationFactory.createEmptyConfiguration()) {
+			@SuppressWarnings("unchecked")
+			@Override
+			public <R> Future<R> getAttribute(AttributeDescriptor<R> attribute) {
+				return (Future<R>) (attribute.getAttributeName().equals("blocking") ? blocked
+						: CompletableFuture.completedFuture(new Object()));
+			}
+		};
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+				.addInteger(MessageServer.KEY_MAX_REQUESTS_PER_CONNECTION, 1).build(), new MessageCallback() {
+					@Override
+					public void handleMessage(String sourceUuid, String id, Object message) {
+					}
+
+					@Override
+					public RoboReference<?> getReference(String id) {
+						return reference;
+					}
+				});
+		MessageClient client = new MessageClient(server.getListeningURI(), CONST_MYUUID,
+				ConfigurationFactory.createEmptyConfiguration());
+
+		CompletableFuture<Map<AttributeDescriptor<?>, Object>> pending = client.getAttributes("test", List.of(blockingDescriptor));
+		ExecutionException e = assertThrows(ExecutionException.class,
+				() -> client.getAttributes("test", List.of(blockingDescriptor)).get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause().getMessage().startsWith("Too many requests"));
+		blocked.complete("done");
+		assertEquals("done", ClientRemoteRoboContext.getValue(pending.get(5, TimeUnit.SECONDS), blockingDescriptor));
+
+		e = assertThrows(ExecutionException.class,
+				() -> client.getAttributes("test", List.of(unencodableDescriptor)).get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause().getMessage().startsWith("Could not encode response"));
+		client.shutdown();
+		server.stop();
+	}
+
+	@Test
+	void testSharedMemoryMessagePassing(@TempDir Path sharedMemoryDirectory) throws Exception {
+		List<Object> messages = new ArrayList<>();
+		CountDownLatch messageLatch = new CountDownLatch(100);
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+				.addInteger(MessageServer.KEY_SHARED_MEMORY_SIZE, 64 * 1024)
+				.addString(MessageServer.KEY_SHARED_MEMORY_DIRECTORY, sharedMemoryDirectory.toString()).build(),
+				(uuid, id, message) -> {
+					messages.add(message);
+					messageLatch.countDown();
+				});
+		assertNotNull(server.getSharedMemoryPath());
+
+		RoboContextDescriptorEntry entry = new RoboContextDescriptorEntry();
+		entry.address = InetAddress.getLoopbackAddress();
+		entry.descriptor = new RoboContextDescriptor("remote", 1000,
+				Map.of(RoboContextDescriptor.KEY_URI, server.getListeningURI().toString(), RoboContextDescriptor.KEY_SHARED_MEMORY,
+						server.getSharedMemoryPath()));
+		ClientRemoteRoboContext context = new ClientRemoteRoboContext(entry);
+		assertTrue(context.isUsingSharedMemory());
+		RoboReference<Object> reference = context.getReference("test");
+		for (int i = 0; i < 100; i++) {
+			reference.sendMessage(i % 2 == 0 ? i : new TestMessageType(i, "shared", null));
+		}
+		assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 100; i++) {
+			Object message = messages.get(i);
+			assertEquals(i, message instanceof TestMessageType type ? type.getNumber() : message);
+		}
+		// Never went over the network
+		assertEquals(0, server.getConnectionCount());
+
+		stopSharedMemoryServer(server);
+		reference.sendMessage("after stop");
+		assertFalse(context.isUsingSharedMemory());
+		context.shutdown();
+	}
+
+	@Test
+	void testSharedMemoryMessagesStayInOrderWhenSwitchingToNetwork(@TempDir Path sharedMemoryDirectory) throws Exception {
+		List<Object> messages = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch messageLatch = new CountDownLatch(201);
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+				.addInteger(MessageServer.KEY_SHARED_MEMORY_SIZE, 64 * 1024)
+				.addString(MessageServer.KEY_SHARED_MEMORY_DIRECTORY, sharedMemoryDirectory.toString()).build(),
+				(uuid, id, message) -> {
+					messages.add(message);
+					messageLatch.countDown();
+				});
+
+		RoboContextDescriptorEntry entry = new RoboContextDescriptorEntry();
+		entry.address = InetAddress.getLoopbackAddress();
+		entry.descriptor = new RoboContextDescriptor("remote", 1000,
+				Map.of(RoboContextDescriptor.KEY_URI, server.getListeningURI().toString(), RoboContextDescriptor.KEY_SHARED_MEMORY,
+						server.getSharedMemoryPath()));
+		ClientRemoteRoboContext context = new ClientRemoteRoboContext(entry);
+		assertTrue(context.isUsingSharedMemory());
+		RoboReference<Object> reference = context.getReference("test");
+		for (int i = 0; i < 100; i++) {
+			reference.sendMessage(i);
+		}
+		// Too large for the ring, the unit switches to the network
+		reference.sendMessage(new byte[64 * 1024]);
+		for (int i = 100; i < 200; i++) {
+			reference.sendMessage(i);
+		}
+		assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+		assertEquals(1, server.getConnectionCount());
+		for (int i = 0; i < 201; i++) {
+			Object message = messages.get(i);
+			if (i == 100) {
+				assertTrue(message instanceof byte[]);
+			} else {
+				assertEquals(i < 100 ? i : i - 1, message);
+			}
+		}
+		context.shutdown();
+		stopSharedMemoryServer(server);
+	}
+
+	@Test
+	void testSharedMemoryFullRingFallsBackToNetworkInOrder(@TempDir Path sharedMemoryDirectory) throws Exception {
+		int count = 5000;
+		List<Object> messages = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch messageLatch = new CountDownLatch(count);
+		CountDownLatch readerGate = new CountDownLatch(1);
+		MessageServer server = startServer(new ConfigurationBuilder().addString(MessageServer.KEY_HOST_NAME, "localhost")
+				.addInteger(MessageServer.KEY_SHARED_MEMORY_SIZE, 64 * 1024)
+				.addString(MessageServer.KEY_SHARED_MEMORY_DIRECTORY, sharedMemoryDirectory.toString()).build(),
+				(uuid, id, message) -> {
+					try {
+						// Holds the reader up until the ring is full
+						readerGate.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					messages.add(message);
+					messageLatch.countDown();
+				});
+
+		RoboContextDescriptorEntry entry = new RoboContextDescriptorEntry();
+		entry.address = InetAddress.getLoopbackAddress();
+		entry.descriptor = new RoboContextDescriptor("remote", 1000,
+				Map.of(RoboContextDescriptor.KEY_URI, server.getListeningURI().toString(), RoboContextDescriptor.KEY_SHARED_MEMORY,
+						server.getSharedMemoryPath()));
+		ClientRemoteRoboContext context = new ClientRemoteRoboContext(entry);
+		assertTrue(context.isUsingSharedMemory());
+		RoboReference<Object> reference = context.getReference("test");
+		Thread sender = new Thread(() -> {
+			for (int i = 0; i < count; i++) {
+				reference.sendMessage(i);
+			}
+		});
+		sender.start();
+		Thread.sleep(200);
+		readerGate.countDown();
+		sender.join(5000);
+
+		assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+		// Nothing lost, the messages left over went over the network
+		assertEquals(1, server.getConnectionCount());
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, messages.get(i));
+		}
+		context.shutdown();
+		stopSharedMemoryServer(server);
+	}
+
+	private static void stopSharedMemoryServer(MessageServer server) throws InterruptedException {
+		Path path = Path.of(server.getSharedMemoryPath());
+		server.stop();
+		// The ring is removed by the reader thread
+		for (int i = 0; i < 20 && Files.exists(path); i++) {
+			Thread.sleep(50);
+		}
+	}
+
+	private static final class TestMessageTypeCodec implements MessageCodec<TestMessageType> {
+		@Override
+		public int getId() {
+			return 1000;
+		}
+
+		@Override
+		public Class<TestMessageType> getMessageType() {
+			return TestMessageType.class;
+		}
+
+		@Override
+		public void encode(TestMessageType message, DataOutput out) throws IOException {
+			out.writeInt(message.getNumber());
+			out.writeUTF(message.getText());
+		}
+
+		@Override
+		public TestMessageType decode(DataInput in) throws IOException {
+			return new TestMessageType(in.readInt(), in.readUTF(), null);
+		}
+	}
+
+	private MessageServer startServer(Configuration configuration, MessageCallback callback) throws Exception {
+		return startServer(configuration, callback, MessageCodecRegistry.getDefault());
+	}
+
+	private MessageServer startServer(Configuration configuration, MessageCallback callback, MessageCodecRegistry codecs)
+			throws Exception {
+		MessageServer server = new MessageServer(callback, configuration, codecs);
+		Thread t = new Thread(() -> {
+			try {
+				server.start();
+			} catch (IOException e) {
+				exception = e;
+			}
+		}, "Server Listener");
+		t.setDaemon(true);
+		t.start();
+		for (int i = 0; i < 10 && server.getListeningURI() == null; i++) {
+			Thread.sleep(250);
+		}
+		if (exception != null) {
+			throw exception;
+		}
+		return server;
+	}
+
 	public static RoboContext createTestContext() {
 		RoboTestContext testContext = new RoboTestContext("TestContext", ConfigurationFactory.createEmptyConfiguration());
 		Configuration configuration = new ConfigurationBuilder().addString("name", "Test").addString("description", "Lalalala").build();
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the sharing of remote contexts.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class RemoteContextCacheTests {
+
+    @Test
+    void contextIsSharedUntilLastRelease() {
+        RemoteContextCache cache = new RemoteContextCache();
+        RoboContextDescriptorEntry entry = createEntry("shared", 12345);
+
+        ClientRemoteRoboContext first = cache.acquire(entry);
+        ClientRemoteRoboContext second = cache.acquire(entry);
+        assertSame(first, second);
+        assertEquals(2, first.getReferenceCount());
+        assertEquals(1, cache.size());
+
+        first.shutdown();
+        assertFalse(first.isClosed());
+        second.shutdown();
+        assertTrue(first.isClosed());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void disconnectedContextReconnectsWhenUsed() {
+        RemoteContextCache cache = new RemoteContextCache();
+        ClientRemoteRoboContext context = cache.acquire(createEntry("disconnected", 12345));
+
+        cache.disconnect("disconnected");
+        assertFalse(context.isClosed());
+        assertFalse(context.isConnected());
+
+        // Rediscovered - the holders and the new user share the context
+        ClientRemoteRoboContext rediscovered = cache.acquire(createEntry("disconnected", 12345));
+        assertSame(context, rediscovered);
+        assertEquals(2, context.getReferenceCount());
+        context.getReference("unit").sendMessage("reconnect");
+        assertTrue(context.isConnected());
+
+        context.shutdown();
+        rediscovered.shutdown();
+        assertTrue(context.isClosed());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void contextOnlyDisconnectedOnNewAddress() {
+        RemoteContextCache cache = new RemoteContextCache();
+        ClientRemoteRoboContext context = cache.acquire(createEntry("moving", 12345));
+
+        cache.update(createEntry("moving", 12345));
+        assertTrue(context.isConnected());
+        cache.update(createEntry("moving", 12346));
+        assertFalse(context.isConnected());
+        assertFalse(context.isClosed());
+        cache.clear();
+    }
+
+    private static RoboContextDescriptorEntry createEntry(String id, int port) {
+        RoboContextDescriptorEntry entry = new RoboContextDescriptorEntry();
+        entry.descriptor = new RoboContextDescriptor(id, 1000, Map.of(RoboContextDescriptor.KEY_URI, "robo4j://localhost:" + port));
+        entry.lastAccess = System.currentTimeMillis();
+        return entry;
+    }
+}
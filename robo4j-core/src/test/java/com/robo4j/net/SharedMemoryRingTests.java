@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.net;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the shared memory ring.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class SharedMemoryRingTests {
+	private static final int RING_SIZE = 4096;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testRecordsReadInOrderAcrossWrapAround() throws Exception {
+		try (SharedMemoryRing reader = SharedMemoryRing.create(directory, RING_SIZE);
+				SharedMemoryRing writer = SharedMemoryRing.open(reader.getPath())) {
+			List<Integer> received = new ArrayList<>();
+			SharedMemoryRing.RecordHandler handler = (buffer, index, length) -> {
+				assertEquals(100 + received.size() % 7, length);
+				received.add(buffer.getInt(index));
+			};
+			// Odd sizes, so that records end up needing padding at the end
+			for (int i = 0; i < 1000; i++) {
+				byte[] record = ByteBuffer.allocate(100 + i % 7).order(ByteOrder.nativeOrder()).putInt(i).array();
+				assertTrue(writer.offer(record, 0, record.length));
+				if (i % 10 == 9) {
+					reader.poll(handler, Integer.MAX_VALUE);
+				}
+			}
+			reader.poll(handler, Integer.MAX_VALUE);
+			assertEquals(1000, received.size());
+			for (int i = 0; i < received.size(); i++) {
+				assertEquals(i, received.get(i));
+			}
+		}
+	}
+
+	@Test
+	void testFullRingRejectsRecords() throws Exception {
+		try (SharedMemoryRing reader = SharedMemoryRing.create(directory, RING_SIZE)) {
+			byte[] record = new byte[reader.getMaxRecordSize()];
+			int accepted = 0;
+			while (reader.offer(record, 0, record.length)) {
+				accepted++;
+			}
+			assertTrue(accepted > 0);
+			assertEquals(1, reader.poll((buffer, index, length) -> {
+			}, 1));
+			assertTrue(reader.offer(record, 0, record.length));
+			assertThrows(IllegalArgumentException.class, () -> reader.offer(new byte[RING_SIZE], 0, RING_SIZE));
+		}
+	}
+
+	@Test
+	void testConcurrentWriters() throws Exception {
+		final int writers = 4;
+		final int recordsPerWriter = 20000;
+		try (SharedMemoryRing reader = SharedMemoryRing.create(directory, RING_SIZE)) {
+			List<Thread> threads = new ArrayList<>();
+			for (int w = 0; w < writers; w++) {
+				final int writerId = w;
+				Thread thread = new Thread(() -> {
+					byte[] record = new byte[8];
+					ByteBuffer data = ByteBuffer.wrap(record).order(ByteOrder.nativeOrder());
+					for (int i = 0; i < recordsPerWriter; i++) {
+						data.putInt(0, writerId).putInt(4, i);
+						int attempt = 0;
+						while (!reader.offer(record, 0, record.length)) {
+							SharedMemoryRing.idle(attempt++);
+						}
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			int[] next = new int[writers];
+			int total = 0;
+			long deadline = System.currentTimeMillis() + 20000;
+			while (total < writers * recordsPerWriter && System.currentTimeMillis() < deadline) {
+				total += reader.poll((buffer, index, length) -> {
+					int writerId = buffer.getInt(index);
+					int sequence = buffer.getInt(index + 4);
+					assertEquals(next[writerId]++, sequence);
+				}, 100);
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertEquals(writers * recordsPerWriter, total);
+		}
+	}
+
+	@Test
+	void testWaitingReaderWokenUp() throws Exception {
+		try (SharedMemoryRing reader = SharedMemoryRing.create(directory, RING_SIZE);
+				SharedMemoryRing writer = SharedMemoryRing.open(reader.getPath())) {
+			List<Integer> received = new ArrayList<>();
+			Thread readerThread = new Thread(() -> {
+				try {
+					while (received.size() < 3) {
+						if (reader.poll((buffer, index, length) -> received.add(buffer.getInt(index)), 1) == 0) {
+							reader.awaitRecords();
+						}
+					}
+				} catch (IOException e) {
+					fail(e);
+				}
+			});
+			readerThread.start();
+			for (int i = 0; i < 3; i++) {
+				// Give the reader time to block
+				Thread.sleep(100);
+				byte[] record = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(i).array();
+				assertTrue(writer.offer(record, 0, record.length));
+			}
+			readerThread.join(5000);
+			assertFalse(readerThread.isAlive());
+			assertEquals(List.of(0, 1, 2), received);
+		}
+	}
+
+	@Test
+	void testClosingWakesWaitingReader() throws Exception {
+		SharedMemoryRing reader = SharedMemoryRing.create(directory, RING_SIZE);
+		Thread readerThread = new Thread(() -> assertThrows(IOException.class, reader::awaitRecords));
+		readerThread.start();
+		Thread.sleep(100);
+		reader.close();
+		readerThread.join(5000);
+		assertFalse(readerThread.isAlive());
+	}
+
+	@Test
+	void testClosedRing() throws Exception {
+		SharedMemoryRing reader = SharedMemoryRing.create(directory, RING_SIZE);
+		SharedMemoryRing writer = SharedMemoryRing.open(reader.getPath());
+		reader.close();
+		assertTrue(writer.isClosed());
+		assertFalse(writer.offer(new byte[8], 0, 8));
+		assertFalse(Files.exists(reader.getPath()));
+	}
+}
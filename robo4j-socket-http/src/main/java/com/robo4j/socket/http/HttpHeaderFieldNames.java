@@ -53,6 +53,7 @@ public final class HttpHeaderFieldNames {
 	public static final String USER_AGENT = "user-agent";
 
 	public static final String SERVER = "server";
+	public static final String TRANSFER_ENCODING = "transfer-encoding";
 
 	public static final String ROBO_UNIT_UID = "uid";
 
@@ -26,4 +26,6 @@ public class HttpHeaderFieldValues {
 
     public static String NO_CACHE = "no-cache";
     public static final String CONNECTION_KEEP_ALIVE  = "keep-alive";
+    public static final String CONNECTION_CLOSE = "close";
+    public static final String TRANSFER_ENCODING_CHUNKED = "chunked";
 }
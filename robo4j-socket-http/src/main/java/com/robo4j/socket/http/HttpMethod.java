@@ -123,6 +123,15 @@ public enum HttpMethod implements Comparator<HttpMethod> {
 		return name;
 	}
 
+	/**
+	 * @return true if sending the request several times has the same effect
+	 *         as sending it once (RFC 7231, 4.2.2), so it may be sent again
+	 *         when the connection fails
+	 */
+	public boolean isIdempotent() {
+		return this != POST && this != PATCH && this != CONNECT;
+	}
+
 	@Override
 	public int compare(HttpMethod o1, HttpMethod o2) {
 		return o1.getName().compareTo(o2.getName());
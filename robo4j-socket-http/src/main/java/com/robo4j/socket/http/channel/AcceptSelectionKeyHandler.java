@@ -21,6 +21,7 @@ import com.robo4j.logging.SimpleLoggingUtil;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
 
 /**
  * Handle OP_ACCEPT
@@ -32,10 +33,16 @@ public class AcceptSelectionKeyHandler implements SelectionKeyHandler {
 
 	private final SelectionKey key;
 	private final int bufferCapacity;
+	private final Consumer<SocketChannel> worker;
 
-	public AcceptSelectionKeyHandler(SelectionKey key, int bufferCapacity) {
+	/**
+	 * @param worker
+	 *            takes over the accepted, non-blocking connection
+	 */
+	public AcceptSelectionKeyHandler(SelectionKey key, int bufferCapacity, Consumer<SocketChannel> worker) {
 		this.key = key;
 		this.bufferCapacity = bufferCapacity;
+		this.worker = worker;
 	}
 
 	@Override
@@ -43,9 +50,13 @@ public class AcceptSelectionKeyHandler implements SelectionKeyHandler {
 		try {
 			ServerSocketChannel serverChannel = (ServerSocketChannel) key.channel();
 			SocketChannel channel = serverChannel.accept();
+			if (channel == null) {
+				// Taken by another accept already
+				return key;
+			}
 			serverChannel.socket().setReceiveBufferSize(bufferCapacity);
 			channel.configureBlocking(false);
-			channel.register(key.selector(), SelectionKey.OP_READ);
+			worker.accept(channel);
 		} catch (Exception e) {
 			SimpleLoggingUtil.error(getClass(), "handle accept", e);
 		}
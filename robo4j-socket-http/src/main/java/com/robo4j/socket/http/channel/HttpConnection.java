@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.request.HttpResponseProcess;
+import com.robo4j.socket.http.util.ChannelRequestBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectionKey;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State of a persistent (keep-alive) connection to the server, kept as the
+ * attachment of its selection key.
+ *
+ * Requests are numbered in the order read. They may complete in any order,
+ * but their responses are written in the order of the requests, as required
+ * for pipelining. A response not written completely, because the client
+ * does not read fast enough, stays as the output of the connection until the
+ * channel is writable again.
+ *
+ * Only used by the selector thread.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+final class HttpConnection {
+
+	/**
+	 * A completed response, and whether the connection stays open after it.
+	 */
+	record Response(HttpResponseProcess process, boolean keepAlive) {
+	}
+
+	private final ChannelRequestBuffer requestBuffer = new ChannelRequestBuffer();
+	private final Map<Long, Response> responses = new HashMap<>();
+	private long nextRequest;
+	private long nextResponse;
+	private int inFlight;
+	private ByteBuffer[] output;
+	private boolean closing;
+	private boolean inputShutdown;
+	private long lastActivity;
+
+	HttpConnection(long now) {
+		this.lastActivity = now;
+	}
+
+	/**
+	 * Reads what is available from the channel.
+	 *
+	 * @return number of bytes read, -1 at the end of the stream
+	 */
+	int read(ByteChannel channel, long now) throws IOException {
+		lastActivity = now;
+		return requestBuffer.read(channel);
+	}
+
+	/**
+	 * Takes the next complete request read, unless a request asked to close
+	 * the connection. Requests read before the client ended its side of the
+	 * connection are still taken.
+	 *
+	 * @return the request, or null
+	 */
+	HttpDecoratedRequest pollRequest() {
+		return closing ? null : requestBuffer.pollRequest();
+	}
+
+	/**
+	 * Starts a request. No further request is read after one asking to close
+	 * the connection.
+	 *
+	 * @return the number of the request
+	 */
+	long startRequest(boolean keepAlive) {
+		inFlight++;
+		closing = !keepAlive;
+		return nextRequest++;
+	}
+
+	void completeRequest(long request, Response response) {
+		inFlight--;
+		responses.put(request, response);
+	}
+
+	/**
+	 * @return the next response to write, or null when the response of the
+	 *         oldest request is not complete yet
+	 */
+	Response pollResponse(long now) {
+		final Response response = responses.remove(nextResponse);
+		if (response != null) {
+			nextResponse++;
+			lastActivity = now;
+		}
+		return response;
+	}
+
+	/**
+	 * @return the encoded response being written, or null
+	 */
+	ByteBuffer[] getOutput() {
+		return output;
+	}
+
+	void setOutput(ByteBuffer[] output) {
+		this.output = output;
+	}
+
+	/**
+	 * Writes as much of the output as the channel takes.
+	 *
+	 * @return true when the output is written completely
+	 */
+	boolean writeOutput(GatheringByteChannel channel, long now) throws IOException {
+		channel.write(output);
+		lastActivity = now;
+		return !output[output.length - 1].hasRemaining();
+	}
+
+	boolean hasResponseToWrite() {
+		return output != null || responses.containsKey(nextResponse);
+	}
+
+	int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * The client ended its side of the connection, the connection closes once
+	 * the requests read have been answered.
+	 */
+	void shutdownInput() {
+		inputShutdown = true;
+	}
+
+	/**
+	 * @return true when nothing more is read from the connection, and it
+	 *         closes once answered
+	 */
+	boolean isClosing() {
+		return closing || inputShutdown;
+	}
+
+	/**
+	 * @return true when all requests read have been answered, and the
+	 *         responses written
+	 */
+	boolean isAnswered() {
+		return nextResponse == nextRequest && output == null;
+	}
+
+	/**
+	 * @return true when nothing was read or written for longer than the
+	 *         timeout, and no request is waiting for its response. Includes
+	 *         a client no longer reading a response.
+	 */
+	boolean isIdle(long now, long timeoutNanos) {
+		return nextResponse == nextRequest && now - lastActivity > timeoutNanos;
+	}
+
+	/**
+	 * HTTP/1.1 connections stay open unless the request says otherwise, HTTP/1.0
+	 * connections only when the request asks for it.
+	 */
+	static boolean isKeepAlive(HttpDecoratedRequest request) {
+		final String connection = request.getHeader().get(HttpHeaderFieldNames.CONNECTION);
+		if (HttpHeaderFieldValues.CONNECTION_CLOSE.equalsIgnoreCase(connection)) {
+			return false;
+		}
+		return HttpHeaderFieldValues.CONNECTION_KEEP_ALIVE.equalsIgnoreCase(connection)
+				|| !HttpVersion.HTTP_1_0.getValue().equals(request.getDenominator().getVersion());
+	}
+
+	static void close(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			SimpleLoggingUtil.debug(HttpConnection.class, "close connection: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import com.robo4j.RoboContext;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.request.RoboRequestCallable;
+import com.robo4j.socket.http.request.RoboRequestFactory;
+import com.robo4j.socket.http.units.CodecRegistry;
+import com.robo4j.socket.http.units.ServerContext;
+import com.robo4j.socket.http.util.HttpResponseEncoder;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.robo4j.socket.http.util.ChannelUtils.handleSelectorHandler;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_REGISTRY;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_IDLE_TIMEOUT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_IN_FLIGHT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_IN_FLIGHT_PER_CONNECTION;
+
+/**
+ * Worker of the server, reads and writes the connections handed to it by the
+ * acceptor on a selector and thread of its own. The requests read are
+ * processed by its {@link HttpRequestDispatcher}, the responses encoded by its
+ * {@link HttpResponseEncoder}.
+ *
+ * Connections without a request for longer than the idle timeout are closed.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+final class HttpReactor implements Runnable {
+
+	private static final long MAX_IDLE_CHECK_INTERVAL = 1000;
+
+	private final ServerContext serverContext;
+	private final Selector selector;
+	private final HttpRequestDispatcher dispatcher;
+	private final HttpResponseEncoder encoder;
+	private final Queue<SocketChannel> acceptedChannels = new ConcurrentLinkedQueue<>();
+	private final long idleTimeoutNanos;
+	private final long idleCheckInterval;
+	private volatile boolean active = true;
+
+	/**
+	 * @param inFlight
+	 *            requests in flight on all workers of the server
+	 */
+	HttpReactor(RoboContext context, ServerContext serverContext, AtomicInteger inFlight) throws IOException {
+		this.serverContext = serverContext;
+		this.selector = Selector.open();
+
+		final CodecRegistry codecRegistry = serverContext.getPropertySafe(CodecRegistry.class, PROPERTY_CODEC_REGISTRY);
+		final RoboRequestFactory requestFactory = new RoboRequestFactory(codecRegistry);
+		this.dispatcher = new HttpRequestDispatcher(selector,
+				request -> new RoboRequestCallable(context, serverContext, request, requestFactory), inFlight,
+				serverContext.getPropertySafe(Integer.class, PROPERTY_MAX_IN_FLIGHT),
+				serverContext.getPropertySafe(Integer.class, PROPERTY_MAX_IN_FLIGHT_PER_CONNECTION));
+
+		this.encoder = new HttpResponseEncoder(context.getId());
+
+		final long idleTimeout = serverContext.getPropertySafe(Integer.class, PROPERTY_IDLE_TIMEOUT);
+		this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+		this.idleCheckInterval = Math.max(1, Math.min(idleTimeout, MAX_IDLE_CHECK_INTERVAL));
+	}
+
+	/**
+	 * Hands an accepted, non-blocking connection to this worker. Called by the
+	 * acceptor thread.
+	 */
+	void register(SocketChannel channel) {
+		acceptedChannels.add(channel);
+		selector.wakeup();
+	}
+
+	void stop() {
+		active = false;
+		dispatcher.shutdown();
+	}
+
+	@Override
+	public void run() {
+		long lastIdleCheck = System.nanoTime();
+		try {
+			while (active) {
+				int channelReady = selector.select(idleCheckInterval);
+				registerAcceptedChannels();
+				// Responses completed since the last select, woken up for
+				dispatcher.runSelectorTasks();
+				long now = System.nanoTime();
+				if (now - lastIdleCheck >= TimeUnit.MILLISECONDS.toNanos(idleCheckInterval)) {
+					closeIdleConnections(now);
+					lastIdleCheck = now;
+				}
+				if (channelReady == 0) {
+					continue;
+				}
+
+				Iterator<SelectionKey> selectedIterator = selector.selectedKeys().iterator();
+				while (selectedIterator.hasNext()) {
+					final SelectionKey selectedKey = selectedIterator.next();
+					selectedIterator.remove();
+					handleSelectedKey(selectedKey);
+				}
+			}
+		} catch (IOException e) {
+			SimpleLoggingUtil.error(getClass(), "worker select problem: ", e);
+		} finally {
+			closeConnections();
+		}
+	}
+
+	/**
+	 * A handler failing only closes its own connection, the worker keeps
+	 * serving the others.
+	 */
+	private void handleSelectedKey(SelectionKey selectedKey) {
+		try {
+			if (selectedKey.isValid() && selectedKey.isReadable()) {
+				handleSelectorHandler(new ReadSelectionKeyHandler(dispatcher, selectedKey));
+			}
+			if (selectedKey.isValid() && selectedKey.isWritable()) {
+				handleSelectorHandler(new WriteSelectionKeyHandler(serverContext, dispatcher, encoder, selectedKey));
+			}
+		} catch (RuntimeException e) {
+			SimpleLoggingUtil.error(getClass(), "connection handling problem: ", e);
+			HttpConnection.close(selectedKey);
+		}
+	}
+
+	private void registerAcceptedChannels() {
+		SocketChannel channel;
+		while ((channel = acceptedChannels.poll()) != null) {
+			try {
+				channel.register(selector, SelectionKey.OP_READ, new HttpConnection(System.nanoTime()));
+			} catch (IOException e) {
+				SimpleLoggingUtil.error(getClass(), "register connection", e);
+			}
+		}
+	}
+
+	private void closeIdleConnections(long now) {
+		for (SelectionKey key : selector.keys()) {
+			if (key.isValid() && key.attachment() instanceof HttpConnection connection
+					&& connection.isIdle(now, idleTimeoutNanos)) {
+				HttpConnection.close(key);
+			}
+		}
+	}
+
+	private void closeConnections() {
+		for (SelectionKey key : selector.keys()) {
+			HttpConnection.close(key);
+		}
+		SocketChannel channel;
+		while ((channel = acceptedChannels.poll()) != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				SimpleLoggingUtil.debug(getClass(), "close connection: " + e.getMessage());
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			SimpleLoggingUtil.error(getClass(), "selector close problem: ", e);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.channel;
+
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.enums.StatusCode;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.request.HttpResponseProcess;
+import com.robo4j.socket.http.request.HttpResponseProcessBuilder;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Processes the requests read by the selector thread on threads of their own,
+ * so that the selector never waits for a unit. When a request completes, its
+ * response is handed back to the selector thread, which registers the
+ * connection for writing once the responses to all earlier requests on the
+ * connection are complete.
+ *
+ * The requests in flight are limited per connection, by no longer reading
+ * from the connection until responses have been written, and overall, shared
+ * by the dispatchers of all workers, by answering requests over the limit with
+ * 503 Service Unavailable.
+ *
+ * Apart from the requests completing on other threads, only used by the
+ * selector thread.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+final class HttpRequestDispatcher {
+
+	private final Selector selector;
+	private final Function<HttpDecoratedRequest, Callable<HttpResponseProcess>> requestFactory;
+	private final int maxInFlight;
+	private final int maxInFlightPerConnection;
+	private final AtomicInteger inFlight;
+	private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+	// Waiting for units is cheap on virtual threads
+	private final ExecutorService executor = Executors
+			.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-request-", 0).factory());
+
+	HttpRequestDispatcher(Selector selector,
+			Function<HttpDecoratedRequest, Callable<HttpResponseProcess>> requestFactory, AtomicInteger inFlight,
+			int maxInFlight, int maxInFlightPerConnection) {
+		this.selector = selector;
+		this.requestFactory = requestFactory;
+		this.inFlight = inFlight;
+		this.maxInFlight = maxInFlight;
+		this.maxInFlightPerConnection = Math.max(1, maxInFlightPerConnection);
+	}
+
+	/**
+	 * Processes the complete requests read from the connection of the key, as
+	 * far as the limit per connection allows, and updates the operations the
+	 * key is interested in. Called by the selector thread.
+	 */
+	void dispatchRequests(SelectionKey key, HttpConnection connection) {
+		while (connection.getInFlight() < maxInFlightPerConnection) {
+			final HttpDecoratedRequest request;
+			try {
+				request = connection.pollRequest();
+			} catch (RuntimeException e) {
+				SimpleLoggingUtil.debug(getClass(), "malformed request: " + e.getMessage());
+				long number = connection.startRequest(false);
+				connection.completeRequest(number,
+						new HttpConnection.Response(createResponse(StatusCode.BAD_REQUEST), false));
+				break;
+			}
+			if (request == null) {
+				break;
+			}
+			dispatch(key, connection, request);
+		}
+		updateInterest(key, connection);
+	}
+
+	/**
+	 * Runs the work handed back to the selector thread. Called by the selector
+	 * thread after each select.
+	 */
+	void runSelectorTasks() {
+		Runnable task;
+		while ((task = selectorTasks.poll()) != null) {
+			task.run();
+		}
+	}
+
+	/**
+	 * @return the number of requests currently processed, overall.
+	 */
+	int getInFlight() {
+		return inFlight.get();
+	}
+
+	void shutdown() {
+		executor.shutdownNow();
+		selector.wakeup();
+	}
+
+	private void dispatch(SelectionKey key, HttpConnection connection, HttpDecoratedRequest request) {
+		final boolean keepAlive = HttpConnection.isKeepAlive(request);
+		final long number = connection.startRequest(keepAlive);
+		if (inFlight.incrementAndGet() > maxInFlight) {
+			inFlight.decrementAndGet();
+			SimpleLoggingUtil.debug(getClass(), "too many requests in flight: " + maxInFlight);
+			connection.completeRequest(number,
+					new HttpConnection.Response(createResponse(StatusCode.SERVICE_UNAVAILABLE), keepAlive));
+			return;
+		}
+		final Callable<HttpResponseProcess> callable = requestFactory.apply(request);
+		try {
+			executor.execute(() -> {
+				HttpResponseProcess response = process(callable);
+				selectorTasks.add(() -> complete(key, connection, number, new HttpConnection.Response(response, keepAlive)));
+				selector.wakeup();
+			});
+		} catch (RejectedExecutionException e) {
+			inFlight.decrementAndGet();
+			connection.completeRequest(number,
+					new HttpConnection.Response(createResponse(StatusCode.SERVICE_UNAVAILABLE), keepAlive));
+		}
+	}
+
+	private HttpResponseProcess process(Callable<HttpResponseProcess> request) {
+		try {
+			return request.call();
+		} catch (Exception e) {
+			SimpleLoggingUtil.error(getClass(), "request processing failed", e);
+			return createResponse(StatusCode.INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	private void complete(SelectionKey key, HttpConnection connection, long number, HttpConnection.Response response) {
+		inFlight.decrementAndGet();
+		connection.completeRequest(number, response);
+		if (!key.isValid()) {
+			// Connection closed by the client in the meantime
+			return;
+		}
+		dispatchRequests(key, connection);
+	}
+
+	private void updateInterest(SelectionKey key, HttpConnection connection) {
+		if (!key.isValid()) {
+			return;
+		}
+		int ops = 0;
+		if (connection.hasResponseToWrite()) {
+			ops |= SelectionKey.OP_WRITE;
+		}
+		if (!connection.isClosing() && connection.getInFlight() < maxInFlightPerConnection) {
+			ops |= SelectionKey.OP_READ;
+		}
+		key.interestOps(ops);
+	}
+
+	private static HttpResponseProcess createResponse(StatusCode code) {
+		return HttpResponseProcessBuilder.Builder().setCode(code).build();
+	}
+}
@@ -18,8 +18,7 @@ package com.robo4j.socket.http.channel;
 
 import com.robo4j.RoboContext;
 import com.robo4j.logging.SimpleLoggingUtil;
-import com.robo4j.socket.http.request.HttpResponseProcess;
-import com.robo4j.socket.http.units.CodecRegistry;
+import com.robo4j.socket.http.SocketException;
 import com.robo4j.socket.http.units.ServerContext;
 import com.robo4j.socket.http.util.ChannelUtils;
 
@@ -27,17 +26,28 @@ import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.robo4j.socket.http.util.ChannelUtils.handleSelectorHandler;
-import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_REGISTRY;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_BUFFER_CAPACITY;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_WORKERS;
 
 /**
  * Inbound context co
  *
+ * An acceptor thread accepts the connections and hands them round-robin to a
+ * number of workers ({@link HttpReactor}), each reading and writing its
+ * connections on a selector and thread of its own. Requests are processed by
+ * the {@link HttpRequestDispatcher} of the worker, which hands the responses
+ * back to the worker thread.
+ *
+ * The threads are dedicated to the server, the scheduler of the context is not
+ * used.
+ *
+ * Connections are persistent (keep-alive) and may pipeline requests, see
+ * {@link HttpConnection}.
+ *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
  */
@@ -45,9 +55,9 @@ public class InboundHttpSocketChannelHandler implements ChannelHandler {
 
 	private final RoboContext context;
 	private final ServerContext serverContext;
-	private final Map<SelectionKey, HttpResponseProcess> outBuffers = new ConcurrentHashMap<>();
-	private ServerSocketChannel socketChannel;
-	private boolean active;
+	private volatile ServerSocketChannel socketChannel;
+	private volatile SelectionKey acceptKey;
+	private volatile boolean active;
 
 	public InboundHttpSocketChannelHandler(RoboContext context, ServerContext serverContext) {
 		this.context = context;
@@ -58,28 +68,39 @@ public class InboundHttpSocketChannelHandler implements ChannelHandler {
 	public void start() {
 		if (!active) {
 			active = true;
-			context.getScheduler().execute(() -> initSocketChannel(serverContext));
+			final int port = serverContext.getPropertySafe(Integer.class, PROPERTY_SOCKET_PORT);
+			final Thread acceptor = new Thread(this::initSocketChannel, "HTTP acceptor [" + port + "]");
+			acceptor.setDaemon(true);
+			acceptor.start();
 		}
 	}
 
 	@Override
 	public void stop() {
+		active = false;
 		try {
-			if (socketChannel != null && socketChannel.isOpen()) {
-				active = false;
+			final ServerSocketChannel socketChannel = this.socketChannel;
+			if (socketChannel != null) {
 				socketChannel.close();
 			}
 		} catch (IOException e) {
 			SimpleLoggingUtil.error(getClass(), "server stop problem: ", e);
 		}
+		final SelectionKey acceptKey = this.acceptKey;
+		if (acceptKey != null) {
+			acceptKey.selector().wakeup();
+		}
 	}
 
-	private void initSocketChannel(ServerContext serverContext) {
-		socketChannel = ChannelUtils.initServerSocketChannel(serverContext);
+	private void initSocketChannel() {
+		final ServerSocketChannel socketChannel = ChannelUtils.initServerSocketChannel(serverContext);
+		this.socketChannel = socketChannel;
 		final SelectionKey key = ChannelUtils.registerSelectionKey(socketChannel);
+		acceptKey = key;
 
-		final CodecRegistry codecRegistry = serverContext.getPropertySafe(CodecRegistry.class, PROPERTY_CODEC_REGISTRY);
 		final int bufferCapacity = serverContext.getPropertySafe(Integer.class, PROPERTY_BUFFER_CAPACITY);
+		final HttpReactor[] workers = startWorkers();
+		int nextWorker = 0;
 
 		while (active) {
 			int channelReady = ChannelUtils.getReadyChannelBySelectionKey(key);
@@ -87,26 +108,43 @@ public class InboundHttpSocketChannelHandler implements ChannelHandler {
 				continue;
 			}
 
-			Set<SelectionKey> selectedKeys = key.selector().selectedKeys();
-			Iterator<SelectionKey> selectedIterator = selectedKeys.iterator();
-
+			Iterator<SelectionKey> selectedIterator = key.selector().selectedKeys().iterator();
 			while (selectedIterator.hasNext()) {
 				final SelectionKey selectedKey = selectedIterator.next();
-
 				selectedIterator.remove();
 
-				if (selectedKey.isAcceptable()) {
-					handleSelectorHandler(new AcceptSelectionKeyHandler(selectedKey, bufferCapacity));
-				} else if (selectedKey.isConnectable()) {
-					handleSelectorHandler(new ConnectSelectionKeyHandler(selectedKey));
-				} else if (selectedKey.isReadable()) {
-					handleSelectorHandler(new ReadSelectionKeyHandler(context, serverContext, codecRegistry, outBuffers, selectedKey));
-				} else if (selectedKey.isWritable()) {
-					handleSelectorHandler(new WriteSelectionKeyHandler(context, serverContext, outBuffers, selectedKey));
+				if (selectedKey.isValid() && selectedKey.isAcceptable()) {
+					final HttpReactor worker = workers[nextWorker];
+					nextWorker = (nextWorker + 1) % workers.length;
+					handleSelectorHandler(new AcceptSelectionKeyHandler(selectedKey, bufferCapacity, worker::register));
 				}
 			}
 		}
+		for (HttpReactor worker : workers) {
+			worker.stop();
+		}
+		try {
+			socketChannel.close();
+			key.selector().close();
+		} catch (IOException e) {
+			SimpleLoggingUtil.error(getClass(), "server stop problem: ", e);
+		}
 	}
 
-
+	private HttpReactor[] startWorkers() {
+		final int port = serverContext.getPropertySafe(Integer.class, PROPERTY_SOCKET_PORT);
+		final AtomicInteger inFlight = new AtomicInteger();
+		final HttpReactor[] result = new HttpReactor[Math.max(1, serverContext.getPropertySafe(Integer.class, PROPERTY_WORKERS))];
+		for (int i = 0; i < result.length; i++) {
+			try {
+				result[i] = new HttpReactor(context, serverContext, inFlight);
+			} catch (IOException e) {
+				throw new SocketException("init worker selector", e);
+			}
+			final Thread thread = new Thread(result[i], "HTTP worker " + i + " [" + port + "]");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return result;
+	}
 }
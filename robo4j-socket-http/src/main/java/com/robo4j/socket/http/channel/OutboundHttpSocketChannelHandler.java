@@ -44,6 +44,7 @@ public class OutboundHttpSocketChannelHandler implements ChannelHandler, AutoClo
 	private final ChannelResponseBuffer channelResponseBuffer = new ChannelResponseBuffer();
 	private final Lock lock = new ReentrantLock();
 	private HttpDecoratedResponse decoratedResponse;
+	private boolean requestWritten;
 
 	public OutboundHttpSocketChannelHandler(ByteChannel byteChannel, HttpDecoratedRequest message) {
 		this.byteChannel = byteChannel;
@@ -57,14 +58,23 @@ public class OutboundHttpSocketChannelHandler implements ChannelHandler, AutoClo
 				message.getCallbacks());
 
 		//@formatter:off
-		final String resultMessage = HttpMessageBuilder.Build()
+		final HttpMessageBuilder messageBuilder = HttpMessageBuilder.Build()
 				.setDenominator(message.getDenominator())
-				.addHeaderElements(message.getHeader())
-				.build(message.getMessage());
+				.addHeaderElements(message.getHeader());
 		//@formatter:on
+		// Nothing may follow a request without body, the connection is reused
+		final String resultMessage = message.getMessage() == null ? messageBuilder.build()
+				: messageBuilder.build(message.getMessage());
 
 		final ByteBuffer buffer = ChannelBufferUtils.getByteBufferByString(resultMessage);
-		ChannelUtils.handleWriteChannelAndBuffer("client send message", byteChannel, buffer);
+		try {
+			ChannelUtils.writeBuffer(byteChannel, buffer);
+		} catch (IOException e) {
+			// Failing half way, part of the request may have been sent
+			requestWritten = buffer.position() > 0;
+			throw new SocketException("client send message", e);
+		}
+		requestWritten = true;
 		decoratedResponse = getDecoratedResponse(byteChannel, pathMethod);
 	}
 
@@ -82,6 +92,14 @@ public class OutboundHttpSocketChannelHandler implements ChannelHandler, AutoClo
 		stop();
 	}
 
+	/**
+	 * @return true if the request, or a part of it, may have reached the
+	 *         server
+	 */
+	public boolean isRequestWritten() {
+		return requestWritten;
+	}
+
 	public HttpDecoratedResponse getDecoratedResponse() {
 		return decoratedResponse;
 	}
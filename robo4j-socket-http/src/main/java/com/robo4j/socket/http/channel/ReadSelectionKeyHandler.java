@@ -16,84 +16,48 @@
  */
 package com.robo4j.socket.http.channel;
 
-import com.robo4j.RoboContext;
-import com.robo4j.socket.http.SocketException;
-import com.robo4j.socket.http.message.HttpDecoratedRequest;
-import com.robo4j.socket.http.request.HttpResponseProcess;
-import com.robo4j.socket.http.request.RoboRequestCallable;
-import com.robo4j.socket.http.request.RoboRequestFactory;
-import com.robo4j.socket.http.units.CodecRegistry;
-import com.robo4j.socket.http.units.ServerContext;
-import com.robo4j.socket.http.util.ChannelRequestBuffer;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.util.ChannelBufferUtils;
 
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.Map;
-import java.util.concurrent.Future;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Reading TPC/IP Socket protocol handler
- *
+ * Reading TPC/IP Socket protocol handler. The requests read are handed to the
+ * {@link HttpRequestDispatcher}, the selector thread does not wait for them.
+ * The connection stays open for further requests until the client closes it.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
  */
 public class ReadSelectionKeyHandler implements SelectionKeyHandler {
 
-	private final RoboContext context;
-	private final ServerContext serverContext;
-	@Deprecated  // FIXME: 2/18/18 codecRegistry are in context
-	private final CodecRegistry codecRegistry;
-	private final Map<SelectionKey, HttpResponseProcess> outBuffers;
+	private final HttpRequestDispatcher dispatcher;
 	private final SelectionKey key;
-	private final Lock lock = new ReentrantLock();
-	private final ChannelRequestBuffer channelRequestBuffer = new ChannelRequestBuffer();
 
-	public ReadSelectionKeyHandler(RoboContext context, ServerContext serverContext, CodecRegistry codecRegistry,
-								   Map<SelectionKey, HttpResponseProcess> outBuffers, SelectionKey key) {
-		this.context = context;
-		this.serverContext = serverContext;
-		this.codecRegistry = codecRegistry;
-		this.outBuffers = outBuffers;
+	ReadSelectionKeyHandler(HttpRequestDispatcher dispatcher, SelectionKey key) {
+		this.dispatcher = dispatcher;
 		this.key = key;
 	}
 
 	@Override
 	public SelectionKey handle() {
-		SocketChannel channel = (SocketChannel) key.channel();
-		lock.lock();
-		try {
-			final HttpDecoratedRequest decoratedRequest = channelRequestBuffer.getHttpDecoratedRequestByChannel(channel);
-			final RoboRequestFactory factory = new RoboRequestFactory(codecRegistry);
-			final RoboRequestCallable callable = new RoboRequestCallable(context, serverContext, decoratedRequest, factory);
-			final Future<HttpResponseProcess> futureResult = context.getScheduler().submit(callable);
-			final HttpResponseProcess result = extractRoboResponseProcess(futureResult);
-			outBuffers.put(key, result);
-			registerSelectionKey(channel);
-			return key;
-		} catch (IOException e){
-			throw new SocketException(e.getMessage());
-		}finally {
-			lock.unlock();
-		}
-	}
-
-	private HttpResponseProcess extractRoboResponseProcess(Future<HttpResponseProcess> future) {
-		try {
-			return future.get();
-		} catch (Exception e) {
-			throw new SocketException("extract robo response", e);
-		}
-	}
-
-	private void registerSelectionKey(SocketChannel channel) {
+		final SocketChannel channel = (SocketChannel) key.channel();
+		final HttpConnection connection = (HttpConnection) key.attachment();
 		try {
-			channel.register(key.selector(), SelectionKey.OP_WRITE);
-		} catch (Exception e) {
-			throw new SocketException("register selection key", e);
+			if (connection.read(channel, System.nanoTime()) == ChannelBufferUtils.BUFFER_MARK_END) {
+				connection.shutdownInput();
+			}
+			// Requests pipelined before the end of the stream are still answered
+			dispatcher.dispatchRequests(key, connection);
+			if (connection.isClosing() && connection.isAnswered()) {
+				HttpConnection.close(key);
+			}
+		} catch (IOException e) {
+			SimpleLoggingUtil.debug(getClass(), "read: " + e.getMessage());
+			HttpConnection.close(key);
 		}
+		return key;
 	}
 }
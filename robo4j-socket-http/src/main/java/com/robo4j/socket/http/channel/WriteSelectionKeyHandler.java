@@ -16,115 +16,100 @@
  */
 package com.robo4j.socket.http.channel;
 
-import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
-import com.robo4j.socket.http.HttpHeaderFieldNames;
-import com.robo4j.socket.http.HttpVersion;
-import com.robo4j.socket.http.SocketException;
+import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.HttpMethod;
 import com.robo4j.socket.http.enums.StatusCode;
-import com.robo4j.socket.http.message.HttpDenominator;
-import com.robo4j.socket.http.message.HttpResponseDenominator;
 import com.robo4j.socket.http.request.HttpResponseProcess;
 import com.robo4j.socket.http.units.PathHttpMethod;
 import com.robo4j.socket.http.units.ServerContext;
 import com.robo4j.socket.http.units.ServerPathConfig;
-import com.robo4j.socket.http.util.ChannelBufferUtils;
-import com.robo4j.socket.http.util.ChannelUtils;
-import com.robo4j.socket.http.util.HttpMessageBuilder;
+import com.robo4j.socket.http.util.HttpResponseEncoder;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.Map;
 
 /**
+ * Writes the completed responses of a connection in the order of the
+ * requests. The connection stays open unless the request, or the client
+ * closing its side, asked for it to be closed.
+ *
+ * The responses are written without blocking: when the channel does not take
+ * a response completely, the rest is written once the channel is writable
+ * again.
+ *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
  */
 public class WriteSelectionKeyHandler implements SelectionKeyHandler {
 
-	private final RoboContext context;
 	private final ServerContext serverContext;
-	private final Map<SelectionKey, HttpResponseProcess> outBuffers;
+	private final HttpRequestDispatcher dispatcher;
+	private final HttpResponseEncoder encoder;
 	private final SelectionKey key;
 
-	public WriteSelectionKeyHandler(RoboContext context, ServerContext serverContext,
-                                    Map<SelectionKey, HttpResponseProcess> outBuffers, SelectionKey key) {
-		this.context = context;
+	WriteSelectionKeyHandler(ServerContext serverContext, HttpRequestDispatcher dispatcher,
+			HttpResponseEncoder encoder, SelectionKey key) {
 		this.serverContext = serverContext;
-		this.outBuffers = outBuffers;
+		this.dispatcher = dispatcher;
+		this.encoder = encoder;
 		this.key = key;
 	}
 
-
-
 	@Override
 	public SelectionKey handle() {
-		SocketChannel channel = (SocketChannel) key.channel();
-
-		final HttpResponseProcess responseProcess = outBuffers.get(key);
-
-		ByteBuffer buffer;
-		if (responseProcess.getMethod() != null) {
-			switch (responseProcess.getMethod()) {
-			case GET:
-				String getResponse;
-				if (responseProcess.getResult() != null && responseProcess.getCode().equals(StatusCode.OK)) {
-					// FIXME: 2/18/18 (miro) put abstraction
-					String responseMessage = responseProcess.getResult().toString();
-					HttpDenominator denominator = new HttpResponseDenominator(responseProcess.getCode(),
-							HttpVersion.HTTP_1_1);
-					getResponse = HttpMessageBuilder.Build().setDenominator(denominator)
-							.addHeaderElement(HttpHeaderFieldNames.ROBO_UNIT_UID, context.getId())
-							.addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH,
-									String.valueOf(responseMessage.length()))
-							.build(responseMessage);
-				} else {
-					HttpDenominator denominator = new HttpResponseDenominator(responseProcess.getCode(),
-							HttpVersion.HTTP_1_1);
-					getResponse = HttpMessageBuilder.Build().setDenominator(denominator).build();
+		final SocketChannel channel = (SocketChannel) key.channel();
+		final HttpConnection connection = (HttpConnection) key.attachment();
+		try {
+			while (true) {
+				final long now = System.nanoTime();
+				if (connection.getOutput() == null) {
+					final HttpConnection.Response response = connection.pollResponse(now);
+					if (response == null) {
+						break;
+					}
+					connection.setOutput(encode(response));
 				}
-				buffer = ChannelBufferUtils.getByteBufferByString(getResponse);
-				ChannelUtils.handleWriteChannelAndBuffer("get write", channel, buffer);
-				break;
-			case POST:
-				HttpDenominator denominator = new HttpResponseDenominator(responseProcess.getCode(),
-						HttpVersion.HTTP_1_1);
-				String postResponse = HttpMessageBuilder.Build().setDenominator(denominator)
-						.build();
-				if (responseProcess.getResult() != null && responseProcess.getCode().equals(StatusCode.ACCEPTED)) {
-					buffer = ChannelBufferUtils.getByteBufferByString(postResponse);
-					ChannelUtils.handleWriteChannelAndBuffer("post write", channel, buffer);
-					sendMessageToTargetRoboReference(responseProcess);
-				} else {
-					buffer = ChannelBufferUtils.getByteBufferByString(postResponse);
-					ChannelUtils.handleWriteChannelAndBuffer("post write", channel, buffer);
+				if (!connection.writeOutput(channel, now)) {
+					// Socket send buffer full, still interested in writing
+					return key;
 				}
-			default:
-				break;
-			}
-		} else {
-			HttpDenominator denominator = new HttpResponseDenominator(StatusCode.BAD_REQUEST, HttpVersion.HTTP_1_1);
-			String badResponse = HttpMessageBuilder.Build().setDenominator(denominator).build();
-			buffer = ChannelBufferUtils.getByteBufferByString(badResponse);
-			try {
-				ChannelUtils.writeBuffer(channel, buffer);
-			} catch (Exception e) {
-				throw new SocketException("post write", e);
+				encoder.release(connection.getOutput());
+				connection.setOutput(null);
 			}
-			buffer.clear();
-		}
-
-		try {
-			key.cancel();
-			key.channel().close();
 		} catch (IOException e) {
-			throw new SocketException(e.getMessage());
+			SimpleLoggingUtil.debug(getClass(), "write: " + e.getMessage());
+			HttpConnection.close(key);
+			return key;
+		}
+		// Dispatching first, the requests still buffered are answered before
+		// closing
+		dispatcher.dispatchRequests(key, connection);
+		if (connection.isClosing() && connection.isAnswered()) {
+			HttpConnection.close(key);
 		}
 		return key;
 	}
 
+	private ByteBuffer[] encode(HttpConnection.Response response) {
+		final HttpResponseProcess responseProcess = response.process();
+		// Rejected or failed before a method was known
+		final StatusCode code = responseProcess.getCode() != null ? responseProcess.getCode()
+				: StatusCode.BAD_REQUEST;
+		String body = null;
+		if (responseProcess.getMethod() == HttpMethod.GET && responseProcess.getResult() != null
+				&& code.equals(StatusCode.OK)) {
+			// FIXME: 2/18/18 (miro) put abstraction
+			body = responseProcess.getResult().toString();
+		} else if (responseProcess.getMethod() == HttpMethod.POST && responseProcess.getResult() != null
+				&& code.equals(StatusCode.ACCEPTED)) {
+			sendMessageToTargetRoboReference(responseProcess);
+		}
+		return encoder.encode(code, response.keepAlive(), body);
+	}
+
 	private void sendMessageToTargetRoboReference(HttpResponseProcess process) {
 		final ServerPathConfig pathConfig = serverContext.getPathConfig(new PathHttpMethod(process.getPath(), process.getMethod()));
 		if (pathConfig.getRoboUnit() != null
@@ -27,6 +27,14 @@ import java.util.Objects;
 public class ResponseUnitDTO {
     private String id;
     private LifecycleState state;
+    // Only set when metrics are enabled, times in nanoseconds
+    private Integer queueDepth;
+    private Double throughput;
+    private Long processed;
+    private Long failed;
+    private Long dropped;
+    private Long queueLatencyP99;
+    private Long processingTimeP99;
 
     public ResponseUnitDTO() {
     }
@@ -52,18 +60,81 @@ public class ResponseUnitDTO {
         this.state = state;
     }
 
+    public Integer getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(Integer queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public Double getThroughput() {
+        return throughput;
+    }
+
+    public void setThroughput(Double throughput) {
+        this.throughput = throughput;
+    }
+
+    public Long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(Long processed) {
+        this.processed = processed;
+    }
+
+    public Long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(Long failed) {
+        this.failed = failed;
+    }
+
+    public Long getDropped() {
+        return dropped;
+    }
+
+    public void setDropped(Long dropped) {
+        this.dropped = dropped;
+    }
+
+    public Long getQueueLatencyP99() {
+        return queueLatencyP99;
+    }
+
+    public void setQueueLatencyP99(Long queueLatencyP99) {
+        this.queueLatencyP99 = queueLatencyP99;
+    }
+
+    public Long getProcessingTimeP99() {
+        return processingTimeP99;
+    }
+
+    public void setProcessingTimeP99(Long processingTimeP99) {
+        this.processingTimeP99 = processingTimeP99;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ResponseUnitDTO that = (ResponseUnitDTO) o;
         return Objects.equals(id, that.id) &&
-                state == that.state;
+                state == that.state &&
+                Objects.equals(queueDepth, that.queueDepth) &&
+                Objects.equals(throughput, that.throughput) &&
+                Objects.equals(processed, that.processed) &&
+                Objects.equals(failed, that.failed) &&
+                Objects.equals(dropped, that.dropped) &&
+                Objects.equals(queueLatencyP99, that.queueLatencyP99) &&
+                Objects.equals(processingTimeP99, that.processingTimeP99);
     }
 
     @Override
     public int hashCode() {
 
-        return Objects.hash(id, state);
+        return Objects.hash(id, state, queueDepth, throughput, processed, failed, dropped, queueLatencyP99, processingTimeP99);
     }
 }
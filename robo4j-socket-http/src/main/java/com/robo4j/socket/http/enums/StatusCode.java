@@ -32,7 +32,9 @@ public enum StatusCode {
     BAD_REQUEST         (400, "Bad Request"),
     NOT_FOUND           (404, "Not Found"),
     NOT_ACCEPTABLE      (406, "Not Acceptable"),
-    NOT_IMPLEMENTED     (501, "Not Implemented");
+    INTERNAL_SERVER_ERROR (500, "Internal Server Error"),
+    NOT_IMPLEMENTED     (501, "Not Implemented"),
+    SERVICE_UNAVAILABLE (503, "Service Unavailable");
     //@formatter:on
 
     private static Map<Integer, StatusCode> toCodeMap;
@@ -20,13 +20,13 @@ package com.robo4j.socket.http.json;
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
  */
-public class JsonNumberAdapter extends JsonAdapter<Integer>{
+public class JsonNumberAdapter extends JsonAdapter<Number>{
 
     public JsonNumberAdapter() {
     }
 
     @Override
-    protected String internalAdapt(Integer obj) {
+    protected String internalAdapt(Number obj) {
         return String.valueOf(obj);
     }
 }
@@ -36,7 +36,7 @@ public class HttpResponseProcessBuilder {
 	private HttpResponseProcessBuilder() {
 	}
 
-	static HttpResponseProcessBuilder Builder() {
+	public static HttpResponseProcessBuilder Builder() {
 		return new HttpResponseProcessBuilder();
 	}
 
@@ -82,7 +82,7 @@ public class RoboRequestCallable implements Callable<HttpResponseProcess> {
 
 					resultBuilder.setTarget(pathConfig.getRoboUnit().getId());
 					final Object unitDescription;
-					// the system needs to have one more worker thread to evaluate Future get
+					// runs on a thread of the HttpRequestDispatcher, which may wait for attribute futures
 					final HttpRequestDenominator denominator = (HttpRequestDenominator) decoratedRequest
 							.getDenominator();
 					final Set<String> requestAttributes = denominator.getAttributes()
@@ -18,6 +18,7 @@ package com.robo4j.socket.http.request;
 
 import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
+import com.robo4j.UnitMetrics;
 import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.socket.http.HttpMethod;
 import com.robo4j.socket.http.dto.ResponseAttributeDTO;
@@ -32,6 +33,7 @@ import com.robo4j.socket.http.util.ReflectUtils;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -52,7 +54,8 @@ public class RoboRequestFactory implements DefaultRequestFactory<Object> {
 
 	/**
 	 * Generic robo context overview. It returns all units registered into the context including system id.
-	 * The 1st position is reserved for the system
+	 * The 1st position is reserved for the system. If metrics are enabled, the message metrics of
+	 * the units are included
 	 *
 	 * @param context
 	 *            robo context
@@ -62,8 +65,9 @@ public class RoboRequestFactory implements DefaultRequestFactory<Object> {
 	public Object processGet(RoboContext context) {
 		if (!context.getUnits().isEmpty()) {
 
+			final Map<String, UnitMetrics> metrics = context.getMetrics();
 			final List<ResponseUnitDTO> unitList = context.getUnits().stream()
-					.map(u -> new ResponseUnitDTO(u.getId(), u.getState())).collect(Collectors.toList());
+					.map(u -> createResponseUnit(u, metrics.get(u.getId()))).collect(Collectors.toList());
 			unitList.add(0, new ResponseUnitDTO(context.getId(), context.getState()));
 			return JsonUtil.toJsonArray(unitList);
 		} else {
@@ -120,6 +124,20 @@ public class RoboRequestFactory implements DefaultRequestFactory<Object> {
 		return ReflectUtils.createJson(result);
 	}
 
+	private static ResponseUnitDTO createResponseUnit(RoboReference<?> reference, UnitMetrics metrics) {
+		final ResponseUnitDTO result = new ResponseUnitDTO(reference.getId(), reference.getState());
+		if (metrics != null) {
+			result.setQueueDepth(metrics.getQueueDepth());
+			result.setThroughput(metrics.getThroughput());
+			result.setProcessed(metrics.getProcessedCount());
+			result.setFailed(metrics.getFailedCount());
+			result.setDropped(metrics.getDroppedCount());
+			result.setQueueLatencyP99(metrics.getQueueLatency().getValueAtPercentile(99));
+			result.setProcessingTimeP99(metrics.getProcessingTime().getValueAtPercentile(99));
+		}
+		return result;
+	}
+
 	/**
 	 * currently is supported POST message in JSON format
 	 *
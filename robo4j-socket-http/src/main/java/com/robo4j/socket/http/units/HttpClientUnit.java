@@ -22,23 +22,33 @@ import com.robo4j.RoboContext;
 import com.robo4j.RoboUnit;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.logging.SimpleLoggingUtil;
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
 import com.robo4j.socket.http.ProtocolType;
+import com.robo4j.socket.http.SocketException;
 import com.robo4j.socket.http.channel.OutboundHttpSocketChannelHandler;
 import com.robo4j.socket.http.enums.StatusCode;
 import com.robo4j.socket.http.message.HttpDecoratedRequest;
 import com.robo4j.socket.http.message.HttpDecoratedResponse;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.SocketChannel;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static com.robo4j.socket.http.util.RoboHttpUtils.HTTP_PROPERTY_PROTOCOL;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_BUFFER_CAPACITY;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_HOST;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_IDLE_TIMEOUT;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
 
 /**
@@ -47,6 +57,13 @@ import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
  * necessary information and HttpClientDecorator unit is only implementation
  * detail.
  *
+ * Connections are kept open after a response (HTTP/1.1 keep-alive) in a pool
+ * per host, and reused by the next request to the same host. Connections idle
+ * for longer than {@link com.robo4j.socket.http.util.RoboHttpUtils#PROPERTY_IDLE_TIMEOUT}
+ * milliseconds are not reused. A request failing on a reused connection is
+ * sent again on a new one, unless it may have reached the server and is not
+ * idempotent.
+ *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
  */
@@ -55,6 +72,10 @@ public class HttpClientUnit extends RoboUnit<HttpDecoratedRequest> {
 
 	private static final EnumSet<StatusCode> PROCESS_RESPONSES_STATUSES = EnumSet.of(StatusCode.OK,
 			StatusCode.ACCEPTED);
+	// Below the server default, gives a connection up before the server does
+	private static final int DEFAULT_IDLE_TIMEOUT = 15000;
+	private final Map<InetSocketAddress, Deque<IdleChannel>> idleChannels = new ConcurrentHashMap<>();
+	private long idleTimeoutNanos;
 	private volatile String host;
 	private volatile Integer port;
 	private Integer bufferCapacity;
@@ -71,6 +92,8 @@ public class HttpClientUnit extends RoboUnit<HttpDecoratedRequest> {
 		protocol = ProtocolType.valueOf(configuration.getString(HTTP_PROPERTY_PROTOCOL, "HTTP"));
 		host = configuration.getString(PROPERTY_HOST, null);
 		port = configuration.getInteger(PROPERTY_SOCKET_PORT, null);
+		idleTimeoutNanos = TimeUnit.MILLISECONDS
+				.toNanos(configuration.getInteger(PROPERTY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT));
 		Objects.requireNonNull(host, "host required");
 		if (port == null) {
 			port = protocol.getPort();
@@ -85,12 +108,8 @@ public class HttpClientUnit extends RoboUnit<HttpDecoratedRequest> {
 			return;
 		}
 		final InetSocketAddress address = new InetSocketAddress(request.getHost(), request.getPort());
-		try (SocketChannel channel = SocketChannel.open(address)) {
-			if (bufferCapacity != null) {
-				channel.socket().setSendBufferSize(bufferCapacity);
-			}
-
-			final HttpDecoratedResponse decoratedResponse = processRequestByChannel(channel, request);
+		try {
+			final HttpDecoratedResponse decoratedResponse = send(address, request);
 
 			if (decoratedResponse != null && PROCESS_RESPONSES_STATUSES.contains(decoratedResponse.getCode())) {
 				if (!decoratedResponse.getCallbacks().isEmpty()) {
@@ -107,11 +126,83 @@ public class HttpClientUnit extends RoboUnit<HttpDecoratedRequest> {
 		}
 	}
 
-	private HttpDecoratedResponse processRequestByChannel(SocketChannel byteChannel,
-														  HttpDecoratedRequest message){
-		try (OutboundHttpSocketChannelHandler handler = new OutboundHttpSocketChannelHandler(byteChannel, message)){
+	@Override
+	public void stop() {
+		super.stop();
+		idleChannels.values().forEach(channels -> {
+			IdleChannel idle;
+			while ((idle = channels.poll()) != null) {
+				close(idle.channel());
+			}
+		});
+	}
+
+	private HttpDecoratedResponse send(InetSocketAddress address, HttpDecoratedRequest request) throws IOException {
+		final SocketChannel idleChannel = pollIdleChannel(address);
+		if (idleChannel != null) {
+			final OutboundHttpSocketChannelHandler handler = new OutboundHttpSocketChannelHandler(idleChannel, request);
+			try {
+				return processRequestByChannel(address, idleChannel, handler);
+			} catch (SocketException e) {
+				// The server may have closed the connection while idle. A new one is
+				// only tried when the server cannot have processed the request yet.
+				if (handler.isRequestWritten() && !request.getPathMethod().getMethod().isIdempotent()) {
+					throw e;
+				}
+				SimpleLoggingUtil.debug(getClass(), String.format("idle connection to %s failed: %s", address, e));
+			}
+		}
+		final SocketChannel channel = SocketChannel.open(address);
+		if (bufferCapacity != null) {
+			channel.socket().setSendBufferSize(bufferCapacity);
+		}
+		return processRequestByChannel(address, channel, new OutboundHttpSocketChannelHandler(channel, request));
+	}
+
+	private HttpDecoratedResponse processRequestByChannel(InetSocketAddress address, SocketChannel channel,
+														  OutboundHttpSocketChannelHandler handler) {
+		boolean keepAlive = false;
+		try {
 			handler.start();
-			return handler.getDecoratedResponse();
+			final HttpDecoratedResponse response = handler.getDecoratedResponse();
+			keepAlive = !HttpHeaderFieldValues.CONNECTION_CLOSE
+					.equalsIgnoreCase(response.getHeader().get(HttpHeaderFieldNames.CONNECTION));
+			return response;
+		} finally {
+			if (keepAlive) {
+				idleChannels.computeIfAbsent(address, a -> new ConcurrentLinkedDeque<>())
+						.push(new IdleChannel(channel, System.nanoTime()));
+			} else {
+				close(channel);
+			}
+		}
+	}
+
+	/**
+	 * @return the most recently used idle connection to the address, connections
+	 *         idle for too long are closed
+	 */
+	private SocketChannel pollIdleChannel(InetSocketAddress address) {
+		final Deque<IdleChannel> channels = idleChannels.get(address);
+		if (channels == null) {
+			return null;
+		}
+		final long now = System.nanoTime();
+		IdleChannel idle;
+		while ((idle = channels.poll()) != null) {
+			if (idle.channel().isOpen() && now - idle.since() < idleTimeoutNanos) {
+				return idle.channel();
+			}
+			close(idle.channel());
+		}
+		return null;
+	}
+
+	private void close(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			SimpleLoggingUtil.debug(getClass(), "close connection: " + e.getMessage());
 		}
 	}
 
@@ -141,4 +232,6 @@ public class HttpClientUnit extends RoboUnit<HttpDecoratedRequest> {
 		getContext().getReference(callback).sendMessage(message);
 	}
 
+	private record IdleChannel(SocketChannel channel, long since) {
+	}
 }
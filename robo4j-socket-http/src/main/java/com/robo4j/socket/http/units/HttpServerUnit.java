@@ -39,13 +39,33 @@ import static com.robo4j.socket.http.util.ChannelBufferUtils.INIT_BUFFER_CAPACIT
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_BUFFER_CAPACITY;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_PACKAGES;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_REGISTRY;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_IDLE_TIMEOUT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_IN_FLIGHT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_IN_FLIGHT_PER_CONNECTION;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_UNIT_PATHS_CONFIG;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_WORKERS;
 
 /**
  * Http NIO unit allows to configure format of the requests currently is only
  * GET method available. Server currently support IP v4 address
  *
+ * Requests are processed off the selector thread. The number of requests
+ * processed at the same time is limited per connection
+ * ({@link RoboHttpUtils#PROPERTY_MAX_IN_FLIGHT_PER_CONNECTION}) and overall
+ * ({@link RoboHttpUtils#PROPERTY_MAX_IN_FLIGHT}), requests over the overall
+ * limit are answered with 503 Service Unavailable.
+ *
+ * Connections are kept open (HTTP/1.1 keep-alive) and may pipeline requests,
+ * the responses are written in the order of the requests. Connections idle
+ * for longer than {@link RoboHttpUtils#PROPERTY_IDLE_TIMEOUT} milliseconds are
+ * closed.
+ *
+ * Connections are accepted by a thread of their own and distributed
+ * round-robin over {@link RoboHttpUtils#PROPERTY_WORKERS} worker threads
+ * (default: one per core), none of them taken from the scheduler of the
+ * context.
+ *
  * @author Marcus Hirt (@hirt)
  * @author Miro Wengner (@miragemiko)
  */
@@ -85,6 +105,14 @@ public class HttpServerUnit extends RoboUnit<Object> {
 
 		serverContext.putProperty(PROPERTY_BUFFER_CAPACITY, bufferCapacity);
 		serverContext.putProperty(PROPERTY_SOCKET_PORT, serverPort);
+		serverContext.putProperty(PROPERTY_MAX_IN_FLIGHT,
+				configuration.getInteger(PROPERTY_MAX_IN_FLIGHT, RoboHttpUtils.DEFAULT_MAX_IN_FLIGHT));
+		serverContext.putProperty(PROPERTY_MAX_IN_FLIGHT_PER_CONNECTION, configuration
+				.getInteger(PROPERTY_MAX_IN_FLIGHT_PER_CONNECTION, RoboHttpUtils.DEFAULT_MAX_IN_FLIGHT_PER_CONNECTION));
+		serverContext.putProperty(PROPERTY_IDLE_TIMEOUT,
+				configuration.getInteger(PROPERTY_IDLE_TIMEOUT, RoboHttpUtils.DEFAULT_IDLE_TIMEOUT));
+		serverContext.putProperty(PROPERTY_WORKERS,
+				configuration.getInteger(PROPERTY_WORKERS, Runtime.getRuntime().availableProcessors()));
 
 		String packages = configuration.getString(PROPERTY_CODEC_PACKAGES, null);
 		// TODO: improve codecs registry handling, provide feedback about invalid packages
@@ -19,13 +19,11 @@ package com.robo4j.socket.http.util;
 import com.robo4j.socket.http.HttpHeaderFieldNames;
 import com.robo4j.socket.http.HttpMethod;
 import com.robo4j.socket.http.HttpVersion;
-import com.robo4j.socket.http.message.AbstractHttpDecoratedMessage;
 import com.robo4j.socket.http.message.HttpDecoratedRequest;
 import com.robo4j.socket.http.message.HttpRequestDenominator;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.ByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -76,13 +74,10 @@ public final class ChannelBufferUtils {
 	 *
 	 * @param message
 	 *            message
-	 * @return byte buffer
+	 * @return byte buffer of the UTF-8 encoded message
 	 */
 	public static ByteBuffer getByteBufferByString(String message) {
-		ByteBuffer result = ByteBuffer.allocate(message.length());
-		result.put(message.getBytes());
-		result.flip();
-		return result;
+		return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
 	}
 
 	/**
@@ -152,7 +147,7 @@ public final class ChannelBufferUtils {
 
 		if (headerParams.containsKey(HttpHeaderFieldNames.CONTENT_LENGTH)) {
 			result.setLength(calculateMessageSize(headerAndBody[POSITION_HEADER].length(), headerParams));
-			result.addMessage(headerAndBody[POSITION_BODY]);
+			result.addMessage(headerAndBody.length > POSITION_BODY ? headerAndBody[POSITION_BODY] : "");
 		}
 
 		return result;
@@ -175,35 +170,70 @@ public final class ChannelBufferUtils {
 	}
 
 	/**
+	 * Makes room in a buffer in write mode for at least one more byte, by
+	 * allocating a buffer of twice the capacity when full.
 	 *
-	 * @param result
-	 *            result message
-	 * @param channel
-	 *            byte channel
 	 * @param buffer
-	 *            buffer
-	 * @param readBytes
-	 *            read bytes
-	 * @throws IOException
-	 *             exception
+	 *            buffer in write mode
+	 * @return the buffer, or a bigger copy of it
 	 */
-	static void readChannelBuffer(AbstractHttpDecoratedMessage result, ByteChannel channel, ByteBuffer buffer,
-			int readBytes) throws IOException {
-		final StringBuilder sbAdditional = new StringBuilder();
-		int totalReadBytes = readBytes;
-		if (result.getLength() != 0) {
-			while (totalReadBytes < result.getLength()) {
-				readBytes = channel.read(buffer);
-				buffer.flip();
-				ChannelBufferUtils.addToStringBuilder(sbAdditional, buffer, readBytes);
+	static ByteBuffer ensureRemaining(ByteBuffer buffer) {
+		if (buffer.hasRemaining()) {
+			return buffer;
+		}
+		final ByteBuffer result = ByteBuffer.allocate(buffer.capacity() * 2);
+		buffer.flip();
+		result.put(buffer);
+		return result;
+	}
 
-				totalReadBytes += readBytes;
-				buffer.clear();
-			}
-			if (sbAdditional.length() > 0) {
-				result.addMessage(sbAdditional.toString());
+	/**
+	 * Finds the end of the message header, the empty line, in the bytes between
+	 * 0 and the position of a buffer in write mode.
+	 *
+	 * @param buffer
+	 *            buffer in write mode
+	 * @return the size of the header including the empty line, or -1 when the
+	 *         header is not complete yet
+	 */
+	static int getHeaderSize(ByteBuffer buffer) {
+		for (int i = 3; i < buffer.position(); i++) {
+			if (buffer.get(i) == CHAR_NEW_LINE && buffer.get(i - 1) == CHAR_RETURN && buffer.get(i - 2) == CHAR_NEW_LINE
+					&& buffer.get(i - 3) == CHAR_RETURN) {
+				return i + 1;
 			}
 		}
+		return BUFFER_MARK_END;
+	}
+
+	/**
+	 * @param header
+	 *            message header, first line included
+	 * @return the content length given by the header, or -1 when there is none
+	 */
+	static int getContentLength(String header) {
+		final String[] lines = header.split("[" + HTTP_NEW_LINE + "]+");
+		final Map<String, String> headerParams = getHeaderParametersByArray(Arrays.copyOfRange(lines, 1, lines.length));
+		final String value = headerParams.get(HttpHeaderFieldNames.CONTENT_LENGTH);
+		return value == null ? BUFFER_MARK_END : Integer.parseInt(value);
+	}
+
+	/**
+	 * Removes the first bytes of a buffer in write mode and returns them as a
+	 * string.
+	 *
+	 * @param buffer
+	 *            buffer in write mode
+	 * @param size
+	 *            number of bytes to remove
+	 * @return the removed bytes
+	 */
+	static String takeString(ByteBuffer buffer, int size) {
+		final byte[] array = new byte[size];
+		buffer.flip();
+		buffer.get(array);
+		buffer.compact();
+		return new String(array);
 	}
 
 	/**
@@ -229,24 +259,6 @@ public final class ChannelBufferUtils {
 				+ Integer.valueOf(headerParams.get(HttpHeaderFieldNames.CONTENT_LENGTH));
 	}
 
-	/**
-	 *
-	 * @param sb
-	 *            string builder
-	 * @param buffer
-	 *            buffer
-	 * @param size
-	 *            size
-	 */
-	static void addToStringBuilder(StringBuilder sb, ByteBuffer buffer, int size) {
-		byte[] array = new byte[size];
-		for (int i = 0; i < size; i++) {
-			array[i] = buffer.get(i);
-		}
-		final String message = new String(array);
-		sb.append(message);
-	}
-
 	/**
 	 *
 	 * @param array
@@ -16,44 +16,61 @@
  */
 package com.robo4j.socket.http.util;
 
-import com.robo4j.socket.http.HttpMethod;
-import com.robo4j.socket.http.HttpVersion;
 import com.robo4j.socket.http.message.HttpDecoratedRequest;
-import com.robo4j.socket.http.message.HttpRequestDenominator;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
-import java.util.HashMap;
 
 /**
- * ChannelRequestBuffer
+ * ChannelRequestBuffer reads the bytes of a connection and hands them to an
+ * incremental {@link HttpRequestParser}. A connection may send several
+ * requests without waiting for the responses (pipelining), a read may
+ * therefore hold parts of more than one request, and a request may need
+ * several reads.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
  */
 public class ChannelRequestBuffer {
 
-	private ByteBuffer requestBuffer;
+	private final ByteBuffer requestBuffer;
+	private final HttpRequestParser parser = new HttpRequestParser();
 
 	public ChannelRequestBuffer() {
 		requestBuffer = ByteBuffer.allocateDirect(ChannelBufferUtils.INIT_BUFFER_CAPACITY);
 	}
 
-	public HttpDecoratedRequest getHttpDecoratedRequestByChannel(ByteChannel channel) throws IOException {
-		final StringBuilder sbBasic = new StringBuilder();
-		int readBytes = channel.read(requestBuffer);
-		if (readBytes != ChannelBufferUtils.BUFFER_MARK_END) {
-			requestBuffer.flip();
-			ChannelBufferUtils.addToStringBuilder(sbBasic, requestBuffer, readBytes);
-			final HttpDecoratedRequest result = ChannelBufferUtils
-					.extractDecoratedRequestByStringMessage(sbBasic.toString());
-			ChannelBufferUtils.readChannelBuffer(result, channel, requestBuffer, readBytes);
-			requestBuffer.clear();
-			return result;
-		} else {
-			return new HttpDecoratedRequest(new HashMap<>(),
-					new HttpRequestDenominator(HttpMethod.GET, HttpVersion.HTTP_1_1));
+	/**
+	 * Reads what is available from the channel into the buffer.
+	 *
+	 * @param channel
+	 *            channel to read from
+	 * @return number of bytes read, -1 at the end of the stream
+	 * @throws IOException
+	 *             read failed
+	 */
+	public int read(ByteChannel channel) throws IOException {
+		if (!requestBuffer.hasRemaining()) {
+			// Not parsed yet, as the limit of requests in flight was reached
+			return 0;
+		}
+		return channel.read(requestBuffer);
+	}
+
+	/**
+	 * Takes the next complete request from the bytes read.
+	 *
+	 * @return the request, or null when no complete request has been read yet
+	 * @throws com.robo4j.socket.http.HttpException
+	 *             malformed request
+	 */
+	public HttpDecoratedRequest pollRequest() {
+		requestBuffer.flip();
+		try {
+			return parser.parse(requestBuffer);
+		} finally {
+			requestBuffer.compact();
 		}
 	}
 }
@@ -17,16 +17,17 @@
 package com.robo4j.socket.http.util;
 
 import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
 import com.robo4j.socket.http.HttpVersion;
 import com.robo4j.socket.http.enums.StatusCode;
 import com.robo4j.socket.http.message.HttpDecoratedResponse;
 import com.robo4j.socket.http.message.HttpResponseDenominator;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 
@@ -38,7 +39,10 @@ import static com.robo4j.socket.http.util.HttpMessageUtils.POSITION_BODY;
 import static com.robo4j.socket.http.util.HttpMessageUtils.POSITION_HEADER;
 
 /**
- * ChannelResponseBuffer
+ * ChannelResponseBuffer reads one response from a connection. The response
+ * ends after the content length given by its header, so that the connection
+ * can be used for the next request. Without a content length the response
+ * ends with the connection.
  *
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
@@ -48,25 +52,42 @@ public class ChannelResponseBuffer {
 	private ByteBuffer responseBuffer;
 
 	public ChannelResponseBuffer() {
-		responseBuffer = ByteBuffer.allocateDirect(INIT_BUFFER_CAPACITY);
+		responseBuffer = ByteBuffer.allocate(INIT_BUFFER_CAPACITY);
 	}
 
 	public HttpDecoratedResponse getHttpDecoratedResponseByChannel(ByteChannel channel) throws IOException {
-		final StringBuilder sbBasic = new StringBuilder();
-		int readBytes = channel.read(responseBuffer);
-		if (readBytes != BUFFER_MARK_END) {
-			responseBuffer.flip();
-			ChannelBufferUtils.addToStringBuilder(sbBasic, responseBuffer, readBytes);
-			final HttpDecoratedResponse result = extractDecoratedResponseByStringMessage(sbBasic.toString());
-			ChannelBufferUtils.readChannelBuffer(result, channel, responseBuffer, readBytes);
-			responseBuffer.clear();
+		int headerSize;
+		while ((headerSize = ChannelBufferUtils.getHeaderSize(responseBuffer)) == BUFFER_MARK_END) {
+			if (read(channel) == BUFFER_MARK_END) {
+				throw new EOFException("connection closed before the response");
+			}
+		}
+		final byte[] header = new byte[headerSize];
+		responseBuffer.get(0, header);
+		final int contentLength = ChannelBufferUtils.getContentLength(new String(header));
+		if (contentLength == BUFFER_MARK_END) {
+			while (read(channel) != BUFFER_MARK_END) {
+				// the response ends with the connection
+			}
+			final HttpDecoratedResponse result = extractDecoratedResponseByStringMessage(
+					ChannelBufferUtils.takeString(responseBuffer, responseBuffer.position()));
+			if (!result.getHeader().containsKey(HttpHeaderFieldNames.CONNECTION)) {
+				result.addHeaderElement(HttpHeaderFieldNames.CONNECTION, HttpHeaderFieldValues.CONNECTION_CLOSE);
+			}
 			return result;
-
-		} else {
-
-			return new HttpDecoratedResponse(new HashMap<>(),
-					new HttpResponseDenominator(StatusCode.BAD_REQUEST, HttpVersion.HTTP_1_1));
 		}
+		final int size = headerSize + contentLength;
+		while (responseBuffer.position() < size) {
+			if (read(channel) == BUFFER_MARK_END) {
+				throw new EOFException("connection closed within the response");
+			}
+		}
+		return extractDecoratedResponseByStringMessage(ChannelBufferUtils.takeString(responseBuffer, size));
+	}
+
+	private int read(ByteChannel channel) throws IOException {
+		responseBuffer = ChannelBufferUtils.ensureRemaining(responseBuffer);
+		return channel.read(responseBuffer);
 	}
 
 	// TODO: 3/5/18 (miro) investigate spring responseBody
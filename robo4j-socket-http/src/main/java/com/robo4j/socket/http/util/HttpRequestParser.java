@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.util;
+
+import com.robo4j.socket.http.HttpException;
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.message.HttpRequestDenominator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Incremental HTTP/1.x request parser. Consumes the bytes of a buffer as they
+ * arrive, a request may span any number of reads, and keeps its state between
+ * calls. Handles bodies given by content length and chunked transfer
+ * encoding.
+ *
+ * The parser works on the bytes directly: only the tokens a request consists
+ * of (method, path, header names and values, body) become objects.
+ *
+ * Not thread safe, one parser per connection.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class HttpRequestParser {
+
+	/**
+	 * Maximum size of the request line and header together.
+	 */
+	public static final int MAX_HEADER_SIZE = 64 * 1024;
+
+	/**
+	 * Maximum size of a request body.
+	 */
+	public static final int MAX_BODY_SIZE = 8 * 1024 * 1024;
+
+	private static final byte SPACE = ' ';
+	private static final byte TAB = '\t';
+	private static final byte COLON = ':';
+	private static final byte SEMICOLON = ';';
+	private static final int NO_CONTENT_LENGTH = -1;
+
+	private static final int MAX_CHUNK_SIZE_DIGITS = 7;
+
+	private enum State {
+		//@formatter:off
+		METHOD(true), PATH(true), VERSION(true), HEADER_NAME(true), HEADER_VALUE(true),
+		BODY(false), CHUNK_SIZE(false), CHUNK_EXTENSION(false), CHUNK_DATA(false), CHUNK_DATA_END(false),
+		TRAILER(false);
+		//@formatter:on
+
+		private final boolean header;
+
+		State(boolean header) {
+			this.header = header;
+		}
+	}
+
+	private State state = State.METHOD;
+	private byte[] token = new byte[64];
+	private int tokenLength;
+	private int headerSize;
+	private HttpMethod method;
+	private String path;
+	private HttpVersion version;
+	private String headerName;
+	private Map<String, String> headers = new HashMap<>();
+	private int contentLength = NO_CONTENT_LENGTH;
+	private boolean chunked;
+	private byte[] body;
+	private int bodyLength;
+	private int remaining;
+
+	/**
+	 * Consumes bytes of the buffer until a request is complete or the buffer
+	 * has no bytes left.
+	 *
+	 * @param buffer
+	 *            buffer in read mode, its position is moved past the bytes
+	 *            consumed
+	 * @return the request completed, or null when more bytes are needed
+	 * @throws HttpException
+	 *             malformed request
+	 */
+	public HttpDecoratedRequest parse(ByteBuffer buffer) {
+		while (buffer.hasRemaining()) {
+			switch (state) {
+			case BODY:
+				remaining -= readBody(buffer, remaining);
+				if (remaining == 0) {
+					return complete();
+				}
+				break;
+			case CHUNK_DATA:
+				remaining -= readBody(buffer, remaining);
+				if (remaining == 0) {
+					state = State.CHUNK_DATA_END;
+				}
+				break;
+			default:
+				if (parseByte(buffer.get())) {
+					return complete();
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return true when the byte completes the request
+	 */
+	private boolean parseByte(byte b) {
+		if (state.header && ++headerSize > MAX_HEADER_SIZE) {
+			throw new HttpException("request header too large");
+		}
+		switch (state) {
+		case METHOD:
+			if (b == SPACE) {
+				method = getMethod();
+				state = State.PATH;
+			} else if (!isLineEnd(b) || tokenLength > 0) {
+				// Empty lines before the request line are ignored
+				append(b);
+			} else {
+				headerSize = 0;
+			}
+			return false;
+		case PATH:
+			if (b == SPACE) {
+				path = takeToken();
+				state = State.VERSION;
+			} else {
+				append(b);
+			}
+			return false;
+		case VERSION:
+			if (b == ChannelBufferUtils.CHAR_NEW_LINE) {
+				version = getVersion();
+				state = State.HEADER_NAME;
+			} else if (b != ChannelBufferUtils.CHAR_RETURN) {
+				append(b);
+			}
+			return false;
+		case HEADER_NAME:
+			if (b == ChannelBufferUtils.CHAR_NEW_LINE) {
+				if (tokenLength > 0) {
+					throw new HttpException("header field without colon");
+				}
+				return endOfHeader();
+			} else if (b == COLON) {
+				headerName = takeToken();
+				state = State.HEADER_VALUE;
+			} else if (b != ChannelBufferUtils.CHAR_RETURN) {
+				append(toLowerCase(b));
+			}
+			return false;
+		case HEADER_VALUE:
+			if (b == ChannelBufferUtils.CHAR_NEW_LINE) {
+				addHeader(headerName, takeTrimmedToken());
+				state = State.HEADER_NAME;
+			} else if ((b != SPACE && b != TAB) || tokenLength > 0) {
+				append(b);
+			}
+			return false;
+		case CHUNK_SIZE:
+			if (b == ChannelBufferUtils.CHAR_NEW_LINE) {
+				return startChunk();
+			} else if (b == SEMICOLON) {
+				state = State.CHUNK_EXTENSION;
+			} else if (b != ChannelBufferUtils.CHAR_RETURN && b != SPACE && b != TAB) {
+				if (tokenLength == MAX_CHUNK_SIZE_DIGITS) {
+					throw new HttpException("request body too large");
+				}
+				append(b);
+			}
+			return false;
+		case CHUNK_EXTENSION:
+			if (b == ChannelBufferUtils.CHAR_NEW_LINE) {
+				return startChunk();
+			}
+			return false;
+		case CHUNK_DATA_END:
+			if (b == ChannelBufferUtils.CHAR_NEW_LINE) {
+				state = State.CHUNK_SIZE;
+			} else if (b != ChannelBufferUtils.CHAR_RETURN) {
+				throw new HttpException("chunk longer than its size");
+			}
+			return false;
+		case TRAILER:
+			// Trailer fields are skipped, up to the empty line
+			if (b == ChannelBufferUtils.CHAR_NEW_LINE) {
+				if (tokenLength == 0) {
+					return true;
+				}
+				tokenLength = 0;
+			} else if (b != ChannelBufferUtils.CHAR_RETURN) {
+				tokenLength++;
+			}
+			return false;
+		default:
+			throw new IllegalStateException("state: " + state);
+		}
+	}
+
+	private boolean endOfHeader() {
+		if (chunked) {
+			state = State.CHUNK_SIZE;
+			body = new byte[64];
+			return false;
+		}
+		if (contentLength > 0) {
+			state = State.BODY;
+			body = new byte[contentLength];
+			remaining = contentLength;
+			return false;
+		}
+		return true;
+	}
+
+	private boolean startChunk() {
+		if (tokenLength == 0) {
+			throw new HttpException("missing chunk size");
+		}
+		final int size;
+		try {
+			size = Integer.parseInt(takeToken(), 16);
+		} catch (NumberFormatException e) {
+			throw new HttpException("invalid chunk size", e);
+		}
+		if (size < 0 || size > MAX_BODY_SIZE - bodyLength) {
+			throw new HttpException("request body too large");
+		}
+		if (size == 0) {
+			state = State.TRAILER;
+			return false;
+		}
+		if (body.length - bodyLength < size) {
+			body = Arrays.copyOf(body, Math.max(body.length * 2, bodyLength + size));
+		}
+		remaining = size;
+		state = State.CHUNK_DATA;
+		return false;
+	}
+
+	private void addHeader(String name, String value) {
+		headers.put(name, value);
+		if (HttpHeaderFieldNames.CONTENT_LENGTH.equals(name)) {
+			try {
+				contentLength = Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				throw new HttpException("invalid content length: " + value, e);
+			}
+			if (contentLength < 0 || contentLength > MAX_BODY_SIZE) {
+				throw new HttpException("invalid content length: " + value);
+			}
+		} else if (HttpHeaderFieldNames.TRANSFER_ENCODING.equals(name)) {
+			chunked = value.toLowerCase().contains(HttpHeaderFieldValues.TRANSFER_ENCODING_CHUNKED);
+		}
+	}
+
+	/**
+	 * Copies body bytes in bulk.
+	 *
+	 * @return number of bytes copied
+	 */
+	private int readBody(ByteBuffer buffer, int max) {
+		final int length = Math.min(max, buffer.remaining());
+		buffer.get(body, bodyLength, length);
+		bodyLength += length;
+		return length;
+	}
+
+	private HttpDecoratedRequest complete() {
+		final HttpRequestDenominator denominator;
+		final int attributesIndex = path.indexOf(HttpPathUtils.DELIMITER_PATH_ATTRIBUTES);
+		if (attributesIndex >= 0) {
+			denominator = new HttpRequestDenominator(method, path.substring(0, attributesIndex), version,
+					HttpPathUtils.extractAttributesByPath(path));
+		} else {
+			denominator = new HttpRequestDenominator(method, path, version);
+		}
+		if (chunked) {
+			// The body is passed on as if it had a content length
+			headers.remove(HttpHeaderFieldNames.TRANSFER_ENCODING);
+		}
+		final HttpDecoratedRequest result = new HttpDecoratedRequest(headers, denominator);
+		if (body != null) {
+			result.addMessage(new String(body, 0, bodyLength, StandardCharsets.UTF_8));
+		} else if (contentLength == 0) {
+			result.addMessage("");
+		}
+		reset();
+		return result;
+	}
+
+	private void reset() {
+		state = State.METHOD;
+		tokenLength = 0;
+		headerSize = 0;
+		method = null;
+		path = null;
+		version = null;
+		headerName = null;
+		headers = new HashMap<>();
+		contentLength = NO_CONTENT_LENGTH;
+		chunked = false;
+		body = null;
+		bodyLength = 0;
+		remaining = 0;
+	}
+
+	private HttpMethod getMethod() {
+		for (HttpMethod value : HttpMethod.values()) {
+			if (tokenEquals(value.getName())) {
+				tokenLength = 0;
+				return value;
+			}
+		}
+		throw new HttpException("unknown method: " + takeToken());
+	}
+
+	private HttpVersion getVersion() {
+		for (HttpVersion value : HttpVersion.values()) {
+			if (tokenEquals(value.getValue())) {
+				tokenLength = 0;
+				return value;
+			}
+		}
+		throw new HttpException("unsupported version: " + takeToken());
+	}
+
+	private boolean tokenEquals(String value) {
+		if (value.length() != tokenLength) {
+			return false;
+		}
+		for (int i = 0; i < tokenLength; i++) {
+			if (token[i] != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void append(byte b) {
+		if (tokenLength == token.length) {
+			token = Arrays.copyOf(token, token.length * 2);
+		}
+		token[tokenLength++] = b;
+	}
+
+	private String takeToken() {
+		final String result = new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+		tokenLength = 0;
+		return result;
+	}
+
+	private String takeTrimmedToken() {
+		while (tokenLength > 0 && isWhitespace(token[tokenLength - 1])) {
+			tokenLength--;
+		}
+		return takeToken();
+	}
+
+	private static boolean isLineEnd(byte b) {
+		return b == ChannelBufferUtils.CHAR_NEW_LINE || b == ChannelBufferUtils.CHAR_RETURN;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == SPACE || b == TAB || b == ChannelBufferUtils.CHAR_RETURN;
+	}
+
+	private static byte toLowerCase(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+	}
+}
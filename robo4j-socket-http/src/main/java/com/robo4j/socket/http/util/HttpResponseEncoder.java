@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.util;
+
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.enums.StatusCode;
+import com.robo4j.socket.http.message.HttpResponseDenominator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static com.robo4j.socket.http.util.HttpConstant.HTTP_NEW_LINE;
+import static com.robo4j.socket.http.util.HttpMessageUtils.COLON;
+import static com.robo4j.socket.http.util.HttpMessageUtils.SPACE;
+
+/**
+ * Encodes HTTP/1.1 responses of the server into buffers ready for a gathering
+ * write: the status line and headers into a direct buffer taken from a pool,
+ * the body, when it does not fit behind the headers, into a buffer of its
+ * own.
+ *
+ * The status lines and the constant header lines are encoded once, only the
+ * content length is encoded per response.
+ *
+ * Not thread safe, meant to be used by a single selector thread. The buffers
+ * are returned to the pool by {@link #release(ByteBuffer[])} once written.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public final class HttpResponseEncoder {
+
+	public static final int HEADER_BUFFER_CAPACITY = 1024;
+	private static final int MAX_POOLED_BUFFERS = 64;
+	// Longest decimal int
+	private static final int MAX_CONTENT_LENGTH_DIGITS = 10;
+
+	private static final Map<StatusCode, byte[]> STATUS_LINES = initStatusLines();
+	private static final byte[] CONNECTION_KEEP_ALIVE = encodeHeaderLine(HttpHeaderFieldNames.CONNECTION,
+			HttpHeaderFieldValues.CONNECTION_KEEP_ALIVE);
+	private static final byte[] CONNECTION_CLOSE = encodeHeaderLine(HttpHeaderFieldNames.CONNECTION,
+			HttpHeaderFieldValues.CONNECTION_CLOSE);
+	private static final byte[] EMPTY_CONTENT_LENGTH = encodeHeaderLine(HttpHeaderFieldNames.CONTENT_LENGTH, "0");
+	private static final byte[] CONTENT_LENGTH_NAME = encode(HttpHeaderFieldNames.CONTENT_LENGTH + COLON + SPACE);
+	private static final byte[] NEW_LINE = encode(HTTP_NEW_LINE);
+
+	private final byte[] unitUidLine;
+	private final Deque<ByteBuffer> pool = new ArrayDeque<>();
+
+	/**
+	 * @param unitUid
+	 *            id of the context, sent with each response body
+	 */
+	public HttpResponseEncoder(String unitUid) {
+		this.unitUidLine = encodeHeaderLine(HttpHeaderFieldNames.ROBO_UNIT_UID, unitUid);
+	}
+
+	/**
+	 * Encodes a response.
+	 *
+	 * @param code
+	 *            status of the response
+	 * @param keepAlive
+	 *            whether the connection stays open after the response
+	 * @param body
+	 *            body of the response, null for none
+	 * @return the buffers to write, in order, flipped
+	 */
+	public ByteBuffer[] encode(StatusCode code, boolean keepAlive, String body) {
+		final byte[] statusLine = STATUS_LINES.get(code);
+		final byte[] connectionLine = keepAlive ? CONNECTION_KEEP_ALIVE : CONNECTION_CLOSE;
+		final byte[] bodyBytes = body == null ? null : body.getBytes(StandardCharsets.UTF_8);
+
+		final int headerSize;
+		if (bodyBytes == null) {
+			headerSize = statusLine.length + connectionLine.length + EMPTY_CONTENT_LENGTH.length + NEW_LINE.length;
+		} else {
+			headerSize = statusLine.length + connectionLine.length + unitUidLine.length + CONTENT_LENGTH_NAME.length
+					+ MAX_CONTENT_LENGTH_DIGITS + 2 * NEW_LINE.length;
+		}
+		final ByteBuffer header = headerSize > HEADER_BUFFER_CAPACITY ? ByteBuffer.allocateDirect(headerSize)
+				: takeBuffer();
+		header.put(statusLine).put(connectionLine);
+		if (bodyBytes == null) {
+			header.put(EMPTY_CONTENT_LENGTH).put(NEW_LINE);
+			return new ByteBuffer[] { header.flip() };
+		}
+		header.put(unitUidLine).put(CONTENT_LENGTH_NAME);
+		putDecimal(header, bodyBytes.length);
+		header.put(NEW_LINE).put(NEW_LINE);
+		// Small bodies go with the headers, saving the copy of a heap buffer
+		// the channel would make
+		if (bodyBytes.length <= header.remaining()) {
+			header.put(bodyBytes);
+			return new ByteBuffer[] { header.flip() };
+		}
+		return new ByteBuffer[] { header.flip(), ByteBuffer.wrap(bodyBytes) };
+	}
+
+	/**
+	 * Returns the header buffer of a written response to the pool.
+	 *
+	 * @param buffers
+	 *            buffers returned by {@link #encode(StatusCode, boolean, String)}
+	 */
+	public void release(ByteBuffer[] buffers) {
+		final ByteBuffer header = buffers[0];
+		if (header.isDirect() && header.capacity() == HEADER_BUFFER_CAPACITY && pool.size() < MAX_POOLED_BUFFERS) {
+			pool.push(header.clear());
+		}
+	}
+
+	private ByteBuffer takeBuffer() {
+		final ByteBuffer result = pool.poll();
+		return result == null ? ByteBuffer.allocateDirect(HEADER_BUFFER_CAPACITY) : result;
+	}
+
+	private static void putDecimal(ByteBuffer buffer, int value) {
+		int divisor = 1;
+		while (value / divisor >= 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			buffer.put((byte) ('0' + value / divisor % 10));
+		}
+	}
+
+	private static Map<StatusCode, byte[]> initStatusLines() {
+		final Map<StatusCode, byte[]> result = new EnumMap<>(StatusCode.class);
+		for (StatusCode code : StatusCode.values()) {
+			result.put(code, encode(new HttpResponseDenominator(code, HttpVersion.HTTP_1_1).generate() + HTTP_NEW_LINE));
+		}
+		return result;
+	}
+
+	private static byte[] encodeHeaderLine(String name, String value) {
+		return encode(name + COLON + SPACE + value + HTTP_NEW_LINE);
+	}
+
+	private static byte[] encode(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
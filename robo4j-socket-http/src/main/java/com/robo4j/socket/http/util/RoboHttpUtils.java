@@ -44,6 +44,13 @@ public final class RoboHttpUtils {
 	public static final String PROPERTY_BUFFER_CAPACITY = "bufferCapacity";
 	public static final String PROPERTY_BYTE_BUFFER = "byteBuffer";
 	public static final String PROPERTY_TIMEOUT = "timeout";
+	public static final String PROPERTY_MAX_IN_FLIGHT = "maxInFlightRequests";
+	public static final String PROPERTY_MAX_IN_FLIGHT_PER_CONNECTION = "maxInFlightRequestsPerConnection";
+	public static final String PROPERTY_IDLE_TIMEOUT = "idleTimeout";
+	public static final String PROPERTY_WORKERS = "workers";
+	public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+	public static final int DEFAULT_MAX_IN_FLIGHT_PER_CONNECTION = 8;
+	public static final int DEFAULT_IDLE_TIMEOUT = 30000;
 
 	public static void decorateByNewLine(StringBuilder sb) {
 		sb.append(NEW_LINE_MAC).append(NEW_LINE_UNIX);
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.request;
+
+import com.robo4j.socket.http.HttpException;
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.message.HttpRequestDenominator;
+import com.robo4j.socket.http.util.ChannelBufferUtils;
+import com.robo4j.socket.http.util.HttpRequestParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+class HttpRequestParserTests {
+	private static final String BODY = "{\"value\":\"move\"}";
+	private static final String POST_REQUEST = "POST /controller HTTP/1.1\r\n" + "Host: localhost:8042\r\n"
+			+ "Connection: keep-alive\r\n" + "Content-Length: " + BODY.length() + "\r\n"
+			+ "Content-Type: application/json\r\n" + "Accept-Language: en-US,en;q=0.8\r\n\r\n" + BODY;
+
+	@Test
+	void sameAsStringParserTest() {
+		HttpDecoratedRequest expected = ChannelBufferUtils.extractDecoratedRequestByStringMessage(POST_REQUEST);
+		HttpDecoratedRequest request = new HttpRequestParser().parse(buffer(POST_REQUEST));
+
+		assertNotNull(request);
+		assertEquals(expected.getPathMethod(), request.getPathMethod());
+		assertEquals(expected.getDenominator().getVersion(), request.getDenominator().getVersion());
+		// The string parser cuts header values at a second colon
+		Map<String, String> expectedHeader = expected.getHeader();
+		Map<String, String> header = request.getHeader();
+		assertEquals("localhost:8042", header.remove(HttpHeaderFieldNames.HOST));
+		expectedHeader.remove(HttpHeaderFieldNames.HOST);
+		assertEquals(expectedHeader, header);
+		assertEquals(expected.getMessage(), request.getMessage());
+	}
+
+	@Test
+	void partialReadsTest() {
+		HttpRequestParser parser = new HttpRequestParser();
+		byte[] bytes = POST_REQUEST.getBytes(StandardCharsets.UTF_8);
+		HttpDecoratedRequest request = null;
+		for (int i = 0; i < bytes.length; i++) {
+			assertNull(request, "completed early");
+			request = parser.parse(ByteBuffer.wrap(bytes, i, 1));
+		}
+		assertNotNull(request);
+		assertEquals("/controller", request.getPathMethod().getPath());
+		assertEquals(BODY, request.getMessage());
+	}
+
+	@Test
+	void pipelinedRequestsTest() {
+		HttpRequestParser parser = new HttpRequestParser();
+		ByteBuffer buffer = buffer(POST_REQUEST + "GET /units/controller?attributes=speed,name HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+		HttpDecoratedRequest first = parser.parse(buffer);
+		HttpDecoratedRequest second = parser.parse(buffer);
+
+		assertEquals(HttpMethod.POST, first.getPathMethod().getMethod());
+		assertEquals(BODY, first.getMessage());
+		assertEquals(HttpMethod.GET, second.getPathMethod().getMethod());
+		assertEquals("/units/controller", second.getPathMethod().getPath());
+		assertEquals(Set.of("speed", "name"),
+				((HttpRequestDenominator) second.getDenominator()).getAttributes().get("attributes"));
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test
+	void chunkedBodyTest() {
+		String request = "POST /controller HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+				+ "5\r\n{\"val\r\n" + "b;ext=1\r\nue\":\"move\"}\r\n" + "0\r\nTrailer: ignored\r\n\r\n";
+		HttpDecoratedRequest result = new HttpRequestParser().parse(buffer(request));
+
+		assertNotNull(result);
+		assertEquals(BODY, result.getMessage());
+		assertEquals(String.valueOf(BODY.length()), result.getHeader().get(HttpHeaderFieldNames.CONTENT_LENGTH));
+	}
+
+	@Test
+	void requestLargerThanBufferTest() {
+		String body = "x".repeat(ChannelBufferUtils.INIT_BUFFER_CAPACITY * 3);
+		String request = "POST /controller HTTP/1.1\r\nContent-Length: " + body.length() + "\r\n\r\n" + body;
+		byte[] bytes = request.getBytes(StandardCharsets.UTF_8);
+		HttpRequestParser parser = new HttpRequestParser();
+		HttpDecoratedRequest result = null;
+		for (int offset = 0; offset < bytes.length; offset += 1000) {
+			result = parser.parse(ByteBuffer.wrap(bytes, offset, Math.min(1000, bytes.length - offset)));
+		}
+		assertNotNull(result);
+		assertEquals(body, result.getMessage());
+	}
+
+	@Test
+	void malformedRequestTest() {
+		assertThrows(HttpException.class, () -> new HttpRequestParser().parse(buffer("FETCH / HTTP/1.1\r\n\r\n")));
+		assertThrows(HttpException.class,
+				() -> new HttpRequestParser().parse(buffer("POST / HTTP/1.1\r\nContent-Length: x\r\n\r\n")));
+		assertThrows(HttpException.class,
+				() -> new HttpRequestParser().parse(buffer("GET / HTTP/1.1\r\nHost localhost\r\n\r\n")));
+	}
+
+	private static ByteBuffer buffer(String message) {
+		return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.request;
+
+import com.robo4j.socket.http.HttpHeaderFieldNames;
+import com.robo4j.socket.http.HttpHeaderFieldValues;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.enums.StatusCode;
+import com.robo4j.socket.http.message.HttpResponseDenominator;
+import com.robo4j.socket.http.util.HttpMessageBuilder;
+import com.robo4j.socket.http.util.HttpResponseEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Marcus Hirt (@hirt)
+ * @author Miro Wengner (@miragemiko)
+ */
+class HttpResponseEncoderTests {
+	private static final String UNIT_UID = "robo4j-context";
+	private static final String BODY = "{\"value\":\"move\"}";
+
+	@Test
+	void sameAsMessageBuilderTest() {
+		String expected = HttpMessageBuilder.Build()
+				.setDenominator(new HttpResponseDenominator(StatusCode.OK, HttpVersion.HTTP_1_1))
+				.addHeaderElement(HttpHeaderFieldNames.CONNECTION, HttpHeaderFieldValues.CONNECTION_KEEP_ALIVE)
+				.addHeaderElement(HttpHeaderFieldNames.ROBO_UNIT_UID, UNIT_UID)
+				.addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH, String.valueOf(BODY.length())).build(BODY);
+
+		ByteBuffer[] buffers = new HttpResponseEncoder(UNIT_UID).encode(StatusCode.OK, true, BODY);
+
+		assertEquals(expected, toString(buffers));
+	}
+
+	@Test
+	void emptyResponseTest() {
+		String expected = HttpMessageBuilder.Build()
+				.setDenominator(new HttpResponseDenominator(StatusCode.SERVICE_UNAVAILABLE, HttpVersion.HTTP_1_1))
+				.addHeaderElement(HttpHeaderFieldNames.CONNECTION, HttpHeaderFieldValues.CONNECTION_CLOSE)
+				.addHeaderElement(HttpHeaderFieldNames.CONTENT_LENGTH, "0").build();
+
+		ByteBuffer[] buffers = new HttpResponseEncoder(UNIT_UID).encode(StatusCode.SERVICE_UNAVAILABLE, false, null);
+
+		assertEquals(1, buffers.length);
+		assertEquals(expected, toString(buffers));
+	}
+
+	@Test
+	void nonAsciiBodyLengthTest() {
+		String body = "{\"value\":\"Grüße, 40°C €\"}";
+		int bodyBytes = body.getBytes(StandardCharsets.UTF_8).length;
+		assertTrue(bodyBytes > body.length());
+
+		String response = toString(new HttpResponseEncoder(UNIT_UID).encode(StatusCode.OK, true, body));
+
+		assertTrue(response.contains(HttpHeaderFieldNames.CONTENT_LENGTH + ": " + bodyBytes + "\r\n"), response);
+		assertTrue(response.endsWith("\r\n\r\n" + body), response);
+	}
+
+	@Test
+	void largeBodyGatheredTest() {
+		String body = "x".repeat(HttpResponseEncoder.HEADER_BUFFER_CAPACITY * 4);
+
+		ByteBuffer[] buffers = new HttpResponseEncoder(UNIT_UID).encode(StatusCode.OK, true, body);
+
+		assertEquals(2, buffers.length);
+		assertTrue(buffers[0].isDirect());
+		assertEquals(body, StandardCharsets.UTF_8.decode(buffers[1].duplicate()).toString());
+		assertTrue(toString(buffers).contains(HttpHeaderFieldNames.CONTENT_LENGTH + ": " + body.length() + "\r\n"));
+	}
+
+	@Test
+	void releasedBufferReusedTest() {
+		HttpResponseEncoder encoder = new HttpResponseEncoder(UNIT_UID);
+		ByteBuffer[] first = encoder.encode(StatusCode.OK, true, BODY);
+		String expected = toString(first);
+		encoder.release(first);
+
+		ByteBuffer[] second = encoder.encode(StatusCode.OK, true, BODY);
+
+		assertSame(first[0], second[0]);
+		assertEquals(expected, toString(second));
+	}
+
+	private static String toString(ByteBuffer[] buffers) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (ByteBuffer buffer : buffers) {
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.duplicate().get(bytes);
+			out.writeBytes(bytes);
+		}
+		return out.toString(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units;
+
+import com.robo4j.RoboBuilder;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboReference;
+import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.HttpVersion;
+import com.robo4j.socket.http.message.HttpDecoratedRequest;
+import com.robo4j.socket.http.message.HttpRequestDenominator;
+import com.robo4j.socket.http.units.HttpClientUnit;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_HOST;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the reuse of connections by the {@link HttpClientUnit}.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+class HttpClientUnitTests {
+	private static final int TIMEOUT_SEC = 5;
+	private static final String ID_CLIENT = "client";
+	private static final String RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n";
+
+	@Test
+	void idempotentRequestRetriedOnNewConnection() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			BlockingQueue<String> requests = startDroppingServer(serverSocket);
+			RoboContext system = startClientSystem(serverSocket.getLocalPort());
+			RoboReference<HttpDecoratedRequest> client = system.getReference(ID_CLIENT);
+
+			client.sendMessage(createRequest(HttpMethod.GET, null));
+			client.sendMessage(createRequest(HttpMethod.GET, null));
+
+			// The second request failed on the reused connection, and was sent again
+			assertEquals(List.of("GET", "GET", "GET"), takeMethods(requests, 3));
+			system.shutdown();
+		}
+	}
+
+	@Test
+	void nonIdempotentRequestNotRetriedOnceWritten() throws Exception {
+		try (ServerSocket serverSocket = new ServerSocket(0)) {
+			BlockingQueue<String> requests = startDroppingServer(serverSocket);
+			RoboContext system = startClientSystem(serverSocket.getLocalPort());
+			RoboReference<HttpDecoratedRequest> client = system.getReference(ID_CLIENT);
+
+			client.sendMessage(createRequest(HttpMethod.POST, "first"));
+			client.sendMessage(createRequest(HttpMethod.POST, "second"));
+			client.sendMessage(createRequest(HttpMethod.GET, null));
+
+			// The server received the second request, it must not be repeated
+			assertEquals(List.of("POST", "POST", "GET"), takeMethods(requests, 3));
+			system.shutdown();
+		}
+	}
+
+	/**
+	 * Starts a server answering the first request of each connection, and
+	 * closing the connection after receiving the second one without answering
+	 * it.
+	 *
+	 * @return the request lines received
+	 */
+	private static BlockingQueue<String> startDroppingServer(ServerSocket serverSocket) {
+		BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+		Thread thread = new Thread(() -> {
+			while (!serverSocket.isClosed()) {
+				try (Socket socket = serverSocket.accept()) {
+					socket.setSoTimeout(TIMEOUT_SEC * 1000);
+					InputStream in = socket.getInputStream();
+					requests.add(readRequestLine(in));
+					socket.getOutputStream().write(RESPONSE.getBytes(StandardCharsets.UTF_8));
+					requests.add(readRequestLine(in));
+				} catch (IOException e) {
+					// Closed by the test, or by the client
+				}
+			}
+		}, "droppingServer");
+		thread.setDaemon(true);
+		thread.start();
+		return requests;
+	}
+
+	private static String readRequestLine(InputStream in) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		while (!header.toString(StandardCharsets.UTF_8).endsWith("\r\n\r\n")) {
+			int b = in.read();
+			if (b == -1) {
+				throw new IOException("connection closed");
+			}
+			header.write(b);
+		}
+		String headerText = header.toString(StandardCharsets.UTF_8);
+		for (String line : headerText.split("\r\n")) {
+			if (line.toLowerCase().startsWith("content-length:")) {
+				in.readNBytes(Integer.parseInt(line.substring(line.indexOf(':') + 1).trim()));
+			}
+		}
+		return headerText.substring(0, headerText.indexOf("\r\n"));
+	}
+
+	private static List<String> takeMethods(BlockingQueue<String> requests, int count) throws InterruptedException {
+		String[] methods = new String[count];
+		for (int i = 0; i < count; i++) {
+			String requestLine = requests.poll(TIMEOUT_SEC, TimeUnit.SECONDS);
+			assertTrue(requestLine != null, "missing request " + i);
+			methods[i] = requestLine.substring(0, requestLine.indexOf(' '));
+		}
+		return List.of(methods);
+	}
+
+	private static RoboContext startClientSystem(int port) throws Exception {
+		RoboBuilder builder = new RoboBuilder();
+		builder.add(HttpClientUnit.class,
+				new ConfigurationBuilder().addString(PROPERTY_HOST, "localhost").addInteger(PROPERTY_SOCKET_PORT, port).build(),
+				ID_CLIENT);
+		RoboContext system = builder.build();
+		system.start();
+		return system;
+	}
+
+	private static HttpDecoratedRequest createRequest(HttpMethod method, String message) {
+		HttpDecoratedRequest request = new HttpDecoratedRequest(new HttpRequestDenominator(method, "/test", HttpVersion.HTTP_1_1));
+		if (message != null) {
+			request.addMessage(message);
+		}
+		return request;
+	}
+}
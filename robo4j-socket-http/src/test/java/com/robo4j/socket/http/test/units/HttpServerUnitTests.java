@@ -23,15 +23,37 @@ import com.robo4j.RoboContext;
 import com.robo4j.RoboReference;
 import com.robo4j.configuration.Configuration;
 import com.robo4j.configuration.ConfigurationBuilder;
+import com.robo4j.socket.http.HttpMethod;
+import com.robo4j.socket.http.test.units.config.HttpSlowAttributeGetController;
 import com.robo4j.socket.http.units.HttpServerUnit;
+import com.robo4j.socket.http.util.HttpPathConfigJsonBuilder;
 import com.robo4j.util.SystemUtil;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import static com.robo4j.socket.http.test.units.HttpUnitTests.CODECS_UNITS_TEST_PACKAGE;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_CODEC_PACKAGES;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_IDLE_TIMEOUT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_IN_FLIGHT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_MAX_IN_FLIGHT_PER_CONNECTION;
 import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_SOCKET_PORT;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_UNIT_PATHS_CONFIG;
+import static com.robo4j.socket.http.util.RoboHttpUtils.PROPERTY_WORKERS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Marcus Hirt (@hirt)
@@ -39,7 +61,14 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
  */
 class HttpServerUnitTests {
 	private static final int PORT = 9000;
+	private static final int ASYNC_PORT = 9001;
+	private static final int KEEP_ALIVE_PORT = 9002;
+	private static final int WORKERS_PORT = 9003;
+	private static final int END_OF_STREAM_PORT = 9004;
+	private static final int IDLE_TIMEOUT = 500;
+	private static final int SLOW_DELAY = 2000;
 	private static final String ID_HTTP_SERVER = "empty_server";
+	private static final String ID_SLOW_CONTROLLER = "slowController";
 
 	@Test
 	void httpServerUnitNoCodecsPackageTest() throws Exception {
@@ -84,4 +113,202 @@ class HttpServerUnitTests {
 		assertEquals(LifecycleState.SHUTDOWN, systemReference.getState());
 	}
 
+	@Test
+	void httpServerUnitSlowAttributeDoesNotBlockOtherRequestsTest() throws Exception {
+		RoboBuilder builder = new RoboBuilder();
+		final HttpPathConfigJsonBuilder pathBuilder = HttpPathConfigJsonBuilder.Builder().addPath(ID_SLOW_CONTROLLER,
+				HttpMethod.GET);
+		Configuration config = new ConfigurationBuilder().addInteger(PROPERTY_SOCKET_PORT, ASYNC_PORT)
+				.addString(PROPERTY_CODEC_PACKAGES, CODECS_UNITS_TEST_PACKAGE)
+				.addString(PROPERTY_UNIT_PATHS_CONFIG, pathBuilder.build()).addInteger(PROPERTY_MAX_IN_FLIGHT, 2).build();
+		builder.add(HttpServerUnit.class, config, ID_HTTP_SERVER);
+		builder.add(HttpSlowAttributeGetController.class,
+				new ConfigurationBuilder().addInteger(HttpSlowAttributeGetController.PROP_DELAY, SLOW_DELAY).build(),
+				ID_SLOW_CONTROLLER);
+		RoboContext system = builder.build();
+		system.start();
+		final String slowRequest = "GET /units/" + ID_SLOW_CONTROLLER + "?attributes=" + HttpSlowAttributeGetController.ATTR_SLOW;
+
+		CompletableFuture<String> firstSlow = CompletableFuture.supplyAsync(() -> request(slowRequest));
+		SystemUtil.sleep(SLOW_DELAY / 5);
+		long start = System.currentTimeMillis();
+		String fastResponse = request("GET /");
+		assertTrue(fastResponse.startsWith("HTTP/1.1 200"), fastResponse);
+		assertTrue(System.currentTimeMillis() - start < SLOW_DELAY / 2, "waited for the slow request");
+
+		// Max two requests in flight
+		CompletableFuture<String> secondSlow = CompletableFuture.supplyAsync(() -> request(slowRequest));
+		SystemUtil.sleep(SLOW_DELAY / 5);
+		String rejectedResponse = request("GET /");
+		assertTrue(rejectedResponse.startsWith("HTTP/1.1 503"), rejectedResponse);
+
+		assertTrue(firstSlow.get(10, TimeUnit.SECONDS).startsWith("HTTP/1.1 200"));
+		assertTrue(secondSlow.get(10, TimeUnit.SECONDS).startsWith("HTTP/1.1 200"));
+		system.shutdown();
+	}
+
+	@Test
+	void httpServerUnitKeepAlivePipeliningTest() throws Exception {
+		RoboBuilder builder = new RoboBuilder();
+		final HttpPathConfigJsonBuilder pathBuilder = HttpPathConfigJsonBuilder.Builder().addPath(ID_SLOW_CONTROLLER,
+				HttpMethod.GET);
+		Configuration config = new ConfigurationBuilder().addInteger(PROPERTY_SOCKET_PORT, KEEP_ALIVE_PORT)
+				.addString(PROPERTY_CODEC_PACKAGES, CODECS_UNITS_TEST_PACKAGE)
+				.addString(PROPERTY_UNIT_PATHS_CONFIG, pathBuilder.build()).addInteger(PROPERTY_IDLE_TIMEOUT, IDLE_TIMEOUT)
+				.build();
+		builder.add(HttpServerUnit.class, config, ID_HTTP_SERVER);
+		builder.add(HttpSlowAttributeGetController.class,
+				new ConfigurationBuilder().addInteger(HttpSlowAttributeGetController.PROP_DELAY, SLOW_DELAY / 4).build(),
+				ID_SLOW_CONTROLLER);
+		RoboContext system = builder.build();
+		system.start();
+
+		try (Socket socket = connect(KEEP_ALIVE_PORT)) {
+			socket.setSoTimeout(10000);
+			OutputStream out = socket.getOutputStream();
+			InputStream in = socket.getInputStream();
+
+			// The slow request completes last, but is answered first
+			out.write((requestMessage("GET /units/" + ID_SLOW_CONTROLLER + "?attributes="
+					+ HttpSlowAttributeGetController.ATTR_SLOW) + requestMessage("GET /"))
+					.getBytes(StandardCharsets.UTF_8));
+			String slowResponse = readResponse(in);
+			String fastResponse = readResponse(in);
+			assertTrue(slowResponse.startsWith("HTTP/1.1 200"), slowResponse);
+			assertTrue(slowResponse.contains("\"" + HttpSlowAttributeGetController.ATTR_SLOW + "\""), slowResponse);
+			assertTrue(fastResponse.startsWith("HTTP/1.1 200"), fastResponse);
+			assertFalse(fastResponse.contains("\"" + HttpSlowAttributeGetController.ATTR_SLOW + "\""), fastResponse);
+
+			// Still open for further requests
+			out.write(requestMessage("GET /").getBytes(StandardCharsets.UTF_8));
+			assertTrue(readResponse(in).startsWith("HTTP/1.1 200"));
+
+			// Closed by the server when idle
+			assertEquals(-1, in.read());
+		}
+		system.shutdown();
+	}
+
+	@Test
+	void httpServerUnitAnswersPipelinedRequestsAfterEndOfStreamTest() throws Exception {
+		RoboBuilder builder = new RoboBuilder();
+		final HttpPathConfigJsonBuilder pathBuilder = HttpPathConfigJsonBuilder.Builder().addPath(ID_SLOW_CONTROLLER,
+				HttpMethod.GET);
+		Configuration config = new ConfigurationBuilder().addInteger(PROPERTY_SOCKET_PORT, END_OF_STREAM_PORT)
+				.addString(PROPERTY_CODEC_PACKAGES, CODECS_UNITS_TEST_PACKAGE)
+				.addString(PROPERTY_UNIT_PATHS_CONFIG, pathBuilder.build())
+				.addInteger(PROPERTY_MAX_IN_FLIGHT_PER_CONNECTION, 1).build();
+		builder.add(HttpServerUnit.class, config, ID_HTTP_SERVER);
+		builder.add(HttpSlowAttributeGetController.class,
+				new ConfigurationBuilder().addInteger(HttpSlowAttributeGetController.PROP_DELAY, SLOW_DELAY / 4).build(),
+				ID_SLOW_CONTROLLER);
+		RoboContext system = builder.build();
+		system.start();
+
+		try (Socket socket = connect(END_OF_STREAM_PORT)) {
+			socket.setSoTimeout(10000);
+			InputStream in = socket.getInputStream();
+
+			// Only the slow request is processed when the client ends its side
+			socket.getOutputStream().write((requestMessage("GET /units/" + ID_SLOW_CONTROLLER + "?attributes="
+					+ HttpSlowAttributeGetController.ATTR_SLOW) + requestMessage("GET /") + requestMessage("GET /"))
+					.getBytes(StandardCharsets.UTF_8));
+			socket.shutdownOutput();
+			for (int i = 0; i < 3; i++) {
+				String response = readResponse(in);
+				assertTrue(response.startsWith("HTTP/1.1 200"), response);
+			}
+			assertEquals(-1, in.read());
+		}
+		system.shutdown();
+	}
+
+	@Test
+	void httpServerUnitWorkersTest() throws Exception {
+		RoboBuilder builder = new RoboBuilder();
+		Configuration config = new ConfigurationBuilder().addInteger(PROPERTY_SOCKET_PORT, WORKERS_PORT)
+				.addString(PROPERTY_CODEC_PACKAGES, CODECS_UNITS_TEST_PACKAGE).addInteger(PROPERTY_WORKERS, 2).build();
+		builder.add(HttpServerUnit.class, config, ID_HTTP_SERVER);
+		RoboContext system = builder.build();
+		system.start();
+
+		List<Socket> sockets = new ArrayList<>();
+		try {
+			for (int i = 0; i < 4; i++) {
+				Socket socket = connect(WORKERS_PORT);
+				socket.setSoTimeout(10000);
+				sockets.add(socket);
+			}
+			// Two rounds over all connections, spread over both workers
+			for (int round = 0; round < 2; round++) {
+				for (Socket socket : sockets) {
+					socket.getOutputStream().write(requestMessage("GET /").getBytes(StandardCharsets.UTF_8));
+				}
+				for (Socket socket : sockets) {
+					String response = readResponse(socket.getInputStream());
+					assertTrue(response.startsWith("HTTP/1.1 200"), response);
+				}
+			}
+			long workerThreads = Thread.getAllStackTraces().keySet().stream()
+					.filter(t -> t.getName().startsWith("HTTP worker") && t.getName().endsWith("[" + WORKERS_PORT + "]"))
+					.count();
+			assertEquals(2, workerThreads);
+		} finally {
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+		system.shutdown();
+	}
+
+	private static String requestMessage(String requestLine) {
+		return requestLine + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+	}
+
+	private static String request(String requestLine) {
+		try (Socket socket = connect(ASYNC_PORT)) {
+			socket.setSoTimeout(10000);
+			socket.getOutputStream().write((requestLine + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+					.getBytes(StandardCharsets.UTF_8));
+			return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Socket connect(int port) throws IOException {
+		for (int attempt = 0; ; attempt++) {
+			try {
+				return new Socket("localhost", port);
+			} catch (IOException e) {
+				// The server may not be listening yet
+				if (attempt == 20) {
+					throw e;
+				}
+				SystemUtil.sleep(100);
+			}
+		}
+	}
+
+	/**
+	 * Reads one response, framed by its content length.
+	 */
+	private static String readResponse(InputStream in) throws IOException {
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		while (!header.toString(StandardCharsets.UTF_8).endsWith("\r\n\r\n")) {
+			int b = in.read();
+			if (b == -1) {
+				throw new IOException("connection closed within the header: " + header);
+			}
+			header.write(b);
+		}
+		String headerText = header.toString(StandardCharsets.UTF_8);
+		int contentLength = 0;
+		for (String line : headerText.split("\r\n")) {
+			if (line.toLowerCase().startsWith("content-length:")) {
+				contentLength = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+			}
+		}
+		return headerText + new String(in.readNBytes(contentLength), StandardCharsets.UTF_8);
+	}
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.socket.http.test.units.config;
+
+import com.robo4j.AttributeDescriptor;
+import com.robo4j.ConfigurationException;
+import com.robo4j.DefaultAttributeDescriptor;
+import com.robo4j.RoboContext;
+import com.robo4j.RoboUnit;
+import com.robo4j.configuration.Configuration;
+import com.robo4j.util.SystemUtil;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * HttpSlowAttributeGetController exposes an attribute which takes a while to read
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class HttpSlowAttributeGetController extends RoboUnit<String> {
+
+    public static final String ATTR_SLOW = "slow";
+    public static final String PROP_DELAY = "delay";
+    public static final DefaultAttributeDescriptor<Integer> DESCRIPTOR_SLOW = DefaultAttributeDescriptor
+            .create(Integer.class, ATTR_SLOW);
+
+    public static final Collection<AttributeDescriptor<?>> KNOWN_ATTRIBUTES = Collections
+            .unmodifiableCollection(List.of(DESCRIPTOR_SLOW));
+
+    private int delay;
+
+    public HttpSlowAttributeGetController(RoboContext context, String id) {
+        super(String.class, context, id);
+    }
+
+    @Override
+    public void onInitialization(Configuration configuration) throws ConfigurationException {
+        delay = configuration.getInteger(PROP_DELAY, 1000);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <R> R onGetAttribute(AttributeDescriptor<R> descriptor) {
+        if (descriptor.getAttributeName().equals(ATTR_SLOW)
+                && descriptor.getAttributeType() == Integer.class) {
+            SystemUtil.sleep(delay);
+            return (R) Integer.valueOf(delay);
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+        return KNOWN_ATTRIBUTES;
+    }
+}
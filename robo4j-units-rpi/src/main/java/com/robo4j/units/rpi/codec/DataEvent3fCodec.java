@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units.rpi.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.robo4j.hw.rpi.imu.bno.DataEvent3f;
+import com.robo4j.hw.rpi.imu.bno.DataEventType;
+import com.robo4j.math.geometry.Tuple3f;
+import com.robo4j.net.MessageCodec;
+
+/**
+ * Codec for the {@link DataEvent3f} produced by the BNO080.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class DataEvent3fCodec implements MessageCodec<DataEvent3f> {
+	public static final int ID = 104;
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+
+	@Override
+	public Class<DataEvent3f> getMessageType() {
+		return DataEvent3f.class;
+	}
+
+	@Override
+	public void encode(DataEvent3f message, DataOutput out) throws IOException {
+		out.writeUTF(message.getType().name());
+		out.writeInt(message.getStatus());
+		Tuple3f data = message.getData();
+		out.writeFloat(data.x);
+		out.writeFloat(data.y);
+		out.writeFloat(data.z);
+		out.writeLong(message.getTimestamp());
+	}
+
+	@Override
+	public DataEvent3f decode(DataInput in) throws IOException {
+		DataEventType type = DataEventType.valueOf(in.readUTF());
+		int status = in.readInt();
+		Tuple3f data = new Tuple3f(in.readFloat(), in.readFloat(), in.readFloat());
+		return new DataEvent3f(type, status, data, in.readLong());
+	}
+}
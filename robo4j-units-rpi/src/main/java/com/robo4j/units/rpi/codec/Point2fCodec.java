@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units.rpi.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.robo4j.math.geometry.Point2f;
+import com.robo4j.net.MessageCodec;
+
+/**
+ * Codec for {@link Point2f}, written as range and angle.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class Point2fCodec implements MessageCodec<Point2f> {
+	public static final int ID = 102;
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+
+	@Override
+	public Class<Point2f> getMessageType() {
+		return Point2f.class;
+	}
+
+	@Override
+	public void encode(Point2f message, DataOutput out) throws IOException {
+		out.writeFloat(message.getRange());
+		out.writeFloat(message.getAngle());
+	}
+
+	@Override
+	public Point2f decode(DataInput in) throws IOException {
+		return Point2f.fromPolar(in.readFloat(), in.readFloat());
+	}
+}
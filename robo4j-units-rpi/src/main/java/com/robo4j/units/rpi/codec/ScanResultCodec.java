@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units.rpi.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.robo4j.math.geometry.Point2f;
+import com.robo4j.math.geometry.impl.ScanResultImpl;
+import com.robo4j.net.MessageCodec;
+
+/**
+ * Codec for {@link ScanResultImpl}, written as the angular resolution followed
+ * by the points as range and angle. The scan id is local to each JVM, and is
+ * not transferred.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class ScanResultCodec implements MessageCodec<ScanResultImpl> {
+	public static final int ID = 103;
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+
+	@Override
+	public Class<ScanResultImpl> getMessageType() {
+		return ScanResultImpl.class;
+	}
+
+	@Override
+	public void encode(ScanResultImpl message, DataOutput out) throws IOException {
+		out.writeFloat(message.getAngularResolution());
+		out.writeInt(message.getPoints().size());
+		for (Point2f point : message.getPoints()) {
+			out.writeFloat(point.getRange());
+			out.writeFloat(point.getAngle());
+		}
+	}
+
+	@Override
+	public ScanResultImpl decode(DataInput in) throws IOException {
+		float angularResolution = in.readFloat();
+		int size = in.readInt();
+		if (size < 0) {
+			throw new IOException("Bad number of points " + size);
+		}
+		ScanResultImpl result = new ScanResultImpl(angularResolution);
+		for (int i = 0; i < size; i++) {
+			result.addPoint(in.readFloat(), in.readFloat());
+		}
+		return result;
+	}
+}
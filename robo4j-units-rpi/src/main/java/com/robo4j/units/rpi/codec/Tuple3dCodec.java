@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014, 2024, Marcus Hirt, Miroslav Wengner
+ *
+ * Robo4J is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Robo4J is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Robo4J. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.robo4j.units.rpi.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.robo4j.math.geometry.Tuple3d;
+import com.robo4j.net.MessageCodec;
+
+/**
+ * Codec for {@link Tuple3d}, written as three doubles.
+ *
+ * @author Marcus Hirt (@hirt)
+ * @author Miroslav Wengner (@miragemiko)
+ */
+public class Tuple3dCodec implements MessageCodec<Tuple3d> {
+	public static final int ID = 101;
+
+	@Override
+	public int getId() {
+		return ID;
+	}
+
+	@Override
+	public Class<Tuple3d> getMessageType() {
+		return Tuple3d.class;
+	}
+
+	@Override
+	public void encode(Tuple3d message, DataOutput out) throws IOException {
+		out.writeDouble(message.x);
+		out.writeDouble(message.y);
+		out.writeDouble(message.z);
+	}
+
+	@Override
+	public Tuple3d decode(DataInput in) throws IOException {
+		return new Tuple3d(in.readDouble(), in.readDouble(), in.readDouble());
+	}
+}
@@ -17,10 +17,12 @@
 package com.robo4j.units.rpi.gyro;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -37,6 +39,8 @@ import com.robo4j.hw.rpi.i2c.gyro.GyroL3GD20Device;
 import com.robo4j.hw.rpi.i2c.gyro.GyroL3GD20Device.Sensitivity;
 import com.robo4j.logging.SimpleLoggingUtil;
 import com.robo4j.math.geometry.Tuple3f;
+import com.robo4j.scheduler.RealtimeJob;
+import com.robo4j.scheduler.RealtimeJobStatistics;
 import com.robo4j.units.rpi.I2CRoboUnit;
 import com.robo4j.units.rpi.gyro.GyroRequest.GyroAction;
 
@@ -45,6 +49,12 @@ import com.robo4j.units.rpi.gyro.GyroRequest.GyroAction;
  * ONE active notification threshold per target. If a new one is registered
  * before it has triggered, the new one will replace the old one.
  * 
+ * <p>
+ * The gyro is read using the real-time scheduler, if configured. The
+ * statistics of the reading job are then available as attributes (see
+ * {@link RealtimeJobStatistics}) while the gyro is being read.
+ * </p>
+ * 
  * @author Marcus Hirt (@hirt)
  * @author Miroslav Wengner (@miragemiko)
  */
@@ -79,6 +89,8 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
 	public static final Collection<AttributeDescriptor<?>> KNOWN_ATTRIBUTES = Collections
 			.unmodifiableCollection(Arrays.asList(DefaultAttributeDescriptor.create(Tuple3f.class, ATTRIBUTE_NAME_STATE)));
 
+	private static final float NANOS_PER_SECOND = 1_000_000_000.0f;
+
 	private final Map<RoboReference<GyroEvent>, GyroNotificationEntry> activeThresholds = new HashMap<>();
 
 	private final GyroScanner scanner = new GyroScanner();
@@ -91,19 +103,19 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
 	private volatile ScheduledFuture<?> readings;
 
 	private class GyroScanner implements Runnable {
-		private long lastReadingTime = System.currentTimeMillis();
+		private long lastReadingTime = System.nanoTime();
 		private Tuple3f lastReading = new Tuple3f(0f, 0f, 0f);
 
 		@Override
 		public void run() {
 			Tuple3f data = read();
-			long newTime = System.currentTimeMillis();
+			long newTime = System.nanoTime();
 
 			// Trapezoid
 			Tuple3f tmp = new Tuple3f(data);
 			long deltaTime = newTime - lastReadingTime;
 			data.add(lastReading);
-			data.multiplyScalar(deltaTime / 2000.0f);
+			data.multiplyScalar(deltaTime / (2 * NANOS_PER_SECOND));
 
 			lastReading.set(tmp);
 			addToDeltas(data);
@@ -119,7 +131,7 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
 		}
 
 		private void reset() {
-			lastReadingTime = System.currentTimeMillis();
+			lastReadingTime = System.nanoTime();
 			lastReading = read();
 		}
 
@@ -161,6 +173,11 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
 
 	@Override
 	public Collection<AttributeDescriptor<?>> getKnownAttributes() {
+		if (readings instanceof RealtimeJob) {
+			List<AttributeDescriptor<?>> attributes = new ArrayList<>(KNOWN_ATTRIBUTES);
+			attributes.addAll(RealtimeJobStatistics.ATTRIBUTES);
+			return attributes;
+		}
 		return KNOWN_ATTRIBUTES;
 	}
 
@@ -217,6 +234,12 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
 				SimpleLoggingUtil.error(getClass(), "Failed to read the gyro!", e);
 			}
 		}
+		if (readings instanceof RealtimeJob job) {
+			R statistic = job.getStatistics().getAttribute(descriptor);
+			if (statistic != null) {
+				return statistic;
+			}
+		}
 		return super.onGetAttribute(descriptor);
 	}
 
@@ -230,7 +253,7 @@ public class GyroL3GD20Unit extends I2CRoboUnit<GyroRequest> {
 		}
 		if (readings == null) {
 			synchronized (this) {
-				readings = getContext().getScheduler().scheduleAtFixedRate(scanner, 0, period, TimeUnit.MILLISECONDS);
+				readings = getContext().getRealtimeScheduler().scheduleAtFixedRate(scanner, 0, period, TimeUnit.MILLISECONDS);
 			}
 		}
 	}
@@ -17,7 +17,6 @@
 package com.robo4j.units.rpi.lidarlite;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
@@ -34,7 +33,6 @@ import com.robo4j.math.geometry.impl.ScanResultImpl;
 import com.robo4j.math.jfr.JfrUtils;
 import com.robo4j.math.jfr.ScanEvent;
 import com.robo4j.units.rpi.I2CRoboUnit;
-import com.robo4j.units.rpi.pwm.PCA9685ServoUnit;
 import jdk.jfr.Event;
 
 /**
@@ -66,6 +64,9 @@ public class LaserScanner extends I2CRoboUnit<ScanRequest> {
 	private float angularSpeed;
 	private float minimumAcquisitionTime;
 	private float trim;
+	// Last input sent to the pan servo. Asking the servo instead would block
+	// a thread of the pool which may have to deliver the answer.
+	private float panInput;
 
 	/**
 	 * Filter for filtering out mis-reads. Anything closer than minRange will be
@@ -298,14 +299,15 @@ public class LaserScanner extends I2CRoboUnit<ScanRequest> {
 	}
 
 	private void scheduleFixPanScan(ScanRequest message, RoboReference<Float> servo) {
-		servo.sendMessage(message.getStartAngle() / servoRange);
+		panInput = message.getStartAngle() / servoRange;
+		servo.sendMessage(panInput);
 		ScanFixedAngleJob fixedAngleJob = new ScanFixedAngleJob(message.getReceiver(), lidar, message.getStartAngle(), pointFilter);
 		// FIXME(Marcus/Sep 5, 2017): We should try to calculate this - we are
 		// now assuming that it will take little time to move the servo to the
 		// "new" position, however, the fact is that the new position will
 		// usually be the old position.
-		getContext().getScheduler().schedule(fixedAngleJob, 31, TimeUnit.MILLISECONDS);
-		getContext().getScheduler().schedule(fixedAngleJob, (long) (31 + minimumAcquisitionTime), TimeUnit.MILLISECONDS);
+		getContext().getRealtimeScheduler().schedule(fixedAngleJob, 31, TimeUnit.MILLISECONDS);
+		getContext().getRealtimeScheduler().schedule(fixedAngleJob, (long) (31 + minimumAcquisitionTime), TimeUnit.MILLISECONDS);
 	}
 
 	private RoboReference<Float> getPanServo() {
@@ -314,7 +316,7 @@ public class LaserScanner extends I2CRoboUnit<ScanRequest> {
 	}
 
 	private void scheduleScan(ScanRequest message, RoboReference<Float> servo) {
-		float currentInput = getCurrentInput(servo);
+		float currentInput = panInput;
 		float midPoint = message.getStartAngle() + message.getRange() / 2;
 		boolean lowToHigh = false;
 		if (inputToAngle(currentInput) <= midPoint) {
@@ -323,6 +325,8 @@ public class LaserScanner extends I2CRoboUnit<ScanRequest> {
 		float minimumServoMovementTime = message.getRange() / angularSpeed;
 		ScanJob job = new ScanJob(lowToHigh, minimumServoMovementTime, minimumAcquisitionTime, trim, message, servo, servoRange, lidar,
 				message.getReceiver(), pointFilter);
+		// Where the servo ends up
+		panInput = (lowToHigh ? message.getStartAngle() + message.getRange() : message.getStartAngle()) / servoRange;
 		schedule(job);
 	}
 
@@ -336,20 +340,11 @@ public class LaserScanner extends I2CRoboUnit<ScanRequest> {
 		for (int i = 0; i < job.numberOfScans + 1; i++) {
 			// FIXME(Marcus/Apr 4, 2017): Simplified - need to take angular
 			// speed of the servo into account.
-			getContext().getScheduler().schedule(job, actualDelayMicros, TimeUnit.MICROSECONDS);
+			getContext().getRealtimeScheduler().schedule(job, actualDelayMicros, TimeUnit.MICROSECONDS);
 			actualDelayMicros += job.delayMicros;
 		}
 	}
 
-	private float getCurrentInput(RoboReference<Float> servo) {
-		try {
-			return servo.getAttribute(PCA9685ServoUnit.ATTRIBUTE_SERVO_INPUT).get();
-		} catch (InterruptedException | ExecutionException e) {
-			SimpleLoggingUtil.error(getClass(), "Could not read servo input!", e);
-			return 0;
-		}
-	}
-
 	private <T> RoboReference<Float> getReference(String unit) {
 		if (unit.equals("null")) {
 			return null;
@@ -5,6 +5,7 @@ module robo4j.units.rpi {
 
     exports com.robo4j.units.rpi.accelerometer;
     exports com.robo4j.units.rpi.camera;
+    exports com.robo4j.units.rpi.codec;
     exports com.robo4j.units.rpi.gps;
     exports com.robo4j.units.rpi.gyro;
     exports com.robo4j.units.rpi.imu;
@@ -22,4 +23,8 @@ module robo4j.units.rpi {
     uses com.robo4j.math.geometry.ScanResult2D;
     uses com.robo4j.math.geometry.Point2f;
     uses jdk.jfr.Event;
+
+    provides com.robo4j.net.MessageCodec with com.robo4j.units.rpi.codec.Tuple3fCodec,
+            com.robo4j.units.rpi.codec.Tuple3dCodec, com.robo4j.units.rpi.codec.Point2fCodec,
+            com.robo4j.units.rpi.codec.ScanResultCodec, com.robo4j.units.rpi.codec.DataEvent3fCodec;
 }
\ No newline at end of file